@@ -38,4 +38,4 @@ classycle {
     excludePatterns.add("org/gradle/util/GradleVersion**")
 }
 
-jmh.includes.set(listOf("HashingAlgorithmsBenchmark"))
+jmh.includes.set(listOf("HashingAlgorithmsBenchmark", "HashFunctionBenchmark", "ResourceLockCoordinationBenchmark"))
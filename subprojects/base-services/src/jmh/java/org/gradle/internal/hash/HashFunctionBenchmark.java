@@ -0,0 +1,82 @@
+/*
+ * Copyright 2021 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.internal.hash;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Random;
+
+/**
+ * Compares the hash functions available as the default for file content hashing.
+ */
+@Fork(1)
+@Threads(4)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5)
+@State(Scope.Benchmark)
+public class HashFunctionBenchmark {
+    private static final int BUFFER_SIZE = 8192;
+
+    @Param({"16", "1024", "65536", "4194304"})
+    int hashSize;
+
+    @Param({"MD5", "MURMUR3"})
+    String algorithm;
+
+    byte[] input;
+    HashFunction hashFunction;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        input = new byte[hashSize];
+        new Random(1234L).nextBytes(input);
+        hashFunction = Hashing.selectDefaultFunction(algorithm);
+    }
+
+    @Benchmark
+    public HashCode hashBytes() {
+        return hashFunction.hashBytes(input);
+    }
+
+    @Benchmark
+    public HashCode hashInChunks() {
+        PrimitiveHasher hasher = hashFunction.newPrimitiveHasher();
+        for (int offset = 0; offset < input.length; offset += BUFFER_SIZE) {
+            hasher.putBytes(input, offset, Math.min(BUFFER_SIZE, input.length - offset));
+        }
+        return hasher.hash();
+    }
+
+    @Benchmark
+    public HashCode hashStructuredValues() {
+        Hasher hasher = hashFunction.newHasher();
+        hasher.putString("some/relative/path/to/File.class");
+        hasher.putLong(input.length);
+        hasher.putBoolean(true);
+        hasher.putBytes(input, 0, Math.min(16, input.length));
+        return hasher.hash();
+    }
+}
@@ -0,0 +1,77 @@
+/*
+ * Copyright 2021 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.internal.resources;
+
+import org.gradle.api.Action;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+import static org.gradle.internal.resources.DefaultResourceLockCoordinationService.lock;
+import static org.gradle.internal.resources.DefaultResourceLockCoordinationService.unlock;
+
+/**
+ * Measures the throughput of many threads contending for a few project locks.
+ */
+@Fork(1)
+@Threads(32)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5)
+@State(Scope.Benchmark)
+public class ResourceLockCoordinationBenchmark {
+    private static final Action<ResourceLock> NO_OP = new Action<ResourceLock>() {
+        @Override
+        public void execute(ResourceLock resourceLock) {
+        }
+    };
+
+    @Param({"1", "4", "16"})
+    int projectCount;
+
+    @Param({"0", "1000"})
+    int workWhileLocked;
+
+    ResourceLockCoordinationService coordinationService;
+    ProjectLock[] projectLocks;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        coordinationService = new DefaultResourceLockCoordinationService();
+        projectLocks = new ProjectLock[projectCount];
+        for (int i = 0; i < projectCount; i++) {
+            projectLocks[i] = new ProjectLock(":project" + i, coordinationService, NO_OP, NO_OP);
+        }
+    }
+
+    @Benchmark
+    public void lockAndUnlockProject() {
+        ProjectLock projectLock = projectLocks[ThreadLocalRandom.current().nextInt(projectCount)];
+        coordinationService.withStateLock(lock(projectLock));
+        Blackhole.consumeCPU(workWhileLocked);
+        coordinationService.withStateLock(unlock(projectLock));
+    }
+}
@@ -16,17 +16,33 @@
 
 package org.gradle.internal.resources;
 
+import com.google.common.annotations.VisibleForTesting;
 import com.google.common.collect.Lists;
 import com.google.common.collect.Sets;
 import org.gradle.api.Transformer;
 import org.gradle.internal.UncheckedException;
 
 import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
 
+/**
+ * Coordinates changes to resource locks under a single state lock.
+ *
+ * <p>A thread which retries a blocking acquisition of locks, and which failed to acquire an exclusive lock, waits until that lock is released.
+ * Releasing such a lock wakes only the longest waiting of these threads, which passes the release on if it does not take the lock.
+ * All other retrying threads wait until any resource lock is released, or until {@link #notifyStateChange()} is called.
+ * This way, releasing a project lock no longer wakes every waiting thread.</p>
+ */
 public class DefaultResourceLockCoordinationService implements ResourceLockCoordinationService {
-    private final Object lock = new Object();
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Set<Waiter> waitingForAnyChange = new LinkedHashSet<Waiter>();
+    private final Map<ResourceLock, Set<Waiter>> waitingForRelease = new HashMap<ResourceLock, Set<Waiter>>();
     private final ThreadLocal<List<ResourceLockState>> currentState = new ThreadLocal<List<ResourceLockState>>() {
         @Override
         protected List<ResourceLockState> initialValue() {
@@ -36,10 +52,13 @@ protected List<ResourceLockState> initialValue() {
 
     @Override
     public boolean withStateLock(Transformer<ResourceLockState.Disposition, ResourceLockState> stateLockAction) {
+        // The exclusive lock whose release this thread was handed while waiting, if any
+        ResourceLock handedOver = null;
         while (true) {
             DefaultResourceLockState resourceLockState = new DefaultResourceLockState();
             ResourceLockState.Disposition disposition;
-            synchronized (lock) {
+            lock.lock();
+            try {
                 try {
                     currentState.get().add(resourceLockState);
                     disposition = stateLockAction.transform(resourceLockState);
@@ -47,8 +66,9 @@ public boolean withStateLock(Transformer<ResourceLockState.Disposition, Resource
                     switch (disposition) {
                         case RETRY:
                             resourceLockState.releaseLocks();
+                            maybeHandOverRelease(handedOver);
                             try {
-                                lock.wait();
+                                handedOver = awaitStateChange(stateLockAction);
                             } catch (InterruptedException e) {
                                 throw UncheckedException.throwAsUncheckedException(e);
                             }
@@ -58,16 +78,77 @@ public boolean withStateLock(Transformer<ResourceLockState.Disposition, Resource
                             return true;
                         case FAILED:
                             resourceLockState.releaseLocks();
+                            maybeHandOverRelease(handedOver);
                             return false;
                         default:
                             throw new IllegalArgumentException("Unhandled disposition type: " + disposition.name());
                     }
                 } catch (Throwable t) {
                     resourceLockState.releaseLocks();
+                    maybeHandOverRelease(handedOver);
                     throw UncheckedException.throwAsUncheckedException(t);
                 } finally {
                     currentState.get().remove(resourceLockState);
                 }
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+
+    /**
+     * Waits for a change to the resource lock state.
+     *
+     * @return the exclusive lock this thread was waiting for, or null when it was waiting for any change.
+     */
+    private ResourceLock awaitStateChange(Transformer<ResourceLockState.Disposition, ResourceLockState> stateLockAction) throws InterruptedException {
+        ResourceLock blockedOn = stateLockAction instanceof AcquireLocks ? ((AcquireLocks) stateLockAction).blockedOn : null;
+        // Other locks, like worker leases, can become available when a different lock is released
+        if (!(blockedOn instanceof ExclusiveAccessResourceLock)) {
+            await(waitingForAnyChange);
+            return null;
+        }
+        Set<Waiter> waiters = waitingForRelease.get(blockedOn);
+        if (waiters == null) {
+            waiters = new LinkedHashSet<Waiter>();
+            waitingForRelease.put(blockedOn, waiters);
+        }
+        try {
+            await(waiters);
+        } finally {
+            if (waiters.isEmpty()) {
+                waitingForRelease.remove(blockedOn);
+            }
+        }
+        return blockedOn;
+    }
+
+    private void await(Set<Waiter> waiters) throws InterruptedException {
+        Waiter waiter = new Waiter(lock.newCondition());
+        waiters.add(waiter);
+        try {
+            waiter.await();
+        } catch (InterruptedException e) {
+            waiters.remove(waiter);
+            if (waiter.woken) {
+                // Do not swallow a release handed to this thread
+                wakeFirst(waiters);
+            }
+            throw e;
+        } finally {
+            waiters.remove(waiter);
+        }
+    }
+
+    /**
+     * Only one of the threads waiting for an exclusive lock is woken when the lock is released.
+     * When that thread did not take the lock after all, pass the release on to the next waiting thread.
+     */
+    private void maybeHandOverRelease(ResourceLock handedOver) {
+        if (handedOver != null && !handedOver.isLocked()) {
+            Set<Waiter> waiters = waitingForRelease.get(handedOver);
+            if (waiters != null) {
+                wakeFirst(waiters);
             }
         }
     }
@@ -85,14 +166,86 @@ public ResourceLockState getCurrent() {
 
     private void maybeNotifyStateChange(DefaultResourceLockState resourceLockState) {
         if (resourceLockState.hasUnlockedResources()) {
-            notifyStateChange();
+            wakeAll(waitingForAnyChange);
+            for (ResourceLock unlockedResource : resourceLockState.unlockedResources) {
+                Set<Waiter> waiters = waitingForRelease.get(unlockedResource);
+                if (waiters != null) {
+                    wakeFirst(waiters);
+                }
+            }
         }
     }
 
     @Override
     public void notifyStateChange() {
-        synchronized (lock) {
-            lock.notifyAll();
+        lock.lock();
+        try {
+            wakeAll(waitingForAnyChange);
+            for (Set<Waiter> waiters : waitingForRelease.values()) {
+                wakeAll(waiters);
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Returns the number of threads which are waiting for the given exclusive lock to be released and have not been woken yet.
+     */
+    @VisibleForTesting
+    int getBlockedThreadCount(ResourceLock resourceLock) {
+        lock.lock();
+        try {
+            Set<Waiter> waiters = waitingForRelease.get(resourceLock);
+            int count = 0;
+            if (waiters != null) {
+                for (Waiter waiter : waiters) {
+                    if (!waiter.woken) {
+                        count++;
+                    }
+                }
+            }
+            return count;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private static void wakeFirst(Set<Waiter> waiters) {
+        for (Waiter waiter : waiters) {
+            if (!waiter.woken) {
+                waiter.wake();
+                return;
+            }
+        }
+    }
+
+    private static void wakeAll(Set<Waiter> waiters) {
+        for (Waiter waiter : waiters) {
+            waiter.wake();
+        }
+    }
+
+    /**
+     * A thread waiting for a change to the resource lock state. Must only be used while holding the state lock.
+     */
+    private static class Waiter {
+        private final Condition condition;
+        private boolean woken;
+
+        Waiter(Condition condition) {
+            this.condition = condition;
+        }
+
+        void await() throws InterruptedException {
+            while (!woken) {
+                condition.await();
+            }
+        }
+
+        void wake() {
+            woken = true;
+            condition.signal();
         }
     }
 
@@ -186,6 +339,7 @@ public static Transformer<ResourceLockState.Disposition, ResourceLockState> unlo
     private static class AcquireLocks implements Transformer<ResourceLockState.Disposition, ResourceLockState> {
         private final Iterable<? extends ResourceLock> resourceLocks;
         private final boolean blocking;
+        private ResourceLock blockedOn;
 
         AcquireLocks(Iterable<? extends ResourceLock> resourceLocks, boolean blocking) {
             this.resourceLocks = resourceLocks;
@@ -194,8 +348,10 @@ private static class AcquireLocks implements Transformer<ResourceLockState.Dispo
 
         @Override
         public ResourceLockState.Disposition transform(ResourceLockState resourceLockState) {
+            blockedOn = null;
             for (ResourceLock resourceLock : resourceLocks) {
                 if (!resourceLock.tryLock()) {
+                    blockedOn = resourceLock;
                     return blocking ? ResourceLockState.Disposition.RETRY : ResourceLockState.Disposition.FAILED;
                 }
             }
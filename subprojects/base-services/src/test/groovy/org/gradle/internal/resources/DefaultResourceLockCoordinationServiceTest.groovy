@@ -21,6 +21,8 @@ import org.gradle.api.Transformer
 import org.gradle.test.fixtures.ConcurrentTestUtil
 import org.gradle.test.fixtures.concurrent.ConcurrentSpec
 
+import java.util.concurrent.atomic.AtomicInteger
+
 import static org.gradle.internal.resources.ResourceLockState.Disposition.*
 import static org.gradle.internal.resources.DefaultResourceLockCoordinationService.*
 
@@ -317,10 +319,123 @@ class DefaultResourceLockCoordinationServiceTest extends ConcurrentSpec {
         false       | false       | FINISHED
     }
 
+    def "threads waiting for a project lock acquire it one after another as it is released"() {
+        def projectLock = new ProjectLock(":project", coordinationService, Mock(Action), Mock(Action))
+        def otherLock = new ProjectLock(":other", coordinationService, Mock(Action), Mock(Action))
+        def holders = [].asSynchronized()
+
+        when:
+        async {
+            coordinationService.withStateLock(lock(projectLock))
+            3.times { i ->
+                start {
+                    coordinationService.withStateLock(lock(otherLock, projectLock))
+                    holders << i
+                    coordinationService.withStateLock(unlock(projectLock, otherLock))
+                }
+            }
+            ConcurrentTestUtil.poll {
+                assert coordinationService.getBlockedThreadCount(projectLock) == 3
+            }
+            assert holders.empty
+            coordinationService.withStateLock(unlock(projectLock))
+        }
+
+        then:
+        holders.sort() == [0, 1, 2]
+    }
+
+    def "releasing a project lock wakes only one of the threads waiting for it"() {
+        def attempts = new AtomicInteger()
+        def projectLock = countingProjectLock(":project", attempts)
+        def holders = [].asSynchronized()
+
+        when:
+        async {
+            coordinationService.withStateLock(lock(projectLock))
+            3.times { i ->
+                start {
+                    coordinationService.withStateLock(lock(projectLock))
+                    holders << i
+                    thread.blockUntil."release${i}"
+                    coordinationService.withStateLock(unlock(projectLock))
+                }
+            }
+            ConcurrentTestUtil.poll {
+                assert coordinationService.getBlockedThreadCount(projectLock) == 3
+            }
+            assert attempts.get() == 4
+
+            coordinationService.withStateLock(unlock(projectLock))
+            (1..3).each { held ->
+                ConcurrentTestUtil.poll {
+                    assert holders.size() == held
+                    assert coordinationService.getBlockedThreadCount(projectLock) == 3 - held
+                }
+                // Only the thread which took the lock has tried to acquire it again
+                assert attempts.get() == 4 + held
+                instant."release${holders.last()}"
+            }
+        }
+
+        then:
+        holders.sort() == [0, 1, 2]
+    }
+
+    def "a woken thread which does not take the released project lock passes the release on"() {
+        def projectLock = new ProjectLock(":project", coordinationService, Mock(Action), Mock(Action))
+        def otherLock = new ProjectLock(":other", coordinationService, Mock(Action), Mock(Action))
+        def holders = [].asSynchronized()
+
+        when:
+        async {
+            coordinationService.withStateLock(lock(projectLock, otherLock))
+            start {
+                // Is woken for the project lock first, but then needs to wait for the other lock
+                coordinationService.withStateLock(lock(projectLock, otherLock))
+                holders << "both"
+                coordinationService.withStateLock(unlock(projectLock, otherLock))
+            }
+            ConcurrentTestUtil.poll {
+                assert coordinationService.getBlockedThreadCount(projectLock) == 1
+            }
+            start {
+                coordinationService.withStateLock(lock(projectLock))
+                holders << "project"
+                thread.blockUntil.projectReleased
+                coordinationService.withStateLock(unlock(projectLock))
+            }
+            ConcurrentTestUtil.poll {
+                assert coordinationService.getBlockedThreadCount(projectLock) == 2
+            }
+
+            coordinationService.withStateLock(unlock(projectLock))
+            ConcurrentTestUtil.poll {
+                assert holders == ["project"]
+                assert coordinationService.getBlockedThreadCount(otherLock) == 1
+            }
+            instant.projectReleased
+            coordinationService.withStateLock(unlock(otherLock))
+        }
+
+        then:
+        holders == ["project", "both"]
+    }
+
     TestTrackedResourceLock resourceLock(String displayName, boolean locked, boolean hasLock=false) {
         return new TestTrackedResourceLock(displayName, coordinationService, Mock(Action), Mock(Action), locked, hasLock)
     }
 
+    ProjectLock countingProjectLock(String displayName, AtomicInteger attempts) {
+        return new ProjectLock(displayName, coordinationService, Mock(Action), Mock(Action)) {
+            @Override
+            protected boolean acquireLock() {
+                attempts.incrementAndGet()
+                return super.acquireLock()
+            }
+        }
+    }
+
     TestTrackedResourceLock resourceLock(String displayName) {
         return resourceLock(displayName, false)
     }
@@ -42,6 +42,10 @@
  * Build cache factory for HTTP backend.
  */
 public class DefaultHttpBuildCacheServiceFactory implements BuildCacheServiceFactory<HttpBuildCache> {
+    /**
+     * The number of connections to keep open to the cache server. Loads and stores of concurrently executing work share these connections.
+     */
+    public static final String MAX_CONNECTIONS_PROPERTY = "org.gradle.caching.http.internal.maxConnections";
 
     private final SslContextFactory sslContextFactory;
     private final HttpBuildCacheRequestCustomizer requestCustomizer;
@@ -85,7 +89,8 @@ public BuildCacheService createBuildCacheService(HttpBuildCache configuration, D
         DefaultHttpSettings.Builder builder = DefaultHttpSettings.builder()
             .withAuthenticationSettings(authentications)
             .followRedirects(false)
-            .withRedirectVerifier(redirectVerifier);
+            .withRedirectVerifier(redirectVerifier)
+            .withMaxConnections(Integer.getInteger(MAX_CONNECTIONS_PROPERTY, DefaultHttpSettings.DEFAULT_MAX_CONNECTIONS));
         if (allowUntrustedServer) {
             builder.allowUntrustedConnections();
         } else {
@@ -204,6 +204,9 @@ private boolean throwHttpStatusCodeException(int statusCode, String message) {
 
     @Override
     public void close() throws IOException {
+        if (httpClientHelper.getRequestCount() > 0) {
+            LOGGER.info("Sent {} requests to the HTTP build cache over {} connections", httpClientHelper.getRequestCount(), httpClientHelper.getOpenedConnectionCount());
+        }
         httpClientHelper.close();
     }
 
@@ -1,6 +1,7 @@
 plugins {
     id("gradlebuild.distribution.api-java")
     id("gradlebuild.publish-public-libraries")
+    id("gradlebuild.jmh")
 }
 
 description = "Package build cache results"
@@ -25,4 +26,8 @@ dependencies {
     testImplementation(testFixtures(project(":core")))
     testImplementation(testFixtures(project(":snapshots")))
     testImplementation(testFixtures(project(":core-api")))
+
+    jmh(platform(project(":distributions-dependencies")))
 }
+
+jmh.includes.set(listOf("BuildCacheEntryCompressionBenchmark"))
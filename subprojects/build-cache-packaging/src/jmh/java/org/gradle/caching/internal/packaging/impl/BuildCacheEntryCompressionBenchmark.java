@@ -0,0 +1,130 @@
+/*
+ * Copyright 2021 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.caching.internal.packaging.impl;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.io.ByteStreams;
+import org.apache.commons.compress.archivers.tar.TarArchiveEntry;
+import org.apache.commons.compress.archivers.tar.TarArchiveOutputStream;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Enumeration;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+/**
+ * Compares the pack and unpack throughput and the entry size of the build cache entry compressions.
+ *
+ * The entry is a TAR archive of the class files in the Guava jar, which resembles the output of a large compile task.
+ */
+@Fork(1)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5)
+@State(Scope.Benchmark)
+public class BuildCacheEntryCompressionBenchmark {
+
+    @Param({"GZIP", "GZIP_FAST", "NONE"})
+    BuildCacheEntryCompression compression;
+
+    byte[] archive;
+    byte[] compressedArchive;
+
+    @Setup(Level.Trial)
+    public void setup() throws IOException {
+        archive = createArchiveOfClassFiles();
+        compressedArchive = compress(archive);
+    }
+
+    @Benchmark
+    public byte[] pack() throws IOException {
+        return compress(archive);
+    }
+
+    @Benchmark
+    public long unpack() throws IOException {
+        try (InputStream input = BuildCacheEntryCompression.decompress(new ByteArrayInputStream(compressedArchive))) {
+            return ByteStreams.exhaust(input);
+        }
+    }
+
+    @Benchmark
+    public void entrySize(EntrySize entrySize) {
+        entrySize.kibibytes = compressedArchive.length / 1024;
+    }
+
+    /**
+     * Reports the size of the compressed entry next to the timings.
+     */
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    @State(Scope.Thread)
+    public static class EntrySize {
+        public long kibibytes;
+    }
+
+    private byte[] compress(byte[] content) throws IOException {
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        try (OutputStream compressedOutput = compression.compress(output)) {
+            compressedOutput.write(content);
+        }
+        return output.toByteArray();
+    }
+
+    private static byte[] createArchiveOfClassFiles() throws IOException {
+        File jar;
+        try {
+            jar = new File(ImmutableList.class.getProtectionDomain().getCodeSource().getLocation().toURI());
+        } catch (Exception e) {
+            throw new IllegalStateException("Could not locate the Guava jar", e);
+        }
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        try (ZipFile zipFile = new ZipFile(jar); TarArchiveOutputStream tarOutput = new TarArchiveOutputStream(output, "UTF-8")) {
+            tarOutput.setLongFileMode(TarArchiveOutputStream.LONGFILE_POSIX);
+            Enumeration<? extends ZipEntry> entries = zipFile.entries();
+            while (entries.hasMoreElements()) {
+                ZipEntry entry = entries.nextElement();
+                if (entry.isDirectory() || !entry.getName().endsWith(".class")) {
+                    continue;
+                }
+                byte[] content;
+                try (InputStream input = zipFile.getInputStream(entry)) {
+                    content = ByteStreams.toByteArray(input);
+                }
+                TarArchiveEntry tarEntry = new TarArchiveEntry("tree-classes/" + entry.getName(), true);
+                tarEntry.setSize(content.length);
+                tarOutput.putArchiveEntry(tarEntry);
+                tarOutput.write(content);
+                tarOutput.closeArchiveEntry();
+            }
+        }
+        return output.toByteArray();
+    }
+}
@@ -0,0 +1,92 @@
+/*
+ * Copyright 2021 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.caching.internal.packaging.impl;
+
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Locale;
+import java.util.zip.Deflater;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * The compression applied to build cache entries.
+ *
+ * <p>Compressed entries start with the GZIP magic number, while uncompressed entries start with a TAR header.
+ * This header tells how an entry has to be read, so entries stored with any of the compressions remain readable when the compression is changed.</p>
+ */
+public enum BuildCacheEntryCompression {
+    /**
+     * GZIP at the default compression level. Produces the smallest entries, which suits remote caches accessed over slow networks.
+     */
+    GZIP(Deflater.DEFAULT_COMPRESSION),
+    /**
+     * GZIP at the fastest compression level. Packs considerably faster than {@link #GZIP}, at the cost of somewhat larger entries.
+     */
+    GZIP_FAST(Deflater.BEST_SPEED),
+    /**
+     * No compression. Avoids spending CPU time on compression, which suits the local cache and caches on fast networks.
+     */
+    NONE(Deflater.NO_COMPRESSION);
+
+    /**
+     * Selects the compression for build cache entries, one of {@code gzip}, {@code gzip_fast} or {@code none}.
+     */
+    public static final String COMPRESSION_PROPERTY = "org.gradle.caching.internal.compression";
+
+    private static final int GZIP_MAGIC = 0x8b1f;
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final int level;
+
+    BuildCacheEntryCompression(int level) {
+        this.level = level;
+    }
+
+    public static BuildCacheEntryCompression fromSystemProperty() {
+        String fromProperty = System.getProperty(COMPRESSION_PROPERTY);
+        return fromProperty != null && !fromProperty.isEmpty()
+            ? valueOf(fromProperty.toUpperCase(Locale.ROOT))
+            : GZIP;
+    }
+
+    public OutputStream compress(OutputStream output) throws IOException {
+        if (this == NONE) {
+            return output;
+        }
+        return new GZIPOutputStream(output, BUFFER_SIZE) {
+            {
+                def.setLevel(level);
+            }
+        };
+    }
+
+    /**
+     * Returns a stream with the decompressed content of the given entry, whichever compression it was stored with.
+     */
+    public static InputStream decompress(InputStream input) throws IOException {
+        BufferedInputStream bufferedInput = new BufferedInputStream(input, BUFFER_SIZE);
+        bufferedInput.mark(2);
+        int magic = bufferedInput.read() | (bufferedInput.read() << 8);
+        bufferedInput.reset();
+        return magic == GZIP_MAGIC
+            ? new GZIPInputStream(bufferedInput, BUFFER_SIZE)
+            : bufferedInput;
+    }
+}
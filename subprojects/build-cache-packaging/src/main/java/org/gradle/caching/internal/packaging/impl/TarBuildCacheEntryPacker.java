@@ -17,6 +17,7 @@
 package org.gradle.caching.internal.packaging.impl;
 
 import com.google.common.base.Strings;
+import com.google.common.base.Throwables;
 import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.Interner;
 import com.google.common.io.CountingOutputStream;
@@ -50,6 +51,7 @@
 
 import javax.annotation.Nullable;
 import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.FileInputStream;
@@ -63,9 +65,19 @@
 import java.net.URLEncoder;
 import java.nio.charset.Charset;
 import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Semaphore;
 import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
@@ -74,6 +86,10 @@
 
 /**
  * Packages build cache entries to a POSIX TAR file.
+ *
+ * When an executor is given, the content of small files is read ahead concurrently while packing,
+ * and small files are written and hashed concurrently while unpacking.
+ * The archive and the resulting snapshots are the same as when packing and unpacking on a single thread.
  */
 public class TarBuildCacheEntryPacker implements BuildCacheEntryPacker {
 
@@ -91,22 +107,41 @@ private interface UnixPermissions {
     private static final Pattern TREE_PATH = Pattern.compile("(missing-)?tree-([^/]+)(?:/(.*))?");
     private static final int BUFFER_SIZE = 64 * 1024;
     private static final ThreadLocal<byte[]> COPY_BUFFERS = ThreadLocal.withInitial(() -> new byte[BUFFER_SIZE]);
+    // Files up to this size are held in memory so they can be read or written concurrently, larger files are streamed
+    private static final long MAX_CONCURRENT_FILE_SIZE = 256 * 1024;
+    // Limits the memory held by files which are being read or written concurrently
+    private static final int MAX_PENDING_FILES = 64;
 
     private final TarPackerFileSystemSupport fileSystemSupport;
     private final FilePermissionAccess filePermissionAccess;
     private final StreamHasher streamHasher;
     private final Interner<String> stringInterner;
+    private final Executor executor;
 
     public TarBuildCacheEntryPacker(
         TarPackerFileSystemSupport fileSystemSupport,
         FilePermissionAccess filePermissionAccess,
         StreamHasher streamHasher,
         Interner<String> stringInterner
+    ) {
+        this(fileSystemSupport, filePermissionAccess, streamHasher, stringInterner, null);
+    }
+
+    /**
+     * @param executor the executor to read and write files concurrently with, or {@code null} to do everything on the calling thread.
+     */
+    public TarBuildCacheEntryPacker(
+        TarPackerFileSystemSupport fileSystemSupport,
+        FilePermissionAccess filePermissionAccess,
+        StreamHasher streamHasher,
+        Interner<String> stringInterner,
+        @Nullable Executor executor
     ) {
         this.fileSystemSupport = fileSystemSupport;
         this.filePermissionAccess = filePermissionAccess;
         this.streamHasher = streamHasher;
         this.stringInterner = stringInterner;
+        this.executor = executor;
     }
 
     @Override
@@ -150,8 +185,9 @@ private long pack(CacheableEntity entity, Map<String, ? extends FileSystemSnapsh
     }
 
     private long packTree(String name, TreeType type, FileSystemSnapshot snapshots, TarArchiveOutputStream tarOutput) {
-        PackingVisitor packingVisitor = new PackingVisitor(tarOutput, name, type, filePermissionAccess);
+        PackingVisitor packingVisitor = new PackingVisitor(tarOutput, name, type, filePermissionAccess, executor);
         snapshots.accept(new RelativePathTracker(), packingVisitor);
+        packingVisitor.finish();
         return packingVisitor.getPackedEntryCount();
     }
 
@@ -262,7 +298,7 @@ private TarArchiveEntry unpackTree(String treeName, TreeType treeType, File tree
         return unpackDirectoryTree(input, rootEntry, snapshots, entries, treeRoot, treeName);
     }
 
-    private RegularFileSnapshot unpackFile(TarArchiveInputStream input, TarArchiveEntry entry, File file, String fileName) throws IOException {
+    private RegularFileSnapshot unpackFile(InputStream input, TarArchiveEntry entry, File file, String fileName) throws IOException {
         try (CountingOutputStream output = new CountingOutputStream(new FileOutputStream(file))) {
             HashCode hash = streamHasher.hashCopy(input, output);
             chmodUnpackedFile(entry, file);
@@ -276,39 +312,99 @@ private RegularFileSnapshot unpackFile(TarArchiveInputStream input, TarArchiveEn
     private TarArchiveEntry unpackDirectoryTree(TarArchiveInputStream input, TarArchiveEntry rootEntry, Map<String, FileSystemLocationSnapshot> snapshots, AtomicLong entries, File treeRoot, String treeName) throws IOException {
         RelativePathParser parser = new RelativePathParser(rootEntry.getName());
 
-        MerkleDirectorySnapshotBuilder builder = MerkleDirectorySnapshotBuilder.noSortingRequired();
-        builder.enterDirectory(DIRECT, stringInterner.intern(treeRoot.getAbsolutePath()), stringInterner.intern(treeRoot.getName()), INCLUDE_EMPTY_DIRS);
+        // Files may still be written when the last entry of the tree has been read, so the snapshot is built once all of them are unpacked
+        List<Consumer<MerkleDirectorySnapshotBuilder>> builderSteps = new ArrayList<>();
+        Runnable leaveDirectory = () -> builderSteps.add(MerkleDirectorySnapshotBuilder::leaveDirectory);
+        String internedRootPath = stringInterner.intern(treeRoot.getAbsolutePath());
+        String internedRootName = stringInterner.intern(treeRoot.getName());
+        builderSteps.add(builder -> builder.enterDirectory(DIRECT, internedRootPath, internedRootName, INCLUDE_EMPTY_DIRS));
 
+        FileUnpacker fileUnpacker = new FileUnpacker();
         TarArchiveEntry entry;
-
-        while ((entry = input.getNextTarEntry()) != null) {
-            boolean isDir = entry.isDirectory();
-            boolean outsideOfRoot = parser.nextPath(entry.getName(), isDir, builder::leaveDirectory);
-            if (outsideOfRoot) {
-                break;
+        try {
+            while ((entry = input.getNextTarEntry()) != null) {
+                boolean isDir = entry.isDirectory();
+                boolean outsideOfRoot = parser.nextPath(entry.getName(), isDir, leaveDirectory);
+                if (outsideOfRoot) {
+                    break;
+                }
+                entries.incrementAndGet();
+
+                File file = new File(treeRoot, parser.getRelativePath());
+                if (isDir) {
+                    FileUtils.forceMkdir(file);
+                    chmodUnpackedFile(entry, file);
+                    String internedAbsolutePath = stringInterner.intern(file.getAbsolutePath());
+                    String internedName = stringInterner.intern(parser.getName());
+                    builderSteps.add(builder -> builder.enterDirectory(DIRECT, internedAbsolutePath, internedName, INCLUDE_EMPTY_DIRS));
+                } else {
+                    CompletableFuture<RegularFileSnapshot> fileSnapshot = fileUnpacker.unpack(input, entry, file, parser.getName());
+                    builderSteps.add(builder -> builder.visitLeafElement(fileSnapshot.join()));
+                }
             }
-            entries.incrementAndGet();
 
-            File file = new File(treeRoot, parser.getRelativePath());
-            if (isDir) {
-                FileUtils.forceMkdir(file);
-                chmodUnpackedFile(entry, file);
-                String internedAbsolutePath = stringInterner.intern(file.getAbsolutePath());
-                String internedName = stringInterner.intern(parser.getName());
-                builder.enterDirectory(DIRECT, internedAbsolutePath, internedName, INCLUDE_EMPTY_DIRS);
-            } else {
-                RegularFileSnapshot fileSnapshot = unpackFile(input, entry, file, parser.getName());
-                builder.visitLeafElement(fileSnapshot);
-            }
+            parser.exitToRoot(leaveDirectory);
+            leaveDirectory.run();
+        } finally {
+            fileUnpacker.awaitCompletion();
         }
 
-        parser.exitToRoot(builder::leaveDirectory);
-        builder.leaveDirectory();
+        MerkleDirectorySnapshotBuilder builder = MerkleDirectorySnapshotBuilder.noSortingRequired();
+        try {
+            builderSteps.forEach(step -> step.accept(builder));
+        } catch (CompletionException e) {
+            throw rethrowCause(e);
+        }
 
         snapshots.put(treeName, builder.getResult());
         return entry;
     }
 
+    private static IOException rethrowCause(CompletionException e) throws IOException {
+        Throwable cause = e.getCause();
+        if (cause instanceof UncheckedIOException) {
+            throw ((UncheckedIOException) cause).getCause();
+        }
+        Throwables.throwIfInstanceOf(cause, IOException.class);
+        Throwables.throwIfUnchecked(cause);
+        throw e;
+    }
+
+    /**
+     * Writes and hashes small files on the executor, and larger files on the thread reading the archive.
+     */
+    private class FileUnpacker {
+        private final Semaphore pendingFiles = new Semaphore(MAX_PENDING_FILES);
+        private final List<CompletableFuture<RegularFileSnapshot>> unpacking = new ArrayList<>();
+
+        CompletableFuture<RegularFileSnapshot> unpack(TarArchiveInputStream input, TarArchiveEntry entry, File file, String fileName) throws IOException {
+            if (executor == null || entry.getSize() > MAX_CONCURRENT_FILE_SIZE) {
+                return CompletableFuture.completedFuture(unpackFile(input, entry, file, fileName));
+            }
+            byte[] content = IOUtils.toByteArray(input, entry.getSize());
+            pendingFiles.acquireUninterruptibly();
+            CompletableFuture<RegularFileSnapshot> fileSnapshot = CompletableFuture.supplyAsync(() -> {
+                try {
+                    return unpackFile(new ByteArrayInputStream(content), entry, file, fileName);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }, executor);
+            fileSnapshot.whenComplete((snapshot, failure) -> pendingFiles.release());
+            unpacking.add(fileSnapshot);
+            return fileSnapshot;
+        }
+
+        /**
+         * Waits until all files have been written, even when some of them failed.
+         */
+        void awaitCompletion() {
+            CompletableFuture.allOf(unpacking.toArray(new CompletableFuture<?>[0]))
+                .handle((result, failure) -> null)
+                .join();
+        }
+    }
+
     private void chmodUnpackedFile(TarArchiveEntry entry, File file) {
         filePermissionAccess.chmod(file, entry.getMode() & UnixPermissions.PERM_MASK);
     }
@@ -335,15 +431,19 @@ private static class PackingVisitor implements RelativePathTrackingFileSystemSna
         private final String treeRoot;
         private final FilePermissionAccess filePermissionAccess;
         private final TreeType type;
+        private final Executor executor;
+        // Entries are written in order, while the content of the small files among them may still be read concurrently
+        private final Deque<CompletableFuture<EntryWriter>> pendingEntries = new ArrayDeque<>();
 
         private long packedEntryCount;
 
-        public PackingVisitor(TarArchiveOutputStream tarOutput, String treeName, TreeType type, FilePermissionAccess filePermissionAccess) {
+        public PackingVisitor(TarArchiveOutputStream tarOutput, String treeName, TreeType type, FilePermissionAccess filePermissionAccess, @Nullable Executor executor) {
             this.tarOutput = tarOutput;
             this.treePath = "tree-" + escape(treeName);
             this.treeRoot = treePath + "/";
             this.type = type;
             this.filePermissionAccess = filePermissionAccess;
+            this.executor = executor;
         }
 
         @Override
@@ -356,7 +456,7 @@ public void visitDirectory(DirectorySnapshot directorySnapshot) {
                     assertCorrectType(isRoot, snapshot);
                     File dir = new File(snapshot.getAbsolutePath());
                     int dirMode = isRoot ? UnixPermissions.DEFAULT_DIR_PERM : filePermissionAccess.getUnixMode(dir);
-                    storeDirectoryEntry(targetPath, dirMode, tarOutput);
+                    store(tarOutput -> storeDirectoryEntry(targetPath, dirMode, tarOutput));
                 }
 
                 @Override
@@ -364,7 +464,16 @@ public void visitRegularFile(RegularFileSnapshot fileSnapshot) {
                     assertCorrectType(isRoot, snapshot);
                     File file = new File(snapshot.getAbsolutePath());
                     int fileMode = filePermissionAccess.getUnixMode(file);
-                    storeFileEntry(file, targetPath, file.length(), fileMode, tarOutput);
+                    long size = file.length();
+                    if (executor == null || size > MAX_CONCURRENT_FILE_SIZE) {
+                        store(tarOutput -> storeFileEntry(file, targetPath, size, fileMode, tarOutput));
+                    } else {
+                        pendingEntries.add(CompletableFuture.supplyAsync(() -> {
+                            byte[] content = readFile(file);
+                            return tarOutput -> storeFileEntry(content, targetPath, fileMode, tarOutput);
+                        }, executor));
+                        writePendingEntries(MAX_PENDING_FILES);
+                    }
                 }
 
                 @Override
@@ -372,7 +481,7 @@ public void visitMissing(MissingFileSnapshot missingSnapshot) {
                     if (!isRoot) {
                         throw new RuntimeException(String.format("Couldn't read content of file '%s'", snapshot.getAbsolutePath()));
                     }
-                    storeMissingTree(targetPath, tarOutput);
+                    store(tarOutput -> storeMissingTree(targetPath, tarOutput));
                 }
             });
             packedEntryCount++;
@@ -383,6 +492,39 @@ public long getPackedEntryCount() {
             return packedEntryCount;
         }
 
+        /**
+         * Writes the entries which are still pending.
+         */
+        public void finish() {
+            writePendingEntries(0);
+        }
+
+        private void store(EntryWriter entry) {
+            pendingEntries.add(CompletableFuture.completedFuture(entry));
+            writePendingEntries(executor == null ? 0 : MAX_PENDING_FILES);
+        }
+
+        private void writePendingEntries(int maxPending) {
+            while (pendingEntries.size() > maxPending) {
+                EntryWriter entry;
+                try {
+                    entry = pendingEntries.remove().join();
+                } catch (CompletionException e) {
+                    Throwables.throwIfUnchecked(e.getCause());
+                    throw e;
+                }
+                entry.write(tarOutput);
+            }
+        }
+
+        private static byte[] readFile(File file) {
+            try {
+                return Files.readAllBytes(file.toPath());
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+
         private void assertCorrectType(boolean root, FileSystemLocationSnapshot snapshot) {
             if (root) {
                 switch (type) {
@@ -426,6 +568,16 @@ private void storeDirectoryEntry(String path, int mode, TarArchiveOutputStream t
             }
         }
 
+        private void storeFileEntry(byte[] content, String path, int mode, TarArchiveOutputStream tarOutput) {
+            try {
+                createTarEntry(path, content.length, UnixPermissions.FILE_FLAG | mode, tarOutput);
+                tarOutput.write(content);
+                tarOutput.closeArchiveEntry();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+
         private void storeFileEntry(File inputFile, String path, long size, int mode, TarArchiveOutputStream tarOutput) {
             try {
                 createTarEntry(path, size, UnixPermissions.FILE_FLAG | mode, tarOutput);
@@ -438,4 +590,8 @@ private void storeFileEntry(File inputFile, String path, long size, int mode, Ta
             }
         }
     }
+
+    private interface EntryWriter {
+        void write(TarArchiveOutputStream tarOutput);
+    }
 }
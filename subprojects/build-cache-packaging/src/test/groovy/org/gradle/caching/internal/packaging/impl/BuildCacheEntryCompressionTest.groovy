@@ -0,0 +1,86 @@
+/*
+ * Copyright 2021 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.caching.internal.packaging.impl
+
+import org.gradle.util.SetSystemProperties
+import org.junit.Rule
+import spock.lang.Specification
+import spock.lang.Unroll
+
+import java.util.zip.GZIPInputStream
+import java.util.zip.GZIPOutputStream
+
+class BuildCacheEntryCompressionTest extends Specification {
+    @Rule
+    SetSystemProperties systemProperties = new SetSystemProperties()
+
+    // The first bytes of a TAR archive are the name of its first entry
+    def content = ("METADATA" + ("content " * 1000)).bytes
+
+    @Unroll
+    def "reads back content compressed with #compression"() {
+        expect:
+        decompress(compress(compression, content)) == content
+
+        where:
+        compression << BuildCacheEntryCompression.values()
+    }
+
+    @Unroll
+    def "#compression entries are plain GZIP streams"() {
+        expect:
+        new GZIPInputStream(new ByteArrayInputStream(compress(compression, content))).bytes == content
+
+        where:
+        compression << [BuildCacheEntryCompression.GZIP, BuildCacheEntryCompression.GZIP_FAST]
+    }
+
+    def "reads entries stored with plain GZIP"() {
+        def output = new ByteArrayOutputStream()
+        new GZIPOutputStream(output).withStream { it.write(content) }
+
+        expect:
+        decompress(output.toByteArray()) == content
+    }
+
+    def "does not compress entries without compression"() {
+        expect:
+        compress(BuildCacheEntryCompression.NONE, content) == content
+    }
+
+    def "selects compression from system property"() {
+        when:
+        System.setProperty(BuildCacheEntryCompression.COMPRESSION_PROPERTY, "gzip_fast")
+        then:
+        BuildCacheEntryCompression.fromSystemProperty() == BuildCacheEntryCompression.GZIP_FAST
+
+        when:
+        System.clearProperty(BuildCacheEntryCompression.COMPRESSION_PROPERTY)
+        then:
+        BuildCacheEntryCompression.fromSystemProperty() == BuildCacheEntryCompression.GZIP
+    }
+
+    private static byte[] compress(BuildCacheEntryCompression compression, byte[] content) {
+        def output = new ByteArrayOutputStream()
+        compression.compress(output).withStream { it.write(content) }
+        return output.toByteArray()
+    }
+
+    private static byte[] decompress(byte[] compressed) {
+        return BuildCacheEntryCompression.decompress(new ByteArrayInputStream(compressed)).bytes
+    }
+}
@@ -23,6 +23,8 @@ import org.gradle.util.Requires
 import org.gradle.util.TestPrecondition
 import spock.lang.Unroll
 
+import java.util.concurrent.Executors
+
 import static org.gradle.internal.file.TreeType.DIRECTORY
 import static org.gradle.internal.file.TreeType.FILE
 
@@ -64,6 +66,39 @@ class TarBuildCacheEntryPackerTest extends AbstractTarBuildCacheEntryPackerSpec
         result.entries == 4
     }
 
+    def "packs and unpacks files concurrently into the same snapshot as on a single thread"() {
+        def sourceOutputDir = temporaryFolder.file("source").createDir()
+        20.times { dir ->
+            20.times { file ->
+                sourceOutputDir.file("dir${dir}/sub${file % 3}/file${file}.txt") << "content ${dir} ${file}"
+            }
+        }
+        sourceOutputDir.file("large.bin").bytes = new byte[512 * 1024]
+        sourceOutputDir.file("empty").createDir()
+        def executor = Executors.newFixedThreadPool(4)
+        def concurrentPacker = new TarBuildCacheEntryPacker(fileSystemSupport, filePermissionAccess, streamHasher, stringInterner, executor)
+
+        when:
+        def sequentialOutput = new ByteArrayOutputStream()
+        pack sequentialOutput, prop(DIRECTORY, sourceOutputDir)
+        def sequentialResult = unpack new ByteArrayInputStream(sequentialOutput.toByteArray()), prop(DIRECTORY, temporaryFolder.file("sequential"))
+
+        packer = concurrentPacker
+        def concurrentOutput = new ByteArrayOutputStream()
+        def packResult = pack concurrentOutput, prop(DIRECTORY, sourceOutputDir)
+        def concurrentResult = unpack new ByteArrayInputStream(concurrentOutput.toByteArray()), prop(DIRECTORY, temporaryFolder.file("concurrent"))
+
+        then:
+        packResult.entries == 1 + 1 + 1 + 1 + 20 + 20 * 3 + 20 * 20
+        concurrentResult.entries == sequentialResult.entries
+        concurrentResult.snapshots["test"].hash == sequentialResult.snapshots["test"].hash
+        temporaryFolder.file("concurrent/dir7/sub1/file10.txt").text == "content 7 10"
+        temporaryFolder.file("concurrent/large.bin").length() == 512 * 1024
+
+        cleanup:
+        executor.shutdownNow()
+    }
+
     @Unroll
     def "can pack tree with missing #type (pre-existing as: #preExistsAs)"() {
         def sourceOutput = temporaryFolder.file("source")
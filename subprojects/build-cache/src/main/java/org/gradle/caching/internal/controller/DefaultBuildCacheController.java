@@ -18,9 +18,12 @@
 
 import com.google.common.annotations.VisibleForTesting;
 import com.google.common.io.Closer;
+import com.google.common.io.CountingOutputStream;
 import org.gradle.api.Action;
 import org.gradle.api.GradleException;
 import org.gradle.api.internal.file.temp.TemporaryFileProvider;
+import org.gradle.caching.BuildCacheEntryReader;
+import org.gradle.caching.BuildCacheEntryWriter;
 import org.gradle.caching.BuildCacheKey;
 import org.gradle.caching.BuildCacheService;
 import org.gradle.caching.internal.controller.operations.PackOperationDetails;
@@ -40,6 +43,7 @@
 import org.gradle.caching.local.internal.BuildCacheTempFileStore;
 import org.gradle.caching.local.internal.DefaultBuildCacheTempFileStore;
 import org.gradle.caching.local.internal.LocalBuildCacheService;
+import org.gradle.internal.UncheckedException;
 import org.gradle.internal.operations.BuildOperationContext;
 import org.gradle.internal.operations.BuildOperationDescriptor;
 import org.gradle.internal.operations.BuildOperationExecutor;
@@ -51,10 +55,21 @@
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.OutputStream;
 import java.util.Optional;
 
 public class DefaultBuildCacheController implements BuildCacheController {
 
+    /**
+     * When enabled, entries which are not stored in the local build cache are packed directly into the upload to the remote build cache
+     * and unpacked directly from the download, instead of going through a temporary file.
+     *
+     * A remote failure in the middle of unpacking a streamed entry leaves the outputs incomplete, so it fails the build instead of being treated as a cache miss.
+     * Likewise, a failure to pack a streamed entry fails the build, as it would when packing into a temporary file.
+     */
+    @VisibleForTesting
+    static final String STREAMING_PROPERTY = "org.gradle.caching.internal.remote.streaming";
+
     @VisibleForTesting
     final BuildCacheServiceHandle remote;
 
@@ -64,6 +79,7 @@ public class DefaultBuildCacheController implements BuildCacheController {
     private final BuildCacheTempFileStore tmp;
     private final BuildOperationExecutor buildOperationExecutor;
     private final boolean emitDebugLogging;
+    private final boolean streaming;
 
     private boolean closed;
 
@@ -80,6 +96,7 @@ public DefaultBuildCacheController(
         this.local = toLocalHandle(config.getLocal(), config.isLocalPush());
         this.remote = toRemoteHandle(config.getRemote(), config.isRemotePush(), buildOperationExecutor, logStackTraces, disableRemoteOnError);
         this.tmp = toTempFileStore(config.getLocal(), temporaryFileProvider);
+        this.streaming = Boolean.getBoolean(STREAMING_PROPERTY);
     }
 
     @Override
@@ -108,7 +125,9 @@ public <T> Optional<T> load(BuildCacheLoadCommand<T> command) {
             }
         }
 
-        if (remote.canLoad()) {
+        if (remote.canLoad() && streaming && !local.canStore()) {
+            loadStreaming(command, unpack);
+        } else if (remote.canLoad()) {
             tmp.withTempFile(command.getKey(), file -> {
                 LoadTarget loadTarget = new LoadTarget(file);
                 remote.load(command.getKey(), loadTarget);
@@ -132,7 +151,38 @@ public <T> Optional<T> load(BuildCacheLoadCommand<T> command) {
             : Optional.of(result.getMetadata());
     }
 
-    private class Unpack<T> implements Action<File> {
+    private <T> void loadStreaming(BuildCacheLoadCommand<T> command, Unpack<T> unpack) {
+        StreamingUnpack<T> streamingUnpack = new StreamingUnpack<>(unpack);
+        remote.load(command.getKey(), new LoadTarget(streamingUnpack));
+        if (streamingUnpack.failure != null) {
+            throw new GradleException("Build cache entry " + command.getKey().getHashCode() + " from remote build cache could not be unpacked", streamingUnpack.failure);
+        }
+    }
+
+    /**
+     * Unpacks an entry while it is being downloaded.
+     * Failures are recorded here, since the remote build cache handle would otherwise treat them as a cache miss.
+     */
+    private static class StreamingUnpack<T> implements BuildCacheEntryReader {
+        private final Unpack<T> unpack;
+        private Exception failure;
+
+        private StreamingUnpack(Unpack<T> unpack) {
+            this.unpack = unpack;
+        }
+
+        @Override
+        public void readFrom(InputStream input) throws IOException {
+            try {
+                unpack.execute(input, -1);
+            } catch (Exception e) {
+                failure = e;
+                throw e;
+            }
+        }
+    }
+
+    private class Unpack<T> implements Action<File>, LocalBuildCacheService.EntryReader {
         private final BuildCacheLoadCommand<T> command;
 
         private BuildCacheLoadCommand.Result<T> result;
@@ -143,21 +193,35 @@ private Unpack(BuildCacheLoadCommand<T> command) {
 
         @Override
         public void execute(File file) {
+            try (InputStream input = new FileInputStream(file)) {
+                execute(input, file.length());
+            } catch (IOException e) {
+                throw UncheckedException.throwAsUncheckedException(e);
+            }
+        }
+
+        @Override
+        public void readFrom(InputStream input, long size) {
+            execute(input, size);
+        }
+
+        /**
+         * @param archiveSize the size of the entry, or -1 when it is not known up front.
+         */
+        void execute(InputStream input, long archiveSize) {
             buildOperationExecutor.run(new RunnableBuildOperation() {
                 @Override
                 public void run(BuildOperationContext context) throws IOException {
-                    try (InputStream input = new FileInputStream(file)) {
-                        result = command.load(input);
-                        context.setResult(new UnpackOperationResult(
-                            result.getArtifactEntryCount()
-                        ));
-                    }
+                    result = command.load(input);
+                    context.setResult(new UnpackOperationResult(
+                        result.getArtifactEntryCount()
+                    ));
                 }
 
                 @Override
                 public BuildOperationDescriptor.Builder description() {
                     return BuildOperationDescriptor.displayName("Unpack build cache entry " + command.getKey().getHashCode())
-                        .details(new UnpackOperationDetails(command.getKey(), file.length()))
+                        .details(new UnpackOperationDetails(command.getKey(), archiveSize))
                         .progressDisplayName("Unpacking build cache entry");
                 }
             });
@@ -173,6 +237,15 @@ public void store(BuildCacheStoreCommand command) {
         BuildCacheKey key = command.getKey();
         Pack pack = new Pack(command);
 
+        if (streaming && !local.canStore()) {
+            StreamingPack streamingPack = new StreamingPack(pack);
+            remote.store(key, new StoreTarget(streamingPack));
+            if (streamingPack.failure != null) {
+                throw UncheckedException.throwAsUncheckedException(streamingPack.failure);
+            }
+            return;
+        }
+
         tmp.withTempFile(command.getKey(), file -> {
             pack.execute(file);
 
@@ -186,6 +259,34 @@ public void store(BuildCacheStoreCommand command) {
         });
     }
 
+    /**
+     * Packs an entry while it is being uploaded. The size of the entry is not known up front.
+     * Failures are recorded here, since the remote build cache handle would otherwise only log them and disable the remote build cache.
+     */
+    private static class StreamingPack implements BuildCacheEntryWriter {
+        private final Pack pack;
+        private Exception failure;
+
+        private StreamingPack(Pack pack) {
+            this.pack = pack;
+        }
+
+        @Override
+        public void writeTo(OutputStream output) {
+            try {
+                pack.execute(output);
+            } catch (RuntimeException e) {
+                failure = e;
+                throw e;
+            }
+        }
+
+        @Override
+        public long getSize() {
+            return -1;
+        }
+    }
+
     private class Pack implements Action<File> {
 
         private final BuildCacheStoreCommand command;
@@ -196,16 +297,23 @@ private Pack(BuildCacheStoreCommand command) {
 
         @Override
         public void execute(final File file) {
+            try (FileOutputStream fileOutputStream = new FileOutputStream(file)) {
+                execute(fileOutputStream);
+            } catch (IOException e) {
+                throw UncheckedException.throwAsUncheckedException(e);
+            }
+        }
+
+        void execute(OutputStream output) {
             buildOperationExecutor.run(new RunnableBuildOperation() {
                 @Override
                 public void run(BuildOperationContext context) throws IOException {
-                    try (FileOutputStream fileOutputStream = new FileOutputStream(file)) {
-                        BuildCacheStoreCommand.Result result = command.store(fileOutputStream);
-                        context.setResult(new PackOperationResult(
-                            result.getArtifactEntryCount(),
-                            file.length()
-                        ));
-                    }
+                    CountingOutputStream countingOutput = new CountingOutputStream(output);
+                    BuildCacheStoreCommand.Result result = command.store(countingOutput);
+                    context.setResult(new PackOperationResult(
+                        result.getArtifactEntryCount(),
+                        countingOutput.getCount()
+                    ));
                 }
 
                 @Override
@@ -16,7 +16,6 @@
 
 package org.gradle.caching.internal.controller.service;
 
-import org.gradle.api.Action;
 import org.gradle.caching.BuildCacheKey;
 import org.gradle.caching.local.internal.LocalBuildCacheService;
 
@@ -45,8 +44,8 @@ public boolean canLoad() {
     }
 
     @Override
-    public void load(BuildCacheKey key, Action<? super File> reader) {
-        service.loadLocally(key, reader);
+    public void load(BuildCacheKey key, LocalBuildCacheService.EntryReader reader) {
+        service.readLocally(key, reader);
     }
 
     @Override
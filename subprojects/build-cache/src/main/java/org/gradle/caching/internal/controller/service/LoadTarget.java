@@ -17,6 +17,7 @@
 package org.gradle.caching.internal.controller.service;
 
 import com.google.common.io.Closer;
+import com.google.common.io.CountingInputStream;
 import com.google.common.io.Files;
 import org.gradle.caching.BuildCacheEntryReader;
 
@@ -26,11 +27,19 @@
 
 public class LoadTarget implements BuildCacheEntryReader {
 
-    private final File file;
+    private final BuildCacheEntryReader reader;
     private boolean loaded;
+    private long loadedSize = -1;
 
     public LoadTarget(File file) {
-        this.file = file;
+        this(input -> Files.asByteSink(file).writeFrom(input));
+    }
+
+    /**
+     * Creates a target which hands the loaded entry to the given reader, without storing it in a file first.
+     */
+    public LoadTarget(BuildCacheEntryReader reader) {
+        this.reader = reader;
     }
 
     @Override
@@ -41,8 +50,10 @@ public void readFrom(InputStream input) throws IOException {
             if (loaded) {
                 throw new IllegalStateException("Build cache entry has already been read");
             }
-            Files.asByteSink(file).writeFrom(input);
+            CountingInputStream countingInput = new CountingInputStream(input);
+            reader.readFrom(countingInput);
             loaded = true;
+            loadedSize = countingInput.getCount();
         } catch (Exception e) {
             throw closer.rethrow(e);
         } finally {
@@ -55,11 +66,7 @@ public boolean isLoaded() {
     }
 
     public long getLoadedSize() {
-        if (loaded) {
-            return file.length();
-        } else {
-            return -1;
-        }
+        return loadedSize;
     }
 
 }
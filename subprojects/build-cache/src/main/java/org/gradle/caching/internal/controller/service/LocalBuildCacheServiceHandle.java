@@ -17,7 +17,6 @@
 package org.gradle.caching.internal.controller.service;
 
 import com.google.common.annotations.VisibleForTesting;
-import org.gradle.api.Action;
 import org.gradle.caching.BuildCacheKey;
 import org.gradle.caching.local.internal.LocalBuildCacheService;
 
@@ -34,7 +33,7 @@ public interface LocalBuildCacheServiceHandle extends Closeable {
     boolean canLoad();
 
     // TODO: what if this errors?
-    void load(BuildCacheKey key, Action<? super File> reader);
+    void load(BuildCacheKey key, LocalBuildCacheService.EntryReader reader);
 
     boolean canStore();
 
@@ -16,7 +16,6 @@
 
 package org.gradle.caching.internal.controller.service;
 
-import org.gradle.api.Action;
 import org.gradle.caching.BuildCacheKey;
 import org.gradle.caching.local.internal.LocalBuildCacheService;
 
@@ -42,7 +41,7 @@ public boolean canLoad() {
     }
 
     @Override
-    public void load(BuildCacheKey key, Action<? super File> reader) {
+    public void load(BuildCacheKey key, LocalBuildCacheService.EntryReader reader) {
         throw new UnsupportedOperationException();
     }
 
@@ -26,11 +26,28 @@
 
 public class StoreTarget implements BuildCacheEntryWriter {
 
-    private final File file;
+    private final BuildCacheEntryWriter writer;
     private boolean stored;
 
     public StoreTarget(File file) {
-        this.file = file;
+        this(new BuildCacheEntryWriter() {
+            @Override
+            public void writeTo(OutputStream output) throws IOException {
+                Files.asByteSource(file).copyTo(output);
+            }
+
+            @Override
+            public long getSize() {
+                return file.length();
+            }
+        });
+    }
+
+    /**
+     * Creates a target which lets the given writer produce the entry while it is being stored, without writing it to a file first.
+     */
+    public StoreTarget(BuildCacheEntryWriter writer) {
+        this.writer = writer;
     }
 
     @Override
@@ -42,7 +59,7 @@ public void writeTo(OutputStream output) throws IOException {
                 throw new IllegalStateException("Build cache entry has already been stored");
             }
             stored = true;
-            Files.asByteSource(file).copyTo(output);
+            writer.writeTo(output);
         } catch (Exception e) {
             throw closer.rethrow(e);
         } finally {
@@ -56,6 +73,6 @@ public boolean isStored() {
 
     @Override
     public long getSize() {
-        return file.length();
+        return writer.getSize();
     }
 }
@@ -0,0 +1,407 @@
+/*
+ * Copyright 2021 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.caching.local.internal;
+
+import com.google.common.io.ByteStreams;
+import org.gradle.internal.file.FileAccessTracker;
+import org.gradle.internal.hash.Hashing;
+import org.gradle.internal.hash.PrimitiveHasher;
+import org.gradle.util.internal.GFileUtils;
+
+import javax.annotation.Nullable;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Random;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.Inflater;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * Stores the content of local build cache entries as chunks which are shared between entries, so content that appears in several entries is only stored once.
+ *
+ * An entry is split at boundaries determined by its content, so the same content produces the same chunks wherever it appears in an entry.
+ * Entries compressed as a whole with GZIP are decompressed before they are split, so shared content is found whatever the compression of the entries, see {@code BuildCacheEntryCompression}.
+ * Such entries are restored uncompressed, which the unpacker recognizes by the TAR header.
+ * Each chunk is compressed and stored under its hash, and the entry is replaced by a manifest listing its chunks.
+ * Entries which were not stored as a manifest are still read as they are.
+ *
+ * Each chunk has its own access time, which is updated after the access time of an entry using the chunk whenever the entry is stored or loaded.
+ * A chunk is thus never older than the entries using it, so chunks can be removed by their access times like entries, without reading any manifests,
+ * and an entry is removed before its chunks.
+ */
+class DirectoryBuildCacheChunkStore {
+    static final String CHUNKS_DIRECTORY = "chunks";
+    // Chunks are stored as chunks/<first two characters of the hash>/<hash>
+    static final int CHUNK_DEPTH = 3;
+
+    // Starts with a zero byte, which can neither start a GZIP stream nor the name of a TAR entry
+    private static final int MANIFEST_MAGIC = 0x00474302;
+    private static final int GZIP_MAGIC = 0x8b1f;
+    private static final int MIN_CHUNK_SIZE = 16 * 1024;
+    private static final int MAX_CHUNK_SIZE = 256 * 1024;
+    // Determined by the last 64 bytes only, and matches on average once in 64 KiB
+    private static final long BOUNDARY_MASK = 0xFFFF000000000000L;
+    private static final int BOUNDARY_WINDOW = 64;
+    private static final long[] GEAR = createGearTable();
+
+    private final File chunksDir;
+    private final FileAccessTracker chunkAccessTracker;
+    private final boolean storeAsChunks;
+
+    /**
+     * @param chunkAccessTracker tracks the access to each chunk, at {@link #CHUNK_DEPTH} below the base directory.
+     */
+    DirectoryBuildCacheChunkStore(File baseDir, FileAccessTracker chunkAccessTracker, boolean storeAsChunks) {
+        this.chunksDir = new File(baseDir, CHUNKS_DIRECTORY);
+        this.chunkAccessTracker = chunkAccessTracker;
+        this.storeAsChunks = storeAsChunks;
+    }
+
+    /**
+     * Whether new entries are stored as chunks. Manifests are read either way.
+     */
+    boolean isStoreAsChunks() {
+        return storeAsChunks;
+    }
+
+    boolean isManifest(File file) throws IOException {
+        try (DataInputStream input = new DataInputStream(new FileInputStream(file))) {
+            return input.readInt() == MANIFEST_MAGIC;
+        } catch (EOFException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Stores the chunks of the given entry which are not stored yet, and writes the manifest of the entry.
+     * The chunks need to be marked as {@link #accessed(Collection) accessed} once the entry has been.
+     */
+    StoredChunks store(File entry, File manifest) throws IOException {
+        List<File> chunks = new ArrayList<>();
+        long length = 0;
+        long addedSize = 0;
+        try (InputStream input = openUncompressed(entry)) {
+            Chunker chunker = new Chunker(input);
+            int chunkLength;
+            while ((chunkLength = chunker.nextChunk()) > 0) {
+                PrimitiveHasher hasher = Hashing.newPrimitiveHasher();
+                hasher.putBytes(chunker.buffer, chunker.start, chunkLength);
+                File chunk = chunkFile(hasher.hash().toString());
+                addedSize += storeChunk(chunk, chunker.buffer, chunker.start, chunkLength);
+                chunks.add(chunk);
+                length += chunkLength;
+                chunker.skip(chunkLength);
+            }
+        }
+        try (DataOutputStream output = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(manifest)))) {
+            output.writeInt(MANIFEST_MAGIC);
+            output.writeLong(length);
+            output.writeInt(chunks.size());
+            for (File chunk : chunks) {
+                output.writeUTF(chunk.getName());
+            }
+        }
+        return new StoredChunks(chunks, addedSize);
+    }
+
+    private static InputStream openUncompressed(File entry) throws IOException {
+        InputStream input = new BufferedInputStream(new FileInputStream(entry));
+        try {
+            input.mark(2);
+            int magic = input.read() | input.read() << 8;
+            input.reset();
+            return magic == GZIP_MAGIC ? new GZIPInputStream(input, 64 * 1024) : input;
+        } catch (IOException e) {
+            input.close();
+            throw e;
+        }
+    }
+
+    /**
+     * @return the number of bytes added to the store.
+     */
+    private long storeChunk(File chunk, byte[] bytes, int offset, int length) throws IOException {
+        long addedSize = 0;
+        if (!chunk.isFile()) {
+            File partialChunk = new File(chunk.getPath() + BuildCacheTempFileStore.PARTIAL_FILE_SUFFIX);
+            GFileUtils.mkdirs(chunk.getParentFile());
+            Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+            try (OutputStream output = new DeflaterOutputStream(new FileOutputStream(partialChunk), deflater)) {
+                output.write(bytes, offset, length);
+            } finally {
+                deflater.end();
+            }
+            if (!partialChunk.renameTo(chunk)) {
+                GFileUtils.deleteQuietly(partialChunk);
+                throw new IOException("Could not store build cache chunk " + chunk);
+            }
+            addedSize = chunk.length();
+        }
+        return addedSize;
+    }
+
+    /**
+     * Looks up the chunks of the entry described by the given manifest, and marks them as accessed.
+     *
+     * @return null when a chunk of the entry has been removed, in which case the entry cannot be restored.
+     */
+    @Nullable
+    ChunkedContent open(File manifest) throws IOException {
+        List<File> chunks = new ArrayList<>();
+        long length;
+        try (DataInputStream input = new DataInputStream(new BufferedInputStream(new FileInputStream(manifest)))) {
+            input.readInt();
+            length = input.readLong();
+            int count = input.readInt();
+            for (int i = 0; i < count; i++) {
+                chunks.add(chunkFile(input.readUTF()));
+            }
+        }
+        for (File chunk : chunks) {
+            if (!chunk.isFile()) {
+                return null;
+            }
+        }
+        accessed(chunks);
+        return new ChunkedContent(chunks, length);
+    }
+
+    void accessed(Collection<File> chunks) {
+        for (File chunk : chunks) {
+            chunkAccessTracker.markAccessed(chunk);
+        }
+    }
+
+    /**
+     * Restores the entry described by the given manifest into the target file.
+     *
+     * @return false when a chunk of the entry has been removed, in which case the entry cannot be restored.
+     */
+    boolean restore(File manifest, File target) throws IOException {
+        ChunkedContent content = open(manifest);
+        if (content == null) {
+            return false;
+        }
+        try (InputStream input = content.openStream(); OutputStream output = new FileOutputStream(target)) {
+            ByteStreams.copy(input, output);
+        }
+        return true;
+    }
+
+    /**
+     * Lists all stored chunks.
+     */
+    List<File> listChunks() {
+        List<File> chunks = new ArrayList<>();
+        File[] chunkDirs = chunksDir.listFiles();
+        if (chunkDirs == null) {
+            return chunks;
+        }
+        for (File chunkDir : chunkDirs) {
+            File[] chunksInDir = chunkDir.listFiles(file -> file.isFile() && DirectoryBuildCacheSizeLimit.isEntry(file.getName()));
+            if (chunksInDir != null) {
+                for (File chunk : chunksInDir) {
+                    chunks.add(chunk);
+                }
+            }
+        }
+        return chunks;
+    }
+
+    private File chunkFile(String hash) throws IOException {
+        if (hash.length() < 3 || !isHex(hash)) {
+            throw new IOException("Invalid build cache chunk hash " + hash);
+        }
+        return new File(new File(chunksDir, hash.substring(0, 2)), hash);
+    }
+
+    private static boolean isHex(String hash) {
+        for (int i = 0; i < hash.length(); i++) {
+            char c = hash.charAt(i);
+            if (!(c >= '0' && c <= '9') && !(c >= 'a' && c <= 'f')) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * The chunks used by a stored entry, and the size of the chunks which had not been stored before.
+     */
+    static class StoredChunks {
+        private final List<File> chunks;
+        private final long addedSize;
+
+        private StoredChunks(List<File> chunks, long addedSize) {
+            this.chunks = chunks;
+            this.addedSize = addedSize;
+        }
+
+        List<File> getChunks() {
+            return chunks;
+        }
+
+        long getAddedSize() {
+            return addedSize;
+        }
+    }
+
+    /**
+     * The content of an entry stored as chunks, which is read directly from the chunks.
+     */
+    static class ChunkedContent {
+        private final List<File> chunks;
+        private final long length;
+
+        private ChunkedContent(List<File> chunks, long length) {
+            this.chunks = chunks;
+            this.length = length;
+        }
+
+        long getLength() {
+            return length;
+        }
+
+        InputStream openStream() {
+            return new ChunksInputStream(chunks.iterator());
+        }
+    }
+
+    private static class ChunksInputStream extends InputStream {
+        private final Iterator<File> chunks;
+        private InputStream current;
+
+        ChunksInputStream(Iterator<File> chunks) {
+            this.chunks = chunks;
+        }
+
+        @Override
+        public int read() throws IOException {
+            byte[] single = new byte[1];
+            return read(single, 0, 1) < 0 ? -1 : single[0] & 0xFF;
+        }
+
+        @Override
+        public int read(byte[] bytes, int offset, int length) throws IOException {
+            if (length == 0) {
+                return 0;
+            }
+            while (true) {
+                if (current == null) {
+                    if (!chunks.hasNext()) {
+                        return -1;
+                    }
+                    current = new InflaterInputStream(new FileInputStream(chunks.next()), new Inflater(), 64 * 1024);
+                }
+                int read = current.read(bytes, offset, length);
+                if (read > 0) {
+                    return read;
+                }
+                current.close();
+                current = null;
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (current != null) {
+                current.close();
+                current = null;
+            }
+        }
+    }
+
+    private static long[] createGearTable() {
+        // The table must not change between versions, otherwise the same content would be split differently
+        Random random = new Random(0x4752414444L);
+        long[] table = new long[256];
+        for (int i = 0; i < table.length; i++) {
+            table[i] = random.nextLong();
+        }
+        return table;
+    }
+
+    /**
+     * Splits a stream into chunks using a rolling gear hash, which cuts a chunk where the hash of the preceding bytes matches {@link #BOUNDARY_MASK}.
+     */
+    private static class Chunker {
+        private final InputStream input;
+        private final byte[] buffer = new byte[2 * MAX_CHUNK_SIZE];
+        private int start;
+        private int end;
+        private boolean endOfInput;
+
+        Chunker(InputStream input) {
+            this.input = input;
+        }
+
+        /**
+         * Returns the length of the next chunk, which starts at {@link #start} in the {@link #buffer}, or 0 at the end of the input.
+         */
+        int nextChunk() throws IOException {
+            fill();
+            int limit = Math.min(end - start, MAX_CHUNK_SIZE);
+            if (limit <= MIN_CHUNK_SIZE) {
+                return limit;
+            }
+            long hash = 0;
+            for (int i = MIN_CHUNK_SIZE - BOUNDARY_WINDOW; i < limit; i++) {
+                hash = (hash << 1) + GEAR[buffer[start + i] & 0xFF];
+                if (i >= MIN_CHUNK_SIZE && (hash & BOUNDARY_MASK) == 0) {
+                    return i + 1;
+                }
+            }
+            return limit;
+        }
+
+        void skip(int length) {
+            start += length;
+        }
+
+        private void fill() throws IOException {
+            if (endOfInput || end - start >= MAX_CHUNK_SIZE) {
+                return;
+            }
+            System.arraycopy(buffer, start, buffer, 0, end - start);
+            end -= start;
+            start = 0;
+            while (end < buffer.length) {
+                int read = input.read(buffer, end, buffer.length - end);
+                if (read < 0) {
+                    endOfInput = true;
+                    return;
+                }
+                end += read;
+            }
+        }
+    }
+}
@@ -32,10 +32,16 @@
 import org.gradle.util.internal.GFileUtils;
 
 import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
 import java.util.concurrent.locks.ReadWriteLock;
 import java.util.concurrent.locks.ReentrantReadWriteLock;
 
@@ -46,9 +52,25 @@ public class DirectoryBuildCacheService implements LocalBuildCacheService, Build
     private final BuildCacheTempFileStore tempFileStore;
     private final FileAccessTracker fileAccessTracker;
     private final String failedFileSuffix;
+    private final DirectoryBuildCacheSizeLimit sizeLimit;
+    private final DirectoryBuildCacheChunkStore chunkStore;
     private final ReadWriteLock lock = new ReentrantReadWriteLock();
 
     public DirectoryBuildCacheService(PathKeyFileStore fileStore, PersistentCache persistentCache, BuildCacheTempFileStore tempFileStore, FileAccessTracker fileAccessTracker, String failedFileSuffix) {
+        this(fileStore, persistentCache, tempFileStore, fileAccessTracker, failedFileSuffix, null, null);
+    }
+
+    DirectoryBuildCacheService(
+        PathKeyFileStore fileStore,
+        PersistentCache persistentCache,
+        BuildCacheTempFileStore tempFileStore,
+        FileAccessTracker fileAccessTracker,
+        String failedFileSuffix,
+        @Nullable DirectoryBuildCacheSizeLimit sizeLimit,
+        @Nullable DirectoryBuildCacheChunkStore chunkStore
+    ) {
+        this.sizeLimit = sizeLimit;
+        this.chunkStore = chunkStore;
         this.fileStore = fileStore;
         this.persistentCache = persistentCache;
         this.tempFileStore = tempFileStore;
@@ -56,7 +78,7 @@ public DirectoryBuildCacheService(PathKeyFileStore fileStore, PersistentCache pe
         this.failedFileSuffix = failedFileSuffix;
     }
 
-    private static class LoadAction implements Action<File> {
+    private static class LoadAction implements EntryReader {
         private final BuildCacheEntryReader reader;
         boolean loaded;
 
@@ -65,38 +87,47 @@ private LoadAction(BuildCacheEntryReader reader) {
         }
 
         @Override
-        public void execute(@Nonnull File file) {
-            try {
-                Closer closer = Closer.create();
-                FileInputStream stream = closer.register(new FileInputStream(file));
-                try {
-                    reader.readFrom(stream);
-                    loaded = true;
-                } finally {
-                    closer.close();
-                }
-            } catch (IOException ex) {
-                throw new UncheckedIOException(ex);
-            }
+        public void readFrom(InputStream input, long size) throws IOException {
+            reader.readFrom(input);
+            loaded = true;
         }
     }
 
     @Override
     public boolean load(final BuildCacheKey key, final BuildCacheEntryReader reader) throws BuildCacheException {
         LoadAction loadAction = new LoadAction(reader);
-        loadLocally(key, loadAction);
+        readLocally(key, loadAction);
         return loadAction.loaded;
     }
 
     @Override
     public void loadLocally(final BuildCacheKey key, final Action<? super File> reader) {
+        withReadLock(new Runnable() {
+            @Override
+            public void run() {
+                loadInsideLock(key, reader);
+            }
+        });
+    }
+
+    @Override
+    public void readLocally(final BuildCacheKey key, final EntryReader reader) {
+        withReadLock(new Runnable() {
+            @Override
+            public void run() {
+                readInsideLock(key, reader);
+            }
+        });
+    }
+
+    private void withReadLock(final Runnable action) {
         // We need to lock other processes out here because garbage collection can be under way in another process
         persistentCache.withFileLock(new Runnable() {
             @Override
             public void run() {
                 lock.readLock().lock();
                 try {
-                    loadInsideLock(key, reader);
+                    action.run();
                 } finally {
                     lock.readLock().unlock();
                 }
@@ -105,16 +136,90 @@ public void run() {
     }
 
     private void loadInsideLock(BuildCacheKey key, Action<? super File> reader) {
-        LocallyAvailableResource resource = fileStore.get(key.getHashCode());
-        if (resource == null) {
+        File file = lookup(key);
+        if (file == null) {
             return;
         }
 
+        if (chunkStore != null && isManifest(file)) {
+            // The caller needs a file, so the content of the chunks is restored into one
+            tempFileStore.withTempFile(key, new Action<File>() {
+                @Override
+                public void execute(@Nonnull File content) {
+                    if (restoreChunks(file, content)) {
+                        readEntry(file, () -> reader.execute(content));
+                    }
+                }
+            });
+        } else {
+            readEntry(file, () -> reader.execute(file));
+        }
+    }
+
+    private void readInsideLock(BuildCacheKey key, EntryReader reader) {
+        File file = lookup(key);
+        if (file == null) {
+            return;
+        }
+
+        if (chunkStore != null && isManifest(file)) {
+            // Read directly from the chunks, without restoring the entry first
+            DirectoryBuildCacheChunkStore.ChunkedContent content = openChunks(file);
+            if (content != null) {
+                readEntry(file, () -> {
+                    try (InputStream input = content.openStream()) {
+                        reader.readFrom(input, content.getLength());
+                    }
+                });
+            }
+        } else {
+            readEntry(file, () -> {
+                try (InputStream input = new FileInputStream(file)) {
+                    reader.readFrom(input, file.length());
+                }
+            });
+        }
+    }
+
+    @Nullable
+    private File lookup(BuildCacheKey key) {
+        LocallyAvailableResource resource = fileStore.get(key.getHashCode());
+        if (resource == null) {
+            return null;
+        }
         File file = resource.getFile();
         fileAccessTracker.markAccessed(file);
+        return file;
+    }
+
+    private boolean isManifest(File file) {
+        try {
+            return chunkStore.isManifest(file);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private boolean restoreChunks(File manifest, File content) {
+        try {
+            return chunkStore.restore(manifest, content);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
 
+    @Nullable
+    private DirectoryBuildCacheChunkStore.ChunkedContent openChunks(File manifest) {
         try {
-            reader.execute(file);
+            return chunkStore.open(manifest);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private void readEntry(File file, EntryRead read) {
+        try {
+            read.run();
         } catch (Exception e) {
             // Try to move the file out of the way in case its permanently corrupt
             // Don't delete, so that it can be potentially used for debugging
@@ -127,6 +232,10 @@ private void loadInsideLock(BuildCacheKey key, Action<? super File> reader) {
         }
     }
 
+    private interface EntryRead {
+        void run() throws IOException;
+    }
+
     @Override
     public void store(final BuildCacheKey key, final BuildCacheEntryWriter result) throws BuildCacheException {
         tempFileStore.withTempFile(key, new Action<File>() {
@@ -166,8 +275,40 @@ public void run() {
     }
 
     private void storeInsideLock(BuildCacheKey key, File file) {
+        if (chunkStore != null && chunkStore.isStoreAsChunks()) {
+            tempFileStore.withTempFile(key, new Action<File>() {
+                @Override
+                public void execute(@Nonnull File manifest) {
+                    DirectoryBuildCacheChunkStore.StoredChunks storedChunks;
+                    try {
+                        storedChunks = chunkStore.store(file, manifest);
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                    storeEntry(key, manifest, storedChunks.getAddedSize(), storedChunks.getChunks());
+                }
+            });
+        } else {
+            storeEntry(key, file, 0, Collections.emptyList());
+        }
+    }
+
+    private void storeEntry(BuildCacheKey key, File file, long addedChunkBytes, List<File> chunks) {
+        long addedBytes = addedChunkBytes;
+        if (sizeLimit != null) {
+            LocallyAvailableResource replaced = fileStore.get(key.getHashCode());
+            addedBytes += file.length() - (replaced == null ? 0 : replaced.getFile().length());
+        }
         LocallyAvailableResource resource = fileStore.move(key.getHashCode(), file);
         fileAccessTracker.markAccessed(resource.getFile());
+        if (!chunks.isEmpty()) {
+            chunkStore.accessed(chunks);
+        }
+        if (sizeLimit != null) {
+            Set<File> retained = new HashSet<>(chunks);
+            retained.add(resource.getFile());
+            sizeLimit.stored(addedBytes, retained);
+        }
     }
 
     @Override
@@ -23,6 +23,8 @@
 import org.gradle.cache.PersistentCache;
 import org.gradle.cache.internal.CacheScopeMapping;
 import org.gradle.cache.internal.CleanupActionFactory;
+import org.gradle.cache.internal.CompositeCleanupAction;
+import org.gradle.cache.internal.FilesFinder;
 import org.gradle.cache.internal.LeastRecentlyUsedCacheCleanup;
 import org.gradle.cache.internal.SingleDepthFilesFinder;
 import org.gradle.cache.internal.VersionStrategy;
@@ -35,6 +37,7 @@
 import org.gradle.internal.file.impl.SingleDepthFileAccessTracker;
 import org.gradle.internal.resource.local.PathKeyFileStore;
 
+import javax.annotation.Nullable;
 import javax.inject.Inject;
 import java.io.File;
 
@@ -44,10 +47,22 @@
 public class DirectoryBuildCacheServiceFactory implements BuildCacheServiceFactory<DirectoryBuildCache> {
     public static final String FAILED_READ_SUFFIX = ".failed";
 
+    /**
+     * The maximum total size of the entries in the local build cache, in MiB.
+     * When set, the least recently used entries are removed as soon as a stored entry exceeds it, in addition to the periodic cleanup of unused entries.
+     */
+    public static final String MAX_SIZE_PROPERTY = "org.gradle.caching.internal.local.maxSize";
+
+    /**
+     * When enabled, entries are stored as chunks which are shared with other entries, see {@link DirectoryBuildCacheChunkStore}.
+     */
+    public static final String CHUNKS_PROPERTY = "org.gradle.caching.internal.local.chunks";
+
     private static final String BUILD_CACHE_VERSION = "1";
     private static final String BUILD_CACHE_KEY = "build-cache-" + BUILD_CACHE_VERSION;
     private static final String DIRECTORY_BUILD_CACHE_TYPE = "directory";
     private static final int FILE_TREE_DEPTH_TO_TRACK_AND_CLEANUP = 1;
+    private static final long MIB = 1024 * 1024;
 
     private final CacheRepository cacheRepository;
     private final CacheScopeMapping cacheScopeMapping;
@@ -85,18 +100,57 @@ public BuildCacheService createBuildCacheService(DirectoryBuildCache configurati
             config("location", target.getAbsolutePath()).
             config("removeUnusedEntriesAfter", String.valueOf(removeUnusedEntriesAfterDays) + " days");
 
+        FileAccessTracker fileAccessTracker = new SingleDepthFileAccessTracker(fileAccessTimeJournal, target, FILE_TREE_DEPTH_TO_TRACK_AND_CLEANUP);
+        boolean storeAsChunks = Boolean.getBoolean(CHUNKS_PROPERTY);
+        if (storeAsChunks) {
+            describer.config("chunks", "true");
+        }
+        // Entries stored as chunks while the property was enabled remain readable after it has been disabled
+        DirectoryBuildCacheChunkStore chunkStore = storeAsChunks || new File(target, DirectoryBuildCacheChunkStore.CHUNKS_DIRECTORY).isDirectory()
+            ? new DirectoryBuildCacheChunkStore(target, new SingleDepthFileAccessTracker(fileAccessTimeJournal, target, DirectoryBuildCacheChunkStore.CHUNK_DEPTH), storeAsChunks)
+            : null;
+        DirectoryBuildCacheSizeLimit sizeLimit = createSizeLimit(target, chunkStore);
+        if (sizeLimit != null) {
+            describer.config("maxSize", sizeLimit.getMaxSize() / MIB + " MiB");
+        }
+
+        CompositeCleanupAction.Builder cleanupActions = CompositeCleanupAction.builder()
+            .add(new LeastRecentlyUsedCacheCleanup(inBaseDir(new SingleDepthFilesFinder(FILE_TREE_DEPTH_TO_TRACK_AND_CLEANUP), false), fileAccessTimeJournal, removeUnusedEntriesAfterDays));
+        if (chunkStore != null) {
+            // Each chunk has been accessed whenever an entry using it was, so unused chunks are removed like unused entries
+            cleanupActions.add(new LeastRecentlyUsedCacheCleanup(inBaseDir(new SingleDepthFilesFinder(DirectoryBuildCacheChunkStore.CHUNK_DEPTH), true), fileAccessTimeJournal, removeUnusedEntriesAfterDays));
+        }
+        if (sizeLimit != null) {
+            cleanupActions.add(sizeLimit);
+        }
+
         PathKeyFileStore fileStore = fileStoreFactory.createFileStore(target);
         PersistentCache persistentCache = cacheRepository
             .cache(target)
-            .withCleanup(cleanupActionFactory.create(new LeastRecentlyUsedCacheCleanup(new SingleDepthFilesFinder(FILE_TREE_DEPTH_TO_TRACK_AND_CLEANUP), fileAccessTimeJournal, removeUnusedEntriesAfterDays)))
+            .withCleanup(cleanupActionFactory.create(cleanupActions.build()))
             .withDisplayName("Build cache")
             .withLockOptions(mode(OnDemand))
             .withCrossVersionCache(CacheBuilder.LockTarget.DefaultTarget)
             .open();
         BuildCacheTempFileStore tempFileStore = new DefaultBuildCacheTempFileStore(temporaryFileProvider);
-        FileAccessTracker fileAccessTracker = new SingleDepthFileAccessTracker(fileAccessTimeJournal, target, FILE_TREE_DEPTH_TO_TRACK_AND_CLEANUP);
 
-        return new DirectoryBuildCacheService(fileStore, persistentCache, tempFileStore, fileAccessTracker, FAILED_READ_SUFFIX);
+        return new DirectoryBuildCacheService(fileStore, persistentCache, tempFileStore, fileAccessTracker, FAILED_READ_SUFFIX, sizeLimit, chunkStore);
+    }
+
+    @Nullable
+    private DirectoryBuildCacheSizeLimit createSizeLimit(File target, @Nullable DirectoryBuildCacheChunkStore chunkStore) {
+        long maxSizeInMib = Long.getLong(MAX_SIZE_PROPERTY, 0);
+        return maxSizeInMib > 0
+            ? new DirectoryBuildCacheSizeLimit(target, maxSizeInMib * MIB, fileAccessTimeJournal, chunkStore)
+            : null;
+    }
+
+    /**
+     * Restricts the given finder to the chunks directory, or to everything else in the base directory.
+     */
+    private static FilesFinder inBaseDir(FilesFinder finder, boolean chunks) {
+        return (baseDir, filter) -> finder.find(baseDir, file -> filter.accept(file)
+            && (!file.getParentFile().equals(baseDir) || file.getName().equals(DirectoryBuildCacheChunkStore.CHUNKS_DIRECTORY) == chunks));
     }
 
     private static void checkDirectory(File directory) {
@@ -0,0 +1,180 @@
+/*
+ * Copyright 2021 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.caching.local.internal;
+
+import org.gradle.api.UncheckedIOException;
+import org.gradle.cache.CleanableStore;
+import org.gradle.cache.CleanupAction;
+import org.gradle.cache.CleanupProgressMonitor;
+import org.gradle.internal.file.FileAccessTimeJournal;
+import org.gradle.util.internal.GFileUtils;
+
+import javax.annotation.Nullable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Keeps the total size of the entries in a directory build cache below a limit, by removing the least recently used entries when storing an entry exceeds it.
+ * When entries are stored as chunks, the total includes the chunks, which are removed by their own access times like entries.
+ *
+ * The total size is persisted in the cache directory, and every process storing an entry updates it while holding the file lock of the cache.
+ * This way entries stored by other processes are accounted for, and the cache directory does not need to be listed for each build.
+ * The directory is only listed when the limit is exceeded, or when there is no persisted total yet.
+ * Entries are then removed in the order of their access times in the {@link FileAccessTimeJournal}, until the total is well below the limit.
+ * An entry whose chunk has been removed is a cache miss, so an entry is removed before the chunks it was last accessed with.
+ * As a cleanup action, this discards the persisted total, since the periodic cleanup removes entries without updating it.
+ */
+class DirectoryBuildCacheSizeLimit implements CleanupAction {
+    static final String TOTAL_SIZE_FILE_NAME = "total-size.bin";
+
+    // Remove entries until this fraction of the limit is used, so the directory is not listed again for the next entry stored
+    private static final double RETAINED_FRACTION = 0.9;
+
+    private final File baseDir;
+    private final File totalSizeFile;
+    private final long maxSize;
+    private final FileAccessTimeJournal fileAccessTimeJournal;
+    private final DirectoryBuildCacheChunkStore chunkStore;
+
+    DirectoryBuildCacheSizeLimit(File baseDir, long maxSize, FileAccessTimeJournal fileAccessTimeJournal, @Nullable DirectoryBuildCacheChunkStore chunkStore) {
+        this.baseDir = baseDir;
+        this.chunkStore = chunkStore;
+        this.totalSizeFile = new File(baseDir, TOTAL_SIZE_FILE_NAME);
+        this.maxSize = maxSize;
+        this.fileAccessTimeJournal = fileAccessTimeJournal;
+    }
+
+    long getMaxSize() {
+        return maxSize;
+    }
+
+    /**
+     * Records that storing an entry added the given number of bytes to the cache,
+     * and removes the least recently used other entries and chunks when the cache now exceeds the limit.
+     * Must be called while holding the file lock of the cache.
+     *
+     * @param retained the stored entry and its chunks, which are never removed.
+     */
+    void stored(long addedBytes, Collection<File> retained) {
+        long totalSize = readTotalSize();
+        if (totalSize < 0) {
+            totalSize = measureTotalSize();
+        } else {
+            totalSize += addedBytes;
+        }
+        if (totalSize > maxSize) {
+            totalSize = removeLeastRecentlyUsedEntries(retained);
+        }
+        writeTotalSize(totalSize);
+    }
+
+    @Override
+    public void clean(CleanableStore cleanableStore, CleanupProgressMonitor progressMonitor) {
+        GFileUtils.deleteQuietly(totalSizeFile);
+    }
+
+    private long measureTotalSize() {
+        long totalSize = 0;
+        for (File file : listEntriesAndChunks()) {
+            totalSize += file.length();
+        }
+        return totalSize;
+    }
+
+    private long removeLeastRecentlyUsedEntries(Collection<File> retained) {
+        List<EntryFile> entryFiles = new ArrayList<>();
+        long totalSize = 0;
+        for (File file : listEntriesAndChunks()) {
+            EntryFile entryFile = new EntryFile(file, file.length(), fileAccessTimeJournal.getLastAccessTime(file));
+            entryFiles.add(entryFile);
+            totalSize += entryFile.size;
+        }
+        // Stable, so entries come before chunks with the same access time
+        entryFiles.sort(Comparator.comparingLong(entryFile -> entryFile.lastAccessTime));
+        long retainedSize = (long) (maxSize * RETAINED_FRACTION);
+        for (EntryFile entryFile : entryFiles) {
+            if (totalSize <= retainedSize) {
+                break;
+            }
+            if (retained.contains(entryFile.file)) {
+                continue;
+            }
+            if (entryFile.file.delete() || !entryFile.file.exists()) {
+                fileAccessTimeJournal.deleteLastAccessTime(entryFile.file);
+                totalSize -= entryFile.size;
+            }
+        }
+        return totalSize;
+    }
+
+    private List<File> listEntriesAndChunks() {
+        List<File> files = new ArrayList<>();
+        File[] entries = baseDir.listFiles(file -> file.isFile() && isEntry(file.getName()));
+        if (entries != null) {
+            files.addAll(Arrays.asList(entries));
+        }
+        if (chunkStore != null) {
+            files.addAll(chunkStore.listChunks());
+        }
+        return files;
+    }
+
+    private long readTotalSize() {
+        try (DataInputStream input = new DataInputStream(new FileInputStream(totalSizeFile))) {
+            return input.readLong();
+        } catch (IOException e) {
+            // Missing or incomplete, so measure the entries again
+            return -1;
+        }
+    }
+
+    private void writeTotalSize(long totalSize) {
+        try (DataOutputStream output = new DataOutputStream(new FileOutputStream(totalSizeFile))) {
+            output.writeLong(totalSize);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not write the total size of the build cache to " + totalSizeFile, e);
+        }
+    }
+
+    /**
+     * Entries are named after their cache key. Temporary files, failed entries and the files of the cache itself all contain a dot.
+     */
+    static boolean isEntry(String name) {
+        return name.indexOf('.') < 0;
+    }
+
+    private static class EntryFile {
+        private final File file;
+        private final long size;
+        private final long lastAccessTime;
+
+        private EntryFile(File file, long size, long lastAccessTime) {
+            this.file = file;
+            this.size = size;
+            this.lastAccessTime = lastAccessTime;
+        }
+    }
+}
@@ -18,9 +18,13 @@
 
 import org.gradle.api.Action;
 import org.gradle.caching.BuildCacheKey;
+import org.gradle.internal.UncheckedException;
 
 import java.io.Closeable;
 import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
 
 /**
  * A build cache service that is capable of handling local files directly. The direct access
@@ -34,6 +38,20 @@ public interface LocalBuildCacheService extends BuildCacheTempFileStore, Closeab
      */
     void loadLocally(BuildCacheKey key, Action<? super File> reader);
 
+    /**
+     * Loads a cache artifact from a local file store. If a result is found the {@code reader} reads its content.
+     * Unlike {@link #loadLocally(BuildCacheKey, Action)}, this lets implementations provide the content without writing it to a single file first.
+     */
+    default void readLocally(BuildCacheKey key, EntryReader reader) {
+        loadLocally(key, file -> {
+            try (InputStream input = new FileInputStream(file)) {
+                reader.readFrom(input, file.length());
+            } catch (IOException e) {
+                throw UncheckedException.throwAsUncheckedException(e);
+            }
+        });
+    }
+
     /**
      * Store the given file in the local file store as a cache artifact.
      */
@@ -41,4 +59,13 @@ public interface LocalBuildCacheService extends BuildCacheTempFileStore, Closeab
 
     @Override
     void close();
+
+    interface EntryReader {
+        /**
+         * Reads the content of a cache artifact.
+         *
+         * @param size the size of the content in bytes
+         */
+        void readFrom(InputStream input, long size) throws IOException;
+    }
 }
@@ -17,6 +17,7 @@
 package org.gradle.caching.internal.controller
 
 import org.gradle.api.Action
+import org.gradle.api.GradleException
 import org.gradle.api.internal.file.TestFiles
 import org.gradle.caching.BuildCacheEntryReader
 import org.gradle.caching.BuildCacheEntryWriter
@@ -26,6 +27,7 @@ import org.gradle.caching.internal.controller.service.BuildCacheServicesConfigur
 import org.gradle.caching.local.internal.LocalBuildCacheService
 import org.gradle.internal.operations.TestBuildOperationExecutor
 import org.gradle.test.fixtures.file.TestNameTestDirectoryProvider
+import org.gradle.util.SetSystemProperties
 import spock.lang.Specification
 import org.junit.Rule
 
@@ -82,6 +84,9 @@ class DefaultBuildCacheControllerTest extends Specification {
     @Rule
     final TestNameTestDirectoryProvider tmpDir = new TestNameTestDirectoryProvider(getClass())
 
+    @Rule
+    final SetSystemProperties systemProperties = new SetSystemProperties()
+
     interface Local extends BuildCacheService, LocalBuildCacheService {}
 
     BuildCacheController getController(boolean disableRemoteOnError = true) {
@@ -108,7 +113,7 @@ class DefaultBuildCacheControllerTest extends Specification {
         controller.load(loadCommand)
 
         then:
-        1 * local.loadLocally(key, _)
+        1 * local.readLocally(key, _)
         0 * local.storeLocally(key, _)
     }
 
@@ -150,10 +155,8 @@ class DefaultBuildCacheControllerTest extends Specification {
 
     def "local load does not stores to local"() {
         given:
-        1 * local.loadLocally(key, _) >> { BuildCacheKey key, Action<File> action ->
-            def file = tmpDir.file("file")
-            file.text = "alma"
-            action.execute(file)
+        1 * local.readLocally(key, _) >> { BuildCacheKey key, LocalBuildCacheService.EntryReader reader ->
+            reader.readFrom(new ByteArrayInputStream("alma".bytes), 4)
         }
 
         when:
@@ -165,7 +168,7 @@ class DefaultBuildCacheControllerTest extends Specification {
 
     def "remote load also stores to local"() {
         given:
-        1 * local.loadLocally(key, _) // miss
+        1 * local.readLocally(key, _) // miss
         1 * remote.load(key, _) >> { BuildCacheKey key, BuildCacheEntryReader reader ->
             reader.readFrom(new ByteArrayInputStream("foo".bytes))
             true
@@ -196,7 +199,7 @@ class DefaultBuildCacheControllerTest extends Specification {
     def "remote load does not store to local if local push is disabled"() {
         given:
         localPush = false
-        1 * local.loadLocally(key, _) // miss
+        1 * local.readLocally(key, _) // miss
         1 * remote.load(key, _) >> { BuildCacheKey key, BuildCacheEntryReader reader ->
             reader.readFrom(new ByteArrayInputStream("foo".bytes))
             true
@@ -209,6 +212,85 @@ class DefaultBuildCacheControllerTest extends Specification {
         0 * local.storeLocally(key, _)
     }
 
+    def "packs entry directly into remote when streaming and not storing locally"() {
+        given:
+        System.setProperty(DefaultBuildCacheController.STREAMING_PROPERTY, "true")
+        localPush = false
+        def uploaded = new ByteArrayOutputStream()
+
+        when:
+        controller.store(storeCommand)
+
+        then:
+        1 * remote.store(key, _) >> { BuildCacheKey key, BuildCacheEntryWriter writer ->
+            assert writer.size == -1
+            writer.writeTo(uploaded)
+        }
+        0 * local.withTempFile(_, _)
+        0 * local.storeLocally(_, _)
+    }
+
+    def "fails when streamed entry cannot be packed"() {
+        given:
+        System.setProperty(DefaultBuildCacheController.STREAMING_PROPERTY, "true")
+        localPush = false
+        def failure = new RuntimeException("packing failed")
+        def failingStoreCommand = Stub(BuildCacheStoreCommand) {
+            getKey() >> key
+            store(_ as OutputStream) >> { throw failure }
+        }
+        1 * remote.store(key, _) >> { BuildCacheKey key, BuildCacheEntryWriter writer ->
+            writer.writeTo(new ByteArrayOutputStream())
+        }
+
+        when:
+        controller.store(failingStoreCommand)
+
+        then:
+        def e = thrown(RuntimeException)
+        e == failure
+    }
+
+    def "unpacks entry directly from remote when streaming and not storing locally"() {
+        given:
+        System.setProperty(DefaultBuildCacheController.STREAMING_PROPERTY, "true")
+        localPush = false
+        1 * local.readLocally(key, _) // miss
+        1 * remote.load(key, _) >> { BuildCacheKey key, BuildCacheEntryReader reader ->
+            reader.readFrom(new ByteArrayInputStream("foo".bytes))
+            true
+        }
+
+        when:
+        def result = controller.load(loadCommand)
+
+        then:
+        result.get() == loadmetadata
+        0 * local.withTempFile(_, _)
+        0 * local.storeLocally(_, _)
+    }
+
+    def "fails when streamed remote entry cannot be unpacked"() {
+        given:
+        System.setProperty(DefaultBuildCacheController.STREAMING_PROPERTY, "true")
+        local = null
+        def failingLoadCommand = Stub(BuildCacheLoadCommand) {
+            getKey() >> key
+            load(_ as InputStream) >> { throw new IOException("connection reset") }
+        }
+        1 * remote.load(key, _) >> { BuildCacheKey key, BuildCacheEntryReader reader ->
+            reader.readFrom(new ByteArrayInputStream("foo".bytes))
+            true
+        }
+
+        when:
+        controller.load(failingLoadCommand)
+
+        then:
+        def e = thrown(GradleException)
+        e.message == "Build cache entry key from remote build cache could not be unpacked"
+    }
+
     def "stops calling through after read error"() {
         local = null
 
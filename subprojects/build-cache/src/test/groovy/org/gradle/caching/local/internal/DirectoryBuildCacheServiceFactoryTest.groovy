@@ -30,6 +30,7 @@ import org.gradle.internal.file.FileAccessTimeJournal
 import org.gradle.internal.resource.local.PathKeyFileStore
 import org.gradle.test.fixtures.file.CleanupTestDirectory
 import org.gradle.test.fixtures.file.TestNameTestDirectoryProvider
+import org.gradle.util.SetSystemProperties
 import org.gradle.util.UsesNativeServices
 import org.junit.Rule
 import spock.lang.Specification
@@ -38,6 +39,7 @@ import spock.lang.Specification
 @CleanupTestDirectory
 class DirectoryBuildCacheServiceFactoryTest extends Specification {
     @Rule TestNameTestDirectoryProvider temporaryFolder = new TestNameTestDirectoryProvider(getClass())
+    @Rule SetSystemProperties systemProperties = new SetSystemProperties()
 
     def cacheRepository = Mock(CacheRepository)
     def cacheScopeMapping = Mock(CacheScopeMapping)
@@ -82,6 +84,43 @@ class DirectoryBuildCacheServiceFactoryTest extends Specification {
         0 * _
     }
 
+    def "only uses a chunk store when storing as chunks is enabled or chunks exist"() {
+        def cacheDir = temporaryFolder.file("cache-dir")
+        def cleanupActions = []
+        def cleanupAction = Mock(CleanupAction)
+        config.getDirectory() >> cacheDir
+        config.getRemoveUnusedEntriesAfterDays() >> 10
+        resolver.resolve(cacheDir) >> cacheDir
+        fileStoreFactory.createFileStore(cacheDir) >> Mock(PathKeyFileStore)
+        cacheRepository.cache(cacheDir) >> cacheBuilder
+        cleanupActionFactory.create(_) >> { CleanupAction action ->
+            cleanupActions = action.cleanups
+            cleanupAction
+        }
+
+        when:
+        def service = factory.createBuildCacheService(config, buildCacheDescriber)
+        then:
+        service.chunkStore == null
+        cleanupActions.size() == 1
+
+        when:
+        System.setProperty(DirectoryBuildCacheServiceFactory.CHUNKS_PROPERTY, "true")
+        service = factory.createBuildCacheService(config, buildCacheDescriber)
+        then:
+        service.chunkStore.storeAsChunks
+        // Unused chunks are removed separately from unused entries
+        cleanupActions.size() == 2
+
+        when:
+        System.clearProperty(DirectoryBuildCacheServiceFactory.CHUNKS_PROPERTY)
+        cacheDir.createDir(DirectoryBuildCacheChunkStore.CHUNKS_DIRECTORY)
+        service = factory.createBuildCacheService(config, buildCacheDescriber)
+        then:
+        !service.chunkStore.storeAsChunks
+        cleanupActions.size() == 2
+    }
+
     private class NoopBuildCacheDescriber implements BuildCacheServiceFactory.Describer {
 
         @Override
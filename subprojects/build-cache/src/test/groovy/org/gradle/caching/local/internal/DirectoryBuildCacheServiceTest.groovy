@@ -17,10 +17,13 @@
 package org.gradle.caching.local.internal
 
 import org.gradle.api.internal.file.temp.DefaultTemporaryFileProvider
+import org.gradle.cache.CleanableStore
+import org.gradle.cache.CleanupProgressMonitor
 import org.gradle.cache.PersistentCache
 import org.gradle.caching.BuildCacheEntryReader
 import org.gradle.caching.BuildCacheEntryWriter
 import org.gradle.caching.BuildCacheKey
+import org.gradle.internal.file.FileAccessTimeJournal
 import org.gradle.internal.file.FileAccessTracker
 import org.gradle.internal.resource.local.DefaultPathKeyFileStore
 import org.gradle.test.fixtures.file.CleanupTestDirectory
@@ -30,6 +33,9 @@ import org.gradle.util.UsesNativeServices
 import org.junit.Rule
 import spock.lang.Specification
 
+import java.util.concurrent.atomic.AtomicLong
+import java.util.zip.GZIPOutputStream
+
 @UsesNativeServices
 @CleanupTestDirectory
 class DirectoryBuildCacheServiceTest extends Specification {
@@ -47,6 +53,14 @@ class DirectoryBuildCacheServiceTest extends Specification {
     def key = Mock(BuildCacheKey) {
         getHashCode() >> hashCode
     }
+    def accessTimes = [:]
+    def lastAccessTime = new AtomicLong()
+    def fileAccessTimeJournal = Stub(FileAccessTimeJournal) {
+        getLastAccessTime(_) >> { File file -> accessTimes[file] ?: 0L }
+    }
+    def trackingFileAccessTracker = Stub(FileAccessTracker) {
+        markAccessed(_) >> { File file -> accessTimes[file] = lastAccessTime.incrementAndGet() }
+    }
 
     def "does not store partial result"() {
         when:
@@ -134,4 +148,172 @@ class DirectoryBuildCacheServiceTest extends Specification {
         1 * fileAccessTracker.markAccessed(cachedFile)
         loaded
     }
+
+    def "removes least recently used entries when exceeding the maximum size"() {
+        given:
+        def service = serviceWithSizeLimit(10)
+        def keys = ["aaaa", "bbbb", "cccc"].collect { hash -> Stub(BuildCacheKey) { getHashCode() >> hash } }
+
+        when:
+        service.storeLocally(keys[0], temporaryFolder.createFile("a") << "1234")
+        service.storeLocally(keys[1], temporaryFolder.createFile("b") << "1234")
+        service.loadLocally(keys[0], {})
+        service.storeLocally(keys[2], temporaryFolder.createFile("c") << "1234")
+
+        then:
+        cacheDir.file("aaaa").exists()
+        !cacheDir.file("bbbb").exists()
+        cacheDir.file("cccc").exists()
+    }
+
+    def "accounts for entries stored by other processes"() {
+        given:
+        def service = serviceWithSizeLimit(10)
+        def otherService = serviceWithSizeLimit(10)
+        def keys = ["aaaa", "bbbb", "cccc"].collect { hash -> Stub(BuildCacheKey) { getHashCode() >> hash } }
+
+        when:
+        service.storeLocally(keys[0], temporaryFolder.createFile("a") << "1234")
+        otherService.storeLocally(keys[1], temporaryFolder.createFile("b") << "1234")
+        service.storeLocally(keys[2], temporaryFolder.createFile("c") << "1234")
+
+        then:
+        !cacheDir.file("aaaa").exists()
+        cacheDir.file("bbbb").exists()
+        cacheDir.file("cccc").exists()
+    }
+
+    def "updates the persisted total instead of measuring the entries again until the periodic cleanup ran"() {
+        given:
+        def sizeLimit = new DirectoryBuildCacheSizeLimit(cacheDir, 10, fileAccessTimeJournal, null)
+        def service = new DirectoryBuildCacheService(fileStore, persistentCache, tempFileStore, trackingFileAccessTracker, ".failed", sizeLimit, null)
+        def keys = ["aaaa", "bbbb", "cccc"].collect { hash -> Stub(BuildCacheKey) { getHashCode() >> hash } }
+
+        when:
+        service.storeLocally(keys[0], temporaryFolder.createFile("a") << "1234")
+        // Not stored through the cache, so not part of the persisted total
+        cacheDir.file("bbbb") << "1234"
+        service.storeLocally(keys[2], temporaryFolder.createFile("c") << "1234")
+
+        then:
+        cacheDir.file("aaaa").exists()
+        cacheDir.file("bbbb").exists()
+        cacheDir.file("cccc").exists()
+
+        when:
+        sizeLimit.clean(Stub(CleanableStore), Stub(CleanupProgressMonitor))
+        service.storeLocally(keys[0], temporaryFolder.createFile("d") << "1234")
+
+        then:
+        cacheDir.file("aaaa").exists()
+        !cacheDir.file("bbbb").exists()
+        cacheDir.file("cccc").exists()
+    }
+
+    def "stores content shared between entries only once when storing as chunks"() {
+        given:
+        def chunkStore = new DirectoryBuildCacheChunkStore(cacheDir, fileAccessTracker, true)
+        def service = new DirectoryBuildCacheService(fileStore, persistentCache, tempFileStore, fileAccessTracker, ".failed", null, chunkStore)
+        def sharedContent = new byte[1024 * 1024]
+        new Random(1).nextBytes(sharedContent)
+        def otherKey = Stub(BuildCacheKey) { getHashCode() >> "5678abcd" }
+
+        when:
+        def first = temporaryFolder.file("first")
+        first.bytes = sharedContent + ("first" as byte[])
+        service.storeLocally(key, first)
+        def chunksAfterFirstEntry = cacheDir.file(DirectoryBuildCacheChunkStore.CHUNKS_DIRECTORY).allDescendants().size()
+        def second = temporaryFolder.file("second")
+        second.bytes = sharedContent + ("second" as byte[])
+        service.storeLocally(otherKey, second)
+
+        then:
+        cacheDir.file(hashCode).length() < 1024
+        cacheDir.file(DirectoryBuildCacheChunkStore.CHUNKS_DIRECTORY).allDescendants().size() < 2 * chunksAfterFirstEntry
+
+        when:
+        byte[] loaded = null
+        service.loadLocally(otherKey, { File file -> loaded = file.bytes })
+
+        then:
+        loaded == second.bytes
+    }
+
+    def "stores content shared between entries compressed as a whole only once"() {
+        given:
+        def chunkStore = new DirectoryBuildCacheChunkStore(cacheDir, fileAccessTracker, true)
+        def service = new DirectoryBuildCacheService(fileStore, persistentCache, tempFileStore, fileAccessTracker, ".failed", null, chunkStore)
+        def sharedContent = new byte[1024 * 1024]
+        new Random(1).nextBytes(sharedContent)
+        def otherKey = Stub(BuildCacheKey) { getHashCode() >> "5678abcd" }
+
+        when:
+        service.storeLocally(key, gzip("first", sharedContent + ("first" as byte[])))
+        def chunksAfterFirstEntry = cacheDir.file(DirectoryBuildCacheChunkStore.CHUNKS_DIRECTORY).allDescendants().size()
+        service.storeLocally(otherKey, gzip("second", sharedContent + ("second" as byte[])))
+
+        then:
+        cacheDir.file(DirectoryBuildCacheChunkStore.CHUNKS_DIRECTORY).allDescendants().size() < 2 * chunksAfterFirstEntry
+
+        when:
+        byte[] loaded = null
+        def found = service.load(otherKey, new BuildCacheEntryReader() {
+            @Override
+            void readFrom(InputStream input) throws IOException {
+                // Read directly from the chunks, without restoring the entry into a file first
+                assert cacheDir.listFiles().findAll { it.name.endsWith(BuildCacheTempFileStore.PARTIAL_FILE_SUFFIX) }.empty
+                loaded = input.bytes
+            }
+        })
+
+        then:
+        found
+        loaded == sharedContent + ("second" as byte[])
+    }
+
+    def "counts the chunks of entries towards the maximum size"() {
+        given:
+        def chunkStore = new DirectoryBuildCacheChunkStore(cacheDir, trackingFileAccessTracker, true)
+        def sizeLimit = new DirectoryBuildCacheSizeLimit(cacheDir, 300 * 1024, fileAccessTimeJournal, chunkStore)
+        def service = new DirectoryBuildCacheService(fileStore, persistentCache, tempFileStore, trackingFileAccessTracker, ".failed", sizeLimit, chunkStore)
+        def keys = ["aaaa", "bbbb", "cccc"].collect { hash -> Stub(BuildCacheKey) { getHashCode() >> hash } }
+        def contents = (1..3).collect { seed ->
+            def content = new byte[128 * 1024]
+            new Random(seed).nextBytes(content)
+            content
+        }
+
+        when:
+        keys.eachWithIndex { entryKey, i ->
+            def file = temporaryFolder.file("entry-$i")
+            file.bytes = contents[i]
+            service.storeLocally(entryKey, file)
+        }
+
+        then:
+        !cacheDir.file("aaaa").exists()
+        chunkStore.listChunks().sum { it.length() } <= 300 * 1024
+
+        when:
+        byte[] loaded = null
+        service.readLocally(keys[1], { input, size -> loaded = input.bytes } as LocalBuildCacheService.EntryReader)
+
+        then:
+        loaded == contents[1]
+    }
+
+    private File gzip(String name, byte[] content) {
+        def file = temporaryFolder.file(name)
+        file.withOutputStream { output ->
+            def gzipOutput = new GZIPOutputStream(output)
+            gzipOutput.write(content)
+            gzipOutput.finish()
+        }
+        return file
+    }
+
+    private DirectoryBuildCacheService serviceWithSizeLimit(long maxSize) {
+        def sizeLimit = new DirectoryBuildCacheSizeLimit(cacheDir, maxSize, fileAccessTimeJournal, null)
+        return new DirectoryBuildCacheService(fileStore, persistentCache, tempFileStore, trackingFileAccessTracker, ".failed", sizeLimit, null)
+    }
 }
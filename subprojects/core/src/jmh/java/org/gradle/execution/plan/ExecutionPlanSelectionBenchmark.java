@@ -0,0 +1,238 @@
+/*
+ * Copyright 2021 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.execution.plan;
+
+import org.gradle.api.Action;
+import org.gradle.api.internal.project.ProjectInternal;
+import org.gradle.internal.resources.ResourceLock;
+import org.gradle.internal.resources.ResourceLockState;
+import org.gradle.internal.snapshot.CaseSensitivity;
+import org.gradle.internal.work.WorkerLeaseRegistry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import javax.annotation.Nullable;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+/**
+ * Measures how long it takes to select and complete all nodes of a large synthetic execution plan,
+ * while a fixed number of workers keep nodes running at the same time.
+ *
+ * The plan consists of layers of nodes, where each node depends on a few random nodes of the previous layers.
+ */
+@Fork(1)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@State(Scope.Benchmark)
+public class ExecutionPlanSelectionBenchmark {
+    private static final int NODES_PER_LAYER = 500;
+    private static final int DEPENDENCIES_PER_NODE = 3;
+
+    @Param({"2000", "20000"})
+    int nodeCount;
+
+    @Param({"8", "48"})
+    int workers;
+
+    private DefaultExecutionPlan plan;
+
+    @Setup(Level.Invocation)
+    public void createPlan() {
+        Random random = new Random(42);
+        List<Node> nodes = new ArrayList<>(nodeCount);
+        for (int i = 0; i < nodeCount; i++) {
+            SyntheticNode node = new SyntheticNode(i);
+            int layerStart = (i / NODES_PER_LAYER) * NODES_PER_LAYER;
+            if (layerStart > 0) {
+                for (int j = 0; j < DEPENDENCIES_PER_NODE; j++) {
+                    node.addDependencySuccessor(nodes.get(random.nextInt(layerStart)));
+                }
+            }
+            node.require();
+            node.dependenciesProcessed();
+            nodes.add(node);
+        }
+        // Neither the task node factory nor the file system is used for nodes without tasks and outputs
+        plan = new DefaultExecutionPlan(
+            "synthetic",
+            null,
+            new TaskDependencyResolver(Collections.emptyList()),
+            node -> false,
+            new ExecutionNodeAccessHierarchy(CaseSensitivity.CASE_SENSITIVE, null),
+            new ExecutionNodeAccessHierarchy(CaseSensitivity.CASE_SENSITIVE, null)
+        );
+        plan.addNodes(nodes);
+        plan.determineExecutionPlan();
+    }
+
+    @Benchmark
+    public int selectAndCompleteAllNodes() {
+        Deque<Node> running = new ArrayDeque<>(workers);
+        int completed = 0;
+        while (plan.hasNodesRemaining()) {
+            while (running.size() < workers) {
+                Node node = plan.selectNext(WORKER_LEASE, RESOURCE_LOCK_STATE);
+                if (node == null) {
+                    break;
+                }
+                running.add(node);
+            }
+            Node finished = running.poll();
+            if (finished == null) {
+                throw new IllegalStateException("No node could be selected, but nodes are remaining.");
+            }
+            plan.finishedExecuting(finished);
+            completed++;
+        }
+        return completed;
+    }
+
+    private static final ResourceLockState RESOURCE_LOCK_STATE = new ResourceLockState() {
+        @Override
+        public void registerLocked(ResourceLock resourceLock) {
+        }
+
+        @Override
+        public void registerUnlocked(ResourceLock resourceLock) {
+        }
+
+        @Override
+        public void releaseLocks() {
+        }
+    };
+
+    private static final WorkerLeaseRegistry.WorkerLease WORKER_LEASE = new WorkerLeaseRegistry.WorkerLease() {
+        @Override
+        public WorkerLeaseRegistry.WorkerLease createChild() {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public WorkerLeaseRegistry.WorkerLeaseCompletion startChild() {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public boolean isLocked() {
+            return false;
+        }
+
+        @Override
+        public boolean isLockedByCurrentThread() {
+            return false;
+        }
+
+        @Override
+        public boolean tryLock() {
+            return true;
+        }
+
+        @Override
+        public void unlock() {
+        }
+
+        @Override
+        public String getDisplayName() {
+            return "worker lease";
+        }
+    };
+
+    private static class SyntheticNode extends Node {
+        private final int id;
+
+        SyntheticNode(int id) {
+            this.id = id;
+        }
+
+        @Nullable
+        @Override
+        public Throwable getNodeFailure() {
+            return null;
+        }
+
+        @Override
+        public void rethrowNodeFailure() {
+        }
+
+        @Override
+        public void prepareForExecution() {
+        }
+
+        @Override
+        public void resolveDependencies(TaskDependencyResolver dependencyResolver, Action<Node> processHardSuccessor) {
+        }
+
+        @Override
+        public Set<Node> getFinalizers() {
+            return Collections.emptySet();
+        }
+
+        @Override
+        public void resolveMutations() {
+        }
+
+        @Override
+        public boolean isPublicNode() {
+            return true;
+        }
+
+        @Override
+        public boolean requiresMonitoring() {
+            return false;
+        }
+
+        @Nullable
+        @Override
+        public ResourceLock getProjectToLock() {
+            return null;
+        }
+
+        @Nullable
+        @Override
+        public ProjectInternal getOwningProject() {
+            return null;
+        }
+
+        @Override
+        public List<? extends ResourceLock> getResourcesToLock() {
+            return Collections.emptyList();
+        }
+
+        @Override
+        public int compareTo(Node o) {
+            return Integer.compare(id, ((SyntheticNode) o).id);
+        }
+
+        @Override
+        public String toString() {
+            return "node " + id;
+        }
+    }
+}
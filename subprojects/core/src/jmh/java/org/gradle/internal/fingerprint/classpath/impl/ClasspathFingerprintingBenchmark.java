@@ -0,0 +1,140 @@
+/*
+ * Copyright 2021 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.internal.fingerprint.classpath.impl;
+
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.Interners;
+import org.apache.commons.io.FileUtils;
+import org.gradle.api.internal.changedetection.state.ResourceEntryFilter;
+import org.gradle.api.internal.changedetection.state.ResourceFilter;
+import org.gradle.api.internal.changedetection.state.ResourceSnapshotterCacheService;
+import org.gradle.api.internal.changedetection.state.RuntimeClasspathResourceHasher;
+import org.gradle.internal.file.FileMetadata.AccessType;
+import org.gradle.internal.file.impl.DefaultFileMetadata;
+import org.gradle.internal.fingerprint.FileSystemLocationFingerprint;
+import org.gradle.internal.hash.Hashing;
+import org.gradle.internal.snapshot.CompositeFileSystemSnapshot;
+import org.gradle.internal.snapshot.FileSystemSnapshot;
+import org.gradle.internal.snapshot.RegularFileSnapshot;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+/**
+ * Measures how long it takes to fingerprint a runtime classpath of many jars when none of the jars have been hashed before,
+ * like in a cold daemon.
+ *
+ * The jars vary in size, from a handful of entries to a few thousand, similar to the dependencies of a large application.
+ */
+@Fork(1)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@State(Scope.Benchmark)
+public class ClasspathFingerprintingBenchmark {
+    private static final ResourceSnapshotterCacheService NO_CACHE = (fileSnapshotContext, hasher, configurationHash) -> hasher.hash(fileSnapshotContext);
+
+    @Param({"600"})
+    int jarCount;
+
+    @Param({"1", "4", "8"})
+    int parallelism;
+
+    private File classpathDir;
+    private FileSystemSnapshot classpath;
+    private ExecutorService executor;
+    private ClasspathFingerprintingStrategy strategy;
+
+    @Setup(Level.Trial)
+    public void createClasspath() throws IOException {
+        classpathDir = Files.createTempDirectory("classpath").toFile();
+        Random random = new Random(42);
+        List<RegularFileSnapshot> jars = new ArrayList<>(jarCount);
+        for (int i = 0; i < jarCount; i++) {
+            File jar = new File(classpathDir, "lib-" + i + ".jar");
+            // Most jars are small, a few are large
+            int entryCount = 5 + (int) (Math.pow(random.nextDouble(), 3) * 3000);
+            writeJar(jar, entryCount, random);
+            jars.add(new RegularFileSnapshot(
+                jar.getAbsolutePath(),
+                jar.getName(),
+                Hashing.hashBytes(Files.readAllBytes(jar.toPath())),
+                DefaultFileMetadata.file(jar.lastModified(), jar.length(), AccessType.DIRECT)
+            ));
+        }
+        classpath = CompositeFileSystemSnapshot.of(jars);
+
+        executor = parallelism > 1 ? Executors.newFixedThreadPool(parallelism) : null;
+        strategy = ClasspathFingerprintingStrategy.runtimeClasspath(
+            ResourceFilter.FILTER_NOTHING,
+            ResourceEntryFilter.FILTER_NOTHING,
+            ImmutableMap.of(),
+            new RuntimeClasspathResourceHasher(),
+            NO_CACHE,
+            Interners.newStrongInterner(),
+            executor
+        );
+    }
+
+    private static void writeJar(File jar, int entryCount, Random random) throws IOException {
+        try (ZipOutputStream output = new ZipOutputStream(new FileOutputStream(jar))) {
+            for (int i = 0; i < entryCount; i++) {
+                output.putNextEntry(new ZipEntry("org/example/pkg" + (i % 20) + "/Class" + i + ".class"));
+                // Class files are compressible, so repeat a random block a few times
+                byte[] block = new byte[64 + random.nextInt(512)];
+                random.nextBytes(block);
+                int repeats = 1 + random.nextInt(8);
+                for (int j = 0; j < repeats; j++) {
+                    output.write(block);
+                }
+                output.closeEntry();
+            }
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void deleteClasspath() throws IOException {
+        if (executor != null) {
+            executor.shutdownNow();
+        }
+        FileUtils.deleteDirectory(classpathDir);
+    }
+
+    @Benchmark
+    public Map<String, FileSystemLocationFingerprint> fingerprintClasspath() {
+        return strategy.collectFingerprints(classpath);
+    }
+}
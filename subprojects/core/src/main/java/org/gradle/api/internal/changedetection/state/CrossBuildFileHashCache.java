@@ -23,10 +23,13 @@
 import org.gradle.cache.PersistentIndexedCache;
 import org.gradle.cache.PersistentIndexedCacheParameters;
 import org.gradle.cache.internal.InMemoryCacheDecoratorFactory;
+import org.gradle.internal.hash.HashFunction;
+import org.gradle.internal.hash.Hashing;
 
 import javax.annotation.Nullable;
 import java.io.Closeable;
 import java.io.File;
+import java.util.Locale;
 
 import static org.gradle.cache.internal.filelock.LockOptionsBuilder.mode;
 
@@ -37,7 +40,7 @@ public class CrossBuildFileHashCache implements Closeable {
 
     public CrossBuildFileHashCache(@Nullable File cacheDir, CacheRepository repository, InMemoryCacheDecoratorFactory inMemoryCacheDecoratorFactory, Kind cacheKind) {
         this.inMemoryCacheDecoratorFactory = inMemoryCacheDecoratorFactory;
-        CacheBuilder cacheBuilder = cacheDir != null ? repository.cache(cacheDir) : repository.cache(cacheKind.cacheId);
+        CacheBuilder cacheBuilder = cacheDir != null ? repository.cache(cacheDir) : repository.cache(cacheKind.getCacheId());
         cache = cacheBuilder
             .withDisplayName(cacheKind.description)
             .withLockOptions(mode(FileLockManager.LockMode.OnDemand)) // Lock on demand
@@ -56,18 +59,31 @@ public void close() {
     }
 
     public enum Kind {
-        FILE_HASHES("fileHashes", "file hash cache"),
-        CHECKSUMS("checksums", "checksums cache");
+        FILE_HASHES("fileHashes", "file hash cache", true),
+        CHECKSUMS("checksums", "checksums cache", false);
         private final String cacheId;
         private final String description;
+        private final boolean usesDefaultHashFunction;
 
-        Kind(String cacheId, String description) {
+        Kind(String cacheId, String description, boolean usesDefaultHashFunction) {
             this.cacheId = cacheId;
             this.description = description;
+            this.usesDefaultHashFunction = usesDefaultHashFunction;
         }
 
+        /**
+         * Returns the id of the cache. Caches storing hashes created by the default hash function
+         * use a separate cache per hash function, so that switching functions never mixes hashes.
+         */
         public String getCacheId() {
-            return cacheId;
+            if (!usesDefaultHashFunction) {
+                return cacheId;
+            }
+            HashFunction hashFunction = Hashing.defaultFunction();
+            if (hashFunction == Hashing.md5()) {
+                return cacheId;
+            }
+            return cacheId + "-" + hashFunction.getAlgorithm().toLowerCase(Locale.ROOT);
         }
 
         public String getDescription() {
@@ -31,9 +31,10 @@
 import org.gradle.caching.internal.controller.impl.DefaultBuildCacheCommandFactory;
 import org.gradle.caching.internal.origin.OriginMetadataFactory;
 import org.gradle.caching.internal.packaging.BuildCacheEntryPacker;
+import org.gradle.caching.internal.packaging.impl.BuildCacheEntryCompression;
+import org.gradle.caching.internal.packaging.impl.CompressingBuildCacheEntryPacker;
 import org.gradle.caching.internal.packaging.impl.DefaultTarPackerFileSystemSupport;
 import org.gradle.caching.internal.packaging.impl.FilePermissionAccess;
-import org.gradle.caching.internal.packaging.impl.GZipBuildCacheEntryPacker;
 import org.gradle.caching.internal.packaging.impl.TarBuildCacheEntryPacker;
 import org.gradle.caching.internal.packaging.impl.TarPackerFileSystemSupport;
 import org.gradle.caching.internal.services.BuildCacheControllerFactory;
@@ -58,6 +59,7 @@
 import org.gradle.internal.service.ServiceRegistry;
 import org.gradle.internal.service.scopes.AbstractPluginServiceRegistry;
 import org.gradle.internal.vfs.FileSystemAccess;
+import org.gradle.internal.work.ParallelFeatureExecutors;
 import org.gradle.util.GradleVersion;
 import org.gradle.util.Path;
 
@@ -119,10 +121,12 @@ BuildCacheEntryPacker createResultPacker(
                 TarPackerFileSystemSupport fileSystemSupport,
                 FileSystem fileSystem,
                 StreamHasher fileHasher,
-                StringInterner stringInterner
+                StringInterner stringInterner,
+                ParallelFeatureExecutors parallelFeatureExecutors
             ) {
-                return new GZipBuildCacheEntryPacker(
-                    new TarBuildCacheEntryPacker(fileSystemSupport, new FilePermissionsAccessAdapter(fileSystem), fileHasher, stringInterner));
+                return new CompressingBuildCacheEntryPacker(
+                    new TarBuildCacheEntryPacker(fileSystemSupport, new FilePermissionsAccessAdapter(fileSystem), fileHasher, stringInterner, parallelFeatureExecutors.getExecutor(ParallelFeatureExecutors.Feature.BUILD_CACHE_ENTRY_PACKING)),
+                    BuildCacheEntryCompression.fromSystemProperty());
             }
 
             OriginMetadataFactory createOriginMetadataFactory(
@@ -69,6 +69,7 @@
 import org.gradle.internal.service.DefaultServiceRegistry;
 import org.gradle.internal.snapshot.ValueSnapshotter;
 import org.gradle.internal.work.AsyncWorkTracker;
+import org.gradle.internal.work.ParallelFeatureExecutors;
 import org.gradle.normalization.internal.InputNormalizationHandlerInternal;
 
 import java.util.List;
@@ -173,14 +174,15 @@ TaskExecuter createTaskExecuter(
     }
 
     // Overrides the global ClasspathFingerPrinter, currently need to have the parent parameter
-    ClasspathFingerprinter createClasspathFingerprinter(ClasspathFingerprinter parent, ResourceSnapshotterCacheService resourceSnapshotterCacheService, FileCollectionSnapshotter fileCollectionSnapshotter, StringInterner stringInterner, InputNormalizationHandlerInternal inputNormalizationHandler) {
+    ClasspathFingerprinter createClasspathFingerprinter(ClasspathFingerprinter parent, ResourceSnapshotterCacheService resourceSnapshotterCacheService, FileCollectionSnapshotter fileCollectionSnapshotter, StringInterner stringInterner, InputNormalizationHandlerInternal inputNormalizationHandler, ParallelFeatureExecutors parallelFeatureExecutors) {
         return new DefaultClasspathFingerprinter(
             resourceSnapshotterCacheService,
             fileCollectionSnapshotter,
             inputNormalizationHandler.getRuntimeClasspath().getClasspathResourceFilter(),
             inputNormalizationHandler.getRuntimeClasspath().getManifestAttributeResourceEntryFilter(),
             inputNormalizationHandler.getRuntimeClasspath().getPropertiesFileFilters(),
-            stringInterner
+            stringInterner,
+            parallelFeatureExecutors.getExecutor(ParallelFeatureExecutors.Feature.CLASSPATH_HASHING)
         );
     }
 
@@ -190,9 +192,11 @@ FileCollectionFingerprinterRegistry createFileCollectionFingerprinterRegistry(Li
 
     InputFingerprinter createInputFingerprinter(
         FileCollectionFingerprinterRegistry fingerprinterRegistry,
-        ValueSnapshotter valueSnapshotter
+        ValueSnapshotter valueSnapshotter,
+        BuildOperationExecutor buildOperationExecutor,
+        ParallelFeatureExecutors parallelFeatureExecutors
     ) {
-        return new DefaultInputFingerprinter(fingerprinterRegistry, valueSnapshotter);
+        return new DefaultInputFingerprinter(fingerprinterRegistry, valueSnapshotter, buildOperationExecutor, parallelFeatureExecutors.getExecutor(ParallelFeatureExecutors.Feature.INPUT_FINGERPRINTING));
     }
 
     TaskExecutionModeResolver createExecutionModeResolver(
@@ -36,6 +36,9 @@
 import org.gradle.internal.logging.text.StyledTextOutput;
 import org.gradle.internal.resources.ResourceLock;
 import org.gradle.internal.resources.ResourceLockState;
+import org.gradle.internal.time.Clock;
+import org.gradle.internal.time.Time;
+import org.gradle.internal.time.TimeFormatting;
 import org.gradle.internal.work.WorkerLeaseRegistry;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -47,15 +50,19 @@
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.Comparator;
 import java.util.Deque;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.IdentityHashMap;
 import java.util.Iterator;
 import java.util.LinkedHashSet;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
+import java.util.NavigableSet;
 import java.util.Set;
+import java.util.TreeSet;
 import java.util.stream.Stream;
 
 import static com.google.common.collect.Lists.newLinkedList;
@@ -70,7 +77,21 @@ public class DefaultExecutionPlan implements ExecutionPlan {
 
     private final Set<Node> entryNodes = new LinkedHashSet<>();
     private final NodeMapping nodeMapping = new NodeMapping();
-    private final List<Node> executionQueue = new LinkedList<>();
+    private final Set<Node> executionQueue = new LinkedHashSet<>();
+    private final Map<Node, Integer> queuePositions = new IdentityHashMap<>();
+    /**
+     * The estimated duration of the longest path from each node of the execution queue to the end of the build,
+     * based on how long the nodes took in previous builds. Only estimated when projects are executed in parallel.
+     */
+    private final Map<Node, Long> remainingPathDurations = new IdentityHashMap<>();
+    /**
+     * The nodes of the execution queue which may be ready to execute, with the nodes on the longest remaining path first, and otherwise in execution queue order.
+     * Nodes are added when their dependencies complete or when they are enforced, so that {@link #selectNext} does not need to scan the whole queue.
+     */
+    private final NavigableSet<Node> readyNodes = new TreeSet<>(
+        Comparator.comparingLong(this::getRemainingPathDuration).reversed().thenComparingInt(queuePositions::get)
+    );
+    private final Map<Node, NodeTiming> nodeTimings = new IdentityHashMap<>();
     private final Set<ResourceLock> projectLocks = new HashSet<>();
     private final FailureCollector failureCollector = new FailureCollector();
     private final String displayName;
@@ -79,6 +100,9 @@ public class DefaultExecutionPlan implements ExecutionPlan {
     private final NodeValidator nodeValidator;
     private final ExecutionNodeAccessHierarchy outputHierarchy;
     private final ExecutionNodeAccessHierarchy destroyableHierarchy;
+    private final NodeDurationHistory durationHistory;
+    private final Clock clock;
+    private final boolean parallelProjectExecution;
     private Spec<? super Task> filter = Specs.satisfyAll();
 
     private boolean invalidNodeRunning;
@@ -100,6 +124,20 @@ public DefaultExecutionPlan(
         NodeValidator nodeValidator,
         ExecutionNodeAccessHierarchy outputHierarchy,
         ExecutionNodeAccessHierarchy destroyableHierarchy
+    ) {
+        this(displayName, taskNodeFactory, dependencyResolver, nodeValidator, outputHierarchy, destroyableHierarchy, NodeDurationHistory.NONE, Time.clock(), false);
+    }
+
+    public DefaultExecutionPlan(
+        String displayName,
+        TaskNodeFactory taskNodeFactory,
+        TaskDependencyResolver dependencyResolver,
+        NodeValidator nodeValidator,
+        ExecutionNodeAccessHierarchy outputHierarchy,
+        ExecutionNodeAccessHierarchy destroyableHierarchy,
+        NodeDurationHistory durationHistory,
+        Clock clock,
+        boolean parallelProjectExecution
     ) {
         this.displayName = displayName;
         this.taskNodeFactory = taskNodeFactory;
@@ -107,6 +145,9 @@ public DefaultExecutionPlan(
         this.nodeValidator = nodeValidator;
         this.outputHierarchy = outputHierarchy;
         this.destroyableHierarchy = destroyableHierarchy;
+        this.durationHistory = durationHistory;
+        this.clock = clock;
+        this.parallelProjectExecution = parallelProjectExecution;
     }
 
     @Override
@@ -350,16 +391,47 @@ public NodeInVisitingSegment apply(Node node) {
                 }
             }
         }
-        executionQueue.clear();
+        clearExecutionQueue();
         dependencyResolver.clear();
         nodeMapping.removeIf(Node::requiresMonitoring);
-        executionQueue.addAll(nodeMapping);
+        for (Node node : nodeMapping) {
+            queuePositions.put(node, executionQueue.size());
+            executionQueue.add(node);
+        }
+        estimateRemainingPathDurations();
         for (Node node : executionQueue) {
-            maybeNodesReady |= node.updateAllDependenciesComplete() && node.isReady();
+            if (node.updateAllDependenciesComplete()) {
+                maybeReady(node);
+            }
         }
         this.dependenciesWhichRequireMonitoring.addAll(dependenciesWhichRequireMonitoring);
     }
 
+    private void estimateRemainingPathDurations() {
+        if (!parallelProjectExecution) {
+            // Without parallel project execution only a single project lock is available, so starting the longest path first gains nothing
+            return;
+        }
+        Map<Node, Long> previousDurations = durationHistory.getPreviousDurations(executionQueue);
+        if (previousDurations.isEmpty()) {
+            return;
+        }
+        // Nodes in the execution queue come after all of their dependencies, so visit the queue backwards to see all dependents of a node first
+        List<Node> nodes = new ArrayList<>(executionQueue);
+        for (int i = nodes.size() - 1; i >= 0; i--) {
+            Node node = nodes.get(i);
+            long longestDependentPath = 0;
+            for (Node dependent : node.getDependencyPredecessors()) {
+                longestDependentPath = Math.max(longestDependentPath, getRemainingPathDuration(dependent));
+            }
+            remainingPathDurations.put(node, previousDurations.getOrDefault(node, 0L) + longestDependentPath);
+        }
+    }
+
+    private long getRemainingPathDuration(Node node) {
+        return remainingPathDurations.getOrDefault(node, 0L);
+    }
+
     private void maybeRemoveProcessedShouldRunAfterEdge(Deque<GraphEdge> walkedShouldRunAfterEdges, Node node) {
         GraphEdge edge = walkedShouldRunAfterEdges.peek();
         if (edge != null && edge.to.equals(node)) {
@@ -491,11 +563,12 @@ private void onOrderingCycle(Node successor, Node currentNode) {
 
     @Override
     public void clear() {
+        recordNodeDurations();
         taskNodeFactory.clear();
         dependencyResolver.clear();
         entryNodes.clear();
         nodeMapping.clear();
-        executionQueue.clear();
+        clearExecutionQueue();
         projectLocks.clear();
         failureCollector.clearFailures();
         producedButNotYetConsumed.clear();
@@ -568,11 +641,14 @@ public Node selectNext(WorkerLeaseRegistry.WorkerLease workerLease, ResourceLock
         if (!maybeNodesReady) {
             return null;
         }
-        Iterator<Node> iterator = executionQueue.iterator();
+        Iterator<Node> iterator = readyNodes.iterator();
         boolean foundReadyNode = false;
         while (iterator.hasNext()) {
             Node node = iterator.next();
-            if (node.isReady() && node.allDependenciesComplete()) {
+            if (!node.isReady() || !node.allDependenciesComplete()) {
+                // Will be added back when its dependencies complete or when it is enforced
+                iterator.remove();
+            } else {
                 foundReadyNode = true;
                 MutationInfo mutations = getResolvedMutationInfo(node);
 
@@ -590,6 +666,7 @@ public Node selectNext(WorkerLeaseRegistry.WorkerLease workerLease, ResourceLock
                     node.skipExecution(this::recordNodeCompleted);
                 }
                 iterator.remove();
+                executionQueue.remove(node);
                 return node;
             }
         }
@@ -620,10 +697,27 @@ private boolean tryAcquireLocksForNode(Node node, WorkerLeaseRegistry.WorkerLeas
 
     private void updateAllDependenciesCompleteForPredecessors(Node node) {
         for (Node predecessor : node.getAllPredecessors()) {
-            maybeNodesReady |= predecessor.updateAllDependenciesComplete() && predecessor.isReady();
+            if (predecessor.updateAllDependenciesComplete()) {
+                maybeReady(predecessor);
+            }
+        }
+    }
+
+    private void maybeReady(Node node) {
+        if (node.isReady() && queuePositions.containsKey(node)) {
+            readyNodes.add(node);
+            maybeNodesReady = true;
         }
     }
 
+    private void clearExecutionQueue() {
+        readyNodes.clear();
+        executionQueue.clear();
+        queuePositions.clear();
+        remainingPathDurations.clear();
+        nodeTimings.clear();
+    }
+
     private boolean tryLockProjectFor(Node node) {
         ResourceLock toLock = node.getProjectToLock();
         if (toLock != null) {
@@ -753,6 +847,7 @@ private boolean doesConsumerDependOnDestroyer(Node consumer, Node destroyer) {
 
     private void recordNodeExecutionStarted(Node node) {
         runningNodes.add(node);
+        nodeTimings.put(node, new NodeTiming(clock.getCurrentTime()));
     }
 
     private void recordNodeCompleted(Node node) {
@@ -786,6 +881,10 @@ public void finishedExecuting(Node node) {
                 }
 
                 runningNodes.remove(node);
+                NodeTiming timing = nodeTimings.get(node);
+                if (timing != null) {
+                    timing.finish(clock.getCurrentTime());
+                }
                 node.finishExecution(this::recordNodeCompleted);
             } else {
                 LOGGER.debug("Already completed node {} reported as finished executing", node);
@@ -797,7 +896,7 @@ public void finishedExecuting(Node node) {
         }
     }
 
-    private static void enforceFinalizers(Node node) {
+    private void enforceFinalizers(Node node) {
         for (Node finalizerNode : node.getFinalizers()) {
             if (finalizerNode.isRequired() || finalizerNode.isMustNotRun()) {
                 enforceWithDependencies(finalizerNode);
@@ -805,7 +904,7 @@ private static void enforceFinalizers(Node node) {
         }
     }
 
-    private static void enforceWithDependencies(Node node) {
+    private void enforceWithDependencies(Node node) {
         Set<Node> enforcedNodes = new HashSet<>();
 
         Deque<Node> candidates = new ArrayDeque<>();
@@ -820,9 +919,15 @@ private static void enforceWithDependencies(Node node) {
 
                 if (candidate.isMustNotRun() || candidate.isRequired()) {
                     candidate.enforceRun();
+                    if (candidate.allDependenciesComplete()) {
+                        maybeReady(candidate);
+                    }
                     // Completed changed from true to false - inform all nodes depending on this one.
                     for (Node predecessor : candidate.getAllPredecessors()) {
                         predecessor.forceAllDependenciesCompleteUpdate();
+                        if (predecessor.allDependenciesComplete()) {
+                            maybeReady(predecessor);
+                        }
                     }
                 }
             }
@@ -906,10 +1011,16 @@ public boolean allNodesComplete() {
 
     @Override
     public boolean hasNodesRemaining() {
-        for (Node node : executionQueue) {
+        Iterator<Node> iterator = executionQueue.iterator();
+        while (iterator.hasNext()) {
+            Node node = iterator.next();
             if (!node.isComplete()) {
                 return true;
             }
+            if (!node.isMustNotRun()) {
+                // Other than finalizers that must not run, completed nodes are never enforced, so there is no need to look at them again
+                iterator.remove();
+            }
         }
         return !runningNodes.isEmpty();
     }
@@ -919,6 +1030,92 @@ public int size() {
         return nodeMapping.getNumberOfPublicNodes();
     }
 
+    private void recordNodeDurations() {
+        Map<Node, Long> durations = new IdentityHashMap<>();
+        Node lastFinished = null;
+        for (Map.Entry<Node, NodeTiming> entry : nodeTimings.entrySet()) {
+            NodeTiming timing = entry.getValue();
+            if (timing.isFinished()) {
+                durations.put(entry.getKey(), timing.getDuration());
+                if (lastFinished == null || timing.end > nodeTimings.get(lastFinished).end) {
+                    lastFinished = entry.getKey();
+                }
+            }
+        }
+        if (lastFinished == null) {
+            return;
+        }
+        if (LOGGER.isInfoEnabled()) {
+            reportCriticalPath(lastFinished);
+        }
+        durationHistory.recordDurations(durations);
+    }
+
+    /**
+     * Compares the longest path predicted from previous builds with the chain of nodes which determined when the last node finished.
+     */
+    private void reportCriticalPath(Node lastFinished) {
+        Node firstOnPredictedPath = null;
+        // Executed nodes have been removed from the execution queue
+        for (Node node : queuePositions.keySet()) {
+            if (firstOnPredictedPath == null || getRemainingPathDuration(node) > getRemainingPathDuration(firstOnPredictedPath)) {
+                firstOnPredictedPath = node;
+            }
+        }
+        if (firstOnPredictedPath != null && getRemainingPathDuration(firstOnPredictedPath) > 0) {
+            List<Node> predictedPath = new ArrayList<>();
+            for (Node node = firstOnPredictedPath; node != null; ) {
+                predictedPath.add(node);
+                Node next = null;
+                for (Node dependent : node.getDependencyPredecessors()) {
+                    if (queuePositions.containsKey(dependent) && (next == null || getRemainingPathDuration(dependent) > getRemainingPathDuration(next))) {
+                        next = dependent;
+                    }
+                }
+                node = next;
+            }
+            LOGGER.info("Predicted critical path of {} took {}: {}", displayName, TimeFormatting.formatDurationTerse(getRemainingPathDuration(firstOnPredictedPath)), predictedPath);
+        }
+
+        Deque<Node> actualPath = new ArrayDeque<>();
+        for (Node node = lastFinished; node != null; ) {
+            actualPath.addFirst(node);
+            Node previous = null;
+            for (Node dependency : node.getDependencySuccessors()) {
+                NodeTiming timing = nodeTimings.get(dependency);
+                if (timing != null && timing.isFinished() && (previous == null || timing.end > nodeTimings.get(previous).end)) {
+                    previous = dependency;
+                }
+            }
+            node = previous;
+        }
+        long actualDuration = nodeTimings.get(lastFinished).end - nodeTimings.get(actualPath.getFirst()).start;
+        LOGGER.info("Actual critical path of {} took {}: {}", displayName, TimeFormatting.formatDurationTerse(actualDuration), actualPath);
+    }
+
+    private static class NodeTiming {
+        private final long start;
+        private long end;
+        private boolean finished;
+
+        NodeTiming(long start) {
+            this.start = start;
+        }
+
+        void finish(long end) {
+            this.end = end;
+            this.finished = true;
+        }
+
+        boolean isFinished() {
+            return finished;
+        }
+
+        long getDuration() {
+            return end - start;
+        }
+    }
+
     private static class GraphEdge {
         private final Node from;
         private final Node to;
@@ -0,0 +1,149 @@
+/*
+ * Copyright 2021 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.execution.plan;
+
+import org.gradle.api.internal.tasks.TaskExecutionOutcome;
+import org.gradle.api.internal.tasks.TaskStateInternal;
+import org.gradle.cache.PersistentCache;
+import org.gradle.cache.PersistentIndexedCache;
+import org.gradle.cache.PersistentIndexedCacheParameters;
+import org.gradle.internal.serialize.AbstractSerializer;
+import org.gradle.internal.serialize.BaseSerializerFactory;
+import org.gradle.internal.serialize.Decoder;
+import org.gradle.internal.serialize.Encoder;
+import org.gradle.internal.serialize.MapSerializer;
+import org.gradle.internal.time.Clock;
+
+import javax.annotation.Nullable;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * Stores the duration of task executions by task identity path, next to the execution history.
+ *
+ * The durations of all tasks of a build are kept in a single entry, so that they are read once per build
+ * and the durations of tasks which have not been part of a build for a week can be dropped.
+ * Only tasks which actually ran their actions update their duration, so an up-to-date or from-cache task keeps the duration of its last real execution.
+ */
+public class DefaultNodeDurationHistory implements NodeDurationHistory {
+    private static final long MAX_AGE_DAYS = 7;
+
+    private final PersistentCache cache;
+    private final PersistentIndexedCache<String, Map<String, RecordedDuration>> durations;
+    private final String buildPath;
+    private final Clock clock;
+
+    public DefaultNodeDurationHistory(Supplier<PersistentCache> cache, String buildPath, Clock clock) {
+        this.cache = cache.get();
+        this.durations = this.cache.createCache(
+            PersistentIndexedCacheParameters.of("nodeDurations", String.class, new MapSerializer<>(BaseSerializerFactory.STRING_SERIALIZER, new RecordedDurationSerializer()))
+        );
+        this.buildPath = buildPath;
+        this.clock = clock;
+    }
+
+    @Override
+    public Map<Node, Long> getPreviousDurations(Collection<Node> nodes) {
+        Map<String, RecordedDuration> recorded = cache.useCache(() -> durations.getIfPresent(buildPath));
+        Map<Node, Long> result = new IdentityHashMap<>();
+        if (recorded == null) {
+            return result;
+        }
+        for (Node node : nodes) {
+            String key = keyFor(node);
+            if (key != null) {
+                RecordedDuration duration = recorded.get(key);
+                if (duration != null) {
+                    result.put(node, duration.duration);
+                }
+            }
+        }
+        return result;
+    }
+
+    @Override
+    public void recordDurations(Map<Node, Long> durations) {
+        long now = clock.getCurrentTime();
+        long oldestToKeep = now - TimeUnit.DAYS.toMillis(MAX_AGE_DAYS);
+        cache.useCache(() -> {
+            Map<String, RecordedDuration> recorded = new HashMap<>();
+            Map<String, RecordedDuration> previous = this.durations.getIfPresent(buildPath);
+            if (previous != null) {
+                previous.forEach((key, duration) -> {
+                    if (duration.lastSeen >= oldestToKeep) {
+                        recorded.put(key, duration);
+                    }
+                });
+            }
+            durations.forEach((node, duration) -> {
+                String key = keyFor(node);
+                if (key == null) {
+                    return;
+                }
+                if (hasExecutedActions((LocalTaskNode) node)) {
+                    recorded.put(key, new RecordedDuration(duration, now));
+                } else {
+                    RecordedDuration previousDuration = previous == null ? null : previous.get(key);
+                    if (previousDuration != null) {
+                        recorded.put(key, new RecordedDuration(previousDuration.duration, now));
+                    }
+                }
+            });
+            this.durations.put(buildPath, recorded);
+        });
+    }
+
+    @Nullable
+    private static String keyFor(Node node) {
+        if (node instanceof LocalTaskNode) {
+            return ((LocalTaskNode) node).getTask().getIdentityPath().getPath();
+        }
+        return null;
+    }
+
+    private static boolean hasExecutedActions(LocalTaskNode node) {
+        TaskStateInternal state = node.getTask().getState();
+        return state.getOutcome() == TaskExecutionOutcome.EXECUTED && state.getFailure() == null;
+    }
+
+    private static class RecordedDuration {
+        private final long duration;
+        private final long lastSeen;
+
+        RecordedDuration(long duration, long lastSeen) {
+            this.duration = duration;
+            this.lastSeen = lastSeen;
+        }
+    }
+
+    private static class RecordedDurationSerializer extends AbstractSerializer<RecordedDuration> {
+        @Override
+        public RecordedDuration read(Decoder decoder) throws Exception {
+            return new RecordedDuration(decoder.readSmallLong(), decoder.readLong());
+        }
+
+        @Override
+        public void write(Encoder encoder, RecordedDuration value) throws Exception {
+            encoder.writeSmallLong(value.duration);
+            encoder.writeLong(value.lastSeen);
+        }
+    }
+}
@@ -0,0 +1,48 @@
+/*
+ * Copyright 2021 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.execution.plan;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Map;
+
+/**
+ * Remembers how long nodes took to execute, so that the nodes on the longest remaining path of a later build can be started first.
+ */
+public interface NodeDurationHistory {
+    NodeDurationHistory NONE = new NodeDurationHistory() {
+        @Override
+        public Map<Node, Long> getPreviousDurations(Collection<Node> nodes) {
+            return Collections.emptyMap();
+        }
+
+        @Override
+        public void recordDurations(Map<Node, Long> durations) {
+        }
+    };
+
+    /**
+     * Returns the duration in milliseconds of the previous execution of those of the given nodes which have been executed before.
+     */
+    Map<Node, Long> getPreviousDurations(Collection<Node> nodes);
+
+    /**
+     * Records the duration in milliseconds of the given nodes, which have been started by the execution plan.
+     * Implementations may ignore nodes which did not do any work, for example because they were up-to-date.
+     */
+    void recordDurations(Map<Node, Long> durations);
+}
@@ -27,9 +27,16 @@
 import org.gradle.internal.fingerprint.classpath.ClasspathFingerprinter;
 import org.gradle.internal.fingerprint.impl.AbstractFileCollectionFingerprinter;
 
+import javax.annotation.Nullable;
 import java.util.Map;
+import java.util.concurrent.Executor;
 
 public class DefaultClasspathFingerprinter extends AbstractFileCollectionFingerprinter implements ClasspathFingerprinter {
+    /**
+     * When set to true, entries of jars on runtime classpaths are hashed by the CRC-32 checksum and size stored in the jar instead of by their content.
+     */
+    public static final String ZIP_ENTRY_CHECKSUMS_PROPERTY = "org.gradle.internal.fingerprint.classpath.zipEntryChecksums";
+
     public DefaultClasspathFingerprinter(
         ResourceSnapshotterCacheService cacheService,
         FileCollectionSnapshotter fileCollectionSnapshotter,
@@ -37,15 +44,28 @@ public DefaultClasspathFingerprinter(
         ResourceEntryFilter manifestAttributeResourceEntryFilter,
         Map<String, ResourceEntryFilter> propertiesFileFilters,
         StringInterner stringInterner
+    ) {
+        this(cacheService, fileCollectionSnapshotter, classpathResourceFilter, manifestAttributeResourceEntryFilter, propertiesFileFilters, stringInterner, null);
+    }
+
+    public DefaultClasspathFingerprinter(
+        ResourceSnapshotterCacheService cacheService,
+        FileCollectionSnapshotter fileCollectionSnapshotter,
+        ResourceFilter classpathResourceFilter,
+        ResourceEntryFilter manifestAttributeResourceEntryFilter,
+        Map<String, ResourceEntryFilter> propertiesFileFilters,
+        StringInterner stringInterner,
+        @Nullable Executor zipHashingExecutor
     ) {
         super(
             ClasspathFingerprintingStrategy.runtimeClasspath(
                 classpathResourceFilter,
                 manifestAttributeResourceEntryFilter,
                 propertiesFileFilters,
-                new RuntimeClasspathResourceHasher(),
+                new RuntimeClasspathResourceHasher(Boolean.getBoolean(ZIP_ENTRY_CHECKSUMS_PROPERTY)),
                 cacheService,
-                stringInterner
+                stringInterner,
+                zipHashingExecutor
             ),
             fileCollectionSnapshotter
         );
@@ -26,12 +26,20 @@
 import org.gradle.internal.fingerprint.classpath.CompileClasspathFingerprinter;
 import org.gradle.internal.fingerprint.impl.AbstractFileCollectionFingerprinter;
 
+import javax.annotation.Nullable;
+import java.util.concurrent.Executor;
+
 public class DefaultCompileClasspathFingerprinter extends AbstractFileCollectionFingerprinter implements CompileClasspathFingerprinter {
     public DefaultCompileClasspathFingerprinter(ResourceSnapshotterCacheService cacheService, FileCollectionSnapshotter fileCollectionSnapshotter, StringInterner stringInterner) {
+        this(cacheService, fileCollectionSnapshotter, stringInterner, null);
+    }
+
+    public DefaultCompileClasspathFingerprinter(ResourceSnapshotterCacheService cacheService, FileCollectionSnapshotter fileCollectionSnapshotter, StringInterner stringInterner, @Nullable Executor zipHashingExecutor) {
         super(ClasspathFingerprintingStrategy.compileClasspath(
             new CachingResourceHasher(new AbiExtractingClasspathResourceHasher(), cacheService),
             cacheService,
-            stringInterner
+            stringInterner,
+            zipHashingExecutor
         ), fileCollectionSnapshotter);
     }
 
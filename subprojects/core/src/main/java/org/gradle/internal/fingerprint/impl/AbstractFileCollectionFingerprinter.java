@@ -27,6 +27,8 @@
 import org.gradle.internal.snapshot.FileSystemLocationSnapshot;
 import org.gradle.internal.snapshot.FileSystemSnapshot;
 
+import java.util.function.Supplier;
+
 /**
  * Responsible for calculating a {@link FileCollectionFingerprint} for a particular {@link FileCollection}.
  */
@@ -47,6 +49,11 @@ public CurrentFileCollectionFingerprint fingerprint(FileCollection files) {
         return DefaultCurrentFileCollectionFingerprint.from(roots, fingerprintingStrategy);
     }
 
+    @Override
+    public Supplier<FileSystemSnapshot> resolve(FileCollection files) {
+        return fileCollectionSnapshotter.resolve(files);
+    }
+
     @Override
     public CurrentFileCollectionFingerprint fingerprint(FileSystemSnapshot roots) {
         return DefaultCurrentFileCollectionFingerprint.from(roots, fingerprintingStrategy);
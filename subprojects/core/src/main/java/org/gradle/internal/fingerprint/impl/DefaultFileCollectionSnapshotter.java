@@ -33,6 +33,8 @@
 import java.io.File;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
 
 public class DefaultFileCollectionSnapshotter implements FileCollectionSnapshotter {
     private final FileSystemAccess fileSystemAccess;
@@ -47,46 +49,72 @@ public DefaultFileCollectionSnapshotter(FileSystemAccess fileSystemAccess, Gener
 
     @Override
     public FileSystemSnapshot snapshot(FileCollection fileCollection) {
-        SnapshottingVisitor visitor = new SnapshottingVisitor();
+        return resolve(fileCollection).get();
+    }
+
+    @Override
+    public Supplier<FileSystemSnapshot> resolve(FileCollection fileCollection) {
+        ResolvingVisitor visitor = new ResolvingVisitor();
         ((FileCollectionInternal) fileCollection).visitStructure(visitor);
-        return CompositeFileSystemSnapshot.of(visitor.getRoots());
+        List<Consumer<List<FileSystemSnapshot>>> pendingRoots = visitor.getPendingRoots();
+        return () -> {
+            List<FileSystemSnapshot> roots = new ArrayList<>();
+            for (Consumer<List<FileSystemSnapshot>> pendingRoot : pendingRoots) {
+                pendingRoot.accept(roots);
+            }
+            return CompositeFileSystemSnapshot.of(roots);
+        };
     }
 
-    private class SnapshottingVisitor implements FileCollectionStructureVisitor {
-        private final List<FileSystemSnapshot> roots = new ArrayList<>();
+    /**
+     * Records how to snapshot each root of the visited collection, without reading the file system yet.
+     */
+    private class ResolvingVisitor implements FileCollectionStructureVisitor {
+        private final List<Consumer<List<FileSystemSnapshot>>> pendingRoots = new ArrayList<>();
 
         @Override
         public void visitCollection(FileCollectionInternal.Source source, Iterable<File> contents) {
+            List<String> locations = new ArrayList<>();
             for (File file : contents) {
-                fileSystemAccess.read(file.getAbsolutePath(), roots::add);
+                locations.add(file.getAbsolutePath());
             }
+            pendingRoots.add(roots -> {
+                for (String location : locations) {
+                    fileSystemAccess.read(location, roots::add);
+                }
+            });
         }
 
         @Override
         public void visitGenericFileTree(FileTreeInternal fileTree, FileSystemMirroringFileTree sourceTree) {
-            roots.add(genericFileTreeSnapshotter.snapshotFileTree(fileTree));
+            // The contents of a generic tree are only known by visiting it, which resolves the tree
+            FileSystemSnapshot snapshot = genericFileTreeSnapshotter.snapshotFileTree(fileTree);
+            pendingRoots.add(roots -> roots.add(snapshot));
         }
 
         @Override
         public void visitFileTree(File root, PatternSet patterns, FileTreeInternal fileTree) {
-            fileSystemAccess.read(
-                root.getAbsolutePath(),
-                new PatternSetSnapshottingFilter(patterns, stat),
+            String location = root.getAbsolutePath();
+            PatternSetSnapshottingFilter filter = new PatternSetSnapshottingFilter(patterns, stat);
+            pendingRoots.add(roots -> fileSystemAccess.read(
+                location,
+                filter,
                 snapshot -> {
                     if (snapshot.getType() != FileType.Missing) {
                         roots.add(snapshot);
                     }
                 }
-            );
+            ));
         }
 
         @Override
         public void visitFileTreeBackedByFile(File file, FileTreeInternal fileTree, FileSystemMirroringFileTree sourceTree) {
-            fileSystemAccess.read(file.getAbsolutePath(), roots::add);
+            String location = file.getAbsolutePath();
+            pendingRoots.add(roots -> fileSystemAccess.read(location, roots::add));
         }
 
-        public List<FileSystemSnapshot> getRoots() {
-            return roots;
+        public List<Consumer<List<FileSystemSnapshot>>> getPendingRoots() {
+            return pendingRoots;
         }
     }
 }
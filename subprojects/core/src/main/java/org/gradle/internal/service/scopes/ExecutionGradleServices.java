@@ -16,6 +16,7 @@
 package org.gradle.internal.service.scopes;
 
 import org.gradle.api.internal.DocumentationRegistry;
+import org.gradle.api.internal.GradleInternal;
 import org.gradle.api.internal.cache.StringInterner;
 import org.gradle.api.internal.changedetection.state.DefaultExecutionHistoryCacheAccess;
 import org.gradle.api.invocation.Gradle;
@@ -27,7 +28,9 @@
 import org.gradle.caching.internal.controller.BuildCacheCommandFactory;
 import org.gradle.caching.internal.controller.BuildCacheController;
 import org.gradle.concurrent.ParallelismConfiguration;
+import org.gradle.execution.plan.DefaultNodeDurationHistory;
 import org.gradle.execution.plan.DefaultPlanExecutor;
+import org.gradle.execution.plan.NodeDurationHistory;
 import org.gradle.execution.plan.PlanExecutor;
 import org.gradle.initialization.BuildCancellationToken;
 import org.gradle.internal.concurrent.ExecutorFactory;
@@ -75,6 +78,7 @@
 import org.gradle.internal.resources.ResourceLockCoordinationService;
 import org.gradle.internal.resources.SharedResourceLeaseRegistry;
 import org.gradle.internal.scopeids.id.BuildInvocationScopeId;
+import org.gradle.internal.time.Clock;
 import org.gradle.internal.vfs.VirtualFileSystem;
 import org.gradle.internal.work.WorkerLeaseService;
 import org.gradle.util.GradleVersion;
@@ -100,6 +104,14 @@ ExecutionHistoryStore createExecutionHistoryStore(
         );
     }
 
+    NodeDurationHistory createNodeDurationHistory(
+        ExecutionHistoryCacheAccess executionHistoryCacheAccess,
+        GradleInternal gradle,
+        Clock clock
+    ) {
+        return new DefaultNodeDurationHistory(executionHistoryCacheAccess, gradle.getIdentityPath().getPath(), clock);
+    }
+
     OutputFilesRepository createOutputFilesRepository(CacheRepository cacheRepository, Gradle gradle, InMemoryCacheDecoratorFactory inMemoryCacheDecoratorFactory) {
         PersistentCache cacheAccess = cacheRepository
             .cache(gradle, "buildOutputCleanup")
@@ -89,6 +89,7 @@
 import org.gradle.internal.service.ServiceRegistration;
 import org.gradle.internal.service.ServiceRegistry;
 import org.gradle.internal.time.Clock;
+import org.gradle.internal.work.ParallelFeatureExecutors;
 import org.gradle.model.internal.inspect.MethodModelRuleExtractor;
 import org.gradle.model.internal.inspect.MethodModelRuleExtractors;
 import org.gradle.model.internal.inspect.ModelRuleExtractor;
@@ -143,6 +144,10 @@ ResourceLockCoordinationService createWorkerLeaseCoordinationService() {
         return new DefaultResourceLockCoordinationService();
     }
 
+    ParallelFeatureExecutors createParallelFeatureExecutors(ExecutorFactory executorFactory) {
+        return new ParallelFeatureExecutors(executorFactory);
+    }
+
     CurrentBuildOperationRef createCurrentBuildOperationRef() {
         return CurrentBuildOperationRef.instance();
     }
@@ -42,6 +42,7 @@
 import org.gradle.cache.internal.SplitFileContentCacheFactory;
 import org.gradle.composite.internal.IncludedBuildControllers;
 import org.gradle.composite.internal.IncludedBuildTaskGraph;
+import org.gradle.concurrent.ParallelismConfiguration;
 import org.gradle.configuration.ConfigurationTargetIdentifier;
 import org.gradle.configuration.internal.ListenerBuildOperationDecorator;
 import org.gradle.configuration.internal.UserCodeApplicationContext;
@@ -69,6 +70,7 @@
 import org.gradle.execution.plan.ExecutionNodeAccessHierarchies;
 import org.gradle.execution.plan.ExecutionPlan;
 import org.gradle.execution.plan.LocalTaskNodeExecutor;
+import org.gradle.execution.plan.NodeDurationHistory;
 import org.gradle.execution.plan.NodeExecutor;
 import org.gradle.execution.plan.PlanExecutor;
 import org.gradle.execution.plan.TaskDependencyResolver;
@@ -107,6 +109,7 @@
 import org.gradle.internal.service.DefaultServiceRegistry;
 import org.gradle.internal.service.ServiceRegistry;
 import org.gradle.internal.snapshot.CaseSensitivity;
+import org.gradle.internal.time.Clock;
 import org.gradle.internal.vfs.FileSystemAccess;
 
 import java.util.Arrays;
@@ -220,7 +223,10 @@ ExecutionPlan createExecutionPlan(
         GradleInternal gradleInternal,
         TaskNodeFactory taskNodeFactory,
         TaskDependencyResolver dependencyResolver,
-        ExecutionNodeAccessHierarchies executionNodeAccessHierarchies
+        ExecutionNodeAccessHierarchies executionNodeAccessHierarchies,
+        NodeDurationHistory nodeDurationHistory,
+        Clock clock,
+        ParallelismConfiguration parallelismConfiguration
     ) {
         return new DefaultExecutionPlan(
             gradleInternal.getIdentityPath().toString(),
@@ -228,7 +234,10 @@ ExecutionPlan createExecutionPlan(
             dependencyResolver,
             new DefaultNodeValidator(),
             executionNodeAccessHierarchies.getOutputHierarchy(),
-            executionNodeAccessHierarchies.getDestroyableHierarchy()
+            executionNodeAccessHierarchies.getDestroyableHierarchy(),
+            nodeDurationHistory,
+            clock,
+            parallelismConfiguration.isParallelProjectExecutionEnabled()
         );
     }
 
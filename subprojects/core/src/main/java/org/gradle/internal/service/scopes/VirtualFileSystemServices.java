@@ -41,6 +41,7 @@
 import org.gradle.api.internal.initialization.loadercache.DefaultClasspathHasher;
 import org.gradle.api.tasks.util.internal.PatternSpecFactory;
 import org.gradle.cache.CacheRepository;
+import org.gradle.cache.FileLockManager;
 import org.gradle.cache.GlobalCacheLocations;
 import org.gradle.cache.PersistentIndexedCache;
 import org.gradle.cache.PersistentIndexedCacheParameters;
@@ -80,6 +81,7 @@
 import org.gradle.internal.hash.StreamHasher;
 import org.gradle.internal.nativeintegration.NativeCapabilities;
 import org.gradle.internal.nativeintegration.filesystem.FileSystem;
+import org.gradle.internal.operations.BuildOperationExecutor;
 import org.gradle.internal.os.OperatingSystem;
 import org.gradle.internal.serialize.HashCodeSerializer;
 import org.gradle.internal.service.ServiceRegistration;
@@ -99,8 +101,10 @@
 import org.gradle.internal.watch.vfs.WatchableFileSystemDetector;
 import org.gradle.internal.watch.vfs.impl.DefaultWatchableFileSystemDetector;
 import org.gradle.internal.watch.vfs.impl.LocationsWrittenByCurrentBuild;
+import org.gradle.internal.watch.vfs.impl.VirtualFileSystemStateStore;
 import org.gradle.internal.watch.vfs.impl.WatchingNotSupportedVirtualFileSystem;
 import org.gradle.internal.watch.vfs.impl.WatchingVirtualFileSystem;
+import org.gradle.internal.work.ParallelFeatureExecutors;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -219,7 +223,9 @@ BuildLifecycleAwareVirtualFileSystem createVirtualFileSystem(
             ListenerManager listenerManager,
             FileSystem fileSystem,
             GlobalCacheLocations globalCacheLocations,
-            WatchableFileSystemDetector watchableFileSystemDetector
+            WatchableFileSystemDetector watchableFileSystemDetector,
+            CacheScopeMapping cacheScopeMapping,
+            FileLockManager fileLockManager
         ) {
             CaseSensitivity caseSensitivity = fileSystem.isCaseSensitive() ? CASE_SENSITIVE : CASE_INSENSITIVE;
             VfsRootReference rootReference = new VfsRootReference(DefaultSnapshotHierarchy.empty(caseSensitivity));
@@ -233,7 +239,12 @@ BuildLifecycleAwareVirtualFileSystem createVirtualFileSystem(
                     rootReference,
                     sectionId -> documentationRegistry.getDocumentationFor("gradle_daemon", sectionId),
                     locationsWrittenByCurrentBuild,
-                    watchableFileSystemDetector
+                    watchableFileSystemDetector,
+                    new VirtualFileSystemStateStore(
+                        cacheScopeMapping.getBaseDirectory(null, "vfs", VersionStrategy.CachePerVersion),
+                        fileLockManager,
+                        DirectoryScanner::getDefaultExcludes
+                    )
                 ))
                 .orElse(new WatchingNotSupportedVirtualFileSystem(rootReference));
             listenerManager.addListener((BuildAddedListener) buildState ->
@@ -250,7 +261,8 @@ FileSystemAccess createFileSystemAccess(
             ListenerManager listenerManager,
             PatternSpecFactory patternSpecFactory,
             FileSystemAccess.WriteListener writeListener,
-            DirectorySnapshotterStatistics.Collector statisticsCollector
+            DirectorySnapshotterStatistics.Collector statisticsCollector,
+            ParallelFeatureExecutors parallelFeatureExecutors
         ) {
             DefaultFileSystemAccess fileSystemAccess = new DefaultFileSystemAccess(
                 hasher,
@@ -259,6 +271,7 @@ FileSystemAccess createFileSystemAccess(
                 virtualFileSystem,
                 writeListener,
                 statisticsCollector,
+                parallelFeatureExecutors.getExecutor(ParallelFeatureExecutors.Feature.DIRECTORY_SNAPSHOTTING),
                 DirectoryScanner.getDefaultExcludes()
             );
             listenerManager.addListener(new DefaultExcludesBuildListener(fileSystemAccess) {
@@ -320,8 +333,8 @@ ResourceSnapshotterCacheService createResourceSnapshotterCacheService(CrossBuild
             return new DefaultResourceSnapshotterCacheService(resourceHashesCache);
         }
 
-        ClasspathFingerprinter createClasspathFingerprinter(ResourceSnapshotterCacheService resourceSnapshotterCacheService, FileCollectionSnapshotter fileCollectionSnapshotter, StringInterner stringInterner) {
-            return new DefaultClasspathFingerprinter(resourceSnapshotterCacheService, fileCollectionSnapshotter, ResourceFilter.FILTER_NOTHING, ResourceEntryFilter.FILTER_NOTHING, PropertiesFileFilter.FILTER_NOTHING, stringInterner);
+        ClasspathFingerprinter createClasspathFingerprinter(ResourceSnapshotterCacheService resourceSnapshotterCacheService, FileCollectionSnapshotter fileCollectionSnapshotter, StringInterner stringInterner, ParallelFeatureExecutors parallelFeatureExecutors) {
+            return new DefaultClasspathFingerprinter(resourceSnapshotterCacheService, fileCollectionSnapshotter, ResourceFilter.FILTER_NOTHING, ResourceEntryFilter.FILTER_NOTHING, PropertiesFileFilter.FILTER_NOTHING, stringInterner, parallelFeatureExecutors.getExecutor(ParallelFeatureExecutors.Feature.CLASSPATH_HASHING));
         }
 
         ClasspathHasher createClasspathHasher(ClasspathFingerprinter fingerprinter, FileCollectionFactory fileCollectionFactory) {
@@ -332,7 +345,7 @@ ClasspathHasher createClasspathHasher(ClasspathFingerprinter fingerprinter, File
     @VisibleForTesting
     static class BuildSessionServices {
         CrossBuildFileHashCache createCrossBuildFileHashCache(ProjectCacheDir projectCacheDir, CacheScopeMapping cacheScopeMapping, CacheRepository cacheRepository, InMemoryCacheDecoratorFactory inMemoryCacheDecoratorFactory) {
-            File cacheDir = cacheScopeMapping.getBaseDirectory(projectCacheDir.getDir(), "fileHashes", VersionStrategy.CachePerVersion);
+            File cacheDir = cacheScopeMapping.getBaseDirectory(projectCacheDir.getDir(), CrossBuildFileHashCache.Kind.FILE_HASHES.getCacheId(), VersionStrategy.CachePerVersion);
             return new CrossBuildFileHashCache(cacheDir, cacheRepository, inMemoryCacheDecoratorFactory, CrossBuildFileHashCache.Kind.FILE_HASHES);
         }
 
@@ -357,7 +370,8 @@ FileSystemAccess createFileSystemAccess(
             StringInterner stringInterner,
             VirtualFileSystem root,
             FileSystemAccess.WriteListener writeListener,
-            DirectorySnapshotterStatistics.Collector statisticsCollector
+            DirectorySnapshotterStatistics.Collector statisticsCollector,
+            ParallelFeatureExecutors parallelFeatureExecutors
         ) {
             DefaultFileSystemAccess buildSessionsScopedVirtualFileSystem = new DefaultFileSystemAccess(
                 hasher,
@@ -366,6 +380,7 @@ FileSystemAccess createFileSystemAccess(
                 root,
                 writeListener,
                 statisticsCollector,
+                parallelFeatureExecutors.getExecutor(ParallelFeatureExecutors.Feature.DIRECTORY_SNAPSHOTTING),
                 DirectoryScanner.getDefaultExcludes()
             );
 
@@ -422,9 +437,11 @@ FileCollectionFingerprinterRegistry createFileCollectionFingerprinterRegistry(Li
 
         InputFingerprinter createInputFingerprinter(
             FileCollectionFingerprinterRegistry fingerprinterRegistry,
-            ValueSnapshotter valueSnapshotter
+            ValueSnapshotter valueSnapshotter,
+            BuildOperationExecutor buildOperationExecutor,
+            ParallelFeatureExecutors parallelFeatureExecutors
         ) {
-            return new DefaultInputFingerprinter(fingerprinterRegistry, valueSnapshotter);
+            return new DefaultInputFingerprinter(fingerprinterRegistry, valueSnapshotter, buildOperationExecutor, parallelFeatureExecutors.getExecutor(ParallelFeatureExecutors.Feature.INPUT_FINGERPRINTING));
         }
 
         ResourceSnapshotterCacheService createResourceSnapshotterCacheService(
@@ -437,8 +454,8 @@ ResourceSnapshotterCacheService createResourceSnapshotterCacheService(
             return new SplitResourceSnapshotterCacheService(globalCache, localCache, globalCacheLocations);
         }
 
-        CompileClasspathFingerprinter createCompileClasspathFingerprinter(ResourceSnapshotterCacheService resourceSnapshotterCacheService, FileCollectionSnapshotter fileCollectionSnapshotter, StringInterner stringInterner) {
-            return new DefaultCompileClasspathFingerprinter(resourceSnapshotterCacheService, fileCollectionSnapshotter, stringInterner);
+        CompileClasspathFingerprinter createCompileClasspathFingerprinter(ResourceSnapshotterCacheService resourceSnapshotterCacheService, FileCollectionSnapshotter fileCollectionSnapshotter, StringInterner stringInterner, ParallelFeatureExecutors parallelFeatureExecutors) {
+            return new DefaultCompileClasspathFingerprinter(resourceSnapshotterCacheService, fileCollectionSnapshotter, stringInterner, parallelFeatureExecutors.getExecutor(ParallelFeatureExecutors.Feature.CLASSPATH_HASHING));
         }
     }
 
@@ -0,0 +1,101 @@
+/*
+ * Copyright 2021 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.internal.work;
+
+import org.gradle.internal.concurrent.CompositeStoppable;
+import org.gradle.internal.concurrent.ExecutorFactory;
+import org.gradle.internal.concurrent.ManagedExecutor;
+import org.gradle.internal.concurrent.Stoppable;
+
+import javax.annotation.Nullable;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.Executor;
+
+/**
+ * Provides the executors for the features which can do part of their work concurrently.
+ *
+ * <p>These features are experimental and opt-in. The number of threads of each feature is read from its own system property,
+ * and defaults to 1. When it is 1 or less, no executor is created and the feature does its work on the calling thread.</p>
+ */
+public class ParallelFeatureExecutors implements Stoppable {
+
+    public enum Feature {
+        /**
+         * Hashing files when snapshotting a directory tree.
+         */
+        DIRECTORY_SNAPSHOTTING("Directory snapshotting", "org.gradle.vfs.snapshot.parallelism"),
+        /**
+         * Reading and writing files when packing and unpacking build cache entries.
+         */
+        BUILD_CACHE_ENTRY_PACKING("Build cache entry packing", "org.gradle.caching.internal.packing.parallelism"),
+        /**
+         * Fingerprinting the input file properties of a unit of work.
+         */
+        INPUT_FINGERPRINTING("Input fingerprinting", "org.gradle.internal.execution.fingerprint.parallelism"),
+        /**
+         * Hashing the jars on a classpath when fingerprinting it.
+         */
+        CLASSPATH_HASHING("Classpath hashing", "org.gradle.internal.fingerprint.classpath.parallelism");
+
+        private final String displayName;
+        private final String parallelismProperty;
+
+        Feature(String displayName, String parallelismProperty) {
+            this.displayName = displayName;
+            this.parallelismProperty = parallelismProperty;
+        }
+
+        public String getParallelismProperty() {
+            return parallelismProperty;
+        }
+
+        int getParallelism() {
+            return Integer.getInteger(parallelismProperty, 1);
+        }
+    }
+
+    private final ExecutorFactory executorFactory;
+    private final Map<Feature, ManagedExecutor> executors = new EnumMap<>(Feature.class);
+    private boolean stopped;
+
+    public ParallelFeatureExecutors(ExecutorFactory executorFactory) {
+        this.executorFactory = executorFactory;
+    }
+
+    /**
+     * Returns the executor to use for the given feature, or {@code null} if the feature should do its work on the calling thread.
+     */
+    @Nullable
+    public synchronized Executor getExecutor(Feature feature) {
+        if (stopped) {
+            throw new IllegalStateException("Cannot use parallel executors after they have been stopped.");
+        }
+        int parallelism = feature.getParallelism();
+        if (parallelism <= 1) {
+            return null;
+        }
+        return executors.computeIfAbsent(feature, key -> executorFactory.create(key.displayName, parallelism));
+    }
+
+    @Override
+    public synchronized void stop() {
+        stopped = true;
+        CompositeStoppable.stoppable(executors.values()).stop();
+        executors.clear();
+    }
+}
@@ -16,10 +16,12 @@
 
 package org.gradle.execution.plan
 
+import org.gradle.api.Action
 import org.gradle.api.DefaultTask
 import org.gradle.api.Task
 import org.gradle.api.file.FileCollection
 import org.gradle.api.internal.TaskInternal
+import org.gradle.api.internal.artifacts.DefaultBuildIdentifier
 import org.gradle.api.internal.project.ProjectInternal
 import org.gradle.api.internal.tasks.TaskStateInternal
 import org.gradle.api.tasks.Destroys
@@ -31,7 +33,10 @@ import org.gradle.api.tasks.OutputFile
 import org.gradle.api.tasks.OutputFiles
 import org.gradle.api.tasks.TaskAction
 import org.gradle.composite.internal.IncludedBuildTaskGraph
+import org.gradle.composite.internal.IncludedBuildTaskResource
+import org.gradle.internal.build.BuildState
 import org.gradle.internal.nativeintegration.filesystem.FileSystem
+import org.gradle.internal.time.MockClock
 import org.gradle.internal.work.WorkerLeaseRegistry
 import org.gradle.test.fixtures.file.TestFile
 import org.gradle.testfixtures.internal.NativeServicesTestFixture
@@ -50,12 +55,18 @@ class DefaultExecutionPlanParallelTest extends AbstractExecutionPlanSpec {
 
     DefaultExecutionPlan executionPlan
     def lease = Stub(WorkerLeaseRegistry.WorkerLease)
+    def clock = new MockClock()
+    boolean parallelProjectExecution = true
 
     def setup() {
         _ * lease.tryLock() >> true
+        executionPlan = createExecutionPlan(NodeDurationHistory.NONE)
+    }
+
+    DefaultExecutionPlan createExecutionPlan(NodeDurationHistory durationHistory, DependencyResolver... additionalResolvers) {
         def taskNodeFactory = new TaskNodeFactory(project.gradle, Stub(IncludedBuildTaskGraph))
-        def dependencyResolver = new TaskDependencyResolver([new TaskNodeDependencyResolver(taskNodeFactory)])
-        executionPlan = new DefaultExecutionPlan(Path.ROOT.toString(), taskNodeFactory, dependencyResolver, nodeValidator, new ExecutionNodeAccessHierarchy(CASE_SENSITIVE, fs), new ExecutionNodeAccessHierarchy(CASE_SENSITIVE, fs))
+        def dependencyResolver = new TaskDependencyResolver([new TaskNodeDependencyResolver(taskNodeFactory)] + additionalResolvers.toList())
+        new DefaultExecutionPlan(Path.ROOT.toString(), taskNodeFactory, dependencyResolver, nodeValidator, new ExecutionNodeAccessHierarchy(CASE_SENSITIVE, fs), new ExecutionNodeAccessHierarchy(CASE_SENSITIVE, fs), durationHistory, clock, parallelProjectExecution)
     }
 
     TaskInternal task(Map<String, ?> options = [:], String name) {
@@ -194,6 +205,89 @@ class DefaultExecutionPlanParallelTest extends AbstractExecutionPlanSpec {
         secondTask == b
     }
 
+    def "starts task on the longest remaining path first when durations of previous builds are known"() {
+        given:
+        def previousDurations = [a: 100L, b: 10L, c: 500L]
+        executionPlan = createExecutionPlan(Stub(NodeDurationHistory) {
+            getPreviousDurations(_) >> { Collection<Node> nodes ->
+                nodes.findAll { it instanceof LocalTaskNode }.collectEntries { [(it): previousDurations[it.task.name]] }
+            }
+        })
+        Task a = task("a", type: Async)
+        Task b = task("b", type: Async)
+        Task c = task("c", type: Async, dependsOn: [b])
+
+        when:
+        addToGraphAndPopulate(a, b, c)
+        def firstTaskNode = selectNextTaskNode()
+
+        then:
+        firstTaskNode.task == b
+        selectNextTask() == a
+        selectNextTask() == null
+
+        when:
+        executionPlan.finishedExecuting(firstTaskNode)
+
+        then:
+        selectNextTask() == c
+    }
+
+    def "starts tasks in execution queue order without parallel project execution even when durations of previous builds are known"() {
+        given:
+        def previousDurations = [a: 100L, b: 10L, c: 500L]
+        parallelProjectExecution = false
+        executionPlan = createExecutionPlan(Stub(NodeDurationHistory) {
+            getPreviousDurations(_) >> { Collection<Node> nodes ->
+                nodes.findAll { it instanceof LocalTaskNode }.collectEntries { [(it): previousDurations[it.task.name]] }
+            }
+        })
+        Task a = task("a", type: Async)
+        Task b = task("b", type: Async)
+        Task c = task("c", type: Async, dependsOn: [b])
+
+        when:
+        addToGraphAndPopulate(a, b, c)
+
+        then:
+        selectNextTask() == a
+        selectNextTask() == b
+    }
+
+    def "starts tasks in execution queue order when there are no durations of previous builds"() {
+        given:
+        Task a = task("a", type: Async)
+        Task b = task("b", type: Async)
+        Task c = task("c", type: Async, dependsOn: [b])
+
+        when:
+        addToGraphAndPopulate(a, b, c)
+
+        then:
+        selectNextTask() == a
+        selectNextTask() == b
+    }
+
+    def "records durations of executed tasks when the plan is cleared"() {
+        given:
+        def durationHistory = Mock(NodeDurationHistory)
+        executionPlan = createExecutionPlan(durationHistory)
+        Task a = task("a", type: Async)
+        Task b = task("b", type: Async)
+
+        when:
+        addToGraphAndPopulate(a, b)
+        def taskNode = selectNextTaskNode()
+        clock.increment(250)
+        executionPlan.finishedExecuting(taskNode)
+        executionPlan.clear()
+
+        then:
+        1 * durationHistory.getPreviousDurations(_) >> [:]
+        // The mock clock advances by another 10ms whenever it is read
+        1 * durationHistory.recordDurations({ Map<Node, Long> durations -> durations == [(taskNode): 260L] })
+    }
+
     def "task is not available for execution until all of its dependencies that are executed in parallel complete"() {
         given:
         Task a = task("a", type: Async)
@@ -592,6 +686,87 @@ class DefaultExecutionPlanParallelTest extends AbstractExecutionPlanSpec {
         finalizerInfo.task == finalizer
     }
 
+    def "finalizer becomes ready when the task it finalizes completes"() {
+        given:
+        Task finalizer = task("finalizer", type: Async)
+        Task finalized = task("finalized", type: Async, finalizedBy: [finalizer])
+        Task other = task("other", type: Async)
+
+        when:
+        addToGraphAndPopulate(finalized, other)
+        def finalizedNode = selectNextTaskNode()
+        def otherNode = selectNextTaskNode()
+
+        then:
+        finalizedNode.task == finalized
+        otherNode.task == other
+        selectNextTask() == null
+
+        when:
+        executionPlan.finishedExecuting(otherNode)
+
+        then:
+        selectNextTask() == null
+
+        when:
+        executionPlan.finishedExecuting(finalizedNode)
+
+        then:
+        selectNextTask() == finalizer
+        selectNextTask() == null
+    }
+
+    def "task depending on a task in another build is selected once the other build completes that task"() {
+        given:
+        def taskInOtherBuildState = IncludedBuildTaskResource.State.WAITING
+        def includedBuildTaskGraph = Stub(IncludedBuildTaskGraph) {
+            getTaskState(_, ":producer") >> { taskInOtherBuildState }
+        }
+        def thisBuildIdentifier = thisBuild.services.get(BuildState).buildIdentifier
+        def taskInOtherBuild = TaskInAnotherBuild.of(Path.path(":other:producer"), ":producer", new DefaultBuildIdentifier("other"), thisBuildIdentifier, includedBuildTaskGraph)
+        executionPlan = createExecutionPlan(NodeDurationHistory.NONE, resolvingTo(taskInOtherBuild))
+        Task consumer = task("consumer", type: Async, dependsOn: [taskInOtherBuild])
+        Task other = task("other", type: Async)
+
+        when:
+        addToGraphAndPopulate(consumer, other)
+
+        then:
+        selectNextTask() == other
+        selectNextTask() == null
+
+        when:
+        taskInOtherBuildState = IncludedBuildTaskResource.State.SUCCESS
+
+        then:
+        selectNextTask() == consumer
+        selectNextTask() == null
+    }
+
+    def "ready task that cannot acquire its project lock is selected once the lock is released"() {
+        given:
+        def projectA = project(project, "a")
+        def projectB = project(project, "b")
+        Task first = task("first", project: projectA)
+        Task second = task("second", project: projectA)
+        Task other = task("other", project: projectB, type: Async)
+
+        when:
+        addToGraphAndPopulate(first, second, other)
+        def firstNode = selectNextTaskNode()
+
+        then:
+        firstNode.task == first
+        selectNextTask() == other
+        selectNextTask() == null
+
+        when:
+        executionPlan.finishedExecuting(firstNode)
+
+        then:
+        selectNextTask() == second
+    }
+
     @Issue("https://github.com/gradle/gradle/issues/8253")
     def "dependency of dependency of finalizer is scheduled when another task depends on the dependency"() {
         given:
@@ -865,6 +1040,27 @@ class DefaultExecutionPlanParallelTest extends AbstractExecutionPlanSpec {
         assert tasks as Set == [first, second] as Set
     }
 
+    /**
+     * Resolves the given node when it is used as a dependency, like dependencies on tasks in other builds are resolved.
+     */
+    private static DependencyResolver resolvingTo(Node node) {
+        return new DependencyResolver() {
+            @Override
+            boolean resolve(Task task, Object dependency, Action<? super Node> resolveAction) {
+                if (dependency.is(node)) {
+                    resolveAction.execute(node)
+                    return true
+                }
+                return false
+            }
+
+            @Override
+            boolean attachActionTo(Node value, Action<? super Task> action) {
+                return false
+            }
+        }
+    }
+
     private void addToGraphAndPopulate(Task... tasks) {
         executionPlan.addEntryTasks(Arrays.asList(tasks))
         executionPlan.determineExecutionPlan()
@@ -0,0 +1,126 @@
+/*
+ * Copyright 2021 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.execution.plan
+
+import org.gradle.api.internal.TaskInternal
+import org.gradle.api.internal.tasks.TaskExecutionOutcome
+import org.gradle.api.internal.tasks.TaskStateInternal
+import org.gradle.cache.PersistentCache
+import org.gradle.internal.time.MockClock
+import org.gradle.test.fixtures.file.TestNameTestDirectoryProvider
+import org.gradle.testfixtures.internal.TestInMemoryCacheFactory
+import org.gradle.util.Path
+import org.junit.Rule
+import spock.lang.Specification
+
+import java.util.concurrent.TimeUnit
+import java.util.function.Supplier
+
+class DefaultNodeDurationHistoryTest extends Specification {
+    @Rule
+    TestNameTestDirectoryProvider tmpDir = new TestNameTestDirectoryProvider(getClass())
+
+    def clock = new MockClock(0)
+    def cache = new TestInMemoryCacheFactory().open(tmpDir.testDirectory, "executionHistory")
+
+    def "remembers durations of tasks which ran their actions"() {
+        def durationHistory = history()
+        def a = taskNode(":a", TaskExecutionOutcome.EXECUTED)
+        def b = taskNode(":b", TaskExecutionOutcome.EXECUTED)
+
+        when:
+        durationHistory.recordDurations([(a): 100L, (b): 200L])
+
+        then:
+        durationsOf([":a", ":b", ":c"]) == [":a": 100L, ":b": 200L]
+    }
+
+    def "keeps the duration of the last execution for tasks which did not run their actions"() {
+        def durationHistory = history()
+        durationHistory.recordDurations([(taskNode(":a", TaskExecutionOutcome.EXECUTED)): 100L])
+
+        when:
+        durationHistory.recordDurations([
+            (taskNode(":a", TaskExecutionOutcome.UP_TO_DATE)): 1L,
+            (taskNode(":b", TaskExecutionOutcome.FROM_CACHE)): 2L,
+            (taskNode(":c", TaskExecutionOutcome.SKIPPED)): 3L,
+            (failedTaskNode(":d")): 4L
+        ])
+
+        then:
+        durationsOf([":a", ":b", ":c", ":d"]) == [":a": 100L]
+    }
+
+    def "forgets durations of tasks which have not been part of a build for a week"() {
+        def durationHistory = history()
+        durationHistory.recordDurations([
+            (taskNode(":a", TaskExecutionOutcome.EXECUTED)): 100L,
+            (taskNode(":b", TaskExecutionOutcome.EXECUTED)): 200L
+        ])
+
+        when:
+        clock.increment(TimeUnit.DAYS.toMillis(4))
+        durationHistory.recordDurations([(taskNode(":a", TaskExecutionOutcome.UP_TO_DATE)): 1L])
+        clock.increment(TimeUnit.DAYS.toMillis(4))
+        durationHistory.recordDurations([(taskNode(":c", TaskExecutionOutcome.EXECUTED)): 300L])
+
+        then:
+        durationsOf([":a", ":b", ":c"]) == [":a": 100L, ":c": 300L]
+    }
+
+    def "keeps durations of different builds apart"() {
+        when:
+        history(":").recordDurations([(taskNode(":a", TaskExecutionOutcome.EXECUTED)): 100L])
+        history(":included").recordDurations([(taskNode(":included:a", TaskExecutionOutcome.EXECUTED)): 200L])
+
+        then:
+        durationsOf([":a", ":included:a"]) == [":a": 100L]
+        durationsOf([":a", ":included:a"], ":included") == [":included:a": 200L]
+    }
+
+    private DefaultNodeDurationHistory history(String buildPath = ":") {
+        new DefaultNodeDurationHistory({ cache } as Supplier<PersistentCache>, buildPath, clock)
+    }
+
+    private Map<String, Long> durationsOf(List<String> paths, String buildPath = ":") {
+        history(buildPath).getPreviousDurations(paths.collect { taskNode(it) }).collectEntries { node, duration -> [(node.task.identityPath.path): duration] }
+    }
+
+    private LocalTaskNode taskNode(String path, TaskExecutionOutcome outcome = null) {
+        def state = new TaskStateInternal()
+        if (outcome != null) {
+            state.setOutcome(outcome)
+        }
+        return taskNode(path, state)
+    }
+
+    private LocalTaskNode failedTaskNode(String path) {
+        def state = new TaskStateInternal()
+        state.setOutcome(new RuntimeException("broken"))
+        return taskNode(path, state)
+    }
+
+    private LocalTaskNode taskNode(String path, TaskStateInternal state) {
+        def task = Stub(TaskInternal) {
+            getIdentityPath() >> Path.path(path)
+            getState() >> state
+        }
+        return Stub(LocalTaskNode) {
+            getTask() >> task
+        }
+    }
+}
@@ -34,6 +34,8 @@ import org.gradle.util.UsesNativeServices
 import org.junit.Rule
 import spock.lang.Specification
 
+import java.util.concurrent.Executors
+
 @CleanupTestDirectory(fieldName = "tmpDir")
 @UsesNativeServices
 class DefaultClasspathFingerprinterTest extends Specification {
@@ -223,6 +225,47 @@ class DefaultClasspathFingerprinterTest extends Specification {
         ]
     }
 
+    def "hashes jars concurrently and keeps classpath order"() {
+        def executor = Executors.newFixedThreadPool(4)
+        fingerprinter = new DefaultClasspathFingerprinter(
+            cacheService,
+            fileCollectionSnapshotter,
+            ResourceFilter.FILTER_NOTHING,
+            ResourceEntryFilter.FILTER_NOTHING,
+            PropertiesFileFilter.FILTER_NOTHING,
+            stringInterner,
+            executor)
+        def zipFile = file('library.jar')
+        file('zipContents').create {
+            file('firstFile.txt').text = "Some text"
+            file('secondFile.txt').text = "Second File"
+            subdir {
+                file('someOtherFile.log').text = "File in subdir"
+            }
+        }.zipTo(zipFile)
+        def emptyJar = file('empty.jar')
+        file('emptyDir').createDir().zipTo(emptyJar)
+        def nonEmptyJar = file('nonEmpty.jar')
+        file('nonEmptyDir').create{
+            file('some-resource').text = 'not-empty'
+        }.zipTo(nonEmptyJar)
+        def rootFile = file("root1.txt") << "root1"
+
+        when:
+        def classpathFingerprint = fingerprint(nonEmptyJar, rootFile, zipFile, emptyJar)
+        then:
+        classpathFingerprint == [
+            ['nonEmpty.jar', '', '02e567c3be8a015bbcad37ec10d32b45'],
+            ['root1.txt', '', '006240e2be8cab1da7ef856d241a35e0'],
+            ['library.jar', '', '397fdb436f96f0ebac6c1e147eb1cc51'],
+            ['empty.jar', '', 'b4ffe6c04c447ca2bf8e1659ba078d13'],
+        ]
+        resourceHashesCache.keySet().size() == 3
+
+        cleanup:
+        executor.shutdownNow()
+    }
+
     def fingerprint(TestFile... classpath) {
         fileSystemAccess.write(classpath.collect { it.absolutePath }, {})
         def fileCollectionFingerprint = fingerprinter.fingerprint(files(classpath))
@@ -161,7 +161,21 @@ class DefaultFileCollectionSnapshotterTest extends Specification {
         snapshot == FileSystemSnapshot.EMPTY
     }
 
-    def "snapshots a generated singletonFileTree as RegularFileSnapshot"() {
+    def "reads the file system only when a resolved collection is snapshotted"() {
+        given:
+        def file = tmpDir.file('testFile')
+        def files = TestFiles.fixed(file)
+
+        when:
+        def resolved = snapshotter.resolve(files)
+        file.text = "content"
+        def snapshot = resolved.get()
+
+        then:
+        assertSingleFileSnapshot(snapshot)
+    }
+
+        def "snapshots a generated singletonFileTree as RegularFileSnapshot"() {
         given:
         def file = tmpDir.createFile('testFile')
         def tempDir = tmpDir.createDir('tmpDir')
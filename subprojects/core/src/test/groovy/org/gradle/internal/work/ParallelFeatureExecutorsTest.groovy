@@ -0,0 +1,62 @@
+/*
+ * Copyright 2021 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.internal.work
+
+import org.gradle.internal.concurrent.ExecutorFactory
+import org.gradle.internal.concurrent.ManagedExecutor
+import org.gradle.util.SetSystemProperties
+import org.junit.Rule
+import spock.lang.Specification
+
+import static org.gradle.internal.work.ParallelFeatureExecutors.Feature.BUILD_CACHE_ENTRY_PACKING
+import static org.gradle.internal.work.ParallelFeatureExecutors.Feature.DIRECTORY_SNAPSHOTTING
+
+class ParallelFeatureExecutorsTest extends Specification {
+    @Rule
+    final SetSystemProperties systemProperties = new SetSystemProperties()
+
+    def executorFactory = Mock(ExecutorFactory)
+    def executors = new ParallelFeatureExecutors(executorFactory)
+
+    def "features are not parallel by default"() {
+        expect:
+        executors.getExecutor(DIRECTORY_SNAPSHOTTING) == null
+        executors.getExecutor(BUILD_CACHE_ENTRY_PACKING) == null
+    }
+
+    def "creates one executor per feature which opted in and stops it"() {
+        given:
+        def executor = Mock(ManagedExecutor)
+        System.setProperty(DIRECTORY_SNAPSHOTTING.parallelismProperty, "4")
+
+        when:
+        def first = executors.getExecutor(DIRECTORY_SNAPSHOTTING)
+        def second = executors.getExecutor(DIRECTORY_SNAPSHOTTING)
+
+        then:
+        1 * executorFactory.create("Directory snapshotting", 4) >> executor
+        first.is(executor)
+        second.is(executor)
+        executors.getExecutor(BUILD_CACHE_ENTRY_PACKING) == null
+
+        when:
+        executors.stop()
+
+        then:
+        1 * executor.stop()
+    }
+}
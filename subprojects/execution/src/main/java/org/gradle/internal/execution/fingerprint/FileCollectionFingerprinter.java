@@ -22,6 +22,8 @@
 import org.gradle.internal.snapshot.FileSystemLocationSnapshot;
 import org.gradle.internal.snapshot.FileSystemSnapshot;
 
+import java.util.function.Supplier;
+
 public interface FileCollectionFingerprinter {
     /**
      * The type used to refer to this fingerprinter in the {@link FileCollectionFingerprinterRegistry}.
@@ -33,6 +35,12 @@ public interface FileCollectionFingerprinter {
      */
     CurrentFileCollectionFingerprint fingerprint(FileCollection files);
 
+    /**
+     * Resolves the given collection on the current thread, which needs to be able to resolve it.
+     * The returned supplier snapshots the contents of the collection on any thread, which can then be fingerprinted using {@link #fingerprint(FileSystemSnapshot)}.
+     */
+    Supplier<FileSystemSnapshot> resolve(FileCollection files);
+
     /**
      * Creates a fingerprint of the contents of the given roots.
      */
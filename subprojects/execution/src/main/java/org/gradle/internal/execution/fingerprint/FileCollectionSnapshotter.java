@@ -19,6 +19,8 @@
 import org.gradle.api.file.FileCollection;
 import org.gradle.internal.snapshot.FileSystemSnapshot;
 
+import java.util.function.Supplier;
+
 /**
  * Service for snapshotting {@link FileCollection}s.
  */
@@ -27,4 +29,10 @@ public interface FileCollectionSnapshotter {
      * Returns snapshots of the roots of a file collection.
      */
     FileSystemSnapshot snapshot(FileCollection fileCollection);
+
+    /**
+     * Resolves a file collection on the current thread, and returns a supplier of the snapshots of its roots.
+     * The supplier reads the file system only when called, and can be called on any thread.
+     */
+    Supplier<FileSystemSnapshot> resolve(FileCollection fileCollection);
 }
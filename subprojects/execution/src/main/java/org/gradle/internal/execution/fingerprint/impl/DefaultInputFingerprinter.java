@@ -19,19 +19,37 @@
 import com.google.common.annotations.VisibleForTesting;
 import com.google.common.collect.ImmutableSortedMap;
 import org.gradle.api.UncheckedIOException;
+import org.gradle.internal.UncheckedException;
+import org.gradle.internal.execution.fingerprint.FileCollectionFingerprinter;
 import org.gradle.internal.execution.fingerprint.FileCollectionFingerprinterRegistry;
 import org.gradle.internal.execution.fingerprint.FileNormalizationSpec;
 import org.gradle.internal.execution.fingerprint.InputFingerprinter;
 import org.gradle.internal.fingerprint.CurrentFileCollectionFingerprint;
+import org.gradle.internal.operations.BuildOperationContext;
+import org.gradle.internal.operations.BuildOperationDescriptor;
+import org.gradle.internal.operations.BuildOperationExecutor;
+import org.gradle.internal.operations.BuildOperationRef;
+import org.gradle.internal.operations.CallableBuildOperation;
+import org.gradle.internal.operations.CurrentBuildOperationRef;
+import org.gradle.internal.snapshot.FileSystemSnapshot;
 import org.gradle.internal.snapshot.ValueSnapshot;
 import org.gradle.internal.snapshot.ValueSnapshotter;
 
+import javax.annotation.Nullable;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
 import java.util.function.Consumer;
+import java.util.function.Supplier;
 
 public class DefaultInputFingerprinter implements InputFingerprinter {
 
     private final FileCollectionFingerprinterRegistry fingerprinterRegistry;
     private final ValueSnapshotter valueSnapshotter;
+    @Nullable
+    private final ConcurrentFingerprinter concurrentFingerprinter;
 
     public DefaultInputFingerprinter(
         FileCollectionFingerprinterRegistry fingerprinterRegistry,
@@ -39,6 +57,24 @@ public DefaultInputFingerprinter(
     ) {
         this.fingerprinterRegistry = fingerprinterRegistry;
         this.valueSnapshotter = valueSnapshotter;
+        this.concurrentFingerprinter = null;
+    }
+
+    /**
+     * Creates a fingerprinter which fingerprints the snapshots of input file properties concurrently using the given executor,
+     * each in its own build operation. When no executor is given, the input file properties are fingerprinted one after the other.
+     */
+    public DefaultInputFingerprinter(
+        FileCollectionFingerprinterRegistry fingerprinterRegistry,
+        ValueSnapshotter valueSnapshotter,
+        BuildOperationExecutor buildOperationExecutor,
+        @Nullable Executor executor
+    ) {
+        this.fingerprinterRegistry = fingerprinterRegistry;
+        this.valueSnapshotter = valueSnapshotter;
+        this.concurrentFingerprinter = executor == null
+            ? null
+            : new ConcurrentFingerprinter(buildOperationExecutor, executor);
     }
 
     @Override
@@ -48,7 +84,7 @@ public Result fingerprintInputProperties(
         ImmutableSortedMap<String, CurrentFileCollectionFingerprint> knownFingerprints,
         Consumer<InputVisitor> inputs
     ) {
-        InputCollectingVisitor visitor = new InputCollectingVisitor(previousValueSnapshots, fingerprinterRegistry, valueSnapshotter, knownValueSnapshots, knownFingerprints);
+        InputCollectingVisitor visitor = new InputCollectingVisitor(previousValueSnapshots, fingerprinterRegistry, valueSnapshotter, concurrentFingerprinter, knownValueSnapshots, knownFingerprints);
         inputs.accept(visitor);
         return visitor.complete();
     }
@@ -62,22 +98,26 @@ private static class InputCollectingVisitor implements InputVisitor {
         private final ImmutableSortedMap<String, ValueSnapshot> previousValueSnapshots;
         private final FileCollectionFingerprinterRegistry fingerprinterRegistry;
         private final ValueSnapshotter valueSnapshotter;
+        private final ConcurrentFingerprinter concurrentFingerprinter;
         private final ImmutableSortedMap<String, ValueSnapshot> knownValueSnapshots;
         private final ImmutableSortedMap<String, CurrentFileCollectionFingerprint> knownFingerprints;
 
         private final ImmutableSortedMap.Builder<String, ValueSnapshot> valueSnapshotsBuilder = ImmutableSortedMap.naturalOrder();
         private final ImmutableSortedMap.Builder<String, CurrentFileCollectionFingerprint> fingerprintsBuilder = ImmutableSortedMap.naturalOrder();
+        private final List<PendingFingerprint> pendingFingerprints = new ArrayList<>();
 
         public InputCollectingVisitor(
             ImmutableSortedMap<String, ValueSnapshot> previousValueSnapshots,
             FileCollectionFingerprinterRegistry fingerprinterRegistry,
             ValueSnapshotter valueSnapshotter,
+            @Nullable ConcurrentFingerprinter concurrentFingerprinter,
             ImmutableSortedMap<String, ValueSnapshot> knownValueSnapshots,
             ImmutableSortedMap<String, CurrentFileCollectionFingerprint> knownFingerprints
         ) {
             this.previousValueSnapshots = previousValueSnapshots;
             this.fingerprinterRegistry = fingerprinterRegistry;
             this.valueSnapshotter = valueSnapshotter;
+            this.concurrentFingerprinter = concurrentFingerprinter;
             this.knownValueSnapshots = knownValueSnapshots;
             this.knownFingerprints = knownFingerprints;
         }
@@ -108,16 +148,91 @@ public void visitInputFileProperty(String propertyName, InputPropertyType type,
             }
 
             FileNormalizationSpec normalizationSpec = DefaultFileNormalizationSpec.from(value.getNormalizer(), value.getDirectorySensitivity());
-            CurrentFileCollectionFingerprint fingerprint = fingerprinterRegistry.getFingerprinter(normalizationSpec)
-                .fingerprint(value.getFiles());
-            fingerprintsBuilder.put(propertyName, fingerprint);
+            FileCollectionFingerprinter fingerprinter = fingerprinterRegistry.getFingerprinter(normalizationSpec);
+            if (concurrentFingerprinter == null) {
+                fingerprintsBuilder.put(propertyName, fingerprinter.fingerprint(value.getFiles()));
+            } else {
+                // Resolve the files on this thread, and leave snapshotting and fingerprinting them for later
+                pendingFingerprints.add(new PendingFingerprint(propertyName, fingerprinter, fingerprinter.resolve(value.getFiles())));
+            }
         }
 
         public Result complete() {
+            if (!pendingFingerprints.isEmpty()) {
+                concurrentFingerprinter.fingerprint(pendingFingerprints, fingerprintsBuilder);
+            }
             return new InputFingerprints(valueSnapshotsBuilder.build(), fingerprintsBuilder.build());
         }
     }
 
+    private static class PendingFingerprint {
+        private final String propertyName;
+        private final FileCollectionFingerprinter fingerprinter;
+        private final Supplier<FileSystemSnapshot> roots;
+
+        PendingFingerprint(String propertyName, FileCollectionFingerprinter fingerprinter, Supplier<FileSystemSnapshot> roots) {
+            this.propertyName = propertyName;
+            this.fingerprinter = fingerprinter;
+            this.roots = roots;
+        }
+    }
+
+    private static class ConcurrentFingerprinter {
+        private final BuildOperationExecutor buildOperationExecutor;
+        private final Executor executor;
+
+        ConcurrentFingerprinter(BuildOperationExecutor buildOperationExecutor, Executor executor) {
+            this.buildOperationExecutor = buildOperationExecutor;
+            this.executor = executor;
+        }
+
+        /**
+         * Fingerprints the first property on the current thread and the others using the executor.
+         * The results are sorted by property name, so they do not depend on the order in which the fingerprints complete.
+         */
+        void fingerprint(List<PendingFingerprint> pendingFingerprints, ImmutableSortedMap.Builder<String, CurrentFileCollectionFingerprint> fingerprintsBuilder) {
+            BuildOperationRef parent = CurrentBuildOperationRef.instance().get();
+            List<CompletableFuture<CurrentFileCollectionFingerprint>> fingerprints = new ArrayList<>(pendingFingerprints.size());
+            fingerprints.add(null);
+            for (PendingFingerprint pendingFingerprint : pendingFingerprints.subList(1, pendingFingerprints.size())) {
+                fingerprints.add(CompletableFuture.supplyAsync(() -> fingerprint(pendingFingerprint, parent), executor));
+            }
+
+            Throwable failure = null;
+            for (int i = 0; i < pendingFingerprints.size(); i++) {
+                try {
+                    PendingFingerprint pendingFingerprint = pendingFingerprints.get(i);
+                    CurrentFileCollectionFingerprint fingerprint = i == 0
+                        ? fingerprint(pendingFingerprint, parent)
+                        : fingerprints.get(i).join();
+                    fingerprintsBuilder.put(pendingFingerprint.propertyName, fingerprint);
+                } catch (CompletionException e) {
+                    failure = failure == null ? e.getCause() : failure;
+                } catch (RuntimeException | Error e) {
+                    failure = failure == null ? e : failure;
+                }
+            }
+            if (failure != null) {
+                throw UncheckedException.throwAsUncheckedException(failure);
+            }
+        }
+
+        private CurrentFileCollectionFingerprint fingerprint(PendingFingerprint pendingFingerprint, @Nullable BuildOperationRef parent) {
+            return buildOperationExecutor.call(new CallableBuildOperation<CurrentFileCollectionFingerprint>() {
+                @Override
+                public CurrentFileCollectionFingerprint call(BuildOperationContext context) {
+                    return pendingFingerprint.fingerprinter.fingerprint(pendingFingerprint.roots.get());
+                }
+
+                @Override
+                public BuildOperationDescriptor.Builder description() {
+                    BuildOperationDescriptor.Builder builder = BuildOperationDescriptor.displayName("Fingerprint input property '" + pendingFingerprint.propertyName + "'");
+                    return parent == null ? builder : builder.parent(parent);
+                }
+            });
+        }
+    }
+
     @VisibleForTesting
     public static class InputFingerprints implements InputFingerprinter.Result {
         private final ImmutableSortedMap<String, ValueSnapshot> valueSnapshots;
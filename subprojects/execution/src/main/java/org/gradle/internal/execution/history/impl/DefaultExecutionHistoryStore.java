@@ -20,6 +20,7 @@
 import com.google.common.collect.ImmutableSortedMap;
 import com.google.common.collect.Interner;
 import org.gradle.cache.CacheDecorator;
+import org.gradle.cache.IndexedCacheStorage;
 import org.gradle.cache.PersistentCache;
 import org.gradle.cache.PersistentIndexedCache;
 import org.gradle.cache.PersistentIndexedCacheParameters;
@@ -57,6 +58,7 @@ public DefaultExecutionHistoryStore(
         this.store = cache.get().createCache(
             PersistentIndexedCacheParameters.of("executionHistory", String.class, serializer)
             .withCacheDecorator(inMemoryCacheDecorator)
+            .withStorage(IndexedCacheStorage.APPEND_ONLY_LOG)
         );
     }
 
@@ -26,10 +26,19 @@
 import org.gradle.internal.serialize.Encoder;
 import org.gradle.internal.serialize.HashCodeSerializer;
 import org.gradle.internal.serialize.Serializer;
+import org.gradle.internal.serialize.kryo.KryoBackedDecoder;
+import org.gradle.internal.serialize.kryo.KryoBackedEncoder;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.util.Map;
 
+/**
+ * Serializes the root hashes of a fingerprint ahead of the individual fingerprints,
+ * which are stored as a separate block and only decoded when they are needed.
+ */
 public class FileCollectionFingerprintSerializer implements Serializer<FileCollectionFingerprint> {
 
     private final FingerprintMapSerializer fingerprintMapSerializer;
@@ -44,12 +53,21 @@ public FileCollectionFingerprintSerializer(Interner<String> stringInterner) {
 
     @Override
     public FileCollectionFingerprint read(Decoder decoder) throws IOException {
-        Map<String, FileSystemLocationFingerprint> fingerprints = fingerprintMapSerializer.read(decoder);
-        if (fingerprints.isEmpty()) {
+        int fingerprintCount = decoder.readSmallInt();
+        if (fingerprintCount == 0) {
             return FileCollectionFingerprint.EMPTY;
         }
         ImmutableMultimap<String, HashCode> rootHashes = readRootHashes(decoder);
-        return new SerializableFileCollectionFingerprint(fingerprints, rootHashes);
+        byte[] encodedFingerprints = decoder.readBinary();
+        return SerializableFileCollectionFingerprint.loadingFingerprintsOnDemand(() -> decodeFingerprints(encodedFingerprints), rootHashes);
+    }
+
+    private Map<String, FileSystemLocationFingerprint> decodeFingerprints(byte[] encodedFingerprints) {
+        try {
+            return fingerprintMapSerializer.read(new KryoBackedDecoder(new ByteArrayInputStream(encodedFingerprints)));
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not decode file fingerprints.", e);
+        }
     }
 
     private ImmutableMultimap<String, HashCode> readRootHashes(Decoder decoder) throws IOException {
@@ -68,12 +86,22 @@ private ImmutableMultimap<String, HashCode> readRootHashes(Decoder decoder) thro
 
     @Override
     public void write(Encoder encoder, FileCollectionFingerprint value) throws Exception {
-        fingerprintMapSerializer.write(encoder, value.getFingerprints());
-        if (!value.getFingerprints().isEmpty()) {
+        Map<String, FileSystemLocationFingerprint> fingerprints = value.getFingerprints();
+        encoder.writeSmallInt(fingerprints.size());
+        if (!fingerprints.isEmpty()) {
             writeRootHashes(encoder, value.getRootHashes());
+            encoder.writeBinary(encodeFingerprints(fingerprints));
         }
     }
 
+    private byte[] encodeFingerprints(Map<String, FileSystemLocationFingerprint> fingerprints) throws Exception {
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        KryoBackedEncoder fingerprintsEncoder = new KryoBackedEncoder(outputStream);
+        fingerprintMapSerializer.write(fingerprintsEncoder, fingerprints);
+        fingerprintsEncoder.flush();
+        return outputStream.toByteArray();
+    }
+
     private void writeRootHashes(Encoder encoder, ImmutableMultimap<String, HashCode> rootHashes) throws IOException {
         encoder.writeSmallInt(rootHashes.size());
         for (Map.Entry<String, HashCode> entry : rootHashes.entries()) {
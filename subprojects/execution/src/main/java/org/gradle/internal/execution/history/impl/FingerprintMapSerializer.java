@@ -51,22 +51,24 @@ public FingerprintMapSerializer(Interner<String> stringInterner) {
     public Map<String, FileSystemLocationFingerprint> read(Decoder decoder) throws IOException {
         int fingerprintCount = decoder.readSmallInt();
         ImmutableMap.Builder<String, FileSystemLocationFingerprint> fingerprints = ImmutableMap.builderWithExpectedSize(fingerprintCount);
+        PrefixCompressedStrings absolutePaths = new PrefixCompressedStrings();
+        PrefixCompressedStrings normalizedPaths = new PrefixCompressedStrings();
         for (int i = 0; i < fingerprintCount; i++) {
-            String absolutePath = stringInterner.intern(decoder.readString());
-            FileSystemLocationFingerprint fingerprint = readFingerprint(decoder);
+            String absolutePath = stringInterner.intern(absolutePaths.read(decoder));
+            FileSystemLocationFingerprint fingerprint = readFingerprint(decoder, normalizedPaths);
             fingerprints.put(absolutePath, fingerprint);
         }
         return fingerprints.build();
     }
 
-    private FileSystemLocationFingerprint readFingerprint(Decoder decoder) throws IOException {
+    private FileSystemLocationFingerprint readFingerprint(Decoder decoder, PrefixCompressedStrings normalizedPaths) throws IOException {
         FileType fileType = readFileType(decoder);
         HashCode contentHash = readContentHash(fileType, decoder);
 
         byte fingerprintKind = decoder.readByte();
         switch (fingerprintKind) {
             case DEFAULT_NORMALIZATION:
-                String normalizedPath = decoder.readString();
+                String normalizedPath = normalizedPaths.read(decoder);
                 return new DefaultFileSystemLocationFingerprint(stringInterner.intern(normalizedPath), fileType, contentHash);
             case IGNORED_PATH_NORMALIZATION:
                 return IgnoredPathFileSystemLocationFingerprint.create(fileType, contentHash);
@@ -105,10 +107,11 @@ private FileType readFileType(Decoder decoder) throws IOException {
     @Override
     public void write(Encoder encoder, Map<String, FileSystemLocationFingerprint> value) throws Exception {
         encoder.writeSmallInt(value.size());
-        for (String key : value.keySet()) {
-            encoder.writeString(key);
-            FileSystemLocationFingerprint fingerprint = value.get(key);
-            writeFingerprint(encoder, fingerprint);
+        PrefixCompressedStrings absolutePaths = new PrefixCompressedStrings();
+        PrefixCompressedStrings normalizedPaths = new PrefixCompressedStrings();
+        for (Map.Entry<String, FileSystemLocationFingerprint> entry : value.entrySet()) {
+            absolutePaths.write(encoder, entry.getKey());
+            writeFingerprint(encoder, entry.getValue(), normalizedPaths);
         }
     }
 
@@ -127,7 +130,7 @@ public int hashCode() {
         return Objects.hashCode(super.hashCode(), hashCodeSerializer);
     }
 
-    private void writeFingerprint(Encoder encoder, FileSystemLocationFingerprint value) throws IOException {
+    private void writeFingerprint(Encoder encoder, FileSystemLocationFingerprint value, PrefixCompressedStrings normalizedPaths) throws IOException {
         switch (value.getType()) {
             case Directory:
                 encoder.writeByte(DIR_FINGERPRINT);
@@ -145,11 +148,53 @@ private void writeFingerprint(Encoder encoder, FileSystemLocationFingerprint val
 
         if (value instanceof DefaultFileSystemLocationFingerprint) {
             encoder.writeByte(DEFAULT_NORMALIZATION);
-            encoder.writeString(value.getNormalizedPath());
+            normalizedPaths.write(encoder, value.getNormalizedPath());
         } else if (value instanceof IgnoredPathFileSystemLocationFingerprint) {
             encoder.writeByte(IGNORED_PATH_NORMALIZATION);
         } else {
             throw new AssertionError();
         }
     }
+
+    /**
+     * Encodes each string as the length of the prefix it shares with the previous string, followed by the rest of the string.
+     *
+     * Fingerprints are ordered by the file system walk, so neighbouring paths usually differ only in their last few segments.
+     */
+    private static class PrefixCompressedStrings {
+        private String previous = "";
+
+        public void write(Encoder encoder, String value) throws IOException {
+            int sharedPrefixLength = sharedPrefixLength(previous, value);
+            encoder.writeSmallInt(sharedPrefixLength);
+            encoder.writeString(value.substring(sharedPrefixLength));
+            previous = value;
+        }
+
+        public String read(Decoder decoder) throws IOException {
+            int sharedPrefixLength = decoder.readSmallInt();
+            String suffix = decoder.readString();
+            String value = sharedPrefixLength == 0
+                ? suffix
+                : new StringBuilder(sharedPrefixLength + suffix.length())
+                    .append(previous, 0, sharedPrefixLength)
+                    .append(suffix)
+                    .toString();
+            previous = value;
+            return value;
+        }
+
+        private static int sharedPrefixLength(String previous, String value) {
+            int maxLength = Math.min(previous.length(), value.length());
+            int length = 0;
+            while (length < maxLength && previous.charAt(length) == value.charAt(length)) {
+                length++;
+            }
+            // Don't split a surrogate pair, so both parts remain valid strings on their own
+            if (length > 0 && Character.isHighSurrogate(value.charAt(length - 1))) {
+                length--;
+            }
+            return length;
+        }
+    }
 }
@@ -16,6 +16,8 @@
 
 package org.gradle.internal.execution.history.impl;
 
+import com.google.common.base.Supplier;
+import com.google.common.base.Suppliers;
 import com.google.common.collect.ImmutableMultimap;
 import org.gradle.internal.fingerprint.FileCollectionFingerprint;
 import org.gradle.internal.fingerprint.FileSystemLocationFingerprint;
@@ -25,17 +27,30 @@
 
 public class SerializableFileCollectionFingerprint implements FileCollectionFingerprint {
 
-    private final Map<String, FileSystemLocationFingerprint> fingerprints;
+    private final Supplier<Map<String, FileSystemLocationFingerprint>> fingerprints;
     private final ImmutableMultimap<String, HashCode> rootHashes;
 
     public SerializableFileCollectionFingerprint(Map<String, FileSystemLocationFingerprint> fingerprints, ImmutableMultimap<String, HashCode> rootHashes) {
+        this(Suppliers.ofInstance(fingerprints), rootHashes);
+    }
+
+    private SerializableFileCollectionFingerprint(Supplier<Map<String, FileSystemLocationFingerprint>> fingerprints, ImmutableMultimap<String, HashCode> rootHashes) {
         this.fingerprints = fingerprints;
         this.rootHashes = rootHashes;
     }
 
+    /**
+     * Creates a fingerprint which only loads the individual fingerprints when they are first requested.
+     *
+     * Comparing to the current fingerprint only requires the root hashes as long as nothing has changed.
+     */
+    public static SerializableFileCollectionFingerprint loadingFingerprintsOnDemand(Supplier<Map<String, FileSystemLocationFingerprint>> fingerprints, ImmutableMultimap<String, HashCode> rootHashes) {
+        return new SerializableFileCollectionFingerprint(Suppliers.memoize(fingerprints), rootHashes);
+    }
+
     @Override
     public Map<String, FileSystemLocationFingerprint> getFingerprints() {
-        return fingerprints;
+        return fingerprints.get();
     }
 
     @Override
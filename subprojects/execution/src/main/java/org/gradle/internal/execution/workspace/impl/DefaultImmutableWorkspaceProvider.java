@@ -34,7 +34,9 @@
 import java.io.File;
 import java.util.function.Function;
 
+import static org.gradle.cache.internal.AbstractCacheCleanup.UNLIMITED_DURATION;
 import static org.gradle.cache.internal.LeastRecentlyUsedCacheCleanup.DEFAULT_MAX_AGE_IN_DAYS_FOR_RECREATABLE_CACHE_ENTRIES;
+import static org.gradle.cache.internal.LeastRecentlyUsedCacheCleanup.MAX_CLEANUP_DURATION_MILLIS;
 import static org.gradle.cache.internal.filelock.LockOptionsBuilder.mode;
 
 public class DefaultImmutableWorkspaceProvider implements WorkspaceProvider, Closeable {
@@ -71,10 +73,14 @@ public static DefaultImmutableWorkspaceProvider withBuiltInHistory(
             cacheBuilder,
             fileAccessTimeJournal,
             cache -> new DefaultExecutionHistoryStore(() -> cache, inMemoryCacheDecoratorFactory, stringInterner),
-            treeDepthToTrackAndCleanup
+            treeDepthToTrackAndCleanup,
+            UNLIMITED_DURATION
         );
     }
 
+    /**
+     * Creates a provider for a cache which can grow very large, e.g. the transforms cache, so its cleanup is done in bounded time slices.
+     */
     public static DefaultImmutableWorkspaceProvider withExternalHistory(
         CacheBuilder cacheBuilder,
         FileAccessTimeJournal fileAccessTimeJournal,
@@ -84,7 +90,8 @@ public static DefaultImmutableWorkspaceProvider withExternalHistory(
             cacheBuilder,
             fileAccessTimeJournal,
             __ -> executionHistoryStore,
-            DEFAULT_FILE_TREE_DEPTH_TO_TRACK_AND_CLEANUP
+            DEFAULT_FILE_TREE_DEPTH_TO_TRACK_AND_CLEANUP,
+            MAX_CLEANUP_DURATION_MILLIS
         );
     }
 
@@ -92,10 +99,11 @@ private DefaultImmutableWorkspaceProvider(
         CacheBuilder cacheBuilder,
         FileAccessTimeJournal fileAccessTimeJournal,
         Function<PersistentCache, ExecutionHistoryStore> historyFactory,
-        int treeDepthToTrackAndCleanup
+        int treeDepthToTrackAndCleanup,
+        long maxCleanupDurationMillis
     ) {
         PersistentCache cache = cacheBuilder
-            .withCleanup(createCleanupAction(fileAccessTimeJournal, treeDepthToTrackAndCleanup))
+            .withCleanup(createCleanupAction(fileAccessTimeJournal, treeDepthToTrackAndCleanup, maxCleanupDurationMillis))
             .withLockOptions(mode(FileLockManager.LockMode.OnDemand)) // Lock on demand
             .open();
         this.cache = cache;
@@ -104,11 +112,12 @@ private DefaultImmutableWorkspaceProvider(
         this.executionHistoryStore = historyFactory.apply(cache);
     }
 
-    private static CleanupAction createCleanupAction(FileAccessTimeJournal fileAccessTimeJournal, int treeDepthToTrackAndCleanup) {
+    private static CleanupAction createCleanupAction(FileAccessTimeJournal fileAccessTimeJournal, int treeDepthToTrackAndCleanup, long maxCleanupDurationMillis) {
         return new LeastRecentlyUsedCacheCleanup(
             new SingleDepthFilesFinder(treeDepthToTrackAndCleanup),
             fileAccessTimeJournal,
-            DEFAULT_MAX_AGE_IN_DAYS_FOR_RECREATABLE_CACHE_ENTRIES
+            DEFAULT_MAX_AGE_IN_DAYS_FOR_RECREATABLE_CACHE_ENTRIES,
+            maxCleanupDurationMillis
         );
     }
 
@@ -28,11 +28,15 @@ import org.gradle.internal.execution.fingerprint.InputFingerprinter.InputVisitor
 import org.gradle.internal.execution.fingerprint.InputFingerprinter.Result
 import org.gradle.internal.fingerprint.CurrentFileCollectionFingerprint
 import org.gradle.internal.fingerprint.DirectorySensitivity
+import org.gradle.internal.operations.TestBuildOperationExecutor
+import org.gradle.internal.snapshot.FileSystemSnapshot
 import org.gradle.internal.snapshot.ValueSnapshot
 import org.gradle.internal.snapshot.ValueSnapshotter
 import spock.lang.Specification
 
+import java.util.concurrent.Executors
 import java.util.function.Consumer
+import java.util.function.Supplier
 
 import static org.gradle.internal.execution.fingerprint.InputFingerprinter.InputPropertyType.NON_INCREMENTAL
 
@@ -109,6 +113,56 @@ class DefaultInputFingerprinterTest extends Specification {
         result.fileFingerprints as Map == [:]
     }
 
+    def "fingerprints file properties concurrently when an executor is given"() {
+        def buildOperationExecutor = new TestBuildOperationExecutor()
+        def executor = Executors.newFixedThreadPool(2)
+        inputFingerprinter = new DefaultInputFingerprinter(fingerprinterRegistry, valueSnapshotter, buildOperationExecutor, executor)
+        def otherFileInput = Mock(FileCollection)
+        def fileInputSnapshot = Mock(FileSystemSnapshot)
+        def otherFileInputSnapshot = Mock(FileSystemSnapshot)
+        def otherFileInputFingerprint = Mock(CurrentFileCollectionFingerprint)
+        def callingThread = Thread.currentThread()
+        def snapshottingThreads = [].asSynchronized()
+
+        when:
+        def result = fingerprintInputProperties { visitor ->
+            visitor.visitInputFileProperty(
+                "file",
+                NON_INCREMENTAL,
+                new FileValueSupplier(fileInput, FileNormalizer, DirectorySensitivity.DEFAULT, { fileInput }))
+            visitor.visitInputFileProperty(
+                "another",
+                NON_INCREMENTAL,
+                new FileValueSupplier(otherFileInput, FileNormalizer, DirectorySensitivity.DEFAULT, { otherFileInput }))
+        }
+
+        then:
+        1 * fingerprinter.resolve(fileInput) >> { resolvedOn(callingThread, fileInputSnapshot, snapshottingThreads) }
+        1 * fingerprinter.resolve(otherFileInput) >> { resolvedOn(callingThread, otherFileInputSnapshot, snapshottingThreads) }
+        1 * fingerprinter.fingerprint(fileInputSnapshot) >> fileInputFingerprint
+        1 * fingerprinter.fingerprint(otherFileInputSnapshot) >> otherFileInputFingerprint
+        0 * _
+
+        then:
+        result.fileFingerprints.keySet() as List == ["another", "file"]
+        result.fileFingerprints as Map == ["file": fileInputFingerprint, "another": otherFileInputFingerprint]
+        buildOperationExecutor.operations*.displayName as Set == ["Fingerprint input property 'file'", "Fingerprint input property 'another'"] as Set
+        // The first property is snapshotted on the calling thread, the other one in the pool
+        snapshottingThreads.size() == 2
+        snapshottingThreads.count { it != callingThread } == 1
+
+        cleanup:
+        executor.shutdownNow()
+    }
+
+    private Supplier<FileSystemSnapshot> resolvedOn(Thread callingThread, FileSystemSnapshot snapshot, List<Thread> snapshottingThreads) {
+        assert Thread.currentThread() == callingThread
+        return {
+            snapshottingThreads << Thread.currentThread()
+            snapshot
+        } as Supplier<FileSystemSnapshot>
+    }
+
     private Result fingerprintInputProperties(
         ImmutableSortedMap<String, ValueSnapshot> previousValueSnapshots = ImmutableSortedMap.of(),
         ImmutableSortedMap<String, ValueSnapshot> knownValueSnapshots = ImmutableSortedMap.of(),
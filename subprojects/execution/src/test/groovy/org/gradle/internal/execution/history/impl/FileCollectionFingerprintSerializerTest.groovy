@@ -74,6 +74,24 @@ class FileCollectionFingerprintSerializerTest extends SerializerSpec {
         out.rootHashes == rootHashes
     }
 
+    def "reads and writes fingerprints with shared path prefixes"() {
+        def paths = ["/root/dir", "/root/dir/a.txt", "/root/dir/ab.txt", "/root/dir/sub/\uD83D\uDE00.txt", "/root/dir/sub/\uD83D\uDE01.txt", "/other.txt"]
+        def fingerprints = paths.collectEntries { path ->
+            [(path): new DefaultFileSystemLocationFingerprint(path.substring(1), FileType.RegularFile, HashCode.fromInt(path.hashCode()))]
+        }
+
+        when:
+        def out = serialize(new SerializableFileCollectionFingerprint(
+                fingerprints,
+                ImmutableMultimap.of("/root/dir", HashCode.fromInt(1234), "/other.txt", HashCode.fromInt(5678))
+        ), serializer)
+
+        then:
+        out.fingerprints.keySet() as List == paths
+        out.fingerprints.values()*.normalizedPath == paths*.substring(1)
+        out.fingerprints.values()*.normalizedContentHash == paths.collect { HashCode.fromInt(it.hashCode()) }
+    }
+
     def "should retain order in serialization"() {
         when:
         def out = serialize(new SerializableFileCollectionFingerprint(
@@ -9,6 +9,7 @@ dependencies {
 
     implementation(project(":base-annotations"))
     implementation(project(":build-operations"))
+    implementation(project(":persistent-cache"))
 
     implementation(libs.guava)
     implementation(libs.nativePlatform)
@@ -17,7 +18,6 @@ dependencies {
 
     testImplementation(project(":process-services"))
     testImplementation(project(":resources"))
-    testImplementation(project(":persistent-cache"))
     testImplementation(project(":build-option"))
     testImplementation(testFixtures(project(":core")))
     testImplementation(testFixtures(project(":file-collections")))
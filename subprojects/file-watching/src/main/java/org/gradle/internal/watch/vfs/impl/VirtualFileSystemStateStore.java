@@ -0,0 +1,407 @@
+/*
+ * Copyright 2021 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.internal.watch.vfs.impl;
+
+import org.gradle.cache.FileLock;
+import org.gradle.cache.FileLockManager;
+import org.gradle.internal.file.FileMetadata;
+import org.gradle.internal.file.FileMetadata.AccessType;
+import org.gradle.internal.file.impl.DefaultFileMetadata;
+import org.gradle.internal.hash.HashCode;
+import org.gradle.internal.hash.Hashing;
+import org.gradle.internal.snapshot.DirectorySnapshot;
+import org.gradle.internal.snapshot.FileSystemLocationSnapshot;
+import org.gradle.internal.snapshot.MissingFileSnapshot;
+import org.gradle.internal.snapshot.RegularFileSnapshot;
+import org.gradle.internal.snapshot.SnapshotHierarchy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.annotation.Nullable;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.function.Supplier;
+
+import static org.gradle.cache.internal.filelock.LockOptionsBuilder.mode;
+
+/**
+ * Persists the snapshots retained by the virtual file system, so a new daemon does not need to hash the whole workspace again.
+ *
+ * The snapshots in each watchable hierarchy are written to a separate file in a compact binary format when the daemon stops.
+ * Access to a file is guarded by a cross-process lock, since all the daemons of a Gradle version share the state directory.
+ * When the state is loaded again, only the subtrees where the modification times and sizes still match the file system are restored.
+ * Directories additionally record the modification time read when they were snapshotted, so added and removed children are detected as well.
+ */
+public class VirtualFileSystemStateStore {
+    private static final Logger LOGGER = LoggerFactory.getLogger(VirtualFileSystemStateStore.class);
+
+    private static final int MAGIC = 0x47564653;
+    private static final int FORMAT_VERSION = 2;
+
+    private static final byte DIRECTORY = 0;
+    private static final byte REGULAR_FILE = 1;
+    private static final byte MISSING = 2;
+
+    private final File stateDirectory;
+    private final FileLockManager fileLockManager;
+    private final Supplier<String[]> defaultExcludes;
+
+    public VirtualFileSystemStateStore(File stateDirectory, FileLockManager fileLockManager, Supplier<String[]> defaultExcludes) {
+        this.stateDirectory = stateDirectory;
+        this.fileLockManager = fileLockManager;
+        this.defaultExcludes = defaultExcludes;
+    }
+
+    /**
+     * Writes the snapshot roots of the given virtual file system located in the watchable hierarchy, replacing any previously stored state for the hierarchy.
+     *
+     * The snapshots must be up-to-date with the file system, i.e. they must have been kept in sync by watching the file system.
+     */
+    public void store(File hierarchy, SnapshotHierarchy root) {
+        String hierarchyPath = hierarchy.getAbsolutePath();
+        List<FileSystemLocationSnapshot> roots = new ArrayList<>();
+        root.visitSnapshotRoots(hierarchyPath, roots::add);
+        if (roots.isEmpty()) {
+            return;
+        }
+        File stateFile = stateFileFor(hierarchyPath);
+        File tempFile = new File(stateDirectory, stateFile.getName() + ".tmp");
+        try (FileLock ignored = fileLockManager.lock(stateFile, mode(FileLockManager.LockMode.Exclusive), "file system state for " + hierarchyPath)) {
+            try (DataOutputStream output = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tempFile)))) {
+                writeHeader(hierarchyPath, output);
+                output.writeInt(roots.size());
+                for (FileSystemLocationSnapshot snapshot : roots) {
+                    output.writeUTF(snapshot.getAbsolutePath());
+                    writeSnapshot(snapshot, output);
+                }
+            }
+            Files.move(tempFile.toPath(), stateFile.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException | RuntimeException e) {
+            LOGGER.warn("Unable to store the state of the virtual file system in {}", stateFile, e);
+            tempFile.delete();
+        }
+    }
+
+    /**
+     * Validates the snapshots stored for the given watchable hierarchy against the file system,
+     * and returns the largest subtrees which are still unchanged.
+     *
+     * Returns nothing when no state has been stored for the hierarchy, or when the stored state cannot be used by the current process.
+     */
+    public List<FileSystemLocationSnapshot> restore(File hierarchy) {
+        String hierarchyPath = hierarchy.getAbsolutePath();
+        File stateFile = stateFileFor(hierarchyPath);
+        if (!stateFile.isFile()) {
+            return Collections.emptyList();
+        }
+        long storedTimestamp;
+        List<PersistedRoot> roots;
+        try (FileLock ignored = fileLockManager.lock(stateFile, mode(FileLockManager.LockMode.Shared), "file system state for " + hierarchyPath)) {
+            // Anything modified at or after the state has been written may have been changed without updating the modification time
+            storedTimestamp = stateFile.lastModified();
+            roots = load(hierarchyPath, stateFile);
+        } catch (RuntimeException e) {
+            LOGGER.warn("Unable to load the state of the virtual file system from {}", stateFile, e);
+            return Collections.emptyList();
+        }
+        List<FileSystemLocationSnapshot> restored = new ArrayList<>();
+        for (PersistedRoot root : roots) {
+            FileSystemLocationSnapshot snapshot = root.node.restore(root.absolutePath, storedTimestamp, restored);
+            if (snapshot != null) {
+                restored.add(snapshot);
+            }
+        }
+        return restored;
+    }
+
+    private File stateFileFor(String hierarchyPath) {
+        return new File(stateDirectory, Hashing.hashString(hierarchyPath) + ".bin");
+    }
+
+    private List<PersistedRoot> load(String hierarchyPath, File stateFile) {
+        try (DataInputStream input = new DataInputStream(new BufferedInputStream(new FileInputStream(stateFile)))) {
+            if (!readHeader(hierarchyPath, input)) {
+                LOGGER.debug("Ignoring the state of the virtual file system in {} since it has been stored with a different configuration", stateFile);
+                return Collections.emptyList();
+            }
+            int rootCount = input.readInt();
+            List<PersistedRoot> roots = new ArrayList<>(rootCount);
+            for (int i = 0; i < rootCount; i++) {
+                String absolutePath = input.readUTF();
+                roots.add(new PersistedRoot(absolutePath, readNode(input)));
+            }
+            return roots;
+        } catch (FileNotFoundException e) {
+            return Collections.emptyList();
+        } catch (IOException | RuntimeException e) {
+            LOGGER.warn("Unable to load the state of the virtual file system from {}", stateFile, e);
+            return Collections.emptyList();
+        }
+    }
+
+    private void writeHeader(String hierarchyPath, DataOutputStream output) throws IOException {
+        output.writeInt(MAGIC);
+        output.writeInt(FORMAT_VERSION);
+        output.writeUTF(hierarchyPath);
+        output.writeUTF(Hashing.defaultFunction().getAlgorithm());
+        String[] excludes = defaultExcludes.get();
+        output.writeInt(excludes.length);
+        for (String exclude : excludes) {
+            output.writeUTF(exclude);
+        }
+    }
+
+    private boolean readHeader(String hierarchyPath, DataInputStream input) throws IOException {
+        if (input.readInt() != MAGIC || input.readInt() != FORMAT_VERSION) {
+            return false;
+        }
+        if (!input.readUTF().equals(hierarchyPath)) {
+            return false;
+        }
+        if (!input.readUTF().equals(Hashing.defaultFunction().getAlgorithm())) {
+            return false;
+        }
+        String[] excludes = new String[input.readInt()];
+        for (int i = 0; i < excludes.length; i++) {
+            excludes[i] = input.readUTF();
+        }
+        return Arrays.equals(excludes, defaultExcludes.get());
+    }
+
+    private static void writeSnapshot(FileSystemLocationSnapshot snapshot, DataOutputStream output) throws IOException {
+        switch (snapshot.getType()) {
+            case Directory:
+                output.writeByte(DIRECTORY);
+                writeCommon(snapshot, output);
+                output.writeLong(((DirectorySnapshot) snapshot).getLastModified());
+                writeHash(snapshot.getHash(), output);
+                List<FileSystemLocationSnapshot> children = ((DirectorySnapshot) snapshot).getChildren();
+                output.writeInt(children.size());
+                for (FileSystemLocationSnapshot child : children) {
+                    writeSnapshot(child, output);
+                }
+                break;
+            case RegularFile:
+                FileMetadata metadata = ((RegularFileSnapshot) snapshot).getMetadata();
+                output.writeByte(REGULAR_FILE);
+                writeCommon(snapshot, output);
+                output.writeLong(metadata.getLastModified());
+                output.writeLong(metadata.getLength());
+                writeHash(snapshot.getHash(), output);
+                break;
+            case Missing:
+                output.writeByte(MISSING);
+                writeCommon(snapshot, output);
+                break;
+            default:
+                throw new AssertionError();
+        }
+    }
+
+    private static void writeCommon(FileSystemLocationSnapshot snapshot, DataOutputStream output) throws IOException {
+        output.writeUTF(snapshot.getName());
+        output.writeBoolean(snapshot.getAccessType() == AccessType.VIA_SYMLINK);
+    }
+
+    private static void writeHash(HashCode hash, DataOutputStream output) throws IOException {
+        byte[] bytes = hash.toByteArray();
+        output.writeByte(bytes.length);
+        output.write(bytes);
+    }
+
+    private static PersistedNode readNode(DataInputStream input) throws IOException {
+        byte type = input.readByte();
+        String name = input.readUTF();
+        AccessType accessType = AccessType.viaSymlink(input.readBoolean());
+        switch (type) {
+            case DIRECTORY:
+                long lastModified = input.readLong();
+                HashCode hash = readHash(input);
+                int childCount = input.readInt();
+                List<PersistedNode> children = new ArrayList<>(childCount);
+                for (int i = 0; i < childCount; i++) {
+                    children.add(readNode(input));
+                }
+                return new PersistedDirectory(name, accessType, lastModified, hash, children);
+            case REGULAR_FILE:
+                long fileLastModified = input.readLong();
+                long length = input.readLong();
+                return new PersistedRegularFile(name, accessType, fileLastModified, length, readHash(input));
+            case MISSING:
+                return new PersistedMissingFile(name, accessType);
+            default:
+                throw new IOException("Unknown snapshot type " + type);
+        }
+    }
+
+    private static HashCode readHash(DataInputStream input) throws IOException {
+        byte[] bytes = new byte[input.readUnsignedByte()];
+        input.readFully(bytes);
+        return HashCode.fromBytes(bytes);
+    }
+
+    private static class PersistedRoot {
+        private final String absolutePath;
+        private final PersistedNode node;
+
+        public PersistedRoot(String absolutePath, PersistedNode node) {
+            this.absolutePath = absolutePath;
+            this.node = node;
+        }
+    }
+
+    private static abstract class PersistedNode {
+        protected final String name;
+        protected final AccessType accessType;
+
+        protected PersistedNode(String name, AccessType accessType) {
+            this.name = name;
+            this.accessType = accessType;
+        }
+
+        /**
+         * Returns the snapshot of this node if it is still valid.
+         * Otherwise, adds the snapshots of the largest valid subtrees to {@code partiallyRestored} and returns {@code null}.
+         */
+        @Nullable
+        abstract FileSystemLocationSnapshot restore(String absolutePath, long storedTimestamp, List<FileSystemLocationSnapshot> partiallyRestored);
+
+        protected boolean hasCurrentAccessType(Path path) {
+            return AccessType.viaSymlink(Files.isSymbolicLink(path)) == accessType;
+        }
+
+        @Nullable
+        protected static BasicFileAttributes readAttributes(Path path) {
+            try {
+                return Files.readAttributes(path, BasicFileAttributes.class);
+            } catch (IOException e) {
+                return null;
+            }
+        }
+
+        protected static boolean isTrustedTimestamp(long lastModified, long storedTimestamp) {
+            return lastModified != DirectorySnapshot.UNKNOWN_LAST_MODIFIED && lastModified < storedTimestamp;
+        }
+    }
+
+    private static class PersistedDirectory extends PersistedNode {
+        private final long lastModified;
+        private final HashCode hash;
+        private final List<PersistedNode> children;
+
+        public PersistedDirectory(String name, AccessType accessType, long lastModified, HashCode hash, List<PersistedNode> children) {
+            super(name, accessType);
+            this.lastModified = lastModified;
+            this.hash = hash;
+            this.children = children;
+        }
+
+        @Nullable
+        @Override
+        FileSystemLocationSnapshot restore(String absolutePath, long storedTimestamp, List<FileSystemLocationSnapshot> partiallyRestored) {
+            Path path = Paths.get(absolutePath);
+            BasicFileAttributes attributes = readAttributes(path);
+            boolean unchanged = attributes != null
+                && attributes.isDirectory()
+                && hasCurrentAccessType(path)
+                && attributes.lastModifiedTime().toMillis() == lastModified
+                && isTrustedTimestamp(lastModified, storedTimestamp);
+            if (!unchanged && (attributes == null || !attributes.isDirectory())) {
+                // None of the children can be valid when the directory itself is gone
+                return null;
+            }
+
+            String childPrefix = absolutePath.endsWith(File.separator) ? absolutePath : absolutePath + File.separator;
+            List<FileSystemLocationSnapshot> restoredChildren = new ArrayList<>(children.size());
+            for (PersistedNode child : children) {
+                FileSystemLocationSnapshot restoredChild = child.restore(childPrefix + child.name, storedTimestamp, partiallyRestored);
+                if (restoredChild == null) {
+                    unchanged = false;
+                } else {
+                    restoredChildren.add(restoredChild);
+                }
+            }
+            if (unchanged) {
+                return new DirectorySnapshot(absolutePath, name, accessType, hash, restoredChildren, lastModified);
+            }
+            partiallyRestored.addAll(restoredChildren);
+            return null;
+        }
+    }
+
+    private static class PersistedRegularFile extends PersistedNode {
+        private final long lastModified;
+        private final long length;
+        private final HashCode hash;
+
+        public PersistedRegularFile(String name, AccessType accessType, long lastModified, long length, HashCode hash) {
+            super(name, accessType);
+            this.lastModified = lastModified;
+            this.length = length;
+            this.hash = hash;
+        }
+
+        @Nullable
+        @Override
+        FileSystemLocationSnapshot restore(String absolutePath, long storedTimestamp, List<FileSystemLocationSnapshot> partiallyRestored) {
+            Path path = Paths.get(absolutePath);
+            BasicFileAttributes attributes = readAttributes(path);
+            if (attributes == null
+                || !attributes.isRegularFile()
+                || !hasCurrentAccessType(path)
+                || attributes.lastModifiedTime().toMillis() != lastModified
+                || attributes.size() != length
+                || !isTrustedTimestamp(lastModified, storedTimestamp)) {
+                return null;
+            }
+            return new RegularFileSnapshot(absolutePath, name, hash, DefaultFileMetadata.file(lastModified, length, accessType));
+        }
+    }
+
+    private static class PersistedMissingFile extends PersistedNode {
+        public PersistedMissingFile(String name, AccessType accessType) {
+            super(name, accessType);
+        }
+
+        @Nullable
+        @Override
+        FileSystemLocationSnapshot restore(String absolutePath, long storedTimestamp, List<FileSystemLocationSnapshot> partiallyRestored) {
+            Path path = Paths.get(absolutePath);
+            // A broken symbolic link is a missing file accessed via a symlink
+            if (readAttributes(path) != null || !hasCurrentAccessType(path)) {
+                return null;
+            }
+            return new MissingFileSnapshot(absolutePath, name, accessType);
+        }
+    }
+}
@@ -22,6 +22,7 @@
 import org.gradle.internal.operations.BuildOperationDescriptor;
 import org.gradle.internal.operations.BuildOperationRunner;
 import org.gradle.internal.operations.CallableBuildOperation;
+import org.gradle.internal.snapshot.FileSystemLocationSnapshot;
 import org.gradle.internal.snapshot.FileSystemNode;
 import org.gradle.internal.snapshot.SnapshotHierarchy;
 import org.gradle.internal.vfs.impl.AbstractVirtualFileSystem;
@@ -46,7 +47,9 @@
 import java.io.File;
 import java.io.IOException;
 import java.nio.file.Path;
+import java.util.ArrayList;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Set;
 import java.util.function.Supplier;
 
@@ -60,22 +63,30 @@ public class WatchingVirtualFileSystem extends AbstractVirtualFileSystem impleme
     private final LocationsWrittenByCurrentBuild locationsWrittenByCurrentBuild;
     private final Set<File> watchableHierarchies = new HashSet<>();
     private final WatchableFileSystemDetector watchableFileSystemDetector;
+    private final VirtualFileSystemStateStore stateStore;
 
     private FileWatcherRegistry watchRegistry;
     private Exception reasonForNotWatchingFiles;
+    /**
+     * The hierarchies registered while watching, whose state is persisted when the daemon stops.
+     */
+    private final Set<File> hierarchiesRegisteredWhileWatching = new HashSet<>();
+    private boolean restoringPersistedState = true;
 
     public WatchingVirtualFileSystem(
         FileWatcherRegistryFactory watcherRegistryFactory,
         VfsRootReference rootReference,
         DaemonDocumentationIndex daemonDocumentationIndex,
         LocationsWrittenByCurrentBuild locationsWrittenByCurrentBuild,
-        WatchableFileSystemDetector watchableFileSystemDetector
+        WatchableFileSystemDetector watchableFileSystemDetector,
+        VirtualFileSystemStateStore stateStore
     ) {
         super(rootReference);
         this.watcherRegistryFactory = watcherRegistryFactory;
         this.daemonDocumentationIndex = daemonDocumentationIndex;
         this.locationsWrittenByCurrentBuild = locationsWrittenByCurrentBuild;
         this.watchableFileSystemDetector = watchableFileSystemDetector;
+        this.stateStore = stateStore;
     }
 
     @Override
@@ -102,8 +113,14 @@ public SnapshotHierarchy call(BuildOperationContext context) {
                     FileSystemWatchingStatistics statisticsSinceLastBuild;
                     if (watchRegistry == null) {
                         context.setStatus("Starting file system watching");
+                        List<File> initialWatchableHierarchies = new ArrayList<>(watchableHierarchies);
                         startWatching(currentRoot);
                         newRoot = currentRoot.empty();
+                        if (watchRegistry != null) {
+                            for (File watchableHierarchy : initialWatchableHierarchies) {
+                                newRoot = restorePersistedSnapshots(newRoot, watchableHierarchy);
+                            }
+                        }
                         statisticsSinceLastBuild = null;
                     } else {
                         FileWatcherRegistry.FileWatchingStatistics statistics = watchRegistry.getAndResetStatistics();
@@ -169,11 +186,38 @@ public void registerWatchableHierarchy(File watchableHierarchy) {
             }
             return withWatcherChangeErrorHandling(
                 currentRoot,
-                () -> watchRegistry.registerWatchableHierarchy(watchableHierarchy, currentRoot)
+                () -> {
+                    watchRegistry.registerWatchableHierarchy(watchableHierarchy, currentRoot);
+                    return restorePersistedSnapshots(currentRoot, watchableHierarchy);
+                }
             );
         });
     }
 
+    /**
+     * Restores the snapshots persisted by a previous daemon when a hierarchy is watched for the first time by this daemon.
+     *
+     * This happens while holding the lock on the root and after the hierarchy is watched,
+     * so any change after the snapshots have been validated will invalidate them again.
+     */
+    private SnapshotHierarchy restorePersistedSnapshots(SnapshotHierarchy currentRoot, File watchableHierarchy) {
+        if (!hierarchiesRegisteredWhileWatching.add(watchableHierarchy) || !restoringPersistedState) {
+            return currentRoot;
+        }
+        List<FileSystemLocationSnapshot> restoredSnapshots = stateStore.restore(watchableHierarchy);
+        if (restoredSnapshots.isEmpty()) {
+            return currentRoot;
+        }
+        LOGGER.info("Restored {} file system locations in {} from the previous daemon", restoredSnapshots.size(), watchableHierarchy);
+        return updateNotifyingListeners(diffListener -> {
+            SnapshotHierarchy newRoot = currentRoot;
+            for (FileSystemLocationSnapshot snapshot : restoredSnapshots) {
+                newRoot = newRoot.store(snapshot.getAbsolutePath(), snapshot, diffListener);
+            }
+            return newRoot;
+        });
+    }
+
     @Override
     public void beforeBuildFinished(WatchMode watchMode, VfsLogging vfsLogging, WatchLogging watchLogging, BuildOperationRunner buildOperationRunner, int maximumNumberOfWatchedHierarchies) {
         rootReference.update(currentRoot -> buildOperationRunner.call(new CallableBuildOperation<SnapshotHierarchy>() {
@@ -379,9 +423,20 @@ private boolean hasDroppedStateBecauseOfErrorsReceivedWhileWatching(FileWatcherR
         return false;
     }
 
+    @Override
+    public void invalidateAll() {
+        // Dropping the virtual file system also drops the state persisted by a previous daemon
+        restoringPersistedState = false;
+        super.invalidateAll();
+    }
+
     @Override
     public void close() {
         rootReference.update(currentRoot -> {
+            // The retained state is only known to be in sync with the file system while watching without errors
+            if (watchRegistry != null && !hasDroppedStateBecauseOfErrorsReceivedWhileWatching(watchRegistry.getAndResetStatistics())) {
+                hierarchiesRegisteredWhileWatching.forEach(watchableHierarchy -> stateStore.store(watchableHierarchy, currentRoot));
+            }
             closeUnderLock();
             return currentRoot.empty();
         });
@@ -0,0 +1,204 @@
+/*
+ * Copyright 2021 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.internal.watch.vfs.impl
+
+import org.gradle.api.internal.cache.StringInterner
+import org.gradle.api.internal.file.TestFiles
+import org.gradle.cache.FileLockManager
+import org.gradle.internal.file.FileMetadata.AccessType
+import org.gradle.internal.snapshot.CaseSensitivity
+import org.gradle.internal.snapshot.DirectorySnapshot
+import org.gradle.internal.snapshot.FileSystemLocationSnapshot
+import org.gradle.internal.snapshot.MissingFileSnapshot
+import org.gradle.internal.snapshot.SnapshotHierarchy
+import org.gradle.internal.snapshot.impl.DirectorySnapshotter
+import org.gradle.internal.snapshot.impl.DirectorySnapshotterStatistics
+import org.gradle.internal.vfs.impl.DefaultSnapshotHierarchy
+import org.gradle.test.fixtures.file.CleanupTestDirectory
+import org.gradle.test.fixtures.file.TestFile
+import org.gradle.test.fixtures.file.TestNameTestDirectoryProvider
+import org.gradle.util.UsesNativeServices
+import org.junit.Rule
+import spock.lang.Specification
+
+import java.util.concurrent.atomic.AtomicBoolean
+
+import static org.gradle.cache.internal.DefaultFileLockManagerTestHelper.createDefaultFileLock
+import static org.gradle.cache.internal.DefaultFileLockManagerTestHelper.createDefaultFileLockManager
+
+@UsesNativeServices
+@CleanupTestDirectory(fieldName = "tmpDir")
+class VirtualFileSystemStateStoreTest extends Specification {
+    @Rule
+    public final TestNameTestDirectoryProvider tmpDir = new TestNameTestDirectoryProvider(getClass())
+
+    def directorySnapshotter = new DirectorySnapshotter(TestFiles.fileHasher(), new StringInterner(), [], Stub(DirectorySnapshotterStatistics.Collector))
+    def stateDir = tmpDir.file("state")
+    def store = new VirtualFileSystemStateStore(stateDir, createDefaultFileLockManager(), { ["**/.git"] as String[] })
+
+    def projectDir = tmpDir.createDir("project")
+    def outputDir = projectDir.createDir("build/classes")
+    def pastTimestamp = System.currentTimeMillis() - 10_000
+
+    def setup() {
+        outputDir.file("a.txt") << "a"
+        outputDir.file("nested/b.txt") << "b"
+        outputDir.file("nested/c.txt") << "c"
+    }
+
+    def "restores unchanged snapshots"() {
+        def snapshot = snapshot(outputDir)
+        def missingFile = new MissingFileSnapshot(projectDir.file("missing.txt").absolutePath, AccessType.DIRECT)
+        storeSnapshots(snapshot, missingFile)
+
+        when:
+        def restored = store.restore(projectDir)
+        then:
+        restored*.absolutePath as Set == [outputDir.absolutePath, missingFile.absolutePath] as Set
+        def restoredDirectory = restored.find { it.absolutePath == outputDir.absolutePath } as DirectorySnapshot
+        restoredDirectory.hash == snapshot.hash
+        restoredDirectory.isContentAndMetadataUpToDate(snapshot)
+    }
+
+    def "restores unchanged subtrees of a modified directory"() {
+        def snapshot = snapshot(outputDir)
+        storeSnapshots(snapshot)
+
+        when:
+        outputDir.file("nested/c.txt") << "changed"
+        def restored = store.restore(projectDir)
+        then:
+        restored*.absolutePath as Set == [outputDir.file("a.txt"), outputDir.file("nested/b.txt")]*.absolutePath as Set
+    }
+
+    def "does not restore directory with added child"() {
+        def snapshot = snapshot(outputDir)
+        storeSnapshots(snapshot)
+
+        when:
+        outputDir.file("nested/d.txt") << "d"
+        ageFiles()
+        outputDir.file("nested").setLastModified(System.currentTimeMillis())
+        def restored = store.restore(projectDir)
+        then:
+        restored*.absolutePath as Set == [outputDir.file("a.txt"), outputDir.file("nested/b.txt"), outputDir.file("nested/c.txt")]*.absolutePath as Set
+    }
+
+    def "does not restore missing file which has been created"() {
+        def missingFile = projectDir.file("missing.txt")
+        storeSnapshots(new MissingFileSnapshot(missingFile.absolutePath, AccessType.DIRECT))
+
+        when:
+        missingFile << "created"
+        then:
+        store.restore(projectDir).empty
+    }
+
+    def "stores the state of each hierarchy separately"() {
+        def otherProjectDir = tmpDir.createDir("other")
+        def otherOutputDir = otherProjectDir.createDir("build")
+        otherOutputDir.file("d.txt") << "d"
+        otherProjectDir.eachFileRecurse { it.setLastModified(pastTimestamp) }
+        def otherSnapshot = snapshot(otherOutputDir)
+        def snapshot = snapshot(outputDir)
+        storeSnapshots(snapshot, otherSnapshot)
+
+        when:
+        store.store(otherProjectDir, DefaultSnapshotHierarchy.empty(CaseSensitivity.CASE_SENSITIVE))
+        then:
+        store.restore(projectDir)*.absolutePath == [outputDir.absolutePath]
+        store.restore(otherProjectDir).empty
+
+        when:
+        storeSnapshots(otherProjectDir, otherSnapshot)
+        then:
+        store.restore(projectDir)*.absolutePath == [outputDir.absolutePath]
+        store.restore(otherProjectDir)*.absolutePath == [otherOutputDir.absolutePath]
+        stateDir.listFiles().findAll { it.name.endsWith(".bin") }.size() == 2
+    }
+
+    def "does not restore directory changed after it has been snapshotted"() {
+        def snapshot = snapshot(outputDir)
+        outputDir.file("nested/d.txt") << "d"
+        outputDir.file("nested").setLastModified(pastTimestamp + 1000)
+        storeSnapshots(snapshot)
+
+        when:
+        def restored = store.restore(projectDir)
+        then:
+        restored*.absolutePath as Set == [outputDir.file("a.txt"), outputDir.file("nested/b.txt"), outputDir.file("nested/c.txt")]*.absolutePath as Set
+    }
+
+    def "does not restore the state while another process writes it"() {
+        storeSnapshots(snapshot(outputDir))
+        def lock = createDefaultFileLock(stateFile(), FileLockManager.LockMode.Exclusive)
+        def storeWithShortTimeout = new VirtualFileSystemStateStore(stateDir, createDefaultFileLockManager(100), { ["**/.git"] as String[] })
+
+        expect:
+        storeWithShortTimeout.restore(projectDir).empty
+
+        cleanup:
+        lock?.close()
+    }
+
+    def "ignores state stored with different default excludes"() {
+        storeSnapshots(snapshot(outputDir))
+
+        expect:
+        new VirtualFileSystemStateStore(stateDir, createDefaultFileLockManager(), { [] as String[] }).restore(projectDir).empty
+    }
+
+    def "ignores corrupt state"() {
+        storeSnapshots(snapshot(outputDir))
+        def stateFile = stateFile()
+        stateFile.bytes = stateFile.bytes[0..20] as byte[]
+
+        expect:
+        store.restore(projectDir).empty
+    }
+
+    private FileSystemLocationSnapshot snapshot(TestFile location) {
+        ageFiles()
+        return directorySnapshotter.snapshot(location.absolutePath, null, new AtomicBoolean())
+    }
+
+    private void storeSnapshots(FileSystemLocationSnapshot... snapshots) {
+        storeSnapshots(projectDir, snapshots)
+    }
+
+    private void storeSnapshots(File hierarchy, FileSystemLocationSnapshot... snapshots) {
+        SnapshotHierarchy root = DefaultSnapshotHierarchy.empty(CaseSensitivity.CASE_SENSITIVE)
+        snapshots.each {
+            root = root.store(it.absolutePath, it, SnapshotHierarchy.NodeDiffListener.NOOP)
+        }
+        store.store(hierarchy, root)
+    }
+
+    private File stateFile() {
+        def stateFiles = stateDir.listFiles().findAll { it.name.endsWith(".bin") }
+        assert stateFiles.size() == 1
+        return stateFiles[0]
+    }
+
+    /**
+     * Modification times at or after storing the state are not trusted, so make sure the files are older.
+     */
+    private void ageFiles() {
+        projectDir.eachFileRecurse { it.setLastModified(pastTimestamp) }
+        projectDir.setLastModified(pastTimestamp)
+    }
+}
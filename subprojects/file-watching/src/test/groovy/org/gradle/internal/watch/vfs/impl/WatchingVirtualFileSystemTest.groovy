@@ -16,8 +16,10 @@
 
 package org.gradle.internal.watch.vfs.impl
 
+import org.gradle.internal.file.FileMetadata.AccessType
 import org.gradle.internal.operations.TestBuildOperationExecutor
 import org.gradle.internal.snapshot.CaseSensitivity
+import org.gradle.internal.snapshot.MissingFileSnapshot
 import org.gradle.internal.snapshot.SnapshotHierarchy
 import org.gradle.internal.vfs.impl.DefaultSnapshotHierarchy
 import org.gradle.internal.vfs.impl.VfsRootReference
@@ -28,9 +30,16 @@ import org.gradle.internal.watch.vfs.VfsLogging
 import org.gradle.internal.watch.vfs.WatchLogging
 import org.gradle.internal.watch.vfs.WatchMode
 import org.gradle.internal.watch.vfs.WatchableFileSystemDetector
+import org.gradle.test.fixtures.file.TestNameTestDirectoryProvider
+import org.junit.Rule
 import spock.lang.Specification
 
+import static org.gradle.cache.internal.DefaultFileLockManagerTestHelper.createDefaultFileLockManager
+
 class WatchingVirtualFileSystemTest extends Specification {
+    @Rule
+    TestNameTestDirectoryProvider temporaryFolder = new TestNameTestDirectoryProvider(getClass())
+
     def watcherRegistryFactory = Mock(FileWatcherRegistryFactory)
     def watcherRegistry = Mock(FileWatcherRegistry)
     def emptySnapshotHierarchy = DefaultSnapshotHierarchy.empty(CaseSensitivity.CASE_SENSITIVE)
@@ -42,12 +51,14 @@ class WatchingVirtualFileSystemTest extends Specification {
     def locationsUpdatedByCurrentBuild = Mock(LocationsWrittenByCurrentBuild)
     def buildOperationRunner = new TestBuildOperationExecutor()
     def watchableFileSystemDetector = Stub(WatchableFileSystemDetector)
+    def stateStore = new VirtualFileSystemStateStore(temporaryFolder.file("vfs"), createDefaultFileLockManager(), { [] as String[] })
     def watchingVirtualFileSystem = new WatchingVirtualFileSystem(
         watcherRegistryFactory,
         rootReference,
         daemonDocumentationIndex,
         locationsUpdatedByCurrentBuild,
-        watchableFileSystemDetector
+        watchableFileSystemDetector,
+        stateStore
     )
 
     def "invalidates the virtual file system before and after the build when watching is disabled"() {
@@ -154,4 +165,60 @@ class WatchingVirtualFileSystemTest extends Specification {
         then:
         1 * watcherRegistry.registerWatchableHierarchy(newWatchableHierarchy, _)
     }
+
+    def "restores snapshots persisted by the previous daemon in watched hierarchies"() {
+        def watchableHierarchy = temporaryFolder.createDir("watchable")
+        def newWatchableHierarchy = temporaryFolder.createDir("newWatchable")
+        def missingFile = new MissingFileSnapshot(watchableHierarchy.file("missing").absolutePath, AccessType.DIRECT)
+        def missingFileInNewHierarchy = new MissingFileSnapshot(newWatchableHierarchy.file("missing").absolutePath, AccessType.DIRECT)
+        def persistedRoot = emptySnapshotHierarchy
+            .store(missingFile.absolutePath, missingFile, SnapshotHierarchy.NodeDiffListener.NOOP)
+            .store(missingFileInNewHierarchy.absolutePath, missingFileInNewHierarchy, SnapshotHierarchy.NodeDiffListener.NOOP)
+        stateStore.store(watchableHierarchy, persistedRoot)
+        stateStore.store(newWatchableHierarchy, persistedRoot)
+
+        when:
+        watchingVirtualFileSystem.registerWatchableHierarchy(watchableHierarchy)
+        watchingVirtualFileSystem.afterBuildStarted(WatchMode.ENABLED, VfsLogging.NORMAL, WatchLogging.NORMAL, buildOperationRunner)
+        then:
+        1 * watcherRegistryFactory.createFileWatcherRegistry(_) >> watcherRegistry
+        1 * watcherRegistry.registerWatchableHierarchy(watchableHierarchy, _)
+        1 * watcherRegistry.virtualFileSystemContentsChanged([], { it*.absolutePath == [missingFile.absolutePath] }, _)
+        1 * watcherRegistry.setDebugLoggingEnabled(false)
+        0 * _
+
+        rootReference.getRoot().getMetadata(missingFile.absolutePath).present
+        !rootReference.getRoot().getMetadata(missingFileInNewHierarchy.absolutePath).present
+
+        when:
+        watchingVirtualFileSystem.registerWatchableHierarchy(newWatchableHierarchy)
+        then:
+        1 * watcherRegistry.registerWatchableHierarchy(newWatchableHierarchy, _)
+        1 * watcherRegistry.virtualFileSystemContentsChanged([], { it*.absolutePath == [missingFileInNewHierarchy.absolutePath] }, _)
+        0 * _
+
+        rootReference.getRoot().getMetadata(missingFileInNewHierarchy.absolutePath).present
+    }
+
+    def "persists the virtual file system when closed while watching"() {
+        def watchableHierarchy = temporaryFolder.createDir("watchable")
+        def missingFile = new MissingFileSnapshot(watchableHierarchy.file("missing").absolutePath, AccessType.DIRECT)
+        def missingFileOutsideOfHierarchy = new MissingFileSnapshot(temporaryFolder.file("missing").absolutePath, AccessType.DIRECT)
+
+        when:
+        watchingVirtualFileSystem.registerWatchableHierarchy(watchableHierarchy)
+        watchingVirtualFileSystem.afterBuildStarted(WatchMode.ENABLED, VfsLogging.NORMAL, WatchLogging.NORMAL, buildOperationRunner)
+        rootReference.update { root -> root
+            .store(missingFile.absolutePath, missingFile, SnapshotHierarchy.NodeDiffListener.NOOP)
+            .store(missingFileOutsideOfHierarchy.absolutePath, missingFileOutsideOfHierarchy, SnapshotHierarchy.NodeDiffListener.NOOP)
+        }
+        watchingVirtualFileSystem.close()
+        then:
+        1 * watcherRegistryFactory.createFileWatcherRegistry(_) >> watcherRegistry
+        1 * watcherRegistry.getAndResetStatistics() >> Stub(FileWatcherRegistry.FileWatchingStatistics)
+        1 * watcherRegistry.close()
+
+        stateStore.restore(watchableHierarchy)*.absolutePath == [missingFile.absolutePath]
+        stateStore.restore(temporaryFolder.testDirectory).empty
+    }
 }
@@ -55,4 +55,9 @@ public interface ZipEntry {
      * The size of the content in bytes, or -1 if not known.
      */
     int size();
+
+    /**
+     * The CRC-32 checksum of the content as stored in the archive, or a negative value if not known without reading the content.
+     */
+    long crc();
 }
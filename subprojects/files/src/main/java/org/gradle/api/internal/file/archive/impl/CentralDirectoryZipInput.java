@@ -0,0 +1,351 @@
+/*
+ * Copyright 2021 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.api.internal.file.archive.impl;
+
+import com.google.common.base.Charsets;
+import com.google.common.collect.AbstractIterator;
+import com.google.common.io.ByteStreams;
+import org.gradle.api.internal.file.archive.ZipEntry;
+import org.gradle.api.internal.file.archive.ZipInput;
+import org.gradle.internal.file.FileException;
+
+import java.io.ByteArrayInputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.io.SequenceInputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.util.Iterator;
+import java.util.zip.Inflater;
+import java.util.zip.InflaterInputStream;
+import java.util.zip.ZipException;
+
+/**
+ * Reads the entries of a zip file from its central directory, using positional reads on a {@link FileChannel}.
+ *
+ * Only the central directory is read when opening the file, so the names, sizes and checksums of all entries are available
+ * without touching the content of the entries. The content of an entry is only read and decompressed when requested.
+ *
+ * Zip64 archives, archives with data before the first entry, archives spanning several disks and encrypted entries are not supported.
+ */
+public class CentralDirectoryZipInput implements ZipInput {
+    private static final int END_OF_CENTRAL_DIRECTORY_SIGNATURE = 0x06054b50;
+    private static final int CENTRAL_DIRECTORY_HEADER_SIGNATURE = 0x02014b50;
+    private static final int LOCAL_FILE_HEADER_SIGNATURE = 0x04034b50;
+    private static final int END_OF_CENTRAL_DIRECTORY_SIZE = 22;
+    private static final int CENTRAL_DIRECTORY_HEADER_SIZE = 46;
+    private static final int LOCAL_FILE_HEADER_SIZE = 30;
+    private static final int MAX_COMMENT_SIZE = 0xFFFF;
+    private static final long ZIP64_MARKER = 0xFFFFFFFFL;
+    private static final int STORED = 0;
+    private static final int DEFLATED = 8;
+    private static final int ENCRYPTED_FLAG = 1;
+    private static final int BUFFER_SIZE = 8192;
+
+    /**
+     * Opens the given zip file and reads its central directory. Caller is responsible for closing the return value.
+     *
+     * @throws FileException on failure to open the zip, or when the zip uses features not supported by this reader
+     */
+    public static ZipInput create(File file) throws FileException {
+        RandomAccessFile randomAccessFile;
+        try {
+            randomAccessFile = new RandomAccessFile(file, "r");
+        } catch (IOException e) {
+            throw new FileException(e);
+        }
+        try {
+            return new CentralDirectoryZipInput(file, randomAccessFile.getChannel());
+        } catch (IOException e) {
+            closeQuietly(randomAccessFile);
+            throw new FileException(e);
+        }
+    }
+
+    private final File file;
+    private final FileChannel channel;
+    private final ByteBuffer centralDirectory;
+
+    private CentralDirectoryZipInput(File file, FileChannel channel) throws IOException {
+        this.file = file;
+        this.channel = channel;
+        this.centralDirectory = readCentralDirectory();
+    }
+
+    private ByteBuffer readCentralDirectory() throws IOException {
+        long fileSize = channel.size();
+        if (fileSize < END_OF_CENTRAL_DIRECTORY_SIZE) {
+            throw new ZipException("Not a zip file: " + file);
+        }
+        int tailSize = (int) Math.min(fileSize, END_OF_CENTRAL_DIRECTORY_SIZE + MAX_COMMENT_SIZE);
+        long tailOffset = fileSize - tailSize;
+        ByteBuffer tail = read(tailOffset, tailSize);
+        int end = tailSize - END_OF_CENTRAL_DIRECTORY_SIZE;
+        while (end >= 0 && tail.getInt(end) != END_OF_CENTRAL_DIRECTORY_SIGNATURE) {
+            end--;
+        }
+        if (end < 0) {
+            throw new ZipException("Could not find the end of the central directory in " + file);
+        }
+
+        int diskNumber = unsignedShort(tail, end + 4);
+        int centralDirectoryDisk = unsignedShort(tail, end + 6);
+        int entriesOnDisk = unsignedShort(tail, end + 8);
+        int totalEntries = unsignedShort(tail, end + 10);
+        long centralDirectorySize = unsignedInt(tail, end + 12);
+        long centralDirectoryOffset = unsignedInt(tail, end + 16);
+        if (diskNumber != 0 || centralDirectoryDisk != 0 || entriesOnDisk != totalEntries) {
+            throw new ZipException("Zip files spanning several disks are not supported: " + file);
+        }
+        if (totalEntries == 0xFFFF || centralDirectorySize == ZIP64_MARKER || centralDirectoryOffset == ZIP64_MARKER) {
+            throw new ZipException("Zip64 files are not supported: " + file);
+        }
+        // The central directory must directly precede its end record, otherwise the offsets in the file are not what we expect
+        if (centralDirectoryOffset + centralDirectorySize != tailOffset + end) {
+            throw new ZipException("Unexpected location of the central directory in " + file);
+        }
+        return read(centralDirectoryOffset, (int) centralDirectorySize);
+    }
+
+    @Override
+    public Iterator<ZipEntry> iterator() {
+        return new AbstractIterator<ZipEntry>() {
+            private int position;
+
+            @Override
+            protected ZipEntry computeNext() {
+                if (position >= centralDirectory.capacity()) {
+                    return endOfData();
+                }
+                try {
+                    CentralDirectoryZipEntry entry = readEntry(position);
+                    position += entry.headerSize;
+                    return entry;
+                } catch (IOException e) {
+                    throw new FileException(e);
+                }
+            }
+        };
+    }
+
+    private CentralDirectoryZipEntry readEntry(int position) throws IOException {
+        if (centralDirectory.capacity() - position < CENTRAL_DIRECTORY_HEADER_SIZE
+            || centralDirectory.getInt(position) != CENTRAL_DIRECTORY_HEADER_SIGNATURE) {
+            throw new ZipException("Invalid central directory header in " + file);
+        }
+        int flags = unsignedShort(centralDirectory, position + 8);
+        int method = unsignedShort(centralDirectory, position + 10);
+        long crc = unsignedInt(centralDirectory, position + 16);
+        long compressedSize = unsignedInt(centralDirectory, position + 20);
+        long size = unsignedInt(centralDirectory, position + 24);
+        int nameLength = unsignedShort(centralDirectory, position + 28);
+        int extraLength = unsignedShort(centralDirectory, position + 30);
+        int commentLength = unsignedShort(centralDirectory, position + 32);
+        long localHeaderOffset = unsignedInt(centralDirectory, position + 42);
+        if (compressedSize == ZIP64_MARKER || size == ZIP64_MARKER || localHeaderOffset == ZIP64_MARKER) {
+            throw new ZipException("Zip64 entries are not supported: " + file);
+        }
+        int headerSize = CENTRAL_DIRECTORY_HEADER_SIZE + nameLength + extraLength + commentLength;
+        if (centralDirectory.capacity() - position < headerSize) {
+            throw new ZipException("Invalid central directory header in " + file);
+        }
+        byte[] nameBytes = new byte[nameLength];
+        for (int i = 0; i < nameLength; i++) {
+            nameBytes[i] = centralDirectory.get(position + CENTRAL_DIRECTORY_HEADER_SIZE + i);
+        }
+        String name = new String(nameBytes, Charsets.UTF_8);
+        return new CentralDirectoryZipEntry(name, flags, method, crc, compressedSize, size, localHeaderOffset, headerSize);
+    }
+
+    private ByteBuffer read(long offset, int length) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(length);
+        buffer.order(ByteOrder.LITTLE_ENDIAN);
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, offset + buffer.position()) < 0) {
+                throw new EOFException("Unexpected end of " + file);
+            }
+        }
+        return buffer;
+    }
+
+    private static int unsignedShort(ByteBuffer buffer, int index) {
+        return buffer.getShort(index) & 0xFFFF;
+    }
+
+    private static long unsignedInt(ByteBuffer buffer, int index) {
+        return buffer.getInt(index) & 0xFFFFFFFFL;
+    }
+
+    private static void closeQuietly(RandomAccessFile randomAccessFile) {
+        try {
+            randomAccessFile.close();
+        } catch (IOException e) {
+            // Ignore, we are already failing
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    private class CentralDirectoryZipEntry implements ZipEntry {
+        private final String name;
+        private final int flags;
+        private final int method;
+        private final long crc;
+        private final long compressedSize;
+        private final long size;
+        private final long localHeaderOffset;
+        private final int headerSize;
+
+        CentralDirectoryZipEntry(String name, int flags, int method, long crc, long compressedSize, long size, long localHeaderOffset, int headerSize) {
+            this.name = name;
+            this.flags = flags;
+            this.method = method;
+            this.crc = crc;
+            this.compressedSize = compressedSize;
+            this.size = size;
+            this.localHeaderOffset = localHeaderOffset;
+            this.headerSize = headerSize;
+        }
+
+        @Override
+        public boolean isDirectory() {
+            return name.endsWith("/");
+        }
+
+        @Override
+        public String getName() {
+            return name;
+        }
+
+        @Override
+        public byte[] getContent() throws IOException {
+            return withInputStream(new InputStreamAction<byte[]>() {
+                @Override
+                public byte[] run(InputStream inputStream) throws IOException {
+                    int size = size();
+                    if (size >= 0) {
+                        byte[] content = new byte[size];
+                        ByteStreams.readFully(inputStream, content);
+                        return content;
+                    } else {
+                        return ByteStreams.toByteArray(inputStream);
+                    }
+                }
+            });
+        }
+
+        @Override
+        public <T> T withInputStream(InputStreamAction<T> action) throws IOException {
+            InputStream inputStream = openContent();
+            try {
+                return action.run(inputStream);
+            } finally {
+                inputStream.close();
+            }
+        }
+
+        private InputStream openContent() throws IOException {
+            if ((flags & ENCRYPTED_FLAG) != 0) {
+                throw new ZipException("Encrypted entry '" + name + "' in " + file + " is not supported");
+            }
+            ByteBuffer localHeader = read(localHeaderOffset, LOCAL_FILE_HEADER_SIZE);
+            if (localHeader.getInt(0) != LOCAL_FILE_HEADER_SIGNATURE) {
+                throw new ZipException("Invalid local header for entry '" + name + "' in " + file);
+            }
+            long dataOffset = localHeaderOffset + LOCAL_FILE_HEADER_SIZE + unsignedShort(localHeader, 26) + unsignedShort(localHeader, 28);
+            InputStream data = new ChannelRangeInputStream(channel, dataOffset, compressedSize);
+            switch (method) {
+                case STORED:
+                    return data;
+                case DEFLATED:
+                    // The inflater needs an extra dummy byte after the compressed data when reading raw deflate streams
+                    InputStream paddedData = new SequenceInputStream(data, new ByteArrayInputStream(new byte[1]));
+                    final Inflater inflater = new Inflater(true);
+                    return new InflaterInputStream(paddedData, inflater, BUFFER_SIZE) {
+                        @Override
+                        public void close() throws IOException {
+                            try {
+                                super.close();
+                            } finally {
+                                inflater.end();
+                            }
+                        }
+                    };
+                default:
+                    throw new ZipException("Unsupported compression method " + method + " for entry '" + name + "' in " + file);
+            }
+        }
+
+        @Override
+        public int size() {
+            return (int) size;
+        }
+
+        @Override
+        public long crc() {
+            return crc;
+        }
+    }
+
+    /**
+     * Reads a range of a file channel using positional reads, so it does not depend on or change the position of the channel.
+     */
+    private static class ChannelRangeInputStream extends InputStream {
+        private final FileChannel channel;
+        private long position;
+        private final long end;
+
+        ChannelRangeInputStream(FileChannel channel, long position, long length) {
+            this.channel = channel;
+            this.position = position;
+            this.end = position + length;
+        }
+
+        @Override
+        public int read() throws IOException {
+            byte[] buffer = new byte[1];
+            int read = read(buffer, 0, 1);
+            return read < 0 ? -1 : buffer[0] & 0xFF;
+        }
+
+        @Override
+        public int read(byte[] bytes, int off, int len) throws IOException {
+            if (position >= end) {
+                return -1;
+            }
+            int toRead = (int) Math.min(len, end - position);
+            int read = channel.read(ByteBuffer.wrap(bytes, off, toRead), position);
+            if (read < 0) {
+                throw new EOFException("Unexpected end of zip file");
+            }
+            position += read;
+            return read;
+        }
+
+        @Override
+        public int available() {
+            return (int) Math.min(Integer.MAX_VALUE, end - position);
+        }
+    }
+}
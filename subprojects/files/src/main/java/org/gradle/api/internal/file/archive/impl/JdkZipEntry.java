@@ -81,4 +81,9 @@ public <T> T withInputStream(InputStreamAction<T> action) throws IOException {
     public int size() {
         return (int) entry.getSize();
     }
+
+    @Override
+    public long crc() {
+        return entry.getCrc();
+    }
 }
@@ -0,0 +1,99 @@
+/*
+ * Copyright 2021 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.api.internal.file.archive.impl
+
+import org.gradle.internal.file.FileException
+import org.gradle.test.fixtures.file.TestNameTestDirectoryProvider
+import org.junit.Rule
+import spock.lang.Specification
+
+import java.util.zip.CRC32
+import java.util.zip.ZipEntry
+import java.util.zip.ZipOutputStream
+
+class CentralDirectoryZipInputTest extends Specification {
+    @Rule
+    TestNameTestDirectoryProvider temporaryFolder = new TestNameTestDirectoryProvider(getClass())
+
+    def "reads names, checksums and content of stored and deflated entries"() {
+        def file = temporaryFolder.file("foo.zip")
+        def deflated = ("deflated content " * 100).bytes
+        def stored = "stored content".bytes
+        def zip = new ZipOutputStream(new FileOutputStream(file))
+        zip.putNextEntry(new ZipEntry("dir/"))
+        zip.closeEntry()
+        zip.putNextEntry(new ZipEntry("dir/deflated.txt"))
+        zip.write(deflated)
+        zip.closeEntry()
+        def storedEntry = new ZipEntry("stored.txt")
+        storedEntry.method = ZipEntry.STORED
+        storedEntry.size = stored.length
+        storedEntry.crc = crc(stored)
+        zip.putNextEntry(storedEntry)
+        zip.write(stored)
+        zip.closeEntry()
+        zip.close()
+
+        when:
+        def zipInput = CentralDirectoryZipInput.create(file)
+        def entries = zipInput.collect { entry ->
+            [entry.name, entry.directory, entry.size(), entry.crc(), entry.directory ? null : new String(entry.content)]
+        }
+
+        then:
+        entries == [
+            ["dir/", true, 0, 0L, null],
+            ["dir/deflated.txt", false, deflated.length, crc(deflated), new String(deflated)],
+            ["stored.txt", false, stored.length, crc(stored), new String(stored)],
+        ]
+
+        cleanup:
+        zipInput?.close()
+    }
+
+    def "throws FileException when zip is badly formed"() {
+        def file = temporaryFolder.file("badly-formed").createFile()
+
+        when:
+        CentralDirectoryZipInput.create(file)
+
+        then:
+        thrown(FileException)
+    }
+
+    def "throws FileException when there is data before the first entry"() {
+        def zipFile = temporaryFolder.file("foo.zip")
+        def zip = new ZipOutputStream(new FileOutputStream(zipFile))
+        zip.putNextEntry(new ZipEntry("foo.txt"))
+        zip.write("foo".bytes)
+        zip.close()
+        def file = temporaryFolder.file("prefixed.zip")
+        file.bytes = "prefix".bytes + zipFile.bytes
+
+        when:
+        CentralDirectoryZipInput.create(file)
+
+        then:
+        thrown(FileException)
+    }
+
+    private static long crc(byte[] bytes) {
+        def crc = new CRC32()
+        crc.update(bytes)
+        return crc.value
+    }
+}
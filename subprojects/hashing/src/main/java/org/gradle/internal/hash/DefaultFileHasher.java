@@ -19,10 +19,23 @@
 import java.io.FileInputStream;
 import java.io.FileNotFoundException;
 import java.io.IOException;
-import java.io.InputStream;
 import java.io.UncheckedIOException;
+import java.nio.channels.FileChannel;
+import java.util.Locale;
 
 public class DefaultFileHasher implements FileHasher {
+    /**
+     * Files at least this large are hashed via memory mapping instead of being read through a heap buffer.
+     */
+    private static final long MAPPED_HASHING_THRESHOLD = 1024 * 1024;
+
+    /**
+     * Mapping only saves copying the content when the hash function reads mapped buffers directly, like MurmurHash3 but unlike MD5.
+     * Mapped files cannot be deleted on Windows while they are mapped, so we never map files there.
+     */
+    private static final boolean MAPPED_HASHING_SUPPORTED = Hashing.defaultFunction().hashesDirectBuffersWithoutCopying()
+        && !System.getProperty("os.name", "").toLowerCase(Locale.ROOT).contains("windows");
+
     private final StreamHasher streamHasher;
 
     public DefaultFileHasher(StreamHasher streamHasher) {
@@ -31,14 +44,22 @@ public DefaultFileHasher(StreamHasher streamHasher) {
 
     @Override
     public HashCode hash(File file) {
-        InputStream inputStream;
+        FileInputStream inputStream;
         try {
             inputStream = new FileInputStream(file);
         } catch (FileNotFoundException e) {
-            throw new UncheckedIOException(String.format("Failed to create MD5 hash for file '%s' as it does not exist.", file), e);
+            throw new UncheckedIOException(String.format("Failed to create hash for file '%s' as it does not exist.", file), e);
         }
         try {
+            if (MAPPED_HASHING_SUPPORTED) {
+                FileChannel channel = inputStream.getChannel();
+                if (channel.size() >= MAPPED_HASHING_THRESHOLD) {
+                    return streamHasher.hash(channel);
+                }
+            }
             return streamHasher.hash(inputStream);
+        } catch (IOException e) {
+            throw new UncheckedIOException(String.format("Failed to create hash for file '%s'.", file), e);
         } finally {
             try {
                 inputStream.close();
@@ -21,11 +21,18 @@
 import java.io.InputStream;
 import java.io.OutputStream;
 import java.io.UncheckedIOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
 import java.util.Queue;
 import java.util.concurrent.ArrayBlockingQueue;
 
 public class DefaultStreamHasher implements StreamHasher {
     private static final HashCode SIGNATURE = Hashing.signature(DefaultStreamHasher.class);
+    /**
+     * Each region is unmapped as soon as it has been hashed, so at most this much of a file is mapped at a time.
+     */
+    private static final long MAX_MAPPED_REGION_SIZE = 16 * 1024 * 1024;
 
     private final Queue<byte[]> buffers = new ArrayBlockingQueue<byte[]>(16);
 
@@ -34,7 +41,7 @@ public HashCode hash(InputStream inputStream) {
         try {
             return doHash(inputStream, ByteStreams.nullOutputStream());
         } catch (IOException e) {
-            throw new UncheckedIOException("Failed to create MD5 hash for file content.", e);
+            throw new UncheckedIOException("Failed to create hash for file content.", e);
         }
     }
 
@@ -43,6 +50,32 @@ public HashCode hashCopy(InputStream inputStream, OutputStream outputStream) thr
         return doHash(inputStream, outputStream);
     }
 
+    @Override
+    public HashCode hash(FileChannel channel) throws IOException {
+        if (!Hashing.defaultFunction().hashesDirectBuffersWithoutCopying()) {
+            // Mapping would not save copying the content, so read it like any other stream
+            return doHash(Channels.newInputStream(channel), ByteStreams.nullOutputStream());
+        }
+        PrimitiveHasher hasher = Hashing.newPrimitiveHasher();
+        hasher.putHash(SIGNATURE);
+        long position = channel.position();
+        long size = channel.size();
+        while (position < size) {
+            long regionSize = Math.min(MAX_MAPPED_REGION_SIZE, size - position);
+            MappedByteBuffer region = channel.map(FileChannel.MapMode.READ_ONLY, position, regionSize);
+            try {
+                hasher.putBytes(region);
+            } catch (InternalError e) {
+                // The JVM reports reading a part of the mapping that no longer exists, because the file was truncated, as an internal error
+                throw new IOException("File was truncated while being hashed.", e);
+            } finally {
+                MappedByteBuffers.unmap(region);
+            }
+            position += regionSize;
+        }
+        return hasher.hash();
+    }
+
     private HashCode doHash(InputStream inputStream, OutputStream outputStream) throws IOException {
         byte[] buffer = takeBuffer();
         try {
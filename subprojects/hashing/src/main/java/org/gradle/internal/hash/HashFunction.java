@@ -45,4 +45,15 @@ public interface HashFunction {
      * Returns the number of hexadecimal digits needed to represent the hash.
      */
     int getHexDigits();
+
+    /**
+     * Returns the name of the algorithm implemented by the hash function, e.g. {@code MD5}.
+     * Persistent caches storing hashes should use this to make sure they don't mix hashes created by different functions.
+     */
+    String getAlgorithm();
+
+    /**
+     * Returns whether the hashers of this function read direct and memory mapped buffers without first copying their content to the heap.
+     */
+    boolean hashesDirectBuffersWithoutCopying();
 }
@@ -16,6 +16,8 @@
 
 package org.gradle.internal.hash;
 
+import java.nio.ByteBuffer;
+
 /**
  * A safe hasher that can be marked as invalid.
  *
@@ -32,6 +34,11 @@ public interface Hasher {
      */
     void putBytes(byte[] bytes, int off, int len);
 
+    /**
+     * Feed the remaining bytes of the given buffer into the hasher. The position of the buffer is advanced to its limit.
+     */
+    void putBytes(ByteBuffer bytes);
+
     /**
      * Feed a single byte into the hasher.
      */
@@ -20,6 +20,7 @@
 import com.google.common.base.Preconditions;
 import com.google.common.io.ByteStreams;
 
+import javax.annotation.Nullable;
 import java.io.OutputStream;
 import java.nio.Buffer;
 import java.nio.ByteBuffer;
@@ -42,7 +43,27 @@ private Hashing() {}
 
     private static final HashFunction SHA512 = MessageDigestHashFunction.of("SHA-512");
 
-    private static final HashFunction DEFAULT = MD5;
+    private static final HashFunction MURMUR3 = new Murmur3HashFunction();
+
+    /**
+     * System property to select the hash function returned by {@link #defaultFunction()}, for example {@code MURMUR3}.
+     * When not set, MD5 is used.
+     */
+    public static final String DEFAULT_FUNCTION_PROPERTY = "org.gradle.internal.hash.function";
+
+    private static final HashFunction DEFAULT = selectDefaultFunction(System.getProperty(DEFAULT_FUNCTION_PROPERTY));
+
+    static HashFunction selectDefaultFunction(@Nullable String algorithm) {
+        if (algorithm == null || algorithm.isEmpty()) {
+            return MD5;
+        }
+        for (HashFunction function : new HashFunction[]{MD5, MURMUR3, SHA1, SHA256, SHA512}) {
+            if (function.getAlgorithm().equalsIgnoreCase(algorithm)) {
+                return function;
+            }
+        }
+        throw new IllegalArgumentException(String.format("Unknown hash function '%s' specified by system property '%s'.", algorithm, DEFAULT_FUNCTION_PROPERTY));
+    }
 
     /**
      * Returns a new {@link Hasher} based on the default hashing implementation.
@@ -117,6 +138,20 @@ public static HashFunction md5() {
         return MD5;
     }
 
+    /**
+     * 128-bit MurmurHash3 hashing function. Non-cryptographic, but much faster than {@link #md5()}.
+     */
+    public static HashFunction murmur3() {
+        return MURMUR3;
+    }
+
+    /**
+     * Returns a {@link Hasher} that prefixes every value fed to it with its length before passing it on to the given {@link PrimitiveHasher}.
+     */
+    static Hasher prefixingHasher(PrimitiveHasher primitiveHasher) {
+        return new DefaultHasher(primitiveHasher);
+    }
+
     /**
      * SHA1 hashing function.
      */
@@ -139,9 +174,11 @@ public static HashFunction sha512() {
     }
 
     private static abstract class MessageDigestHashFunction implements HashFunction {
+        protected final String algorithm;
         private final int hexDigits;
 
-        public MessageDigestHashFunction(int hashBits) {
+        public MessageDigestHashFunction(String algorithm, int hashBits) {
+            this.algorithm = algorithm;
             this.hexDigits = hashBits / 4;
         }
 
@@ -155,7 +192,7 @@ public static MessageDigestHashFunction of(String algorithm) {
             int hashBits = prototype.getDigestLength() * 8;
             try {
                 prototype.clone();
-                return new CloningMessageDigestHashFunction(prototype, hashBits);
+                return new CloningMessageDigestHashFunction(algorithm, prototype, hashBits);
             } catch (CloneNotSupportedException e) {
                 return new RegularMessageDigestHashFunction(algorithm, hashBits);
             }
@@ -169,7 +206,7 @@ public PrimitiveHasher newPrimitiveHasher() {
 
         @Override
         public Hasher newHasher() {
-            return new DefaultHasher(newPrimitiveHasher());
+            return prefixingHasher(newPrimitiveHasher());
         }
 
         @Override
@@ -192,13 +229,29 @@ public HashCode hashString(CharSequence string) {
         public int getHexDigits() {
             return hexDigits;
         }
+
+        @Override
+        public String getAlgorithm() {
+            return algorithm;
+        }
+
+        @Override
+        public boolean hashesDirectBuffersWithoutCopying() {
+            // MessageDigest copies the content of direct buffers to a heap array before digesting it
+            return false;
+        }
+
+        @Override
+        public String toString() {
+            return algorithm;
+        }
     }
 
     private static class CloningMessageDigestHashFunction extends MessageDigestHashFunction {
         private final MessageDigest prototype;
 
-        public CloningMessageDigestHashFunction(MessageDigest prototype, int hashBits) {
-            super(hashBits);
+        public CloningMessageDigestHashFunction(String algorithm, MessageDigest prototype, int hashBits) {
+            super(algorithm, hashBits);
             this.prototype = prototype;
         }
 
@@ -213,11 +266,8 @@ protected MessageDigest createDigest() {
     }
 
     private static class RegularMessageDigestHashFunction extends MessageDigestHashFunction {
-        private final String algorithm;
-
         public RegularMessageDigestHashFunction(String algorithm, int hashBits) {
-            super(hashBits);
-            this.algorithm = algorithm;
+            super(algorithm, hashBits);
         }
 
         @Override
@@ -260,20 +310,16 @@ public void putBytes(byte[] bytes, int off, int len) {
             getDigest().update(bytes, off, len);
         }
 
+        @Override
+        public void putBytes(ByteBuffer bytes) {
+            getDigest().update(bytes);
+        }
+
         private void update(int length) {
             getDigest().update(buffer.array(), 0, length);
             castBuffer(buffer).clear();
         }
 
-        /**
-         * Without this cast, when the code compiled by Java 9+ is executed on Java 8, it will throw
-         * java.lang.NoSuchMethodError: Method flip()Ljava/nio/ByteBuffer; does not exist in class java.nio.ByteBuffer
-         */
-        @SuppressWarnings("RedundantCast")
-        private static <T extends Buffer> Buffer castBuffer(T byteBuffer) {
-            return (Buffer) byteBuffer;
-        }
-
         @Override
         public void putInt(int value) {
             buffer.putInt(value);
@@ -315,6 +361,15 @@ public HashCode hash() {
         }
     }
 
+    /**
+     * Without this cast, when the code compiled by Java 9+ is executed on Java 8, it will throw
+     * java.lang.NoSuchMethodError: Method flip()Ljava/nio/ByteBuffer; does not exist in class java.nio.ByteBuffer
+     */
+    @SuppressWarnings("RedundantCast")
+    static <T extends Buffer> Buffer castBuffer(T byteBuffer) {
+        return (Buffer) byteBuffer;
+    }
+
     private static class DefaultHasher implements Hasher {
         private final PrimitiveHasher hasher;
         private String invalidReason;
@@ -341,6 +396,12 @@ public void putBytes(byte[] bytes, int off, int len) {
             hasher.putBytes(bytes, off, len);
         }
 
+        @Override
+        public void putBytes(ByteBuffer bytes) {
+            hasher.putInt(bytes.remaining());
+            hasher.putBytes(bytes);
+        }
+
         @Override
         public void putHash(HashCode hashCode) {
             hasher.putInt(hashCode.length());
@@ -19,6 +19,7 @@
 import java.io.FilterOutputStream;
 import java.io.IOException;
 import java.io.OutputStream;
+import java.nio.ByteBuffer;
 
 import static com.google.common.base.Preconditions.checkNotNull;
 
@@ -27,6 +28,8 @@
  * Inspired by the Google Guava project.
  */
 public final class HashingOutputStream extends FilterOutputStream {
+    private static final int COPY_CHUNK_SIZE = 8192;
+
     private final PrimitiveHasher hasher;
 
     public HashingOutputStream(HashFunction hashFunction, OutputStream out) {
@@ -46,6 +49,27 @@ public void write(byte[] bytes, int off, int len) throws IOException {
         out.write(bytes, off, len);
     }
 
+    /**
+     * Writes the remaining bytes of the given buffer to this stream. The position of the buffer is advanced to its limit.
+     */
+    public void write(ByteBuffer buffer) throws IOException {
+        if (buffer.hasArray()) {
+            int position = buffer.position();
+            int remaining = buffer.remaining();
+            write(buffer.array(), buffer.arrayOffset() + position, remaining);
+            Hashing.castBuffer(buffer).position(position + remaining);
+            return;
+        }
+        // Hash directly from the buffer, and only copy its content when passing it on to the underlying stream
+        hasher.putBytes(buffer.duplicate());
+        byte[] chunk = new byte[Math.min(buffer.remaining(), COPY_CHUNK_SIZE)];
+        while (buffer.hasRemaining()) {
+            int length = Math.min(buffer.remaining(), chunk.length);
+            buffer.get(chunk, 0, length);
+            out.write(chunk, 0, length);
+        }
+    }
+
     public HashCode hash() {
         return hasher.hash();
     }
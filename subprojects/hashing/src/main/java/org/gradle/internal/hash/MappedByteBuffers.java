@@ -0,0 +1,88 @@
+/*
+ * Copyright 2021 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.internal.hash;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+
+/**
+ * Releases memory mapped buffers without waiting for them to be garbage collected.
+ */
+final class MappedByteBuffers {
+    private static final Unmapper UNMAPPER = createUnmapper();
+
+    private MappedByteBuffers() {
+    }
+
+    /**
+     * Unmaps the given buffer. The buffer must not be accessed afterwards.
+     * Does nothing when the JVM does not allow unmapping buffers, in which case the mapping is released when the buffer is garbage collected.
+     */
+    static void unmap(MappedByteBuffer buffer) {
+        try {
+            UNMAPPER.unmap(buffer);
+        } catch (Exception e) {
+            // Leave the mapping to the garbage collector
+        }
+    }
+
+    private static Unmapper createUnmapper() {
+        try {
+            // Java 9 and later
+            Class<?> unsafeClass = Class.forName("sun.misc.Unsafe");
+            final Method invokeCleaner = unsafeClass.getMethod("invokeCleaner", ByteBuffer.class);
+            Field theUnsafe = unsafeClass.getDeclaredField("theUnsafe");
+            theUnsafe.setAccessible(true);
+            final Object unsafe = theUnsafe.get(null);
+            return new Unmapper() {
+                @Override
+                public void unmap(MappedByteBuffer buffer) throws Exception {
+                    invokeCleaner.invoke(unsafe, buffer);
+                }
+            };
+        } catch (Exception e) {
+            // Fall through
+        }
+        try {
+            // Java 8 and earlier
+            final Method cleaner = Class.forName("sun.nio.ch.DirectBuffer").getMethod("cleaner");
+            final Method clean = Class.forName("sun.misc.Cleaner").getMethod("clean");
+            return new Unmapper() {
+                @Override
+                public void unmap(MappedByteBuffer buffer) throws Exception {
+                    Object bufferCleaner = cleaner.invoke(buffer);
+                    if (bufferCleaner != null) {
+                        clean.invoke(bufferCleaner);
+                    }
+                }
+            };
+        } catch (Exception e) {
+            // Fall through
+        }
+        return new Unmapper() {
+            @Override
+            public void unmap(MappedByteBuffer buffer) {
+            }
+        };
+    }
+
+    private interface Unmapper {
+        void unmap(MappedByteBuffer buffer) throws Exception;
+    }
+}
@@ -0,0 +1,297 @@
+/*
+ * Copyright 2021 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.internal.hash;
+
+import com.google.common.base.Charsets;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * Streaming implementation of the 128-bit x64 variant of MurmurHash3 with a seed of zero.
+ * This is a non-cryptographic hash function that is considerably faster than MD5 on large inputs.
+ *
+ * Produces the same hashes as Guava's {@code Hashing.murmur3_128()}, with primitives fed in little-endian byte order.
+ */
+class Murmur3HashFunction implements HashFunction {
+    static final String ALGORITHM = "MURMUR3";
+
+    private static final int HASH_BITS = 128;
+    private static final int BLOCK_SIZE = 16;
+
+    @Override
+    public PrimitiveHasher newPrimitiveHasher() {
+        return new Murmur3Hasher();
+    }
+
+    @Override
+    public Hasher newHasher() {
+        return Hashing.prefixingHasher(newPrimitiveHasher());
+    }
+
+    @Override
+    public HashCode hashBytes(byte[] bytes) {
+        PrimitiveHasher hasher = newPrimitiveHasher();
+        hasher.putBytes(bytes);
+        return hasher.hash();
+    }
+
+    @Override
+    public HashCode hashString(CharSequence string) {
+        PrimitiveHasher hasher = newPrimitiveHasher();
+        hasher.putString(string);
+        return hasher.hash();
+    }
+
+    @Override
+    public int getHexDigits() {
+        return HASH_BITS / 4;
+    }
+
+    @Override
+    public String getAlgorithm() {
+        return ALGORITHM;
+    }
+
+    @Override
+    public boolean hashesDirectBuffersWithoutCopying() {
+        return true;
+    }
+
+    @Override
+    public String toString() {
+        return ALGORITHM;
+    }
+
+    private static class Murmur3Hasher implements PrimitiveHasher {
+        private static final long C1 = 0x87c37b91114253d5L;
+        private static final long C2 = 0x4cf5ad432745937fL;
+
+        private final byte[] buffer = new byte[BLOCK_SIZE];
+        private int buffered;
+        private long length;
+        private long h1;
+        private long h2;
+        private boolean done;
+
+        @Override
+        public void putBytes(byte[] bytes) {
+            putBytes(bytes, 0, bytes.length);
+        }
+
+        @Override
+        public void putBytes(byte[] bytes, int off, int len) {
+            checkNotDone();
+            length += len;
+            if (buffered > 0) {
+                int toCopy = Math.min(BLOCK_SIZE - buffered, len);
+                System.arraycopy(bytes, off, buffer, buffered, toCopy);
+                buffered += toCopy;
+                off += toCopy;
+                len -= toCopy;
+                if (buffered < BLOCK_SIZE) {
+                    return;
+                }
+                processBlock(buffer, 0);
+                buffered = 0;
+            }
+            while (len >= BLOCK_SIZE) {
+                processBlock(bytes, off);
+                off += BLOCK_SIZE;
+                len -= BLOCK_SIZE;
+            }
+            if (len > 0) {
+                System.arraycopy(bytes, off, buffer, 0, len);
+                buffered = len;
+            }
+        }
+
+        @Override
+        public void putBytes(ByteBuffer bytes) {
+            if (bytes.hasArray()) {
+                int position = bytes.position();
+                int remaining = bytes.remaining();
+                putBytes(bytes.array(), bytes.arrayOffset() + position, remaining);
+                Hashing.castBuffer(bytes).position(position + remaining);
+                return;
+            }
+            checkNotDone();
+            length += bytes.remaining();
+            while (buffered > 0 && bytes.hasRemaining()) {
+                appendToBuffer(bytes.get());
+            }
+            if (!bytes.hasRemaining()) {
+                return;
+            }
+            // Read blocks straight from the buffer, which avoids copying the content of direct and mapped buffers
+            ByteOrder originalOrder = bytes.order();
+            bytes.order(ByteOrder.LITTLE_ENDIAN);
+            try {
+                while (bytes.remaining() >= BLOCK_SIZE) {
+                    long k1 = bytes.getLong();
+                    long k2 = bytes.getLong();
+                    processBlock(k1, k2);
+                }
+            } finally {
+                bytes.order(originalOrder);
+            }
+            int tail = bytes.remaining();
+            bytes.get(buffer, 0, tail);
+            buffered = tail;
+        }
+
+        @Override
+        public void putByte(byte value) {
+            checkNotDone();
+            length++;
+            appendToBuffer(value);
+        }
+
+        private void appendToBuffer(byte value) {
+            buffer[buffered++] = value;
+            if (buffered == BLOCK_SIZE) {
+                processBlock(buffer, 0);
+                buffered = 0;
+            }
+        }
+
+        @Override
+        public void putInt(int value) {
+            putLittleEndian(value, 4);
+        }
+
+        @Override
+        public void putLong(long value) {
+            putLittleEndian(value, 8);
+        }
+
+        private void putLittleEndian(long value, int byteCount) {
+            for (int i = 0; i < byteCount; i++) {
+                putByte((byte) (value >>> (i * 8)));
+            }
+        }
+
+        @Override
+        public void putDouble(double value) {
+            putLong(Double.doubleToRawLongBits(value));
+        }
+
+        @Override
+        public void putBoolean(boolean value) {
+            putByte((byte) (value ? 1 : 0));
+        }
+
+        @Override
+        public void putString(CharSequence value) {
+            putBytes(value.toString().getBytes(Charsets.UTF_8));
+        }
+
+        @Override
+        public void putHash(HashCode hashCode) {
+            putBytes(hashCode.getBytes());
+        }
+
+        @Override
+        public HashCode hash() {
+            checkNotDone();
+            done = true;
+            processTail();
+
+            h1 ^= length;
+            h2 ^= length;
+            h1 += h2;
+            h2 += h1;
+            h1 = fmix64(h1);
+            h2 = fmix64(h2);
+            h1 += h2;
+            h2 += h1;
+
+            byte[] bytes = new byte[BLOCK_SIZE];
+            writeLittleEndian(h1, bytes, 0);
+            writeLittleEndian(h2, bytes, 8);
+            return HashCode.fromBytesNoCopy(bytes);
+        }
+
+        private void checkNotDone() {
+            if (done) {
+                throw new IllegalStateException("Cannot reuse hasher!");
+            }
+        }
+
+        private void processBlock(byte[] bytes, int off) {
+            processBlock(readLittleEndian(bytes, off, 8), readLittleEndian(bytes, off + 8, 8));
+        }
+
+        private void processBlock(long k1, long k2) {
+            h1 ^= mixK1(k1);
+            h1 = Long.rotateLeft(h1, 27);
+            h1 += h2;
+            h1 = h1 * 5 + 0x52dce729;
+
+            h2 ^= mixK2(k2);
+            h2 = Long.rotateLeft(h2, 31);
+            h2 += h1;
+            h2 = h2 * 5 + 0x38495ab5;
+        }
+
+        private void processTail() {
+            if (buffered > 8) {
+                h1 ^= mixK1(readLittleEndian(buffer, 0, 8));
+                h2 ^= mixK2(readLittleEndian(buffer, 8, buffered - 8));
+            } else if (buffered > 0) {
+                h1 ^= mixK1(readLittleEndian(buffer, 0, buffered));
+            }
+        }
+
+        private static long readLittleEndian(byte[] bytes, int off, int count) {
+            long result = 0;
+            for (int i = count - 1; i >= 0; i--) {
+                result = (result << 8) | (bytes[off + i] & 0xFFL);
+            }
+            return result;
+        }
+
+        private static void writeLittleEndian(long value, byte[] bytes, int off) {
+            for (int i = 0; i < 8; i++) {
+                bytes[off + i] = (byte) (value >>> (i * 8));
+            }
+        }
+
+        private static long mixK1(long k1) {
+            k1 *= C1;
+            k1 = Long.rotateLeft(k1, 31);
+            k1 *= C2;
+            return k1;
+        }
+
+        private static long mixK2(long k2) {
+            k2 *= C2;
+            k2 = Long.rotateLeft(k2, 33);
+            k2 *= C1;
+            return k2;
+        }
+
+        private static long fmix64(long k) {
+            k ^= k >>> 33;
+            k *= 0xff51afd7ed558ccdL;
+            k ^= k >>> 33;
+            k *= 0xc4ceb9fe1a85ec53L;
+            k ^= k >>> 33;
+            return k;
+        }
+    }
+}
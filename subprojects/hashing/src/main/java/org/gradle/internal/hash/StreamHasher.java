@@ -18,6 +18,7 @@
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.nio.channels.FileChannel;
 
 public interface StreamHasher {
     /**
@@ -30,4 +31,11 @@ public interface StreamHasher {
      * The method will not close either stream.
      */
     HashCode hashCopy(InputStream inputStream, OutputStream outputStream) throws IOException;
+
+    /**
+     * Returns the hash of the content of the given file channel, starting at its current position.
+     * Produces the same hash as {@link #hash(InputStream)} for the same content. When the hash function can read mapped buffers directly,
+     * the content is read via memory mapping instead of being copied to the heap. The channel will not be closed by the method.
+     */
+    HashCode hash(FileChannel channel) throws IOException;
 }
@@ -36,4 +36,18 @@ class DefaultStreamHasherTest extends Specification {
         hash.toString() == "af67a92e9f73b51572e9b94e343d2840"
         output.toByteArray() == "hello".bytes
     }
+
+    def "hashing file channel produces same hash as hashing stream"() {
+        def content = new byte[100_000]
+        new Random(1234).nextBytes(content)
+        def file = File.createTempFile("hash", ".bin")
+        file.deleteOnExit()
+        file.bytes = content
+
+        when:
+        def hash = new FileInputStream(file).withCloseable { new DefaultStreamHasher().hash(it.channel) }
+
+        then:
+        hash == new DefaultStreamHasher().hash(new ByteArrayInputStream(content))
+    }
 }
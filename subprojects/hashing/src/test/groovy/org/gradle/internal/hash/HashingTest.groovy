@@ -36,6 +36,17 @@ class HashingTest extends Specification {
         thrown(IllegalStateException)
     }
 
+    def 'only #function hashes direct buffers without copying them'() {
+        expect:
+        function.hashesDirectBuffersWithoutCopying() == withoutCopying
+
+        where:
+        function          | withoutCopying
+        Hashing.md5()     | false
+        Hashing.sha1()    | false
+        Hashing.murmur3() | true
+    }
+
     def 'hashers can overlap'() {
         when:
         def hasher1 = Hashing.newHasher()
@@ -0,0 +1,128 @@
+/*
+ * Copyright 2021 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.internal.hash
+
+import spock.lang.Specification
+
+import java.nio.ByteBuffer
+import java.nio.charset.StandardCharsets
+
+class Murmur3HashFunctionTest extends Specification {
+    def hashFunction = Hashing.murmur3()
+
+    def "produces same hash as Guava for #length bytes"() {
+        def bytes = new byte[length]
+        new Random(length).nextBytes(bytes)
+        def expected = com.google.common.hash.Hashing.murmur3_128().hashBytes(bytes).toString()
+
+        expect:
+        hashFunction.hashBytes(bytes).toString() == expected
+
+        when:
+        def hasher = hashFunction.newPrimitiveHasher()
+        def offset = 0
+        while (offset < length) {
+            def chunk = Math.min(length - offset, 5)
+            hasher.putBytes(bytes, offset, chunk)
+            offset += chunk
+        }
+
+        then:
+        hasher.hash().toString() == expected
+
+        where:
+        length << [0, 1, 7, 8, 9, 15, 16, 17, 31, 32, 33, 1000]
+    }
+
+    def "produces same hash for #type byte buffer as for bytes"() {
+        def bytes = new byte[1000]
+        new Random(1234).nextBytes(bytes)
+        def buffer = direct ? ByteBuffer.allocateDirect(bytes.length) : ByteBuffer.allocate(bytes.length)
+        buffer.put(bytes).flip()
+
+        def hasher = hashFunction.newPrimitiveHasher()
+        // Feed some bytes first so the buffer is not aligned to a block
+        hasher.putBytes(bytes, 0, 3)
+        hasher.putBytes(buffer)
+
+        def expected = hashFunction.newPrimitiveHasher()
+        expected.putBytes(bytes, 0, 3)
+        expected.putBytes(bytes)
+
+        expect:
+        hasher.hash() == expected.hash()
+        !buffer.hasRemaining()
+
+        where:
+        type       | direct
+        "heap"     | false
+        "direct"   | true
+    }
+
+    def "feeds primitives in little-endian order"() {
+        def hasher = hashFunction.newPrimitiveHasher()
+        hasher.putInt(123)
+        hasher.putLong(456L)
+        hasher.putBoolean(true)
+        hasher.putDouble(1.5d)
+        hasher.putString("abc")
+
+        def expected = com.google.common.hash.Hashing.murmur3_128().newHasher()
+            .putInt(123)
+            .putLong(456L)
+            .putBoolean(true)
+            .putDouble(1.5d)
+            .putString("abc", StandardCharsets.UTF_8)
+            .hash()
+
+        expect:
+        hasher.hash().toString() == expected.toString()
+    }
+
+    def "cannot reuse hasher"() {
+        def hasher = hashFunction.newPrimitiveHasher()
+        hasher.putInt(1)
+        hasher.hash()
+
+        when:
+        hasher.putInt(2)
+
+        then:
+        thrown(IllegalStateException)
+    }
+
+    def "has 128 bits"() {
+        expect:
+        hashFunction.hexDigits == 32
+        hashFunction.hashString("abc").length() == 16
+        hashFunction.algorithm == "MURMUR3"
+    }
+
+    def "can select default function by name"() {
+        expect:
+        Hashing.selectDefaultFunction(null) == Hashing.md5()
+        Hashing.selectDefaultFunction("murmur3") == Hashing.murmur3()
+        Hashing.selectDefaultFunction("SHA-256") == Hashing.sha256()
+
+        when:
+        Hashing.selectDefaultFunction("unknown")
+
+        then:
+        def e = thrown(IllegalArgumentException)
+        e.message == "Unknown hash function 'unknown' specified by system property 'org.gradle.internal.hash.function'."
+    }
+}
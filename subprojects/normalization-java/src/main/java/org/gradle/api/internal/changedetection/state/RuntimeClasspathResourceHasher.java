@@ -30,8 +30,24 @@
  * Hashes contents of resources files and {@link ZipEntry}s) in runtime classpath entries.
  *
  * Currently, we take the unmodified content into account but we could be smarter at some point.
+ *
+ * When using zip entry checksums, zip entries are hashed by the CRC-32 checksum and size stored in the archive instead, whenever these are known up front.
+ * This avoids decompressing the entries, at the cost of relying on a checksum which is not collision resistant.
  */
 public class RuntimeClasspathResourceHasher implements ResourceHasher {
+    private final boolean useZipEntryChecksums;
+
+    public RuntimeClasspathResourceHasher() {
+        this(false);
+    }
+
+    public RuntimeClasspathResourceHasher(boolean useZipEntryChecksums) {
+        this.useZipEntryChecksums = useZipEntryChecksums;
+    }
+
+    public boolean isUsingZipEntryChecksums() {
+        return useZipEntryChecksums;
+    }
 
     @Nullable
     @Override
@@ -41,8 +57,15 @@ public HashCode hash(RegularFileSnapshotContext fileSnapshotContext) {
 
     @Override
     public HashCode hash(ZipEntryContext zipEntryContext) throws IOException {
+        ZipEntry entry = zipEntryContext.getEntry();
+        if (useZipEntryChecksums && entry.crc() >= 0 && entry.size() >= 0) {
+            Hasher checksumHasher = Hashing.newHasher();
+            checksumHasher.putLong(entry.crc());
+            checksumHasher.putInt(entry.size());
+            return checksumHasher.hash();
+        }
         HashingOutputStream hasher = Hashing.primitiveStreamHasher();
-        return zipEntryContext.getEntry().withInputStream(inputStream -> {
+        return entry.withInputStream(inputStream -> {
             ByteStreams.copy(inputStream, hasher);
             return hasher.hash();
         });
@@ -51,5 +74,8 @@ public HashCode hash(ZipEntryContext zipEntryContext) throws IOException {
     @Override
     public void appendConfigurationToHasher(Hasher hasher) {
         hasher.putString(getClass().getName());
+        if (useZipEntryChecksums) {
+            hasher.putString("zip-entry-checksums");
+        }
     }
 }
@@ -21,8 +21,10 @@
 import org.apache.commons.io.FilenameUtils;
 import org.gradle.api.internal.file.archive.ZipEntry;
 import org.gradle.api.internal.file.archive.ZipInput;
+import org.gradle.api.internal.file.archive.impl.CentralDirectoryZipInput;
 import org.gradle.api.internal.file.archive.impl.FileZipInput;
 import org.gradle.api.internal.file.archive.impl.StreamZipInput;
+import org.gradle.internal.file.FileException;
 import org.gradle.internal.file.FileType;
 import org.gradle.internal.fingerprint.FileSystemLocationFingerprint;
 import org.gradle.internal.fingerprint.FingerprintHashingStrategy;
@@ -52,17 +54,32 @@ public static boolean isZipFile(final String name) {
 
     private final ResourceHasher resourceHasher;
     private final HashingExceptionReporter hashingExceptionReporter;
+    private final boolean readCentralDirectory;
 
     public ZipHasher(ResourceHasher resourceHasher) {
+        this(resourceHasher, false);
+    }
+
+    /**
+     * Creates a hasher which can read the entries of zip files from their central directory, without reading through the content of all entries.
+     * This makes sense when the resource hasher only needs to look at the content of a few entries.
+     */
+    public ZipHasher(ResourceHasher resourceHasher, boolean readCentralDirectory) {
         this(
             resourceHasher,
-            (s, e) -> LOGGER.debug("Malformed archive '{}'. Falling back to full content hash instead of entry hashing.", s.getName(), e)
+            (s, e) -> LOGGER.debug("Malformed archive '{}'. Falling back to full content hash instead of entry hashing.", s.getName(), e),
+            readCentralDirectory
         );
     }
 
     public ZipHasher(ResourceHasher resourceHasher, HashingExceptionReporter hashingExceptionReporter) {
+        this(resourceHasher, hashingExceptionReporter, false);
+    }
+
+    private ZipHasher(ResourceHasher resourceHasher, HashingExceptionReporter hashingExceptionReporter, boolean readCentralDirectory) {
         this.resourceHasher = resourceHasher;
         this.hashingExceptionReporter = hashingExceptionReporter;
+        this.readCentralDirectory = readCentralDirectory;
     }
 
     @Nullable
@@ -94,13 +111,24 @@ private HashCode hashZipContents(RegularFileSnapshot zipFileSnapshot) {
     }
 
     private List<FileSystemLocationFingerprint> fingerprintZipEntries(String zipFile) throws IOException {
-        try (ZipInput input = FileZipInput.create(new File(zipFile))) {
+        try (ZipInput input = openZipFile(new File(zipFile))) {
             List<FileSystemLocationFingerprint> fingerprints = Lists.newArrayList();
             fingerprintZipEntries("", zipFile, fingerprints, input);
             return fingerprints;
         }
     }
 
+    private ZipInput openZipFile(File zipFile) {
+        if (readCentralDirectory) {
+            try {
+                return CentralDirectoryZipInput.create(zipFile);
+            } catch (FileException e) {
+                LOGGER.debug("Cannot read the central directory of '{}'. Reading all entries instead.", zipFile, e);
+            }
+        }
+        return FileZipInput.create(zipFile);
+    }
+
     private void fingerprintZipEntries(String parentName, String rootParentName, List<FileSystemLocationFingerprint> fingerprints, ZipInput input) throws IOException {
         fingerprints.add(newZipMarker(parentName));
         for (ZipEntry zipEntry : input) {
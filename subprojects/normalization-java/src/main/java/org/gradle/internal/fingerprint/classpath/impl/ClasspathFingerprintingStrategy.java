@@ -51,8 +51,13 @@
 import org.gradle.internal.snapshot.SnapshotVisitResult;
 
 import javax.annotation.Nullable;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
 
 import static org.gradle.internal.fingerprint.classpath.impl.ClasspathFingerprintingStrategy.NonJarFingerprintingStrategy.IGNORE;
 import static org.gradle.internal.fingerprint.classpath.impl.ClasspathFingerprintingStrategy.NonJarFingerprintingStrategy.USE_FILE_HASH;
@@ -68,6 +73,10 @@
  * The order of the entries in the classpath matters, paths do not matter for the entries.
  * For the resources in each classpath entry, normalization takes the relative path of the resource and possibly normalizes its contents.
  * </p>
+ *
+ * <p>
+ * When an executor for hashing zip files is given, the zip files in the classpath are hashed concurrently, and the results are then combined in classpath order.
+ * </p>
  */
 public class ClasspathFingerprintingStrategy extends AbstractFingerprintingStrategy {
     private final NonJarFingerprintingStrategy nonZipFingerprintingStrategy;
@@ -76,19 +85,22 @@ public class ClasspathFingerprintingStrategy extends AbstractFingerprintingStrat
     private final ZipHasher zipHasher;
     private final Interner<String> stringInterner;
     private final HashCode zipHasherConfigurationHash;
+    private final Executor zipHashingExecutor;
 
     private ClasspathFingerprintingStrategy(String identifier,
                                            NonJarFingerprintingStrategy nonZipFingerprintingStrategy,
                                            ResourceHasher classpathResourceHasher,
                                            ZipHasher zipHasher,
                                            ResourceSnapshotterCacheService cacheService,
-                                           Interner<String> stringInterner) {
+                                           Interner<String> stringInterner,
+                                           @Nullable Executor zipHashingExecutor) {
         super(identifier);
         this.nonZipFingerprintingStrategy = nonZipFingerprintingStrategy;
         this.classpathResourceHasher = classpathResourceHasher;
         this.cacheService = cacheService;
         this.stringInterner = stringInterner;
         this.zipHasher = zipHasher;
+        this.zipHashingExecutor = zipHashingExecutor;
 
         Hasher hasher = Hashing.newHasher();
         zipHasher.appendConfigurationToHasher(hasher);
@@ -96,21 +108,30 @@ private ClasspathFingerprintingStrategy(String identifier,
     }
 
     public static ClasspathFingerprintingStrategy runtimeClasspath(ResourceFilter classpathResourceFilter, ResourceEntryFilter manifestAttributeResourceEntryFilter, Map<String, ResourceEntryFilter> propertiesFileFilters, RuntimeClasspathResourceHasher runtimeClasspathResourceHasher, ResourceSnapshotterCacheService cacheService, Interner<String> stringInterner) {
+        return runtimeClasspath(classpathResourceFilter, manifestAttributeResourceEntryFilter, propertiesFileFilters, runtimeClasspathResourceHasher, cacheService, stringInterner, null);
+    }
+
+    public static ClasspathFingerprintingStrategy runtimeClasspath(ResourceFilter classpathResourceFilter, ResourceEntryFilter manifestAttributeResourceEntryFilter, Map<String, ResourceEntryFilter> propertiesFileFilters, RuntimeClasspathResourceHasher runtimeClasspathResourceHasher, ResourceSnapshotterCacheService cacheService, Interner<String> stringInterner, @Nullable Executor zipHashingExecutor) {
         ResourceHasher resourceHasher = propertiesFileHasher(runtimeClasspathResourceHasher, propertiesFileFilters);
         resourceHasher = metaInfAwareClasspathResourceHasher(resourceHasher, manifestAttributeResourceEntryFilter);
         resourceHasher = ignoringResourceHasher(resourceHasher, classpathResourceFilter);
-        ZipHasher zipHasher = new ZipHasher(resourceHasher);
-        return new ClasspathFingerprintingStrategy(CLASSPATH_IDENTIFIER, USE_FILE_HASH, resourceHasher, zipHasher, cacheService, stringInterner);
+        // When zip entries are hashed by their checksums, only manifests and properties files need to be decompressed
+        ZipHasher zipHasher = new ZipHasher(resourceHasher, runtimeClasspathResourceHasher.isUsingZipEntryChecksums());
+        return new ClasspathFingerprintingStrategy(CLASSPATH_IDENTIFIER, USE_FILE_HASH, resourceHasher, zipHasher, cacheService, stringInterner, zipHashingExecutor);
     }
 
     public static ClasspathFingerprintingStrategy compileClasspath(ResourceHasher classpathResourceHasher, ResourceSnapshotterCacheService cacheService, Interner<String> stringInterner) {
+        return compileClasspath(classpathResourceHasher, cacheService, stringInterner, (Executor) null);
+    }
+
+    public static ClasspathFingerprintingStrategy compileClasspath(ResourceHasher classpathResourceHasher, ResourceSnapshotterCacheService cacheService, Interner<String> stringInterner, @Nullable Executor zipHashingExecutor) {
         ZipHasher zipHasher = new ZipHasher(classpathResourceHasher);
-        return new ClasspathFingerprintingStrategy(COMPILE_CLASSPATH_IDENTIFIER, IGNORE, classpathResourceHasher, zipHasher, cacheService, stringInterner);
+        return new ClasspathFingerprintingStrategy(COMPILE_CLASSPATH_IDENTIFIER, IGNORE, classpathResourceHasher, zipHasher, cacheService, stringInterner, zipHashingExecutor);
     }
 
     public static ClasspathFingerprintingStrategy compileClasspath(ResourceHasher classpathResourceHasher, ResourceSnapshotterCacheService cacheService, Interner<String> stringInterner, ZipHasher.HashingExceptionReporter hashingExceptionReporter) {
         ZipHasher zipHasher = new ZipHasher(classpathResourceHasher, hashingExceptionReporter);
-        return new ClasspathFingerprintingStrategy(COMPILE_CLASSPATH_IDENTIFIER, IGNORE, classpathResourceHasher, zipHasher, cacheService, stringInterner);
+        return new ClasspathFingerprintingStrategy(COMPILE_CLASSPATH_IDENTIFIER, IGNORE, classpathResourceHasher, zipHasher, cacheService, stringInterner, null);
     }
 
     private static ResourceHasher ignoringResourceHasher(ResourceHasher delegate, ResourceFilter resourceFilter) {
@@ -134,10 +155,38 @@ public String normalizePath(FileSystemLocationSnapshot snapshot) {
     public Map<String, FileSystemLocationFingerprint> collectFingerprints(FileSystemSnapshot roots) {
         ImmutableMap.Builder<String, FileSystemLocationFingerprint> builder = ImmutableMap.builder();
         HashSet<String> processedEntries = new HashSet<>();
-        roots.accept(new RelativePathTracker(), new ClasspathFingerprintingVisitor(processedEntries, builder));
+        Map<String, CompletableFuture<HashCode>> pendingZipHashes = zipHashingExecutor == null
+            ? Collections.emptyMap()
+            : hashZipFilesConcurrently(roots, zipHashingExecutor);
+        roots.accept(new RelativePathTracker(), new ClasspathFingerprintingVisitor(processedEntries, pendingZipHashes, builder));
         return builder.build();
     }
 
+    /**
+     * Starts hashing all the zip files in the given roots using the executor.
+     * The visitor then picks up the results in classpath order.
+     */
+    private Map<String, CompletableFuture<HashCode>> hashZipFilesConcurrently(FileSystemSnapshot roots, Executor executor) {
+        Map<String, CompletableFuture<HashCode>> pendingZipHashes = new HashMap<>();
+        roots.accept(new RelativePathTracker(), (snapshot, relativePath) -> {
+            if (snapshot instanceof RegularFileSnapshot
+                && ZipHasher.isZipFile(snapshot.getName())
+                && !pendingZipHashes.containsKey(snapshot.getAbsolutePath())) {
+                // The relative path tracker is reused while visiting, so take a copy of the segments
+                String[] relativePathSegments = Iterables.toArray(relativePath.getSegments(), String.class);
+                RegularFileSnapshotContext fileSnapshotContext = new DefaultRegularFileSnapshotContext(() -> relativePathSegments, (RegularFileSnapshot) snapshot);
+                pendingZipHashes.put(snapshot.getAbsolutePath(), CompletableFuture.supplyAsync(() -> hashZipFile(fileSnapshotContext), executor));
+            }
+            return SnapshotVisitResult.CONTINUE;
+        });
+        return pendingZipHashes;
+    }
+
+    @Nullable
+    private HashCode hashZipFile(RegularFileSnapshotContext fileSnapshotContext) {
+        return cacheService.hashFile(fileSnapshotContext, zipHasher, zipHasherConfigurationHash);
+    }
+
     public enum NonJarFingerprintingStrategy {
         IGNORE {
             @Nullable
@@ -159,11 +208,13 @@ public HashCode determineNonJarFingerprint(HashCode original) {
 
     private class ClasspathFingerprintingVisitor implements RelativePathTrackingFileSystemSnapshotHierarchyVisitor {
         private final HashSet<String> processedEntries;
+        private final Map<String, CompletableFuture<HashCode>> pendingZipHashes;
         private final ImmutableMap.Builder<String, FileSystemLocationFingerprint> builder;
 
 
-        public ClasspathFingerprintingVisitor(HashSet<String> processedEntries, ImmutableMap.Builder<String, FileSystemLocationFingerprint> builder) {
+        public ClasspathFingerprintingVisitor(HashSet<String> processedEntries, Map<String, CompletableFuture<HashCode>> pendingZipHashes, ImmutableMap.Builder<String, FileSystemLocationFingerprint> builder) {
             this.processedEntries = processedEntries;
+            this.pendingZipHashes = pendingZipHashes;
             this.builder = builder;
         }
 
@@ -210,7 +261,10 @@ public void visitMissing(MissingFileSnapshot missingSnapshot) {
         private HashCode hashContent(RegularFileSnapshot fileSnapshot, RelativePathSupplier relativePath) {
             RegularFileSnapshotContext fileSnapshotContext = new DefaultRegularFileSnapshotContext(() -> Iterables.toArray(relativePath.getSegments(), String.class), fileSnapshot);
             if (ZipHasher.isZipFile(fileSnapshotContext.getSnapshot().getName())) {
-                return cacheService.hashFile(fileSnapshotContext, zipHasher, zipHasherConfigurationHash);
+                CompletableFuture<HashCode> pendingZipHash = pendingZipHashes.get(fileSnapshot.getAbsolutePath());
+                return pendingZipHash == null
+                    ? hashZipFile(fileSnapshotContext)
+                    : awaitZipHash(pendingZipHash);
             } else if (relativePath.isRoot()) {
                 return nonZipFingerprintingStrategy.determineNonJarFingerprint(fileSnapshot.getHash());
             } else {
@@ -219,6 +273,22 @@ private HashCode hashContent(RegularFileSnapshot fileSnapshot, RelativePathSuppl
         }
     }
 
+    @Nullable
+    private static HashCode awaitZipHash(CompletableFuture<HashCode> pendingZipHash) {
+        try {
+            return pendingZipHash.join();
+        } catch (CompletionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw e;
+        }
+    }
+
     @Override
     public FingerprintHashingStrategy getHashingStrategy() {
         return FingerprintHashingStrategy.KEEP_ORDER;
@@ -337,6 +337,11 @@ class PropertiesFileAwareClasspathResourceHasherTest extends Specification {
             int size() {
                 return bytes.length
             }
+
+            @Override
+            long crc() {
+                return -1
+            }
         }
         return new ZipEntryContext(zipEntry, path, "foo.zip")
     }
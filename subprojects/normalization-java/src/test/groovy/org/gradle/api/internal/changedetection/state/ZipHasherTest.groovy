@@ -40,9 +40,10 @@ class ZipHasherTest extends Specification {
     ResourceEntryFilter propertyResourceFilter = new IgnoringResourceEntryFilter(ImmutableSet.copyOf("created-by", "पशुपतिरपि"))
     ZipHasher zipHasher = new ZipHasher(resourceHasher(ResourceEntryFilter.FILTER_NOTHING, ResourceEntryFilter.FILTER_NOTHING))
     ZipHasher ignoringZipHasher = new ZipHasher(resourceHasher(manifestResourceFilter, propertyResourceFilter))
+    ZipHasher checksumZipHasher = new ZipHasher(resourceHasher(manifestResourceFilter, propertyResourceFilter, true), true)
 
-    static ResourceHasher resourceHasher(ResourceEntryFilter manifestResourceFilter, ResourceEntryFilter propertyResourceFilter) {
-        ResourceHasher hasher = new RuntimeClasspathResourceHasher()
+    static ResourceHasher resourceHasher(ResourceEntryFilter manifestResourceFilter, ResourceEntryFilter propertyResourceFilter, boolean useZipEntryChecksums = false) {
+        ResourceHasher hasher = new RuntimeClasspathResourceHasher(useZipEntryChecksums)
         ResourceHasher propertiesFileHasher = new PropertiesFileAwareClasspathResourceHasher(hasher, ['**/*.properties': propertyResourceFilter])
         return new MetaInfAwareClasspathResourceHasher(propertiesFileHasher, manifestResourceFilter)
     }
@@ -146,6 +147,41 @@ class ZipHasherTest extends Specification {
         hash1 == hash2
     }
 
+    def "hashing by zip entry checksums detects changed entries"() {
+        given:
+        def content = tmpDir.createDir("content")
+        content.file("org/example/Foo.class") << "Foo"
+        content.file("org/example/Bar.class") << "Bar"
+        def jarfile = tmpDir.file("test.jar")
+        content.zipTo(jarfile)
+        def originalHash = checksumZipHasher.hash(snapshotContext(jarfile))
+
+        when:
+        content.file("org/example/Bar.class").text = "Changed"
+        content.zipTo(jarfile)
+        def changedHash = checksumZipHasher.hash(snapshotContext(jarfile))
+
+        then:
+        changedHash != originalHash
+        changedHash != zipHasher.hash(snapshotContext(jarfile))
+    }
+
+    def "hashing by zip entry checksums still normalizes manifests and properties files"() {
+        given:
+        def jarfile = tmpDir.file("test.jar")
+        createJarWithBuildInfo(jarfile, ["created-by": "1.8.0_232-b18 (Azul Systems, Inc.)", "foo": "true"], "Build information 1.0")
+        def jarfile2 = tmpDir.file("test2.jar")
+        createJarWithBuildInfo(jarfile2, ["created-by": "1.8.0_232-b15 (Azul Systems, Inc.)", "foo": "true"], "Build information 1.1")
+        def jarfile3 = tmpDir.file("test3.jar")
+        createJarWithAttributes(jarfile3, ["Created-By": "1.8.0_232-b18 (Azul Systems, Inc.)"])
+        def jarfile4 = tmpDir.file("test4.jar")
+        createJarWithAttributes(jarfile4, ["Created-By": "1.8.0_232-b15 (Azul Systems, Inc.)"])
+
+        expect:
+        checksumZipHasher.hash(snapshotContext(jarfile)) == checksumZipHasher.hash(snapshotContext(jarfile2))
+        checksumZipHasher.hash(snapshotContext(jarfile3)) == checksumZipHasher.hash(snapshotContext(jarfile4))
+    }
+
     def createJarWithAttributes(TestFile jarfile, Map<String, String> attributes) {
         def manifest = new Manifest()
         def mainAttributes = manifest.getMainAttributes()
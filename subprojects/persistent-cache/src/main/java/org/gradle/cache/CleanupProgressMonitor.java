@@ -24,6 +24,11 @@ public interface CleanupProgressMonitor {
 
     void incrementSkipped(long amount);
 
+    /**
+     * Signals that the cleanup stopped before visiting all entries, and should be continued soon.
+     */
+    void markIncomplete();
+
     CleanupProgressMonitor NO_OP = new CleanupProgressMonitor() {
         @Override
         public void incrementDeleted() {
@@ -36,6 +41,10 @@ public void incrementSkipped() {
         @Override
         public void incrementSkipped(long amount) {
         }
+
+        @Override
+        public void markIncomplete() {
+        }
     };
 
 }
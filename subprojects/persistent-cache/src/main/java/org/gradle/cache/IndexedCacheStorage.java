@@ -0,0 +1,43 @@
+/*
+ * Copyright 2021 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.cache;
+
+/**
+ * The on-disk structure used to store the entries of a {@link PersistentIndexedCache}.
+ */
+public enum IndexedCacheStorage {
+    /**
+     * Stores the entries in a B-tree, updating them in place. This is the default.
+     */
+    BTREE(".bin"),
+
+    /**
+     * Appends each update to a log that is indexed in memory, and compacts the log as soon as it contains mostly outdated records.
+     * Updates are written sequentially and a partially written update is discarded on open, which suits caches that are written to a lot, such as the execution history.
+     */
+    APPEND_ONLY_LOG(".log");
+
+    private final String fileExtension;
+
+    IndexedCacheStorage(String fileExtension) {
+        this.fileExtension = fileExtension;
+    }
+
+    public String getFileExtension() {
+        return fileExtension;
+    }
+}
@@ -27,24 +27,26 @@
     private final Serializer<K> keySerializer;
     private final Serializer<V> valueSerializer;
     private final CacheDecorator cacheDecorator;
+    private final IndexedCacheStorage storage;
 
     public static <K, V> PersistentIndexedCacheParameters<K, V> of(String cacheName, Serializer<K> keySerializer, Serializer<V> valueSerializer) {
-        return new PersistentIndexedCacheParameters<K, V>(cacheName, keySerializer, valueSerializer, null);
+        return new PersistentIndexedCacheParameters<K, V>(cacheName, keySerializer, valueSerializer, null, IndexedCacheStorage.BTREE);
     }
 
     public static <K, V> PersistentIndexedCacheParameters<K, V> of(String cacheName, Class<K> keyType, Serializer<V> valueSerializer) {
-        return new PersistentIndexedCacheParameters<K, V>(cacheName, SERIALIZER_FACTORY.getSerializerFor(keyType), valueSerializer, null);
+        return new PersistentIndexedCacheParameters<K, V>(cacheName, SERIALIZER_FACTORY.getSerializerFor(keyType), valueSerializer, null, IndexedCacheStorage.BTREE);
     }
 
     public static <K, V> PersistentIndexedCacheParameters<K, V> of(String cacheName, Class<K> keyType, Class<V> valueType) {
-        return new PersistentIndexedCacheParameters<K, V>(cacheName, SERIALIZER_FACTORY.getSerializerFor(keyType), SERIALIZER_FACTORY.getSerializerFor(valueType), null);
+        return new PersistentIndexedCacheParameters<K, V>(cacheName, SERIALIZER_FACTORY.getSerializerFor(keyType), SERIALIZER_FACTORY.getSerializerFor(valueType), null, IndexedCacheStorage.BTREE);
     }
 
-    private PersistentIndexedCacheParameters(String cacheName, Serializer<K> keySerializer, Serializer<V> valueSerializer, @Nullable CacheDecorator cacheDecorator) {
+    private PersistentIndexedCacheParameters(String cacheName, Serializer<K> keySerializer, Serializer<V> valueSerializer, @Nullable CacheDecorator cacheDecorator, IndexedCacheStorage storage) {
         this.cacheName = cacheName;
         this.keySerializer = keySerializer;
         this.valueSerializer = valueSerializer;
         this.cacheDecorator = cacheDecorator;
+        this.storage = storage;
     }
 
     public String getCacheName() {
@@ -64,7 +66,15 @@ public CacheDecorator getCacheDecorator() {
         return cacheDecorator;
     }
 
+    public IndexedCacheStorage getStorage() {
+        return storage;
+    }
+
     public PersistentIndexedCacheParameters<K, V> withCacheDecorator(CacheDecorator cacheDecorator) {
-        return new PersistentIndexedCacheParameters<K, V>(cacheName, keySerializer, valueSerializer, cacheDecorator);
+        return new PersistentIndexedCacheParameters<K, V>(cacheName, keySerializer, valueSerializer, cacheDecorator, storage);
+    }
+
+    public PersistentIndexedCacheParameters<K, V> withStorage(IndexedCacheStorage storage) {
+        return new PersistentIndexedCacheParameters<K, V>(cacheName, keySerializer, valueSerializer, cacheDecorator, storage);
     }
 }
@@ -16,38 +16,94 @@
 
 package org.gradle.cache.internal;
 
+import com.google.common.base.Charsets;
+import com.google.common.base.Joiner;
+import com.google.common.base.Splitter;
+import com.google.common.collect.ImmutableList;
+import com.google.common.io.Files;
 import org.apache.commons.io.FileUtils;
 import org.gradle.cache.CleanableStore;
 import org.gradle.cache.CleanupAction;
 import org.gradle.cache.CleanupProgressMonitor;
+import org.gradle.internal.UncheckedException;
+import org.gradle.internal.time.CountdownTimer;
+import org.gradle.internal.time.Time;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import javax.annotation.Nullable;
 import java.io.File;
+import java.io.FileFilter;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
 
+/**
+ * Deletes the files found by a {@link FilesFinder} which are selected by {@link #shouldDelete(File)}.
+ *
+ * <p>When a maximum duration is given, the cleanup stops once it has been exceeded and records the last file it visited
+ * in {@value #RESUME_FILE_NAME} in the base directory of the store. The next cleanup continues after that file,
+ * so that a large cache is cleaned up in bounded slices over several builds. This requires a finder which visits
+ * files in a stable, sorted order, like {@link SingleDepthFilesFinder}.</p>
+ */
 public abstract class AbstractCacheCleanup implements CleanupAction {
 
     private static final Logger LOGGER = LoggerFactory.getLogger(AbstractCacheCleanup.class);
 
+    public static final long UNLIMITED_DURATION = 0;
+    static final String RESUME_FILE_NAME = "gc-resume.txt";
+
     private final FilesFinder eligibleFilesFinder;
+    private final long maxDurationMillis;
 
     public AbstractCacheCleanup(FilesFinder eligibleFilesFinder) {
+        this(eligibleFilesFinder, UNLIMITED_DURATION);
+    }
+
+    public AbstractCacheCleanup(FilesFinder eligibleFilesFinder, long maxDurationMillis) {
         this.eligibleFilesFinder = eligibleFilesFinder;
+        this.maxDurationMillis = maxDurationMillis;
     }
 
     @Override
     public void clean(CleanableStore cleanableStore, CleanupProgressMonitor progressMonitor) {
+        File baseDir = cleanableStore.getBaseDir();
+        boolean timeSliced = maxDurationMillis > UNLIMITED_DURATION;
+        File resumeFile = new File(baseDir, RESUME_FILE_NAME);
+        CountdownTimer timer = timeSliced ? Time.startCountdownTimer(maxDurationMillis, TimeUnit.MILLISECONDS) : null;
+        List<String> resumePoint = timeSliced ? readResumePoint(resumeFile) : null;
+
         int filesDeleted = 0;
-        for (File file : findEligibleFiles(cleanableStore)) {
+        File lastVisited = null;
+        boolean complete = true;
+        for (File file : findEligibleFiles(cleanableStore, resumeFile, resumePoint)) {
             if (shouldDelete(file)) {
                 progressMonitor.incrementDeleted();
                 if (FileUtils.deleteQuietly(file)) {
                     handleDeletion(file);
-                    filesDeleted += 1 + deleteEmptyParentDirectories(cleanableStore.getBaseDir(), file.getParentFile());
+                    filesDeleted += 1 + deleteEmptyParentDirectories(baseDir, file.getParentFile());
                 }
             } else {
                 progressMonitor.incrementSkipped();
             }
+            lastVisited = file;
+            if (timer != null && timer.hasExpired()) {
+                complete = false;
+                break;
+            }
+        }
+
+        if (timeSliced) {
+            if (complete) {
+                FileUtils.deleteQuietly(resumeFile);
+            } else {
+                writeResumePoint(resumeFile, baseDir, lastVisited);
+                progressMonitor.markIncomplete();
+                LOGGER.info("{} cleanup stopped after {}, it will continue after {}.", cleanableStore.getDisplayName(), timer.getElapsed(), lastVisited);
+            }
         }
         LOGGER.info("{} cleanup deleted {} files/directories.", cleanableStore.getDisplayName(), filesDeleted);
     }
@@ -68,8 +124,75 @@ protected int deleteEmptyParentDirectories(File baseDir, File dir) {
 
     protected abstract void handleDeletion(File file);
 
-    private Iterable<File> findEligibleFiles(CleanableStore cleanableStore) {
-        return eligibleFilesFinder.find(cleanableStore.getBaseDir(), new NonReservedFileFilter(cleanableStore.getReservedCacheFiles()));
+    private Iterable<File> findEligibleFiles(CleanableStore cleanableStore, File resumeFile, @Nullable List<String> resumePoint) {
+        File baseDir = cleanableStore.getBaseDir();
+        FileFilter filter = new NonReservedFileFilter(maxDurationMillis > UNLIMITED_DURATION
+            ? ImmutableList.<File>builder().addAll(cleanableStore.getReservedCacheFiles()).add(resumeFile).build()
+            : cleanableStore.getReservedCacheFiles());
+        if (resumePoint != null) {
+            filter = new ResumingFileFilter(filter, baseDir, resumePoint);
+        }
+        return eligibleFilesFinder.find(baseDir, filter);
+    }
+
+    @Nullable
+    private static List<String> readResumePoint(File resumeFile) {
+        if (!resumeFile.isFile()) {
+            return null;
+        }
+        try {
+            List<String> segments = Splitter.on('/').omitEmptyStrings().splitToList(Files.asCharSource(resumeFile, Charsets.UTF_8).read().trim());
+            return segments.isEmpty() ? null : segments;
+        } catch (IOException e) {
+            LOGGER.debug("Could not read cleanup resume point from {}, starting from the beginning.", resumeFile, e);
+            return null;
+        }
     }
 
+    private static void writeResumePoint(File resumeFile, File baseDir, File lastVisited) {
+        List<String> segments = new ArrayList<String>();
+        for (File current = lastVisited; current != null && !current.equals(baseDir); current = current.getParentFile()) {
+            segments.add(0, current.getName());
+        }
+        try {
+            Files.asCharSink(resumeFile, Charsets.UTF_8).write(Joiner.on('/').join(segments));
+        } catch (IOException e) {
+            throw UncheckedException.throwAsUncheckedException(e);
+        }
+    }
+
+    /**
+     * Accepts only the files visited after the resume point, plus the directories containing it.
+     * Assumes that the files in each directory are visited in the order given by {@link File#compareTo(File)}.
+     */
+    private static class ResumingFileFilter implements FileFilter {
+        private final FileFilter delegate;
+        private final Map<File, File> nextOnResumePath = new HashMap<File, File>();
+        private final File resumePoint;
+
+        ResumingFileFilter(FileFilter delegate, File baseDir, List<String> resumePoint) {
+            this.delegate = delegate;
+            File current = baseDir;
+            for (String segment : resumePoint) {
+                File child = new File(current, segment);
+                nextOnResumePath.put(current, child);
+                current = child;
+            }
+            this.resumePoint = current;
+        }
+
+        @Override
+        public boolean accept(File file) {
+            if (!delegate.accept(file)) {
+                return false;
+            }
+            File onResumePath = nextOnResumePath.get(file.getParentFile());
+            if (onResumePath == null) {
+                // Somewhere after the resume point
+                return true;
+            }
+            int comparison = file.compareTo(onResumePath);
+            return comparison > 0 || (comparison == 0 && !file.equals(resumePoint));
+        }
+    }
 }
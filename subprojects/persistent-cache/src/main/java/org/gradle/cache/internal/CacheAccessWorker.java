@@ -24,8 +24,13 @@
 import org.gradle.internal.concurrent.Stoppable;
 import org.gradle.internal.time.CountdownTimer;
 import org.gradle.internal.time.Time;
+import org.gradle.internal.time.Timer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
+import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Deque;
 import java.util.List;
 import java.util.concurrent.ArrayBlockingQueue;
 import java.util.concurrent.BlockingQueue;
@@ -35,12 +40,28 @@
 import java.util.concurrent.FutureTask;
 import java.util.concurrent.TimeUnit;
 
+/**
+ * Applies queued cache operations on a worker thread. Operations are applied in batches, where each batch runs under a single acquisition of the cache lock
+ * and so is written to the backing caches with a single flush when the lock is released.
+ *
+ * A batch ends when no more operations arrive within the batch window, when the batch holds the maximum number of operations, when the lock has been held for
+ * the maximum locking time, or when a flush or stop is requested.
+ */
 class CacheAccessWorker implements Runnable, Stoppable, AsyncCacheAccess {
+    private static final Logger LOGGER = LoggerFactory.getLogger(CacheAccessWorker.class);
+    static final String BATCH_WINDOW_PROPERTY = "org.gradle.cache.internal.worker.batchWindowMillis";
+    static final String MAX_BATCH_SIZE_PROPERTY = "org.gradle.cache.internal.worker.maxBatchSize";
+    static final String MAX_LOCKING_TIME_PROPERTY = "org.gradle.cache.internal.worker.maxLockingTimeMillis";
+
     private final BlockingQueue<Runnable> workQueue;
+    // Operations taken from the work queue but not yet executed, only accessed by the worker thread
+    private final Deque<Runnable> pendingOperations = new ArrayDeque<Runnable>();
     private final String displayName;
     private final CacheAccess cacheAccess;
     private final long batchWindowMillis;
     private final long maximumLockingTimeMillis;
+    private final int maximumBatchSize;
+    private final BatchStatistics statistics = new BatchStatistics();
     private boolean closed;
     private boolean workerCompleted;
     private boolean stopSeen;
@@ -48,10 +69,18 @@ class CacheAccessWorker implements Runnable, Stoppable, AsyncCacheAccess {
     private final ExecutorPolicy.CatchAndRecordFailures failureHandler = new ExecutorPolicy.CatchAndRecordFailures();
 
     CacheAccessWorker(String displayName, CacheAccess cacheAccess) {
+        this(displayName, cacheAccess, Long.getLong(BATCH_WINDOW_PROPERTY, 200), Long.getLong(MAX_LOCKING_TIME_PROPERTY, 5000), Integer.getInteger(MAX_BATCH_SIZE_PROPERTY, 10000));
+    }
+
+    CacheAccessWorker(String displayName, CacheAccess cacheAccess, long batchWindowMillis, long maximumLockingTimeMillis, int maximumBatchSize) {
+        if (maximumBatchSize < 1) {
+            throw new IllegalArgumentException("The maximum batch size must be positive, but was " + maximumBatchSize + ".");
+        }
         this.displayName = displayName;
         this.cacheAccess = cacheAccess;
-        this.batchWindowMillis = 200;
-        this.maximumLockingTimeMillis = 5000;
+        this.batchWindowMillis = batchWindowMillis;
+        this.maximumLockingTimeMillis = maximumLockingTimeMillis;
+        this.maximumBatchSize = maximumBatchSize;
         HeapProportionalCacheSizer heapProportionalCacheSizer = new HeapProportionalCacheSizer();
         int queueCapacity = Math.min(4000, heapProportionalCacheSizer.scaleCacheSize(40000));
         workQueue = new ArrayBlockingQueue<Runnable>(queueCapacity, true);
@@ -152,7 +181,8 @@ public void run() {
             failureHandler.onFailure("Failed to execute cache operations on " + displayName, t);
         } finally {
             // Notify any waiting flush threads that the worker is done, possibly with a failure
-            List<Runnable> runnables = new ArrayList<Runnable>();
+            List<Runnable> runnables = new ArrayList<Runnable>(pendingOperations);
+            pendingOperations.clear();
             workQueue.drainTo(runnables);
             for (Runnable runnable : runnables) {
                 if (runnable instanceof FlushOperationsCommand) {
@@ -166,11 +196,32 @@ public void run() {
     }
 
     private Runnable takeFromQueue() throws InterruptedException {
+        Runnable operation = pendingOperations.poll();
+        if (operation != null) {
+            return operation;
+        }
         return workQueue.take();
     }
 
+    /**
+     * Returns the next operation of the current batch, taking all operations that are already queued at once, or waiting up to the batch window for a new one.
+     */
+    private Runnable pollFromQueue(int maxOperations) throws InterruptedException {
+        if (pendingOperations.isEmpty()) {
+            workQueue.drainTo(pendingOperations, maxOperations);
+        }
+        Runnable operation = pendingOperations.poll();
+        if (operation != null) {
+            return operation;
+        }
+        return workQueue.poll(batchWindowMillis, TimeUnit.MILLISECONDS);
+    }
+
     private void flushOperations(final Runnable updateOperation) {
         final List<FlushOperationsCommand> flushOperations = new ArrayList<FlushOperationsCommand>();
+        statistics.queued(pendingOperations.size() + workQueue.size() + 1);
+        Timer batchTimer = Time.startTimer();
+        final int[] operationCount = new int[1];
         try {
             cacheAccess.useCache(new Runnable() {
                 @Override
@@ -178,11 +229,13 @@ public void run() {
                     CountdownTimer timer = Time.startCountdownTimer(maximumLockingTimeMillis, TimeUnit.MILLISECONDS);
                     if (updateOperation != null) {
                         failureHandler.onExecute(updateOperation);
+                        operationCount[0]++;
                     }
                     Runnable otherOperation;
                     try {
-                        while ((otherOperation = workQueue.poll(batchWindowMillis, TimeUnit.MILLISECONDS)) != null) {
+                        while (operationCount[0] < maximumBatchSize && (otherOperation = pollFromQueue(maximumBatchSize - operationCount[0])) != null) {
                             failureHandler.onExecute(otherOperation);
+                            operationCount[0]++;
                             final Class<? extends Runnable> runnableClass = otherOperation.getClass();
                             if (runnableClass == FlushOperationsCommand.class) {
                                 flushOperations.add((FlushOperationsCommand) otherOperation);
@@ -202,6 +255,7 @@ public void run() {
                 }
             });
         } finally {
+            statistics.batchCompleted(operationCount[0], batchTimer.getElapsedMillis());
             for (FlushOperationsCommand flushOperation : flushOperations) {
                 flushOperation.completed();
             }
@@ -222,10 +276,38 @@ public synchronized void stop() {
             } catch (InterruptedException e) {
                 Thread.currentThread().interrupt();
             }
+            if (LOGGER.isDebugEnabled()) {
+                LOGGER.debug("Cache worker for {} finished: {}", displayName, statistics);
+            }
         }
         rethrowFailure();
     }
 
+    private static class BatchStatistics {
+        private long batchCount;
+        private long operationCount;
+        private int maximumQueueDepth;
+        private long totalBatchTimeMillis;
+        private long maximumBatchTimeMillis;
+
+        void queued(int queueDepth) {
+            maximumQueueDepth = Math.max(maximumQueueDepth, queueDepth);
+        }
+
+        void batchCompleted(int operations, long batchTimeMillis) {
+            batchCount++;
+            operationCount += operations;
+            totalBatchTimeMillis += batchTimeMillis;
+            maximumBatchTimeMillis = Math.max(maximumBatchTimeMillis, batchTimeMillis);
+        }
+
+        @Override
+        public String toString() {
+            return operationCount + " operations in " + batchCount + " batches, maximum queue depth " + maximumQueueDepth
+                + ", total batch time " + totalBatchTimeMillis + "ms, maximum batch time " + maximumBatchTimeMillis + "ms";
+        }
+    }
+
     private static class ShutdownOperationsCommand implements Runnable {
         @Override
         public void run() {
@@ -43,11 +43,19 @@ public String toString() {
     @Nullable
     @Override
     public V getIfPresent(final K key) {
+        V value = target.getIfPresentWithoutFileLock(key);
+        if (value != null) {
+            return value;
+        }
         return cacheAccess.withFileLock(() -> target.get(key));
     }
 
     @Override
     public V get(final K key, final Function<? super K, ? extends V> producer) {
+        V value = target.getIfPresentWithoutFileLock(key);
+        if (value != null) {
+            return value;
+        }
         Runnable runnable = cacheAccess.acquireFileLock();
         return target.get(key, producer, runnable);
     }
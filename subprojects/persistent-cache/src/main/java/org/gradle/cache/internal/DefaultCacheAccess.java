@@ -25,6 +25,7 @@
 import org.gradle.cache.FileIntegrityViolationException;
 import org.gradle.cache.FileLock;
 import org.gradle.cache.FileLockManager;
+import org.gradle.cache.IndexedCacheStorage;
 import org.gradle.cache.InsufficientLockModeException;
 import org.gradle.cache.LockOptions;
 import org.gradle.cache.LockTimeoutException;
@@ -32,6 +33,7 @@
 import org.gradle.cache.PersistentIndexedCacheParameters;
 import org.gradle.cache.internal.btree.BTreePersistentIndexedCache;
 import org.gradle.cache.internal.cacheops.CacheAccessOperationsStack;
+import org.gradle.cache.internal.logstore.AppendOnlyLogIndexedCache;
 import org.gradle.internal.Cast;
 import org.gradle.internal.Factories;
 import org.gradle.internal.Factory;
@@ -282,7 +284,9 @@ public <K, V> MultiProcessSafePersistentIndexedCache<K, V> newCache(final Persis
             if (entry == null) {
                 File cacheFile = findCacheFile(parameters);
                 LOG.debug("Creating new cache for {}, path {}, access {}", parameters.getCacheName(), cacheFile, this);
-                Factory<BTreePersistentIndexedCache<K, V>> indexedCacheFactory = () -> doCreateCache(cacheFile, parameters.getKeySerializer(), parameters.getValueSerializer());
+                Factory<? extends FileBackedIndexedCache<K, V>> indexedCacheFactory = parameters.getStorage() == IndexedCacheStorage.APPEND_ONLY_LOG
+                    ? () -> new AppendOnlyLogIndexedCache<>(cacheFile, parameters.getKeySerializer(), parameters.getValueSerializer())
+                    : () -> doCreateCache(cacheFile, parameters.getKeySerializer(), parameters.getValueSerializer());
 
                 MultiProcessSafePersistentIndexedCache<K, V> indexedCache = new DefaultMultiProcessSafePersistentIndexedCache<K, V>(indexedCacheFactory, fileAccess);
                 CacheDecorator decorator = parameters.getCacheDecorator();
@@ -307,7 +311,7 @@ public <K, V> MultiProcessSafePersistentIndexedCache<K, V> newCache(final Persis
     }
 
     private <K, V> File findCacheFile(PersistentIndexedCacheParameters<K, V> parameters) {
-        return new File(baseDir, parameters.getCacheName() + ".bin");
+        return new File(baseDir, parameters.getCacheName() + parameters.getStorage().getFileExtension());
     }
 
     @Override
@@ -482,6 +486,7 @@ void assertCompatibleCacheParameters(PersistentIndexedCacheParameters<K, V> para
             checkCompatibleKeySerializer(faultMessages, parameters.getKeySerializer());
             checkCompatibleValueSerializer(faultMessages, parameters.getValueSerializer());
             checkCompatibleCacheDecorator(faultMessages, parameters.getCacheDecorator());
+            checkCompatibleStorage(faultMessages, parameters.getStorage());
 
             if (!faultMessages.isEmpty()) {
                 String lineSeparator = SystemProperties.getInstance().getLineSeparator();
@@ -524,6 +529,14 @@ private void checkCompatibleCacheDecorator(Collection<String> faultMessages, Cac
                         cacheDecorator, parameters.getCacheDecorator()));
             }
         }
+
+        private void checkCompatibleStorage(Collection<String> faultMessages, IndexedCacheStorage storage) {
+            if (storage != parameters.getStorage()) {
+                faultMessages.add(
+                    String.format(" * Requested cache storage (%s) doesn't match current cache storage (%s)",
+                        storage, parameters.getStorage()));
+            }
+        }
     }
 
     @VisibleForTesting
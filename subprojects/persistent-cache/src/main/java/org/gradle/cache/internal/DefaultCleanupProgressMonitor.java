@@ -25,6 +25,7 @@ public class DefaultCleanupProgressMonitor implements CleanupProgressMonitor {
 
     private long deleted;
     private long skipped;
+    private boolean incomplete;
 
     public DefaultCleanupProgressMonitor(ProgressLogger progressLogger) {
         this.progressLogger = progressLogger;
@@ -47,6 +48,15 @@ public void incrementSkipped(long amount) {
         updateProgress();
     }
 
+    @Override
+    public void markIncomplete() {
+        incomplete = true;
+    }
+
+    public boolean isIncomplete() {
+        return incomplete;
+    }
+
     private void updateProgress() {
         progressLogger.progress(progressLogger.getDescription() + ": "
             + mandatoryNumber(deleted, " entry", " entries") + " deleted"
@@ -26,16 +26,19 @@
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicReference;
 
 /**
  * A {@link CacheDecorator} that wraps each cache with an in-memory cache that is used to short-circuit reads from the backing cache.
- * The in-memory cache is invalidated when the backing cache is changed by another process.
+ * The in-memory cache is invalidated when the backing cache is changed by another process. While this process holds the file lock, entries that are
+ * present in memory are served without acquiring the file lock.
  *
  * Also decorates each cache so that updates to the backing cache are made asynchronously.
  */
 public class DefaultInMemoryCacheDecoratorFactory implements InMemoryCacheDecoratorFactory {
     private final static Logger LOG = LoggerFactory.getLogger(DefaultInMemoryCacheDecoratorFactory.class);
+    private final static int CONCURRENCY_LEVEL = Math.max(4, Runtime.getRuntime().availableProcessors());
     private final boolean longLivingProcess;
     private final HeapProportionalCacheSizer cacheSizer = new HeapProportionalCacheSizer();
     private final CrossBuildInMemoryCache<String, CacheDetails> caches;
@@ -58,13 +61,13 @@ protected <K, V> MultiProcessSafeAsyncPersistentIndexedCache<K, V> applyInMemory
         }
         int targetSize = cacheSizer.scaleCacheSize(maxEntriesToKeepInMemory);
         CacheDetails cacheDetails = getCache(cacheId, targetSize);
-        return new InMemoryDecoratedCache<>(backingCache, cacheDetails.entries, cacheId, cacheDetails.lockState);
+        return new InMemoryDecoratedCache<>(backingCache, cacheDetails.entries, cacheId, cacheDetails.lockState, cacheDetails.upToDateWhileLocked);
     }
 
     private CacheDetails getCache(final String cacheId, final int maxSize) {
         CacheDetails cacheDetails = caches.get(cacheId, () -> {
             Cache<Object, Object> entries = createInMemoryCache(cacheId, maxSize);
-            CacheDetails details = new CacheDetails(cacheId, maxSize, entries, new AtomicReference<>(null));
+            CacheDetails details = new CacheDetails(cacheId, maxSize, entries, new AtomicReference<>(null), new AtomicBoolean());
             LOG.debug("Creating in-memory store for cache {} (max size: {})", cacheId, maxSize);
             return details;
         });
@@ -76,7 +79,8 @@ private CacheDetails getCache(final String cacheId, final int maxSize) {
 
     private Cache<Object, Object> createInMemoryCache(String cacheId, int maxSize) {
         LoggingEvictionListener evictionListener = new LoggingEvictionListener(cacheId, maxSize);
-        final CacheBuilder<Object, Object> cacheBuilder = CacheBuilder.newBuilder().maximumSize(maxSize).recordStats().removalListener(evictionListener);
+        // Use more segments than the default of 4, so that concurrent misses for different keys rarely contend with each other
+        final CacheBuilder<Object, Object> cacheBuilder = CacheBuilder.newBuilder().maximumSize(maxSize).concurrencyLevel(CONCURRENCY_LEVEL).recordStats().removalListener(evictionListener);
         Cache<Object, Object> inMemoryCache = cacheBuilder.build();
         evictionListener.setCache(inMemoryCache);
         return inMemoryCache;
@@ -121,12 +125,14 @@ private static class CacheDetails {
         private final int maxEntries;
         private final Cache<Object, Object> entries;
         private final AtomicReference<FileLock.State> lockState;
+        private final AtomicBoolean upToDateWhileLocked;
 
-        CacheDetails(String cacheId, int maxEntries, Cache<Object, Object> entries, AtomicReference<FileLock.State> lockState) {
+        CacheDetails(String cacheId, int maxEntries, Cache<Object, Object> entries, AtomicReference<FileLock.State> lockState, AtomicBoolean upToDateWhileLocked) {
             this.cacheId = cacheId;
             this.maxEntries = maxEntries;
             this.entries = entries;
             this.lockState = lockState;
+            this.upToDateWhileLocked = upToDateWhileLocked;
         }
     }
 }
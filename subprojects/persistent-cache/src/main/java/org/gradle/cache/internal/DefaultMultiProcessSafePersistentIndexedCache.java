@@ -19,17 +19,16 @@
 import org.gradle.cache.FileIntegrityViolationException;
 import org.gradle.cache.FileLock;
 import org.gradle.cache.MultiProcessSafePersistentIndexedCache;
-import org.gradle.cache.internal.btree.BTreePersistentIndexedCache;
 import org.gradle.internal.Factory;
 
 import java.util.function.Function;
 
 public class DefaultMultiProcessSafePersistentIndexedCache<K, V> implements MultiProcessSafePersistentIndexedCache<K, V> {
     private final FileAccess fileAccess;
-    private final Factory<BTreePersistentIndexedCache<K, V>> factory;
-    private BTreePersistentIndexedCache<K, V> cache;
+    private final Factory<? extends FileBackedIndexedCache<K, V>> factory;
+    private FileBackedIndexedCache<K, V> cache;
 
-    public DefaultMultiProcessSafePersistentIndexedCache(Factory<BTreePersistentIndexedCache<K, V>> factory, FileAccess fileAccess) {
+    public DefaultMultiProcessSafePersistentIndexedCache(Factory<? extends FileBackedIndexedCache<K, V>> factory, FileAccess fileAccess) {
         this.factory = factory;
         this.fileAccess = fileAccess;
     }
@@ -41,7 +40,7 @@ public String toString() {
 
     @Override
     public V getIfPresent(final K key) {
-        final BTreePersistentIndexedCache<K, V> cache = getCache();
+        final FileBackedIndexedCache<K, V> cache = getCache();
         try {
             return fileAccess.readFile((Factory<V>) () -> cache.get(key));
         } catch (FileIntegrityViolationException e) {
@@ -61,7 +60,7 @@ public V get(K key, Function<? super K, ? extends V> producer) {
 
     @Override
     public void put(final K key, final V value) {
-        final BTreePersistentIndexedCache<K, V> cache = getCache();
+        final FileBackedIndexedCache<K, V> cache = getCache();
         // Use writeFile because the cache can internally recover from datafile
         // corruption, so we don't care at this level if it's corrupt
         fileAccess.writeFile(() -> cache.put(key, value));
@@ -69,7 +68,7 @@ public void put(final K key, final V value) {
 
     @Override
     public void remove(final K key) {
-        final BTreePersistentIndexedCache<K, V> cache = getCache();
+        final FileBackedIndexedCache<K, V> cache = getCache();
         // Use writeFile because the cache can internally recover from datafile
         // corruption, so we don't care at this level if it's corrupt
         fileAccess.writeFile(() -> cache.remove(key));
@@ -94,7 +93,7 @@ public void finishWork() {
     public void beforeLockRelease(FileLock.State currentCacheState) {
     }
 
-    private BTreePersistentIndexedCache<K, V> getCache() {
+    private FileBackedIndexedCache<K, V> getCache() {
         if (cache == null) {
             // Use writeFile because the cache can internally recover from datafile
             // corruption, so we don't care at this level if it's corrupt
@@ -45,6 +45,10 @@ public class DefaultPersistentDirectoryStore implements ReferencablePersistentCa
     private static final Logger LOGGER = LoggerFactory.getLogger(DefaultPersistentDirectoryStore.class);
 
     public static final int CLEANUP_INTERVAL_IN_HOURS = 24;
+    /**
+     * How soon a cleanup which stopped before visiting all entries is continued.
+     */
+    public static final int INCOMPLETE_CLEANUP_INTERVAL_IN_HOURS = 1;
 
     private final File dir;
     private final CacheBuilder.LockTarget lockTarget;
@@ -226,8 +230,16 @@ public void cleanup() {
                 ProgressLogger progressLogger = progressLoggerFactory.newOperation(CacheCleanupAction.class).start(description, description);
                 Timer timer = Time.startTimer();
                 try {
-                    cleanupAction.clean(DefaultPersistentDirectoryStore.this, new DefaultCleanupProgressMonitor(progressLogger));
+                    DefaultCleanupProgressMonitor progressMonitor = new DefaultCleanupProgressMonitor(progressLogger);
+                    cleanupAction.clean(DefaultPersistentDirectoryStore.this, progressMonitor);
                     GFileUtils.touch(gcFile);
+                    if (progressMonitor.isIncomplete()) {
+                        // Continue the cleanup sooner than usual, but not every time the store is closed
+                        long continueAfter = TimeUnit.HOURS.toMillis(CLEANUP_INTERVAL_IN_HOURS - INCOMPLETE_CLEANUP_INTERVAL_IN_HOURS);
+                        if (!gcFile.setLastModified(gcFile.lastModified() - continueAfter)) {
+                            LOGGER.debug("Could not schedule the continuation of the cleanup of {}.", DefaultPersistentDirectoryStore.this);
+                        }
+                    }
                 } finally {
                     LOGGER.info("{} cleaned up in {}.", DefaultPersistentDirectoryStore.this, timer.getElapsed());
                     progressLogger.completed();
@@ -0,0 +1,33 @@
+/*
+ * Copyright 2021 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.cache.internal;
+
+import javax.annotation.Nullable;
+
+/**
+ * An indexed cache that is stored in a single file. Implementations are not thread-safe and must only be used while holding the file lock of the cache.
+ */
+public interface FileBackedIndexedCache<K, V> {
+    @Nullable
+    V get(K key);
+
+    void put(K key, V value);
+
+    void remove(K key);
+
+    void close();
+}
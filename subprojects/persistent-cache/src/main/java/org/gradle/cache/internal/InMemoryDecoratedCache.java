@@ -25,8 +25,11 @@
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import javax.annotation.Nullable;
 import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
 import java.util.function.Function;
 
 class InMemoryDecoratedCache<K, V> implements MultiProcessSafeAsyncPersistentIndexedCache<K, V>, InMemoryCacheController {
@@ -36,12 +39,16 @@
     private final Cache<Object, Object> inMemoryCache;
     private final String cacheId;
     private final AtomicReference<FileLock.State> fileLockStateReference;
+    // Whether the file lock is held by this process and the in-memory cache is known to be up-to-date with the backing cache, so no other process can change the entries
+    private final AtomicBoolean upToDateWhileLocked;
+    private final LongAdder hitsWithoutFileLock = new LongAdder();
 
-    public InMemoryDecoratedCache(MultiProcessSafeAsyncPersistentIndexedCache<K, V> delegate, Cache<Object, Object> inMemoryCache, String cacheId, AtomicReference<FileLock.State> fileLockStateReference) {
+    public InMemoryDecoratedCache(MultiProcessSafeAsyncPersistentIndexedCache<K, V> delegate, Cache<Object, Object> inMemoryCache, String cacheId, AtomicReference<FileLock.State> fileLockStateReference, AtomicBoolean upToDateWhileLocked) {
         this.delegate = delegate;
         this.inMemoryCache = inMemoryCache;
         this.cacheId = cacheId;
         this.fileLockStateReference = fileLockStateReference;
+        this.upToDateWhileLocked = upToDateWhileLocked;
     }
 
     @Override
@@ -67,6 +74,20 @@ public V get(final K key) {
         }
     }
 
+    @Nullable
+    @Override
+    public V getIfPresentWithoutFileLock(K key) {
+        if (!upToDateWhileLocked.get()) {
+            return null;
+        }
+        Object value = inMemoryCache.getIfPresent(key);
+        if (value == null || value == NULL) {
+            return null;
+        }
+        hitsWithoutFileLock.increment();
+        return Cast.uncheckedCast(value);
+    }
+
     @Override
     public V get(final K key, final Function<? super K, ? extends V> producer, final Runnable completion) {
         final AtomicReference<Runnable> completionRef = new AtomicReference<>(completion);
@@ -128,6 +149,7 @@ public void afterLockAcquire(FileLock.State currentCacheState) {
         if (outOfDate) {
             inMemoryCache.invalidateAll();
         }
+        upToDateWhileLocked.set(true);
         delegate.afterLockAcquire(currentCacheState);
     }
 
@@ -138,6 +160,10 @@ public void finishWork() {
 
     @Override
     public void beforeLockRelease(FileLock.State currentCacheState) {
+        upToDateWhileLocked.set(false);
+        if (LOG.isDebugEnabled()) {
+            LOG.debug("In-memory cache of {} served {} hits without acquiring the file lock, {}", cacheId, hitsWithoutFileLock.sumThenReset(), inMemoryCache.stats());
+        }
         fileLockStateReference.set(currentCacheState);
         delegate.beforeLockRelease(currentCacheState);
     }
@@ -28,18 +28,26 @@
 
 /**
  * Deletes any cache entries not accessed within the specified number of days.
+ *
+ * <p>Caches can opt in to bounding a single cleanup to a maximum duration, e.g. {@link #MAX_CLEANUP_DURATION_MILLIS},
+ * in which case the next cleanup continues where it stopped.</p>
  */
 public class LeastRecentlyUsedCacheCleanup extends AbstractCacheCleanup {
     private static final Logger LOGGER = LoggerFactory.getLogger(LeastRecentlyUsedCacheCleanup.class);
 
     public static final long DEFAULT_MAX_AGE_IN_DAYS_FOR_RECREATABLE_CACHE_ENTRIES = 7;
     public static final long DEFAULT_MAX_AGE_IN_DAYS_FOR_EXTERNAL_CACHE_ENTRIES = 30;
+    public static final long MAX_CLEANUP_DURATION_MILLIS = TimeUnit.SECONDS.toMillis(Long.getLong("org.gradle.cache.internal.cleanup.maxDurationSeconds", 60));
 
     private final FileAccessTimeJournal journal;
     private final long minimumTimestamp;
 
     public LeastRecentlyUsedCacheCleanup(FilesFinder eligibleFilesFinder, FileAccessTimeJournal journal, long numberOfDays) {
-        super(eligibleFilesFinder);
+        this(eligibleFilesFinder, journal, numberOfDays, UNLIMITED_DURATION);
+    }
+
+    public LeastRecentlyUsedCacheCleanup(FilesFinder eligibleFilesFinder, FileAccessTimeJournal journal, long numberOfDays, long maxDurationMillis) {
+        super(eligibleFilesFinder, maxDurationMillis);
         this.journal = journal;
         this.minimumTimestamp = Math.max(0, System.currentTimeMillis() - TimeUnit.DAYS.toMillis(numberOfDays));
     }
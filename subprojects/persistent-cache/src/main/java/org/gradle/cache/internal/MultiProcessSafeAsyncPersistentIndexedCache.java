@@ -30,6 +30,15 @@
     @Nullable
     V get(K key);
 
+    /**
+     * Fetches the given entry when it is available without reading the backing cache, so that the caller does not need to hold the file lock.
+     * Returns null when the entry is not available this way, in which case the caller should fall back to {@link #get(Object)} while holding the file lock.
+     */
+    @Nullable
+    default V getIfPresentWithoutFileLock(K key) {
+        return null;
+    }
+
     /**
      * Fetches the given entry, producing if necessary, blocking until the result is available. This method may or may not block until any updates have completed and will invoke the given completion action when the operation is complete.
      */
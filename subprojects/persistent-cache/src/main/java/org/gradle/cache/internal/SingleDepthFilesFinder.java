@@ -24,10 +24,15 @@
 import java.io.File;
 import java.io.FileFilter;
 import java.util.ArrayDeque;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.Deque;
 import java.util.Iterator;
 
+/**
+ * Finds the files at the given depth below the base directory.
+ * The files in each directory are visited in the order given by {@link File#compareTo(File)}.
+ */
 public class SingleDepthFilesFinder implements FilesFinder {
     private final int depth;
 
@@ -85,7 +90,11 @@ private boolean hasNextWithCorrectDepth() {
 
         private Iterator<File> listFiles(File baseDir) {
             File[] files = baseDir.listFiles(filter);
-            return files == null ? Collections.<File>emptyIterator() : Iterators.forArray(files);
+            if (files == null) {
+                return Collections.<File>emptyIterator();
+            }
+            Arrays.sort(files);
+            return Iterators.forArray(files);
         }
     }
 }
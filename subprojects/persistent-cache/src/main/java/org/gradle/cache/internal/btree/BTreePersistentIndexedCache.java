@@ -17,8 +17,10 @@
 
 import com.google.common.collect.ImmutableSet;
 import org.gradle.api.UncheckedIOException;
+import org.gradle.cache.internal.FileBackedIndexedCache;
 import org.gradle.internal.UncheckedException;
 import org.gradle.internal.io.StreamByteBuffer;
+import org.gradle.internal.os.OperatingSystem;
 import org.gradle.internal.serialize.Serializer;
 import org.gradle.internal.serialize.kryo.KryoBackedDecoder;
 import org.gradle.internal.serialize.kryo.KryoBackedEncoder;
@@ -47,8 +49,12 @@
 // todo - merge adjacent free blocks
 // todo - use more efficient lookup for free block with nearest size
 @SuppressWarnings("unchecked")
-public class BTreePersistentIndexedCache<K, V> {
+public class BTreePersistentIndexedCache<K, V> implements FileBackedIndexedCache<K, V> {
     private static final Logger LOGGER = LoggerFactory.getLogger(BTreePersistentIndexedCache.class);
+    private static final String MEMORY_MAPPED_READS_PROPERTY = "org.gradle.cache.internal.btree.mmap";
+    // Opt-in, since mapped regions are only released by garbage collection and every cache file of a long-lived daemon keeps its regions mapped.
+    // Windows does not allow a file to be truncated or deleted while it is mapped, and there is no supported way to unmap it eagerly
+    private static final boolean MEMORY_MAPPED_READS = !OperatingSystem.current().isWindows() && Boolean.getBoolean(MEMORY_MAPPED_READS_PROPERTY);
     private final File cacheFile;
     private final KeyHasher<K> keyHasher;
     private final Serializer<V> serializer;
@@ -68,7 +74,7 @@ public BTreePersistentIndexedCache(File cacheFile, Serializer<K> keySerializer,
         this.serializer = valueSerializer;
         this.maxChildIndexEntries = maxChildIndexEntries;
         this.minIndexChildNodes = maxChildIndexEntries / 2;
-        BlockStore cachingStore = new CachingBlockStore(new FileBackedBlockStore(cacheFile), ImmutableSet.of(IndexBlock.class, FreeListBlockStore.FreeListBlock.class));
+        BlockStore cachingStore = new CachingBlockStore(new FileBackedBlockStore(cacheFile, MEMORY_MAPPED_READS), ImmutableSet.of(IndexBlock.class, FreeListBlockStore.FreeListBlock.class));
         this.store = new StateCheckBlockStore(new FreeListBlockStore(cachingStore, maxFreeListEntries));
         try {
             open();
@@ -121,6 +127,7 @@ public void run() {
         header = store.readFirst(HeaderBlock.class);
     }
 
+    @Override
     public V get(K key) {
         try {
             try {
@@ -138,6 +145,7 @@ public V get(K key) {
         }
     }
 
+    @Override
     public void put(K key, V value) {
         try {
             long hashCode = keyHasher.getHashCode(key);
@@ -163,6 +171,7 @@ public void put(K key, V value) {
         }
     }
 
+    @Override
     public void remove(K key) {
         try {
             Lookup lookup = header.getRoot().find(key);
@@ -195,6 +204,7 @@ public void reset() {
         }
     }
 
+    @Override
     public void close() {
         LOGGER.debug("Closing {}", this);
         try {
@@ -28,7 +28,7 @@
 /**
  * Allows a stream of bytes to be read from a particular location of some backing byte stream.
  */
-class ByteInput {
+class ByteInput implements SeekableByteInput {
     private final RandomAccessFile file;
     private final ResettableBufferedInputStream bufferedInputStream;
     private CountingInputStream countingInputStream;
@@ -41,6 +41,7 @@ public ByteInput(RandomAccessFile file) {
     /**
      * Starts reading from the given offset.
      */
+    @Override
     public DataInputStream start(long offset) throws IOException {
         file.seek(offset);
         bufferedInputStream.clear();
@@ -51,6 +52,7 @@ public DataInputStream start(long offset) throws IOException {
     /**
      * Returns the number of bytes read since {@link #start(long)} was called.
      */
+    @Override
     public long getBytesRead() {
         return countingInputStream.getCount();
     }
@@ -58,10 +60,16 @@ public long getBytesRead() {
     /**
      * Finishes reading, resetting any buffered state.
      */
+    @Override
     public void done() {
         countingInputStream = null;
     }
 
+    @Override
+    public void discard() {
+        bufferedInputStream.clear();
+    }
+
     private static class ResettableBufferedInputStream extends BufferedInputStream {
         ResettableBufferedInputStream(InputStream input) {
             super(input);
@@ -26,15 +26,24 @@
 
 public class FileBackedBlockStore implements BlockStore {
     private final File cacheFile;
+    private final boolean memoryMapped;
     private RandomAccessFile file;
     private ByteOutput output;
-    private ByteInput input;
+    private SeekableByteInput input;
     private long nextBlock;
     private Factory factory;
     private long currentFileSize;
 
     public FileBackedBlockStore(File cacheFile) {
+        this(cacheFile, false);
+    }
+
+    /**
+     * @param memoryMapped when true, blocks are read in place from memory mapped regions of the cache file rather than through the file.
+     */
+    public FileBackedBlockStore(File cacheFile, boolean memoryMapped) {
         this.cacheFile = cacheFile;
+        this.memoryMapped = memoryMapped;
     }
 
     @Override
@@ -49,7 +58,7 @@ public void open(Runnable runnable, Factory factory) {
             cacheFile.getParentFile().mkdirs();
             file = openRandomAccessFile();
             output = new ByteOutput(file);
-            input = new ByteInput(file);
+            input = memoryMapped ? new MappedByteInput(file.getChannel()) : new ByteInput(file);
             currentFileSize = file.length();
             nextBlock = currentFileSize;
             if (currentFileSize == 0) {
@@ -75,6 +84,7 @@ private RandomAccessFile randomAccessFile(String mode) throws FileNotFoundExcept
     @Override
     public void close() {
         try {
+            input.discard();
             file.close();
         } catch (IOException e) {
             throw new UncheckedIOException(e);
@@ -84,6 +94,7 @@ public void close() {
     @Override
     public void clear() {
         try {
+            input.discard();
             file.setLength(0);
             currentFileSize = 0;
         } catch (IOException e) {
@@ -0,0 +1,133 @@
+/*
+ * Copyright 2021 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.cache.internal.btree;
+
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.Buffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Reads bytes in place from read-only memory mapped regions of a file, so that reading a block does not need to seek or copy the file content into an intermediate buffer.
+ *
+ * Regions are mapped lazily and are remapped when the file has grown past the end of a region that was mapped previously.
+ * The regions must be discarded when the file is truncated, as accessing a mapped region beyond the end of the file fails.
+ */
+class MappedByteInput implements SeekableByteInput {
+    static final int DEFAULT_REGION_SIZE = 8 * 1024 * 1024;
+
+    private final FileChannel channel;
+    private final int regionSize;
+    private final List<MappedByteBuffer> regions = new ArrayList<MappedByteBuffer>();
+    private final DataInputStream dataInputStream = new DataInputStream(new RegionInputStream());
+    private long startPosition;
+    private long position;
+
+    public MappedByteInput(FileChannel channel) {
+        this(channel, DEFAULT_REGION_SIZE);
+    }
+
+    MappedByteInput(FileChannel channel, int regionSize) {
+        this.channel = channel;
+        this.regionSize = regionSize;
+    }
+
+    @Override
+    public DataInputStream start(long offset) {
+        startPosition = offset;
+        position = offset;
+        return dataInputStream;
+    }
+
+    @Override
+    public long getBytesRead() {
+        return position - startPosition;
+    }
+
+    @Override
+    public void done() {
+    }
+
+    @Override
+    public void discard() {
+        regions.clear();
+    }
+
+    /**
+     * Returns the region containing the current position, or null when the position is at or beyond the end of the file.
+     */
+    private MappedByteBuffer currentRegion() throws IOException {
+        int index = (int) (position / regionSize);
+        int offsetInRegion = (int) (position % regionSize);
+        MappedByteBuffer region = index < regions.size() ? regions.get(index) : null;
+        if (region == null || offsetInRegion >= region.capacity()) {
+            long regionStart = (long) index * regionSize;
+            long length = Math.min(regionSize, channel.size() - regionStart);
+            if (length <= offsetInRegion) {
+                return null;
+            }
+            region = channel.map(FileChannel.MapMode.READ_ONLY, regionStart, length);
+            while (regions.size() <= index) {
+                regions.add(null);
+            }
+            regions.set(index, region);
+        }
+        return region;
+    }
+
+    private class RegionInputStream extends InputStream {
+        @Override
+        public int read() throws IOException {
+            MappedByteBuffer region = currentRegion();
+            if (region == null) {
+                return -1;
+            }
+            int value = region.get((int) (position % regionSize)) & 0xFF;
+            position++;
+            return value;
+        }
+
+        @Override
+        public int read(byte[] bytes, int offset, int length) throws IOException {
+            if (length == 0) {
+                return 0;
+            }
+            MappedByteBuffer region = currentRegion();
+            if (region == null) {
+                return -1;
+            }
+            int offsetInRegion = (int) (position % regionSize);
+            int count = Math.min(length, region.capacity() - offsetInRegion);
+            // Cast to Buffer so that the compiled code also runs on Java 8
+            ((Buffer) region).position(offsetInRegion);
+            region.get(bytes, offset, count);
+            position += count;
+            return count;
+        }
+
+        @Override
+        public long skip(long count) throws IOException {
+            long skipped = Math.max(0, Math.min(count, channel.size() - position));
+            position += skipped;
+            return skipped;
+        }
+    }
+}
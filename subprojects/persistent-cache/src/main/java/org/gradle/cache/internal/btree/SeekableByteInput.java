@@ -0,0 +1,45 @@
+/*
+ * Copyright 2021 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.cache.internal.btree;
+
+import java.io.DataInputStream;
+import java.io.IOException;
+
+/**
+ * Allows a stream of bytes to be read from a particular location of the cache file.
+ */
+interface SeekableByteInput {
+    /**
+     * Starts reading from the given offset.
+     */
+    DataInputStream start(long offset) throws IOException;
+
+    /**
+     * Returns the number of bytes read since {@link #start(long)} was called.
+     */
+    long getBytesRead();
+
+    /**
+     * Finishes reading, resetting any buffered state.
+     */
+    void done();
+
+    /**
+     * Discards any state derived from the content of the file, for example after the file has been truncated.
+     */
+    void discard();
+}
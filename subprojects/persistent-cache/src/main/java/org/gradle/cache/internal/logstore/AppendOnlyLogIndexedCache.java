@@ -0,0 +1,602 @@
+/*
+ * Copyright 2021 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.cache.internal.logstore;
+
+import org.gradle.api.UncheckedIOException;
+import org.gradle.cache.internal.FileBackedIndexedCache;
+import org.gradle.internal.serialize.Serializer;
+import org.gradle.internal.serialize.kryo.KryoBackedDecoder;
+import org.gradle.internal.serialize.kryo.KryoBackedEncoder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.annotation.Nullable;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedInputStream;
+import java.util.zip.CheckedOutputStream;
+
+/**
+ * An indexed cache that appends every update to a log file, and keeps an index from the hash of each key to its latest record in memory.
+ *
+ * Each record consists of the key length, the value length (-1 for a removal), the serialized key and value, and a CRC32 checksum of all of these.
+ * When the cache is closed, the index is saved next to the log, together with the length of the log it covers.
+ * Opening the cache loads the saved index and only scans the records appended after it was saved, e.g. by a process that crashed.
+ * Without a usable saved index, the index is rebuilt by scanning the whole log. A partially written record at the end of the log, left by a crashed process, is truncated.
+ * A complete record with a wrong checksum found while scanning is skipped, so only its entry is lost.
+ * Every record is checked again when it is read. A damaged record found that way is a cache miss and discards the whole log, since other records may be damaged as well.
+ * Once most of the log consists of replaced or removed records, the live records are copied to a new log that atomically replaces the old one.
+ * This happens while writing, so the log stays bounded while the cache is in use. Each log has a random generation, so an index saved for a previous log is not used.
+ *
+ * Two keys with the same 64-bit hash cannot be stored at the same time: storing one evicts the other, which is fine for a cache.
+ */
+public class AppendOnlyLogIndexedCache<K, V> implements FileBackedIndexedCache<K, V> {
+    private static final Logger LOGGER = LoggerFactory.getLogger(AppendOnlyLogIndexedCache.class);
+
+    private static final int MAGIC = 0x474c4f47;
+    private static final int FORMAT_VERSION = 2;
+    private static final int FILE_HEADER_SIZE = 16;
+    private static final int INDEX_MAGIC = 0x474c4958;
+    private static final String INDEX_FILE_SUFFIX = ".idx";
+    private static final int RECORD_HEADER_SIZE = 8;
+    private static final int RECORD_TAIL_SIZE = 4;
+    private static final int REMOVED = -1;
+    private static final int WRITE_BUFFER_SIZE = 64 * 1024;
+    private static final long DEFAULT_MIN_GARBAGE_TO_COMPACT = 1024 * 1024;
+
+    private final File logFile;
+    private final File indexFile;
+    private final Serializer<K> keySerializer;
+    private final Serializer<V> valueSerializer;
+    private final long minGarbageToCompact;
+    private final SerializedBytes keyBytes = new SerializedBytes();
+    private final SerializedBytes valueBytes = new SerializedBytes();
+    private final KryoBackedEncoder keyEncoder = new KryoBackedEncoder(keyBytes);
+    private final KryoBackedEncoder valueEncoder = new KryoBackedEncoder(valueBytes);
+    private final CRC32 checksum = new CRC32();
+    private ByteBuffer writeBuffer = ByteBuffer.allocate(WRITE_BUFFER_SIZE);
+    private ByteBuffer readBuffer = ByteBuffer.allocate(4096);
+    private RandomAccessFile file;
+    private FileChannel channel;
+    private RecordIndex index;
+    private long generation;
+    // Whether the index differs from the saved index
+    private boolean indexChanged;
+    // The number of bytes written to the file, excluding the content of the write buffer
+    private long flushedLength;
+    // The number of bytes in records that have been replaced or removed
+    private long garbageLength;
+
+    public AppendOnlyLogIndexedCache(File logFile, Serializer<K> keySerializer, Serializer<V> valueSerializer) {
+        this(logFile, keySerializer, valueSerializer, DEFAULT_MIN_GARBAGE_TO_COMPACT);
+    }
+
+    AppendOnlyLogIndexedCache(File logFile, Serializer<K> keySerializer, Serializer<V> valueSerializer, long minGarbageToCompact) {
+        this.logFile = logFile;
+        this.indexFile = new File(logFile.getParentFile(), logFile.getName() + INDEX_FILE_SUFFIX);
+        this.keySerializer = keySerializer;
+        this.valueSerializer = valueSerializer;
+        this.minGarbageToCompact = minGarbageToCompact;
+        try {
+            open();
+        } catch (Exception e) {
+            throw new UncheckedIOException(String.format("Could not open %s.", this), e);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "cache " + logFile.getName() + " (" + logFile + ")";
+    }
+
+    private void open() throws IOException {
+        LOGGER.debug("Opening {}", this);
+        logFile.getParentFile().mkdirs();
+        file = new RandomAccessFile(logFile, "rw");
+        channel = file.getChannel();
+        if (!hasValidHeader()) {
+            startNewLog();
+            return;
+        }
+        long fileLength = channel.size();
+        long scanFrom = loadIndex(fileLength);
+        if (scanFrom < 0) {
+            index = new RecordIndex();
+            garbageLength = 0;
+            scanFrom = FILE_HEADER_SIZE;
+        }
+        flushedLength = readLog(scanFrom);
+        indexChanged = flushedLength != scanFrom;
+        if (flushedLength < fileLength) {
+            LOGGER.info("Discarding {} bytes of partially written records from {}.", fileLength - flushedLength, this);
+            // The saved index may cover the discarded records, and new records will be written in their place
+            Files.deleteIfExists(indexFile.toPath());
+            indexChanged = true;
+            channel.truncate(flushedLength);
+        }
+    }
+
+    private void startNewLog() throws IOException {
+        channel.truncate(0);
+        generation = ThreadLocalRandom.current().nextLong();
+        flushedLength = writeHeader(channel, generation);
+        index = new RecordIndex();
+        garbageLength = 0;
+        indexChanged = true;
+    }
+
+    private static int writeHeader(FileChannel channel, long generation) throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(FILE_HEADER_SIZE);
+        header.putInt(MAGIC).putInt(FORMAT_VERSION).putLong(generation);
+        header.flip();
+        return writeFully(channel, header, 0);
+    }
+
+    private boolean hasValidHeader() throws IOException {
+        if (channel.size() < FILE_HEADER_SIZE) {
+            return false;
+        }
+        ByteBuffer header = ByteBuffer.allocate(FILE_HEADER_SIZE);
+        readFully(channel, header, 0);
+        generation = header.getLong(8);
+        return header.getInt(0) == MAGIC && header.getInt(4) == FORMAT_VERSION;
+    }
+
+    /**
+     * Loads the saved index when it belongs to the current log, returning the length of the log it covers, or -1 when it cannot be used.
+     */
+    private long loadIndex(long fileLength) {
+        CheckedInputStream checkedInput;
+        try {
+            checkedInput = new CheckedInputStream(new BufferedInputStream(new FileInputStream(indexFile), WRITE_BUFFER_SIZE), new CRC32());
+        } catch (FileNotFoundException e) {
+            return -1;
+        }
+        try (DataInputStream input = new DataInputStream(checkedInput)) {
+            if (input.readInt() != INDEX_MAGIC || input.readInt() != FORMAT_VERSION || input.readLong() != generation) {
+                return -1;
+            }
+            long coveredLength = input.readLong();
+            if (coveredLength < FILE_HEADER_SIZE || coveredLength > fileLength) {
+                return -1;
+            }
+            long savedGarbageLength = input.readLong();
+            int size = input.readInt();
+            RecordIndex savedIndex = new RecordIndex();
+            for (int i = 0; i < size; i++) {
+                savedIndex.put(input.readLong(), input.readLong(), input.readInt());
+            }
+            int expectedChecksum = (int) checkedInput.getChecksum().getValue();
+            if (input.readInt() != expectedChecksum) {
+                return -1;
+            }
+            index = savedIndex;
+            garbageLength = savedGarbageLength;
+            return coveredLength;
+        } catch (IOException e) {
+            LOGGER.debug("Could not load the index of {}, scanning the log instead.", this, e);
+            return -1;
+        }
+    }
+
+    /**
+     * Saves the index, so that the next time the cache is opened only the records appended after this can be scanned.
+     */
+    private void saveIndex() throws IOException {
+        File tempFile = new File(indexFile.getParentFile(), indexFile.getName() + ".tmp");
+        CheckedOutputStream checkedOutput = new CheckedOutputStream(new BufferedOutputStream(new FileOutputStream(tempFile), WRITE_BUFFER_SIZE), new CRC32());
+        try (DataOutputStream output = new DataOutputStream(checkedOutput)) {
+            output.writeInt(INDEX_MAGIC);
+            output.writeInt(FORMAT_VERSION);
+            output.writeLong(generation);
+            output.writeLong(flushedLength);
+            output.writeLong(garbageLength);
+            output.writeInt(index.size());
+            for (int slot = 0; slot < index.capacity(); slot++) {
+                if (index.isUsed(slot)) {
+                    output.writeLong(index.hashAt(slot));
+                    output.writeLong(index.offsetAt(slot));
+                    output.writeInt(index.lengthAt(slot));
+                }
+            }
+            output.writeInt((int) checkedOutput.getChecksum().getValue());
+        }
+        Files.move(tempFile.toPath(), indexFile.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        indexChanged = false;
+    }
+
+    /**
+     * Adds the records in the log starting at the given offset to the index, returning the length of the valid prefix of the log.
+     */
+    private long readLog(long startOffset) throws IOException {
+        long fileLength = channel.size();
+        long damagedLength = 0;
+        channel.position(startOffset);
+        DataInputStream input = new DataInputStream(new BufferedInputStream(Channels.newInputStream(channel), WRITE_BUFFER_SIZE));
+        byte[] content = new byte[256];
+        long offset = startOffset;
+        while (offset + RECORD_HEADER_SIZE + RECORD_TAIL_SIZE <= fileLength) {
+            int keyLength;
+            int valueLength;
+            int recordLength;
+            try {
+                keyLength = input.readInt();
+                valueLength = input.readInt();
+                if (keyLength < 0 || valueLength < REMOVED) {
+                    break;
+                }
+                long expectedLength = RECORD_HEADER_SIZE + (long) keyLength + Math.max(valueLength, 0) + RECORD_TAIL_SIZE;
+                if (offset + expectedLength > fileLength || expectedLength > Integer.MAX_VALUE) {
+                    break;
+                }
+                recordLength = (int) expectedLength;
+                int contentLength = keyLength + Math.max(valueLength, 0);
+                if (content.length < contentLength) {
+                    content = new byte[Math.max(contentLength, content.length * 2)];
+                }
+                input.readFully(content, 0, contentLength);
+                checksum.reset();
+                updateChecksum(keyLength, valueLength);
+                checksum.update(content, 0, contentLength);
+                if ((int) checksum.getValue() != input.readInt()) {
+                    // The lengths frame a complete record, but its content is damaged
+                    damagedLength += recordLength;
+                    garbageLength += recordLength;
+                    offset += recordLength;
+                    continue;
+                }
+            } catch (EOFException e) {
+                break;
+            }
+            long hash = hash(content, 0, keyLength);
+            if (valueLength == REMOVED) {
+                int slot = index.find(hash);
+                if (slot >= 0) {
+                    garbageLength += index.lengthAt(slot);
+                    index.removeAt(slot);
+                }
+                garbageLength += recordLength;
+            } else {
+                int previousLength = index.put(hash, offset, recordLength);
+                if (previousLength >= 0) {
+                    garbageLength += previousLength;
+                }
+            }
+            offset += recordLength;
+        }
+        if (damagedLength > 0) {
+            LOGGER.warn("Skipped {} bytes of damaged records in {}.", damagedLength, this);
+        }
+        return offset;
+    }
+
+    @Nullable
+    @Override
+    public V get(K key) {
+        try {
+            serializeKey(key);
+            int slot = index.find(hash(keyBytes.buffer(), 0, keyBytes.size()));
+            if (slot < 0) {
+                return null;
+            }
+            int recordLength = index.lengthAt(slot);
+            ByteBuffer record = readRecord(index.offsetAt(slot), recordLength);
+            if (!isIntact(record, recordLength)) {
+                discardDamagedLog();
+                return null;
+            }
+            int keyLength = record.getInt(0);
+            int valueLength = record.getInt(4);
+            if (!keyBytes.matches(record.array(), RECORD_HEADER_SIZE, keyLength)) {
+                // Another key with the same hash
+                return null;
+            }
+            return valueSerializer.read(new KryoBackedDecoder(new ByteArrayInputStream(record.array(), RECORD_HEADER_SIZE + keyLength, valueLength)));
+        } catch (Exception e) {
+            throw new UncheckedIOException(String.format("Could not read entry '%s' from %s.", key, this), e);
+        }
+    }
+
+    @Override
+    public void put(K key, V value) {
+        try {
+            serializeKey(key);
+            valueBytes.reset();
+            valueSerializer.write(valueEncoder, value);
+            valueEncoder.flush();
+            long hash = hash(keyBytes.buffer(), 0, keyBytes.size());
+            int recordLength = recordLength(keyBytes.size(), valueBytes.size());
+            long offset = append(keyBytes.size(), valueBytes.size(), recordLength);
+            int previousLength = index.put(hash, offset, recordLength);
+            indexChanged = true;
+            if (previousLength >= 0) {
+                garbageLength += previousLength;
+                compactIfNeeded();
+            }
+        } catch (Exception e) {
+            throw new UncheckedIOException(String.format("Could not add entry '%s' to %s.", key, this), e);
+        }
+    }
+
+    @Override
+    public void remove(K key) {
+        try {
+            serializeKey(key);
+            int slot = index.find(hash(keyBytes.buffer(), 0, keyBytes.size()));
+            if (slot < 0) {
+                return;
+            }
+            ByteBuffer record = readRecord(index.offsetAt(slot), index.lengthAt(slot));
+            if (!isIntact(record, index.lengthAt(slot))) {
+                discardDamagedLog();
+                return;
+            }
+            if (!keyBytes.matches(record.array(), RECORD_HEADER_SIZE, record.getInt(0))) {
+                return;
+            }
+            int recordLength = recordLength(keyBytes.size(), REMOVED);
+            append(keyBytes.size(), REMOVED, recordLength);
+            garbageLength += index.lengthAt(slot) + recordLength;
+            index.removeAt(slot);
+            indexChanged = true;
+            compactIfNeeded();
+        } catch (Exception e) {
+            throw new UncheckedIOException(String.format("Could not remove entry '%s' from %s.", key, this), e);
+        }
+    }
+
+    @Override
+    public void close() {
+        LOGGER.debug("Closing {}", this);
+        try {
+            try {
+                flushWrites();
+                compactIfNeeded();
+                if (indexChanged) {
+                    saveIndex();
+                }
+            } finally {
+                file.close();
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(String.format("Could not close %s.", this), e);
+        }
+    }
+
+    private void compactIfNeeded() throws IOException {
+        long recordsLength = flushedLength + writeBuffer.position() - FILE_HEADER_SIZE;
+        if (garbageLength >= minGarbageToCompact && garbageLength * 2 > recordsLength) {
+            compact();
+        }
+    }
+
+    /**
+     * Copies the live records to a new log, in the order they appear in the current log, and replaces the current log with it.
+     */
+    private void compact() throws IOException {
+        flushWrites();
+        LOGGER.debug("Compacting {}, discarding {} of {} bytes", this, garbageLength, flushedLength);
+        File compactedFile = new File(logFile.getParentFile(), logFile.getName() + ".compact");
+        long compactedGeneration = ThreadLocalRandom.current().nextLong();
+        RecordIndex compactedIndex = new RecordIndex();
+        long position;
+        boolean damaged = false;
+        try (RandomAccessFile compacted = new RandomAccessFile(compactedFile, "rw")) {
+            FileChannel compactedChannel = compacted.getChannel();
+            compactedChannel.truncate(0);
+            position = writeHeader(compactedChannel, compactedGeneration);
+            for (long offset : index.sortedOffsets()) {
+                ByteBuffer recordHeader = readRecord(offset, RECORD_HEADER_SIZE);
+                int keyLength = recordHeader.getInt(0);
+                int valueLength = recordHeader.getInt(4);
+                long expectedLength = RECORD_HEADER_SIZE + (long) keyLength + Math.max(valueLength, 0) + RECORD_TAIL_SIZE;
+                if (keyLength < 0 || valueLength < REMOVED || offset + expectedLength > flushedLength) {
+                    damaged = true;
+                    break;
+                }
+                int recordLength = (int) expectedLength;
+                ByteBuffer record = readRecord(offset, recordLength);
+                if (!isIntact(record, recordLength)) {
+                    damaged = true;
+                    break;
+                }
+                compactedIndex.put(hash(record.array(), RECORD_HEADER_SIZE, keyLength), position, recordLength);
+                position += writeFully(compactedChannel, record, position);
+            }
+        }
+        if (damaged) {
+            Files.deleteIfExists(compactedFile.toPath());
+            discardDamagedLog();
+            return;
+        }
+        file.close();
+        Files.move(compactedFile.toPath(), logFile.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        file = new RandomAccessFile(logFile, "rw");
+        channel = file.getChannel();
+        generation = compactedGeneration;
+        index = compactedIndex;
+        flushedLength = position;
+        garbageLength = 0;
+        indexChanged = true;
+    }
+
+    /**
+     * Starts over with an empty log, after reading a damaged record that was intact when the log was scanned.
+     */
+    private void discardDamagedLog() throws IOException {
+        LOGGER.warn("Found a damaged record in {}, discarding all entries.", this);
+        writeBuffer.clear();
+        Files.deleteIfExists(indexFile.toPath());
+        startNewLog();
+    }
+
+    private void serializeKey(K key) throws Exception {
+        keyBytes.reset();
+        keySerializer.write(keyEncoder, key);
+        keyEncoder.flush();
+    }
+
+    /**
+     * Appends a record with the serialized key and value to the log, returning its offset.
+     */
+    private long append(int keyLength, int valueLength, int recordLength) throws IOException {
+        if (writeBuffer.remaining() < recordLength) {
+            flushWrites();
+            if (writeBuffer.capacity() < recordLength) {
+                writeBuffer = ByteBuffer.allocate(recordLength);
+            }
+        }
+        long offset = flushedLength + writeBuffer.position();
+        checksum.reset();
+        updateChecksum(keyLength, valueLength);
+        checksum.update(keyBytes.buffer(), 0, keyLength);
+        writeBuffer.putInt(keyLength);
+        writeBuffer.putInt(valueLength);
+        writeBuffer.put(keyBytes.buffer(), 0, keyLength);
+        if (valueLength > 0) {
+            checksum.update(valueBytes.buffer(), 0, valueLength);
+            writeBuffer.put(valueBytes.buffer(), 0, valueLength);
+        }
+        writeBuffer.putInt((int) checksum.getValue());
+        return offset;
+    }
+
+    private void flushWrites() throws IOException {
+        if (writeBuffer.position() == 0) {
+            return;
+        }
+        writeBuffer.flip();
+        flushedLength += writeFully(channel, writeBuffer, flushedLength);
+        writeBuffer.clear();
+    }
+
+    /**
+     * Reads the given number of bytes at the given offset into the read buffer, which is reused for subsequent reads.
+     */
+    private ByteBuffer readRecord(long offset, int length) throws IOException {
+        if (offset + length > flushedLength) {
+            flushWrites();
+        }
+        if (readBuffer.capacity() < length) {
+            readBuffer = ByteBuffer.allocate(Math.max(length, readBuffer.capacity() * 2));
+        }
+        readBuffer.clear();
+        readBuffer.limit(length);
+        readFully(channel, readBuffer, offset);
+        return readBuffer;
+    }
+
+    /**
+     * Whether the record read into the given buffer has the expected length and checksum.
+     */
+    private boolean isIntact(ByteBuffer record, int recordLength) {
+        int keyLength = record.getInt(0);
+        int valueLength = record.getInt(4);
+        if (keyLength < 0 || valueLength < REMOVED || RECORD_HEADER_SIZE + (long) keyLength + Math.max(valueLength, 0) + RECORD_TAIL_SIZE != recordLength) {
+            return false;
+        }
+        // The header holds the lengths in the same big-endian layout as they are added to the checksum when appending
+        checksum.reset();
+        checksum.update(record.array(), 0, recordLength - RECORD_TAIL_SIZE);
+        return (int) checksum.getValue() == record.getInt(recordLength - RECORD_TAIL_SIZE);
+    }
+
+    private void updateChecksum(int keyLength, int valueLength) {
+        for (int shift = 24; shift >= 0; shift -= 8) {
+            checksum.update(keyLength >>> shift);
+        }
+        for (int shift = 24; shift >= 0; shift -= 8) {
+            checksum.update(valueLength >>> shift);
+        }
+    }
+
+    private static int recordLength(int keyLength, int valueLength) {
+        return RECORD_HEADER_SIZE + keyLength + Math.max(valueLength, 0) + RECORD_TAIL_SIZE;
+    }
+
+    /**
+     * 64-bit FNV-1a hash of the serialized key, with a final mix so that the low bits used by the index are well distributed.
+     */
+    private static long hash(byte[] bytes, int offset, int length) {
+        long hash = 0xcbf29ce484222325L;
+        for (int i = offset; i < offset + length; i++) {
+            hash ^= bytes[i] & 0xFF;
+            hash *= 0x100000001b3L;
+        }
+        hash ^= hash >>> 33;
+        hash *= 0xff51afd7ed558ccdL;
+        hash ^= hash >>> 33;
+        return hash;
+    }
+
+    private static void readFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        long current = position;
+        while (buffer.hasRemaining()) {
+            int read = channel.read(buffer, current);
+            if (read < 0) {
+                throw new EOFException();
+            }
+            current += read;
+        }
+        buffer.flip();
+    }
+
+    private static int writeFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        int length = buffer.remaining();
+        long current = position;
+        while (buffer.hasRemaining()) {
+            current += channel.write(buffer, current);
+        }
+        return length;
+    }
+
+    private static class SerializedBytes extends ByteArrayOutputStream {
+        byte[] buffer() {
+            return buf;
+        }
+
+        boolean matches(byte[] bytes, int offset, int length) {
+            if (length != count) {
+                return false;
+            }
+            for (int i = 0; i < length; i++) {
+                if (buf[i] != bytes[offset + i]) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+}
@@ -0,0 +1,159 @@
+/*
+ * Copyright 2021 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.cache.internal.logstore;
+
+import java.util.Arrays;
+
+/**
+ * An open addressing hash table that maps the 64-bit hash of a key to the location of its latest record in the log, without boxing.
+ */
+class RecordIndex {
+    private static final int INITIAL_CAPACITY = 1024;
+    private static final long EMPTY = -1;
+
+    private long[] hashes;
+    private long[] offsets;
+    private int[] lengths;
+    private int size;
+
+    RecordIndex() {
+        allocate(INITIAL_CAPACITY);
+    }
+
+    int size() {
+        return size;
+    }
+
+    int capacity() {
+        return hashes.length;
+    }
+
+    boolean isUsed(int slot) {
+        return offsets[slot] != EMPTY;
+    }
+
+    long hashAt(int slot) {
+        return hashes[slot];
+    }
+
+    /**
+     * Returns the slot that holds the given hash, or -1 when there is no such slot.
+     */
+    int find(long hash) {
+        int mask = hashes.length - 1;
+        for (int slot = slotFor(hash, mask); offsets[slot] != EMPTY; slot = (slot + 1) & mask) {
+            if (hashes[slot] == hash) {
+                return slot;
+            }
+        }
+        return -1;
+    }
+
+    long offsetAt(int slot) {
+        return offsets[slot];
+    }
+
+    int lengthAt(int slot) {
+        return lengths[slot];
+    }
+
+    /**
+     * Maps the given hash to the given record, returning the length of the record that was replaced, or -1 when there was none.
+     */
+    int put(long hash, long offset, int length) {
+        if ((size + 1) * 3L > hashes.length * 2L) {
+            resize();
+        }
+        int mask = hashes.length - 1;
+        int slot = slotFor(hash, mask);
+        while (offsets[slot] != EMPTY) {
+            if (hashes[slot] == hash) {
+                int previousLength = lengths[slot];
+                offsets[slot] = offset;
+                lengths[slot] = length;
+                return previousLength;
+            }
+            slot = (slot + 1) & mask;
+        }
+        hashes[slot] = hash;
+        offsets[slot] = offset;
+        lengths[slot] = length;
+        size++;
+        return -1;
+    }
+
+    /**
+     * Removes the given slot, shifting back entries of the same probe sequence so that lookups do not need tombstones.
+     */
+    void removeAt(int slot) {
+        int mask = hashes.length - 1;
+        int hole = slot;
+        int current = (slot + 1) & mask;
+        while (offsets[current] != EMPTY) {
+            int home = slotFor(hashes[current], mask);
+            // Move the entry into the hole when its home slot is not between the hole and its current slot
+            if (((current - home) & mask) >= ((current - hole) & mask)) {
+                hashes[hole] = hashes[current];
+                offsets[hole] = offsets[current];
+                lengths[hole] = lengths[current];
+                hole = current;
+            }
+            current = (current + 1) & mask;
+        }
+        offsets[hole] = EMPTY;
+        size--;
+    }
+
+    /**
+     * Returns the offsets of all records in the index, in ascending order.
+     */
+    long[] sortedOffsets() {
+        long[] result = new long[size];
+        int count = 0;
+        for (long offset : offsets) {
+            if (offset != EMPTY) {
+                result[count++] = offset;
+            }
+        }
+        Arrays.sort(result);
+        return result;
+    }
+
+    private void resize() {
+        long[] oldHashes = hashes;
+        long[] oldOffsets = offsets;
+        int[] oldLengths = lengths;
+        allocate(oldHashes.length * 2);
+        size = 0;
+        for (int i = 0; i < oldHashes.length; i++) {
+            if (oldOffsets[i] != EMPTY) {
+                put(oldHashes[i], oldOffsets[i], oldLengths[i]);
+            }
+        }
+    }
+
+    private void allocate(int capacity) {
+        hashes = new long[capacity];
+        offsets = new long[capacity];
+        lengths = new int[capacity];
+        Arrays.fill(offsets, EMPTY);
+    }
+
+    private static int slotFor(long hash, int mask) {
+        return (int) (hash ^ (hash >>> 32)) & mask;
+    }
+}
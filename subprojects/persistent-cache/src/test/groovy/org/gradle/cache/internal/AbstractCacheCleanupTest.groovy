@@ -110,6 +110,67 @@ class AbstractCacheCleanupTest extends Specification {
         deletedFiles == [file, parent]
     }
 
+    def "does not limit the duration of the cleanup by default"() {
+        given:
+        def cacheEntries = ["a", "b"].collect { cacheDir.createFile(it) }
+
+        when:
+        cleanupAction(finder(cacheEntries), { true })
+            .clean(cleanableStore, progressMonitor)
+
+        then:
+        2 * progressMonitor.incrementDeleted()
+        0 * progressMonitor.markIncomplete()
+        deletedFiles == cacheEntries
+        cacheDir.file(AbstractCacheCleanup.RESUME_FILE_NAME).assertDoesNotExist()
+    }
+
+    def "continues time-limited cleanup where the previous cleanup stopped"() {
+        given:
+        def entries = ["a/1", "a/2", "b/1", "c/1"].collect { cacheDir.file(it).createFile() }
+        def visited = []
+        def cleanup = new AbstractCacheCleanup(new SingleDepthFilesFinder(2), 1) {
+            @Override
+            protected boolean shouldDelete(File file) {
+                visited << file
+                Thread.sleep(5)
+                return file != entries[1]
+            }
+
+            @Override
+            protected void handleDeletion(File file) {
+            }
+        }
+
+        when:
+        cleanup.clean(cleanableStore, progressMonitor)
+
+        then:
+        1 * progressMonitor.markIncomplete()
+        visited == [entries[0]]
+        cacheDir.file(AbstractCacheCleanup.RESUME_FILE_NAME).text == "a/1"
+
+        when:
+        3.times { cleanup.clean(cleanableStore, progressMonitor) }
+
+        then:
+        3 * progressMonitor.markIncomplete()
+        visited == entries
+        cacheDir.file(AbstractCacheCleanup.RESUME_FILE_NAME).assertExists()
+
+        when:
+        cleanup.clean(cleanableStore, progressMonitor)
+
+        then:
+        0 * progressMonitor.markIncomplete()
+        visited == entries
+        cacheDir.file(AbstractCacheCleanup.RESUME_FILE_NAME).assertDoesNotExist()
+        entries[0].assertDoesNotExist()
+        entries[1].assertExists()
+        cacheDir.file("b").assertDoesNotExist()
+        cacheDir.file("c").assertDoesNotExist()
+    }
+
     FilesFinder finder(files) {
         Stub(FilesFinder) {
             find(_, _) >> { baseDir, filter ->
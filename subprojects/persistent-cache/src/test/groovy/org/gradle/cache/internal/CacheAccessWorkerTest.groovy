@@ -104,6 +104,44 @@ class CacheAccessWorkerTest extends ConcurrentSpec {
         cacheAccessWorker?.stop()
     }
 
+    def "applies queued operations under a single cache lock acquisition"() {
+        given:
+        def cacheAccess = Mock(CacheAccess)
+        def worker = new CacheAccessWorker("<cache>", cacheAccess, 50, 5000, 100)
+        def applied = []
+        5.times { i -> worker.enqueue { applied << i } }
+
+        when:
+        start(worker)
+        worker.flush()
+
+        then:
+        1 * cacheAccess.useCache(_) >> { Runnable action -> action.run() }
+        applied == [0, 1, 2, 3, 4]
+
+        cleanup:
+        worker?.stop()
+    }
+
+    def "releases the cache lock when a batch has reached the maximum size"() {
+        given:
+        def cacheAccess = Mock(CacheAccess)
+        def worker = new CacheAccessWorker("<cache>", cacheAccess, 50, 5000, 2)
+        def applied = []
+        5.times { i -> worker.enqueue { applied << i } }
+
+        when:
+        start(worker)
+        worker.flush()
+
+        then:
+        3 * cacheAccess.useCache(_) >> { Runnable action -> action.run() }
+        applied == [0, 1, 2, 3, 4]
+
+        cleanup:
+        worker?.stop()
+    }
+
     def "stop waits for queued actions to complete"() {
         given:
         def counter = 0
@@ -22,6 +22,7 @@ import org.gradle.cache.CrossProcessCacheAccess
 import org.gradle.cache.FileLock
 import org.gradle.cache.FileLockManager
 import org.gradle.cache.FileLockReleasedSignal
+import org.gradle.cache.IndexedCacheStorage
 import org.gradle.cache.LockOptions
 import org.gradle.cache.MultiProcessSafePersistentIndexedCache
 import org.gradle.cache.PersistentIndexedCacheParameters
@@ -719,6 +720,20 @@ class DefaultCacheAccessTest extends ConcurrentSpec {
         access?.close()
     }
 
+    def "throws InvalidCacheReuseException when cache storage differs"() {
+        def access = newAccess(OnDemand)
+
+        when:
+        access.newCache(PersistentIndexedCacheParameters.of('cache', String.class, Integer.class))
+        access.newCache(PersistentIndexedCacheParameters.of('cache', String.class, Integer.class).withStorage(IndexedCacheStorage.APPEND_ONLY_LOG))
+
+        then:
+        thrown(DefaultCacheAccess.InvalidCacheReuseException)
+
+        cleanup:
+        access?.close()
+    }
+
     def "returns the same cache object when cache decorator match"() {
         def access = newAccess(OnDemand)
         def decorator = Mock(CacheDecorator)
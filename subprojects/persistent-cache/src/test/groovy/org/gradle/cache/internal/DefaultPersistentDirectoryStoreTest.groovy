@@ -16,7 +16,9 @@
 package org.gradle.cache.internal
 
 import org.gradle.cache.CacheBuilder
+import org.gradle.cache.CleanableStore
 import org.gradle.cache.CleanupAction
+import org.gradle.cache.CleanupProgressMonitor
 import org.gradle.cache.FileLock
 import org.gradle.cache.FileLockManager
 import org.gradle.internal.concurrent.ExecutorFactory
@@ -161,6 +163,31 @@ class DefaultPersistentDirectoryStoreTest extends Specification {
         0 * _
     }
 
+    def "continues incomplete cleanup sooner than usual but not on every close"() {
+        given:
+        store.open()
+        store.close()
+        markCacheForCleanup(gcFile)
+
+        when:
+        store.open()
+        store.close()
+
+        then:
+        1 * cleanupAction.clean(store, _) >> { CleanableStore cleanableStore, CleanupProgressMonitor progressMonitor ->
+            progressMonitor.markIncomplete()
+        }
+        def hoursUntilNextCleanup = DefaultPersistentDirectoryStore.CLEANUP_INTERVAL_IN_HOURS - TimeUnit.MILLISECONDS.toHours(System.currentTimeMillis() - gcFile.lastModified())
+        hoursUntilNextCleanup == DefaultPersistentDirectoryStore.INCOMPLETE_CLEANUP_INTERVAL_IN_HOURS
+
+        when:
+        store.open()
+        store.close()
+
+        then:
+        0 * cleanupAction.clean(_, _)
+    }
+
     def "fails gracefully if cleanup action fails"() {
         when:
         store.open()
@@ -18,6 +18,7 @@ package org.gradle.cache.internal
 
 import org.gradle.cache.AsyncCacheAccess
 import org.gradle.cache.CrossProcessCacheAccess
+import org.gradle.cache.FileLock
 import org.gradle.cache.MultiProcessSafePersistentIndexedCache
 import org.gradle.internal.Factory
 import spock.lang.Specification
@@ -66,6 +67,47 @@ class InMemoryCacheDecoratorFactoryTest extends Specification {
         0 * target._
     }
 
+    def "serves in-memory hits without file lock while this process holds the lock"() {
+        given:
+        def cache = cacheFactory.decorator(100, true).decorate("path/fileSnapshots.bin", "fileSnapshots", target, crossProcessCacheAccess, asyncCacheAccess)
+        def lockState = Stub(FileLock.State)
+        cache.afterLockAcquire(lockState)
+
+        when:
+        def result = cache.getIfPresent("key")
+
+        then:
+        result == "result"
+
+        and:
+        1 * crossProcessCacheAccess.withFileLock(_) >> { Factory task -> task.create() }
+        1 * asyncCacheAccess.read(_) >> { Factory task -> task.create() }
+        1 * target.getIfPresent("key") >> "result"
+
+        when:
+        result = cache.getIfPresent("key")
+        def produced = cache.get("key", { throw new IllegalStateException() })
+
+        then:
+        result == "result"
+        produced == "result"
+
+        and:
+        0 * crossProcessCacheAccess._
+        0 * target._
+
+        when:
+        cache.beforeLockRelease(lockState)
+        result = cache.getIfPresent("key")
+
+        then:
+        result == "result"
+
+        and:
+        1 * crossProcessCacheAccess.withFileLock(_) >> { Factory task -> task.create() }
+        0 * asyncCacheAccess._
+    }
+
     def "does not cache result when not long running process"() {
         given:
         def cache = cacheFactory.decorator(100, false).decorate("path/fileSnapshots.bin", "fileSnapshots", target, crossProcessCacheAccess, asyncCacheAccess)
@@ -20,12 +20,14 @@ import com.google.common.cache.CacheBuilder
 import org.gradle.cache.FileLock
 import org.gradle.test.fixtures.concurrent.ConcurrentSpec
 
+import java.util.concurrent.atomic.AtomicBoolean
 import java.util.concurrent.atomic.AtomicReference
 import java.util.function.Function
 
 class InMemoryDecoratedCacheTest extends ConcurrentSpec {
     def target = Mock(MultiProcessSafeAsyncPersistentIndexedCache)
-    def cache = new InMemoryDecoratedCache(target, CacheBuilder.newBuilder().build(), "id", new AtomicReference<FileLock.State>())
+    def upToDateWhileLocked = new AtomicBoolean()
+    def cache = new InMemoryDecoratedCache(target, CacheBuilder.newBuilder().build(), "id", new AtomicReference<FileLock.State>(), upToDateWhileLocked)
 
     def "does not produce value when present in memory and marks completed"() {
         def producer = Mock(Function)
@@ -45,6 +47,24 @@ class InMemoryDecoratedCacheTest extends ConcurrentSpec {
         0 * _
     }
 
+    def "serves entries without file lock only while the in-memory cache is up-to-date"() {
+        given:
+        cache.putLater("key", "value", Stub(Runnable))
+        cache.removeLater("removed", Stub(Runnable))
+
+        expect:
+        cache.getIfPresentWithoutFileLock("key") == null
+
+        when:
+        upToDateWhileLocked.set(true)
+
+        then:
+        cache.getIfPresentWithoutFileLock("key") == "value"
+        cache.getIfPresentWithoutFileLock("removed") == null
+        cache.getIfPresentWithoutFileLock("unknown") == null
+        0 * target._
+    }
+
     def "does not produce value when present in backing cache and marks completed"() {
         def producer = Mock(Function)
         def completion = Mock(Runnable)
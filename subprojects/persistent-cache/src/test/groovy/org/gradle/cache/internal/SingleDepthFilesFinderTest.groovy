@@ -60,6 +60,17 @@ class SingleDepthFilesFinderTest extends Specification {
         result as List == [includedFile]
     }
 
+    def "visits files in sorted order"() {
+        given:
+        ["c/2", "a/3", "b/1", "a/1", "c/1"].each { tmpDir.file(it).createFile() }
+
+        when:
+        def result = new SingleDepthFilesFinder(2).find(tmpDir.getTestDirectory(), { true })
+
+        then:
+        result as List == ["a/1", "a/3", "b/1", "c/1", "c/2"].collect { tmpDir.file(it) }
+    }
+
     def "handles empty dir"() {
         when:
         def result = new SingleDepthFilesFinder(1).find(tmpDir.getTestDirectory(), { true })
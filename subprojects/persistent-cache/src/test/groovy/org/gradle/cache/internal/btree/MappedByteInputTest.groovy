@@ -0,0 +1,120 @@
+/*
+ * Copyright 2021 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.cache.internal.btree
+
+import org.gradle.test.fixtures.file.TestNameTestDirectoryProvider
+import org.junit.Rule
+import spock.lang.Specification
+
+class MappedByteInputTest extends Specification {
+    @Rule
+    TestNameTestDirectoryProvider tmpDir = new TestNameTestDirectoryProvider(getClass())
+    RandomAccessFile file
+    MappedByteInput input
+
+    def setup() {
+        file = new RandomAccessFile(tmpDir.file("test.bin"), "rw")
+        input = new MappedByteInput(file.channel, 6)
+    }
+
+    def cleanup() {
+        file.close()
+    }
+
+    def "can reuse to read from multiple locations in file"() {
+        given:
+        file.seek(0)
+        file.writeInt(123)
+        file.writeInt(321)
+        file.writeInt(456)
+
+        expect:
+        def stream = input.start(0)
+        stream.readInt() == 123
+        stream.readInt() == 321
+        input.getBytesRead() == 8
+        input.done()
+
+        def stream2 = input.start(4)
+        stream2.readInt() == 321
+        stream2.readInt() == 456
+        input.done()
+
+        def stream3 = input.start(0)
+        stream3.readInt() == 123
+        input.done()
+    }
+
+    def "can read content spanning multiple regions"() {
+        given:
+        def bytes = (0..<50).collect { it as byte } as byte[]
+        file.write(bytes)
+
+        expect:
+        def stream = input.start(3)
+        def content = new byte[40]
+        stream.readFully(content)
+        content == bytes[3..<43] as byte[]
+        input.getBytesRead() == 40
+    }
+
+    def "reads content appended to the file after it has been mapped"() {
+        given:
+        file.writeInt(123)
+
+        expect:
+        input.start(0).readInt() == 123
+        input.done()
+
+        when:
+        file.writeInt(321)
+        file.writeInt(456)
+
+        then:
+        def stream = input.start(4)
+        stream.readInt() == 321
+        stream.readInt() == 456
+    }
+
+    def "reads new content after discarding regions of a truncated file"() {
+        given:
+        file.writeInt(123)
+        file.writeInt(321)
+        input.start(0).readInt()
+        input.start(4).readInt()
+
+        when:
+        input.discard()
+        file.setLength(0)
+        file.seek(0)
+        file.writeInt(456)
+
+        then:
+        input.start(0).readInt() == 456
+    }
+
+    def "cannot read beyond end of file"() {
+        given:
+        file.writeInt(123)
+
+        when:
+        input.start(2).readInt()
+
+        then:
+        thrown(EOFException)
+    }
+}
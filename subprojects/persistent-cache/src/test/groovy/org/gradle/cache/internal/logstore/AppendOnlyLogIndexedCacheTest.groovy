@@ -0,0 +1,295 @@
+/*
+ * Copyright 2021 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.cache.internal.logstore
+
+import org.gradle.internal.serialize.BaseSerializerFactory
+import org.gradle.test.fixtures.file.TestFile
+import org.gradle.test.fixtures.file.TestNameTestDirectoryProvider
+import org.junit.Rule
+import spock.lang.Specification
+
+class AppendOnlyLogIndexedCacheTest extends Specification {
+    @Rule
+    TestNameTestDirectoryProvider tmpDir = new TestNameTestDirectoryProvider(getClass())
+    def serializer = new BaseSerializerFactory().getSerializerFor(String)
+    def logFile = tmpDir.file("cache.log")
+    AppendOnlyLogIndexedCache<String, String> cache
+
+    def setup() {
+        cache = open()
+    }
+
+    def cleanup() {
+        cache?.close()
+    }
+
+    def "can add, replace and remove entries"() {
+        expect:
+        cache.get("key") == null
+
+        when:
+        cache.put("key", "value")
+        cache.put("other", "other value")
+
+        then:
+        cache.get("key") == "value"
+        cache.get("other") == "other value"
+
+        when:
+        cache.put("key", "new value")
+        cache.remove("other")
+
+        then:
+        cache.get("key") == "new value"
+        cache.get("other") == null
+    }
+
+    def "reads entries written before the cache was reopened"() {
+        given:
+        cache.put("key", "value")
+        cache.put("removed", "value")
+        cache.put("replaced", "value")
+        cache.remove("removed")
+        cache.put("replaced", "new value")
+
+        when:
+        reopen()
+
+        then:
+        cache.get("key") == "value"
+        cache.get("removed") == null
+        cache.get("replaced") == "new value"
+    }
+
+    def "discards partially written record at the end of the log"() {
+        given:
+        cache.put("key", "value")
+        cache.put("other", "other value")
+        reopen()
+        def completeLength = logFile.length()
+        cache.put("last", "last value")
+        cache.close()
+        cache = null
+        def content = logFile.bytes
+        logFile.bytes = content[0..<(content.length - 3)] as byte[]
+
+        when:
+        cache = open()
+
+        then:
+        cache.get("key") == "value"
+        cache.get("other") == "other value"
+        cache.get("last") == null
+        logFile.length() == completeLength
+    }
+
+    def "skips damaged record in the middle of the log"() {
+        given:
+        cache.put("key", "value")
+        cache.put("damaged", "damaged value")
+        cache.put("other", "other value")
+        cache.close()
+        cache = null
+        indexFile.delete()
+        damage("damaged value")
+
+        when:
+        cache = open()
+
+        then:
+        cache.get("key") == "value"
+        cache.get("damaged") == null
+        cache.get("other") == "other value"
+    }
+
+    def "treats record damaged after scanning the log as a miss and discards the log"() {
+        given:
+        cache.put("key", "value")
+        cache.put("damaged", "damaged value")
+        reopen()
+        damage("damaged value")
+
+        expect:
+        cache.get("damaged") == null
+        cache.get("key") == null
+
+        when:
+        cache.put("key", "new value")
+        reopen()
+
+        then:
+        cache.get("key") == "new value"
+        cache.get("damaged") == null
+    }
+
+    def "discards content of log with unknown format"() {
+        given:
+        cache.put("key", "value")
+        cache.close()
+        cache = null
+        logFile.bytes = [1, 2, 3, 4, 5, 6, 7, 8, 9] as byte[]
+
+        when:
+        cache = open()
+
+        then:
+        cache.get("key") == null
+
+        when:
+        cache.put("key", "value")
+        reopen()
+
+        then:
+        cache.get("key") == "value"
+    }
+
+    def "compacts log on close when most records are outdated"() {
+        given:
+        100.times {
+            cache.put("key", "value ${it}".toString())
+        }
+        cache.put("other", "other value")
+        cache.close()
+        def uncompactedLength = logFile.length()
+
+        when:
+        cache = new AppendOnlyLogIndexedCache<String, String>(logFile, serializer, serializer, 100)
+        cache.close()
+
+        then:
+        logFile.length() < uncompactedLength / 10
+
+        when:
+        cache = open()
+
+        then:
+        cache.get("key") == "value 99"
+        cache.get("other") == "other value"
+    }
+
+    def "compacts log while in use when most records are outdated"() {
+        given:
+        cache.close()
+        cache = new AppendOnlyLogIndexedCache<String, String>(logFile, serializer, serializer, 100)
+        def largeValue = "x" * 1000
+
+        when:
+        200.times {
+            cache.put("key", largeValue + it)
+        }
+        cache.put("other", "other value")
+
+        then:
+        logFile.length() < 10 * 1024
+        cache.get("key") == largeValue + 199
+        cache.get("other") == "other value"
+
+        when:
+        reopen()
+
+        then:
+        cache.get("key") == largeValue + 199
+        cache.get("other") == "other value"
+    }
+
+    def "scans only records appended after the saved index when reopened"() {
+        given:
+        cache.put("key", "value")
+        cache.put("replaced", "value")
+        cache.close()
+        def savedIndex = indexFile.bytes
+        cache = open()
+        cache.put("later", "later value")
+        cache.put("replaced", "new value")
+        cache.close()
+        // Same as a process that did not save the index after appending records
+        indexFile.bytes = savedIndex
+
+        when:
+        cache = open()
+
+        then:
+        cache.get("key") == "value"
+        cache.get("later") == "later value"
+        cache.get("replaced") == "new value"
+    }
+
+    def "ignores index saved for a previous log"() {
+        given:
+        cache.put("key", "value")
+        cache.close()
+        def savedIndex = indexFile.bytes
+        cache = new AppendOnlyLogIndexedCache<String, String>(logFile, serializer, serializer, 100)
+        100.times {
+            cache.put("key", "value ${it}".toString())
+        }
+        cache.put("other", "other value")
+        cache.close()
+        indexFile.bytes = savedIndex
+
+        when:
+        cache = open()
+
+        then:
+        cache.get("key") == "value 99"
+        cache.get("other") == "other value"
+    }
+
+    def "ignores corrupt index"() {
+        given:
+        cache.put("key", "value")
+        cache.put("other", "other value")
+        cache.close()
+        def content = indexFile.bytes
+        content[content.length - 10] = (byte) (content[content.length - 10] ^ 0xFF)
+        indexFile.bytes = content
+
+        when:
+        cache = open()
+
+        then:
+        cache.get("key") == "value"
+        cache.get("other") == "other value"
+    }
+
+    /**
+     * Flips a byte of the given value in the log.
+     */
+    private void damage(String value) {
+        def content = logFile.bytes
+        def valueBytes = value.getBytes("UTF-8")
+        def offset = (0..(content.length - valueBytes.length)).find { start ->
+            (0..<valueBytes.length).every { content[start + it] == valueBytes[it] }
+        }
+        assert offset != null
+        content[offset] = (byte) (content[offset] ^ 0xFF)
+        logFile.bytes = content
+    }
+
+    private TestFile getIndexFile() {
+        return tmpDir.file("cache.log.idx")
+    }
+
+    private void reopen() {
+        cache.close()
+        cache = open()
+    }
+
+    private AppendOnlyLogIndexedCache<String, String> open() {
+        return new AppendOnlyLogIndexedCache<String, String>(logFile, serializer, serializer)
+    }
+}
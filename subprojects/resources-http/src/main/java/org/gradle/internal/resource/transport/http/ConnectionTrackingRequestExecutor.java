@@ -0,0 +1,52 @@
+/*
+ * Copyright 2021 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.internal.resource.transport.http;
+
+import org.apache.http.HttpClientConnection;
+import org.apache.http.HttpException;
+import org.apache.http.HttpRequest;
+import org.apache.http.HttpResponse;
+import org.apache.http.protocol.HttpContext;
+import org.apache.http.protocol.HttpRequestExecutor;
+
+import java.io.IOException;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Counts the requests sent, and how many of them had to open a new connection instead of reusing a pooled one.
+ */
+class ConnectionTrackingRequestExecutor extends HttpRequestExecutor {
+    private final AtomicLong requestCount = new AtomicLong();
+    private final AtomicLong openedConnectionCount = new AtomicLong();
+
+    @Override
+    public HttpResponse execute(HttpRequest request, HttpClientConnection conn, HttpContext context) throws IOException, HttpException {
+        requestCount.incrementAndGet();
+        if (conn.getMetrics().getRequestCount() == 0) {
+            openedConnectionCount.incrementAndGet();
+        }
+        return super.execute(request, conn, context);
+    }
+
+    long getRequestCount() {
+        return requestCount.get();
+    }
+
+    long getOpenedConnectionCount() {
+        return openedConnectionCount.get();
+    }
+}
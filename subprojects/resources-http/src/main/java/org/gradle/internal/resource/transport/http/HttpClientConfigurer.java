@@ -90,7 +90,6 @@
 public class HttpClientConfigurer {
     private static final Logger LOGGER = LoggerFactory.getLogger(HttpClientConfigurer.class);
     private static final String HTTPS_PROTOCOLS = "https.protocols";
-    private static final int MAX_HTTP_CONNECTIONS = 20;
 
     /**
      * Determines the HTTPS protocols to support for the client.
@@ -150,8 +149,9 @@ public void configure(HttpClientBuilder builder) {
         configureSocketConfig(builder);
         configureRedirectStrategy(builder);
         builder.setDefaultCredentialsProvider(credentialsProvider);
-        builder.setMaxConnTotal(MAX_HTTP_CONNECTIONS);
-        builder.setMaxConnPerRoute(MAX_HTTP_CONNECTIONS);
+        int maxConnections = httpSettings.getMaxConnections() > 0 ? httpSettings.getMaxConnections() : DefaultHttpSettings.DEFAULT_MAX_CONNECTIONS;
+        builder.setMaxConnTotal(maxConnections);
+        builder.setMaxConnPerRoute(maxConnections);
     }
 
     private void configureSslSocketConnectionFactory(HttpClientBuilder builder, SslContextFactory sslContextFactory, HostnameVerifier hostnameVerifier) {
@@ -56,6 +56,7 @@ public class HttpClientHelper implements Closeable {
     private CloseableHttpClient client;
     private final DocumentationRegistry documentationRegistry;
     private final HttpSettings settings;
+    private final ConnectionTrackingRequestExecutor requestExecutor = new ConnectionTrackingRequestExecutor();
 
     /**
      * Maintains a queue of contexts which are shared between threads when authentication
@@ -222,11 +223,26 @@ private synchronized CloseableHttpClient getClient() {
         if (client == null) {
             HttpClientBuilder builder = HttpClientBuilder.create();
             new HttpClientConfigurer(settings).configure(builder);
+            builder.setRequestExecutor(requestExecutor);
             this.client = builder.build();
         }
         return client;
     }
 
+    /**
+     * Returns the number of requests sent so far.
+     */
+    public long getRequestCount() {
+        return requestExecutor.getRequestCount();
+    }
+
+    /**
+     * Returns the number of connections opened so far. Requests which did not open a connection reused a pooled one.
+     */
+    public long getOpenedConnectionCount() {
+        return requestExecutor.getOpenedConnectionCount();
+    }
+
     @Override
     public synchronized void close() throws IOException {
         if (client != null) {
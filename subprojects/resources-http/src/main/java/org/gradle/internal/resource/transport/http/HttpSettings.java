@@ -38,4 +38,9 @@ public interface HttpSettings {
     SslContextFactory getSslContextFactory();
 
     HostnameVerifier getHostnameVerifier();
+
+    /**
+     * The maximum number of connections to keep open at the same time, or 0 to use the default.
+     */
+    int getMaxConnections();
 }
@@ -21,11 +21,15 @@ import org.apache.http.client.methods.HttpRequestBase
 import org.apache.http.impl.client.CloseableHttpClient
 import org.apache.http.ssl.SSLContexts
 import org.gradle.api.internal.DocumentationRegistry
+import org.gradle.test.fixtures.file.TestNameTestDirectoryProvider
+import org.gradle.test.fixtures.server.http.HttpServer
 import org.gradle.util.SetSystemProperties
 import org.junit.Rule
 
 class HttpClientHelperTest extends AbstractHttpClientTest {
     @Rule SetSystemProperties sysProp = new SetSystemProperties()
+    @Rule TestNameTestDirectoryProvider tmpDir = new TestNameTestDirectoryProvider(getClass())
+    @Rule HttpServer httpServer = new HttpServer()
 
     def "throws HttpRequestException if an IO error occurs during a request"() {
         def client = new HttpClientHelper(new DocumentationRegistry(), httpSettings) {
@@ -75,6 +79,25 @@ class HttpClientHelperTest extends AbstractHttpClientTest {
         request.getHeaders("Cache-Control")[0].value == "max-age=0"
     }
 
+    def "reuses connection for consecutive requests"() {
+        def client = new HttpClientHelper(new DocumentationRegistry(), httpSettings)
+        def file = tmpDir.file("content.txt") << "content"
+        3.times { httpServer.expectGet("/content-$it", file) }
+        httpServer.start()
+
+        when:
+        3.times {
+            client.performRequest(new HttpGet("${httpServer.uri}/content-$it"), false).close()
+        }
+
+        then:
+        client.requestCount == 3
+        client.openedConnectionCount == 1
+
+        cleanup:
+        client.close()
+    }
+
     def "stripping user credentials removes username and password"() {
         given:
         def uri = new URI("https", "admin:password", "foo.example", 80, null, null, null)
@@ -1,6 +1,7 @@
 plugins {
     id("gradlebuild.distribution.implementation-java")
     id("gradlebuild.publish-public-libraries")
+    id("gradlebuild.jmh")
 }
 
 description = "Tools to take immutable, comparable snapshots of files and other things"
@@ -32,4 +33,8 @@ dependencies {
     testFixturesImplementation(libs.commonsIo)
 
     integTestDistributionRuntimeOnly(project(":distributions-core"))
+
+    jmh(platform(project(":distributions-dependencies")))
 }
+
+jmh.includes.set(listOf("SnapshotHierarchyFootprintBenchmark"))
@@ -0,0 +1,149 @@
+/*
+ * Copyright 2021 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.internal.snapshot;
+
+import org.gradle.internal.file.FileMetadata;
+import org.gradle.internal.file.FileMetadata.AccessType;
+import org.gradle.internal.file.impl.DefaultFileMetadata;
+import org.gradle.internal.hash.HashCode;
+import org.gradle.internal.hash.Hashing;
+import org.gradle.internal.vfs.impl.DefaultSnapshotHierarchy;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.File;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+
+/**
+ * Measures the heap retained by a snapshot hierarchy of a synthetic source tree, reported as {@code retainedBytesPerFile}.
+ *
+ * Compares leaf snapshots which retain their own absolute path with leaf snapshots sharing the path of their parent directory.
+ * With {@code fingerprinted} set, the absolute path of every snapshot is requested before measuring, like fingerprinting the hierarchy does,
+ * so the measurement includes anything retained by requesting the paths.
+ */
+@Fork(value = 1, jvmArgsAppend = {"-Xmx4g"})
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@State(Scope.Benchmark)
+public class SnapshotHierarchyFootprintBenchmark {
+    private static final String ROOT = File.separator + "synthetic" + File.separator + "project";
+    private static final int DIRECTORIES_PER_LEVEL = 32;
+
+    @Param({"100000", "1000000"})
+    int fileCount;
+
+    @Param({"ABSOLUTE_PATH", "SHARED_PARENT_PATH"})
+    LeafPaths leafPaths;
+
+    @Param({"false", "true"})
+    boolean fingerprinted;
+
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    public static class Footprint {
+        public long retainedBytesPerFile;
+
+        @Setup(Level.Iteration)
+        public void measure(SnapshotHierarchyFootprintBenchmark benchmark) {
+            MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
+            long usedBefore = usedAfterGc(memory);
+            SnapshotHierarchy hierarchy = benchmark.createHierarchy();
+            long usedAfter = usedAfterGc(memory);
+            retainedBytesPerFile = (usedAfter - usedBefore) / benchmark.fileCount;
+            // Keep the hierarchy reachable until after the measurement
+            if (hierarchy.empty() == hierarchy) {
+                throw new AssertionError();
+            }
+        }
+
+        private static long usedAfterGc(MemoryMXBean memory) {
+            for (int i = 0; i < 3; i++) {
+                System.gc();
+            }
+            return memory.getHeapMemoryUsage().getUsed();
+        }
+    }
+
+    @Benchmark
+    public SnapshotHierarchy buildHierarchy(Footprint footprint) {
+        return createHierarchy();
+    }
+
+    SnapshotHierarchy createHierarchy() {
+        int filesPerDirectory = Math.max(1, fileCount / (DIRECTORIES_PER_LEVEL * DIRECTORIES_PER_LEVEL));
+        MerkleDirectorySnapshotBuilder builder = MerkleDirectorySnapshotBuilder.noSortingRequired();
+        builder.enterDirectory(AccessType.DIRECT, ROOT, "project", MerkleDirectorySnapshotBuilder.EmptyDirectoryHandlingStrategy.INCLUDE_EMPTY_DIRS);
+        for (int module = 0; module < DIRECTORIES_PER_LEVEL; module++) {
+            String moduleName = "module" + (char) ('a' + module / 10) + module % 10;
+            String modulePath = ROOT + File.separatorChar + moduleName;
+            builder.enterDirectory(AccessType.DIRECT, modulePath, moduleName, MerkleDirectorySnapshotBuilder.EmptyDirectoryHandlingStrategy.INCLUDE_EMPTY_DIRS);
+            for (int pkg = 0; pkg < DIRECTORIES_PER_LEVEL; pkg++) {
+                String packageName = "package" + (char) ('a' + pkg / 10) + pkg % 10;
+                String packagePath = modulePath + File.separatorChar + packageName;
+                builder.enterDirectory(AccessType.DIRECT, packagePath, packageName, MerkleDirectorySnapshotBuilder.EmptyDirectoryHandlingStrategy.INCLUDE_EMPTY_DIRS);
+                for (int file = 0; file < filesPerDirectory; file++) {
+                    String fileName = String.format("SourceFile%06d.java", file);
+                    HashCode hash = Hashing.hashString(packagePath + fileName);
+                    FileMetadata metadata = DefaultFileMetadata.file(file, 1024 + file, AccessType.DIRECT);
+                    builder.visitLeafElement(leafPaths.regularFile(packagePath, fileName, hash, metadata));
+                }
+                builder.leaveDirectory();
+            }
+            builder.leaveDirectory();
+        }
+        builder.leaveDirectory();
+        FileSystemLocationSnapshot root = builder.getResult();
+        if (fingerprinted) {
+            requestAbsolutePaths(root);
+        }
+        return DefaultSnapshotHierarchy.empty(CaseSensitivity.CASE_SENSITIVE)
+            .store(root.getAbsolutePath(), root, SnapshotHierarchy.NodeDiffListener.NOOP);
+    }
+
+    private static void requestAbsolutePaths(FileSystemLocationSnapshot root) {
+        // Like fingerprinting with absolute paths, key every snapshot by its absolute path
+        if (SnapshotUtil.index(root).isEmpty()) {
+            throw new AssertionError();
+        }
+    }
+
+    public enum LeafPaths {
+        ABSOLUTE_PATH {
+            @Override
+            RegularFileSnapshot regularFile(String parentPath, String name, HashCode hash, FileMetadata metadata) {
+                return new RegularFileSnapshot(parentPath + File.separatorChar + name, name, hash, metadata);
+            }
+        },
+        SHARED_PARENT_PATH {
+            @Override
+            RegularFileSnapshot regularFile(String parentPath, String name, HashCode hash, FileMetadata metadata) {
+                return RegularFileSnapshot.inDirectory(parentPath, name, hash, metadata);
+            }
+        };
+
+        abstract RegularFileSnapshot regularFile(String parentPath, String name, HashCode hash, FileMetadata metadata);
+    }
+}
@@ -59,7 +59,7 @@ public Map<String, FileSystemLocationFingerprint> collectFingerprints(FileSystem
             public SnapshotVisitResult visitEntry(FileSystemLocationSnapshot snapshot, boolean isRoot) {
                 String absolutePath = snapshot.getAbsolutePath();
                 if (processedEntries.add(absolutePath) && directorySensitivity.shouldFingerprint(snapshot)) {
-                    builder.put(absolutePath, new DefaultFileSystemLocationFingerprint(snapshot.getAbsolutePath(), snapshot));
+                    builder.put(absolutePath, new DefaultFileSystemLocationFingerprint(absolutePath, snapshot));
                 }
                 return SnapshotVisitResult.CONTINUE;
             }
@@ -18,17 +18,35 @@
 
 import org.gradle.internal.file.FileMetadata.AccessType;
 
+import java.io.File;
 import java.util.Optional;
 
 public abstract class AbstractFileSystemLocationSnapshot implements FileSystemLocationSnapshot {
-    private final String absolutePath;
+    /**
+     * The absolute path of the location, or the absolute path of its parent directory when the path is {@link PathLocation#isInParentDirectory() in the parent directory}.
+     *
+     * Leaf snapshots created while walking a directory share the path of the directory,
+     * so large hierarchies do not retain a separate absolute path string per file.
+     */
+    private final String absolutePathOrParentPath;
     private final String name;
-    private final AccessType accessType;
+    private final PathLocation pathLocation;
 
     public AbstractFileSystemLocationSnapshot(String absolutePath, String name, AccessType accessType) {
-        this.absolutePath = absolutePath;
+        this(absolutePath, false, name, accessType);
+    }
+
+    protected AbstractFileSystemLocationSnapshot(String absolutePathOrParentPath, boolean inParentDirectory, String name, AccessType accessType) {
+        this.absolutePathOrParentPath = absolutePathOrParentPath;
         this.name = name;
-        this.accessType = accessType;
+        this.pathLocation = PathLocation.of(accessType, inParentDirectory);
+    }
+
+    /**
+     * Whether the absolute path of a child can be derived from the path of its parent directory and its name.
+     */
+    protected static boolean canShareParentPath(String parentPath) {
+        return !parentPath.isEmpty() && parentPath.charAt(parentPath.length() - 1) != File.separatorChar;
     }
 
     protected static MissingFileSnapshot missingSnapshotForAbsolutePath(String filePath) {
@@ -37,7 +55,9 @@ protected static MissingFileSnapshot missingSnapshotForAbsolutePath(String fileP
 
     @Override
     public String getAbsolutePath() {
-        return absolutePath;
+        return pathLocation.isInParentDirectory()
+            ? absolutePathOrParentPath + File.separatorChar + name
+            : absolutePathOrParentPath;
     }
 
     @Override
@@ -47,7 +67,7 @@ public String getName() {
 
     @Override
     public AccessType getAccessType() {
-        return accessType;
+        return pathLocation.getAccessType();
     }
 
     public String getPathToParent() {
@@ -108,13 +128,13 @@ public boolean equals(Object o) {
 
         AbstractFileSystemLocationSnapshot that = (AbstractFileSystemLocationSnapshot) o;
 
-        if (accessType != that.accessType) {
+        if (getAccessType() != that.getAccessType()) {
             return false;
         }
         if (!name.equals(that.name)) {
             return false;
         }
-        if (!absolutePath.equals(that.absolutePath)) {
+        if (!getAbsolutePath().equals(that.getAbsolutePath())) {
             return false;
         }
         return getHash().equals(that.getHash());
@@ -122,9 +142,9 @@ public boolean equals(Object o) {
 
     @Override
     public int hashCode() {
-        int result = absolutePath.hashCode();
+        int result = getAbsolutePath().hashCode();
         result = 31 * result + name.hashCode();
-        result = 31 * result + accessType.hashCode();
+        result = 31 * result + getAccessType().hashCode();
         result = 31 * result + getHash().hashCode();
         return result;
     }
@@ -133,4 +153,43 @@ public int hashCode() {
     public String toString() {
         return getClass().getSimpleName();
     }
+
+    /**
+     * The access type of a location combined with how its absolute path is stored.
+     *
+     * Keeping both in a single reference field means that sharing the parent path does not add a field to every snapshot.
+     */
+    private enum PathLocation {
+        DIRECT(AccessType.DIRECT, false),
+        VIA_SYMLINK(AccessType.VIA_SYMLINK, false),
+        DIRECT_IN_PARENT_DIRECTORY(AccessType.DIRECT, true),
+        VIA_SYMLINK_IN_PARENT_DIRECTORY(AccessType.VIA_SYMLINK, true);
+
+        private final AccessType accessType;
+        private final boolean inParentDirectory;
+
+        PathLocation(AccessType accessType, boolean inParentDirectory) {
+            this.accessType = accessType;
+            this.inParentDirectory = inParentDirectory;
+        }
+
+        public AccessType getAccessType() {
+            return accessType;
+        }
+
+        public boolean isInParentDirectory() {
+            return inParentDirectory;
+        }
+
+        public static PathLocation of(AccessType accessType, boolean inParentDirectory) {
+            switch (accessType) {
+                case DIRECT:
+                    return inParentDirectory ? DIRECT_IN_PARENT_DIRECTORY : DIRECT;
+                case VIA_SYMLINK:
+                    return inParentDirectory ? VIA_SYMLINK_IN_PARENT_DIRECTORY : VIA_SYMLINK;
+                default:
+                    throw new AssertionError();
+            }
+        }
+    }
 }
@@ -16,16 +16,30 @@
 
 package org.gradle.internal.snapshot;
 
-import java.util.ArrayList;
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
 import java.util.function.BiConsumer;
-import java.util.stream.Collectors;
 
+/**
+ * A child map with at least two children, sorted by path.
+ *
+ * The paths and the children are kept in two parallel arrays instead of a list of {@link Entry} objects,
+ * which saves an object per child in large snapshot hierarchies.
+ */
 public abstract class AbstractListChildMap<T> implements ChildMap<T> {
-    protected final List<Entry<T>> entries;
+    protected final String[] paths;
+    protected final Object[] children;
 
-    protected AbstractListChildMap(List<Entry<T>> entries) {
-        this.entries = entries;
+    protected AbstractListChildMap(String[] paths, Object[] children) {
+        this.paths = paths;
+        this.children = children;
+    }
+
+    @SuppressWarnings("unchecked")
+    protected T childAt(int index) {
+        return (T) children[index];
     }
 
     @Override
@@ -33,29 +47,41 @@ public boolean isEmpty() {
         return false;
     }
 
+    @SuppressWarnings("unchecked")
     @Override
     public List<T> values() {
-        return entries.stream()
-            .map(Entry::getValue)
-            .collect(Collectors.toList());
+        return (List<T>) Collections.unmodifiableList(Arrays.asList(children));
     }
 
+    /**
+     * Returns an unmodifiable view of the entries, which creates each entry when it is accessed.
+     */
     @Override
     public List<Entry<T>> entries() {
-        return entries;
+        return new AbstractList<Entry<T>>() {
+            @Override
+            public Entry<T> get(int index) {
+                return new Entry<>(paths[index], childAt(index));
+            }
+
+            @Override
+            public int size() {
+                return paths.length;
+            }
+        };
     }
 
     @Override
     public void visitChildren(BiConsumer<String, ? super T> visitor) {
-        for (Entry<T> child : entries) {
-            visitor.accept(child.getPath(), child.getValue());
+        for (int i = 0; i < paths.length; i++) {
+            visitor.accept(paths[i], childAt(i));
         }
     }
 
     protected int findChildIndexWithCommonPrefix(VfsRelativePath targetPath, CaseSensitivity caseSensitivity) {
         return SearchUtil.binarySearch(
-            entries,
-            candidate -> targetPath.compareToFirstSegment(candidate.getPath(), caseSensitivity)
+            Arrays.asList(paths),
+            candidate -> targetPath.compareToFirstSegment(candidate, caseSensitivity)
         );
     }
 
@@ -63,9 +89,8 @@ protected int findChildIndexWithCommonPrefix(VfsRelativePath targetPath, CaseSen
     public <RESULT> ChildMap<RESULT> invalidate(VfsRelativePath targetPath, CaseSensitivity caseSensitivity, InvalidationHandler<T, RESULT> handler) {
         int childIndex = findChildIndexWithCommonPrefix(targetPath, caseSensitivity);
         if (childIndex >= 0) {
-            Entry<T> entry = entries.get(childIndex);
-            String childPath = entry.getPath();
-            return entry.withNode(targetPath, caseSensitivity, new AbstractInvalidateChildHandler<T, RESULT>(handler) {
+            String childPath = paths[childIndex];
+            return Entry.withNode(childPath, childAt(childIndex), targetPath, caseSensitivity, new AbstractInvalidateChildHandler<T, RESULT>(handler) {
 
                 @SuppressWarnings("unchecked")
                 @Override
@@ -99,10 +124,10 @@ public ChildMap<RESULT> withRemovedChild() {
     public ChildMap<T> store(VfsRelativePath targetPath, CaseSensitivity caseSensitivity, StoreHandler<T> storeHandler) {
         int childIndex = findChildIndexWithCommonPrefix(targetPath, caseSensitivity);
         if (childIndex >= 0) {
-            return entries.get(childIndex).handlePath(targetPath, caseSensitivity, new AbstractStorePathRelationshipHandler<T>(caseSensitivity, storeHandler) {
+            return Entry.handlePath(paths[childIndex], childAt(childIndex), targetPath, caseSensitivity, new AbstractStorePathRelationshipHandler<T>(caseSensitivity, storeHandler) {
                 @Override
                 public ChildMap<T> withReplacedChild(T newChild) {
-                    return withReplacedChild(entries.get(childIndex).getPath(), newChild);
+                    return withReplacedChild(paths[childIndex], newChild);
                 }
 
                 @Override
@@ -122,25 +147,38 @@ public ChildMap<T> withNewChild(String newChildPath, T newChild) {
     }
 
     protected ChildMap<T> withNewChild(int insertBefore, String path, T newChild) {
-        List<Entry<T>> newChildren = new ArrayList<>(entries);
-        newChildren.add(insertBefore, new Entry<>(path, newChild));
-        return ChildMapFactory.childMapFromSorted(newChildren);
+        int size = paths.length;
+        String[] newPaths = new String[size + 1];
+        Object[] newChildren = new Object[size + 1];
+        System.arraycopy(paths, 0, newPaths, 0, insertBefore);
+        System.arraycopy(children, 0, newChildren, 0, insertBefore);
+        newPaths[insertBefore] = path;
+        newChildren[insertBefore] = newChild;
+        System.arraycopy(paths, insertBefore, newPaths, insertBefore + 1, size - insertBefore);
+        System.arraycopy(children, insertBefore, newChildren, insertBefore + 1, size - insertBefore);
+        return ChildMapFactory.childMapFromSorted(newPaths, newChildren);
     }
 
     protected ChildMap<T> withReplacedChild(int childIndex, String newPath, T newChild) {
-        Entry<T> oldEntry = entries.get(childIndex);
-        if (oldEntry.getPath().equals(newPath) && oldEntry.getValue().equals(newChild)) {
+        if (paths[childIndex].equals(newPath) && children[childIndex].equals(newChild)) {
             return this;
         }
-        List<Entry<T>> newChildren = new ArrayList<>(entries);
-        newChildren.set(childIndex, new Entry<>(newPath, newChild));
-        return ChildMapFactory.childMapFromSorted(newChildren);
+        String[] newPaths = paths.clone();
+        Object[] newChildren = children.clone();
+        newPaths[childIndex] = newPath;
+        newChildren[childIndex] = newChild;
+        return ChildMapFactory.childMapFromSorted(newPaths, newChildren);
     }
 
     protected ChildMap<T> withRemovedChild(int childIndex) {
-        List<Entry<T>> newChildren = new ArrayList<>(entries);
-        newChildren.remove(childIndex);
-        return ChildMapFactory.childMapFromSorted(newChildren);
+        int size = paths.length;
+        String[] newPaths = new String[size - 1];
+        Object[] newChildren = new Object[size - 1];
+        System.arraycopy(paths, 0, newPaths, 0, childIndex);
+        System.arraycopy(children, 0, newChildren, 0, childIndex);
+        System.arraycopy(paths, childIndex + 1, newPaths, childIndex, size - childIndex - 1);
+        System.arraycopy(children, childIndex + 1, newChildren, childIndex, size - childIndex - 1);
+        return ChildMapFactory.childMapFromSorted(newPaths, newChildren);
     }
 
     @Override
@@ -154,16 +192,21 @@ public boolean equals(Object o) {
 
         AbstractListChildMap<?> that = (AbstractListChildMap<?>) o;
 
-        return entries.equals(that.entries);
+        return Arrays.equals(paths, that.paths) && Arrays.equals(children, that.children);
     }
 
     @Override
     public int hashCode() {
-        return entries.hashCode();
+        // Same as the hash code of the list of entries
+        int result = 1;
+        for (int i = 0; i < paths.length; i++) {
+            result = 31 * result + (31 * paths[i].hashCode() + children[i].hashCode());
+        }
+        return result;
     }
 
     @Override
     public String toString() {
-        return entries.toString();
+        return entries().toString();
     }
 }
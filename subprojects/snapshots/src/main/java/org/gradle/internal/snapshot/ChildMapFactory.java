@@ -46,12 +46,39 @@ public static <T> ChildMap<T> childMapFromSorted(List<ChildMap.Entry<T>> sortedE
             case 1:
                 return new SingletonChildMap<>(sortedEntries.get(0));
             default:
-                return (size < MINIMUM_CHILD_COUNT_FOR_BINARY_SEARCH)
-                    ? new MediumChildMap<>(sortedEntries)
-                    : new LargeChildMap<>(sortedEntries);
+                String[] paths = new String[size];
+                Object[] children = new Object[size];
+                for (int i = 0; i < size; i++) {
+                    ChildMap.Entry<T> entry = sortedEntries.get(i);
+                    paths[i] = entry.getPath();
+                    children[i] = entry.getValue();
+                }
+                return listChildMap(paths, children);
         }
     }
 
+    /**
+     * Creates a child map from paths and children sorted by path.
+     * The arrays are owned by the returned child map and must not be modified afterwards.
+     */
+    static <T> ChildMap<T> childMapFromSorted(String[] sortedPaths, Object[] children) {
+        switch (sortedPaths.length) {
+            case 0:
+                return EmptyChildMap.getInstance();
+            case 1:
+                @SuppressWarnings("unchecked") T onlyChild = (T) children[0];
+                return new SingletonChildMap<>(sortedPaths[0], onlyChild);
+            default:
+                return listChildMap(sortedPaths, children);
+        }
+    }
+
+    private static <T> ChildMap<T> listChildMap(String[] sortedPaths, Object[] children) {
+        return (sortedPaths.length < MINIMUM_CHILD_COUNT_FOR_BINARY_SEARCH)
+            ? new MediumChildMap<>(sortedPaths, children)
+            : new LargeChildMap<>(sortedPaths, children);
+    }
+
     static <T> ChildMap<T> childMap(CaseSensitivity caseSensitivity, ChildMap.Entry<T> entry1, ChildMap.Entry<T> entry2) {
         int compared = PathUtil.getPathComparator(caseSensitivity).compare(entry1.getPath(), entry2.getPath());
         List<ChildMap.Entry<T>> sortedEntries = compared < 0
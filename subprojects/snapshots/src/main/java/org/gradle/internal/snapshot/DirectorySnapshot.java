@@ -34,19 +34,31 @@
  * Includes snapshots of any child element and the Merkle tree hash.
  */
 public class DirectorySnapshot extends AbstractFileSystemLocationSnapshot {
+    public static final long UNKNOWN_LAST_MODIFIED = -1;
+
     private final ChildMap<FileSystemLocationSnapshot> children;
     private final HashCode contentHash;
+    private final long lastModified;
 
     public DirectorySnapshot(String absolutePath, String name, AccessType accessType, HashCode contentHash, List<FileSystemLocationSnapshot> children) {
+        this(absolutePath, name, accessType, contentHash, children, UNKNOWN_LAST_MODIFIED);
+    }
+
+    public DirectorySnapshot(String absolutePath, String name, AccessType accessType, HashCode contentHash, List<FileSystemLocationSnapshot> children, long lastModified) {
         this(absolutePath, name, accessType, contentHash, childMapFromSorted(children.stream()
             .map(it -> new ChildMap.Entry<>(it.getName(), it))
-            .collect(Collectors.toList())));
+            .collect(Collectors.toList())), lastModified);
     }
 
     public DirectorySnapshot(String absolutePath, String name, AccessType accessType, HashCode contentHash, ChildMap<FileSystemLocationSnapshot> children) {
+        this(absolutePath, name, accessType, contentHash, children, UNKNOWN_LAST_MODIFIED);
+    }
+
+    public DirectorySnapshot(String absolutePath, String name, AccessType accessType, HashCode contentHash, ChildMap<FileSystemLocationSnapshot> children, long lastModified) {
         super(absolutePath, name, accessType);
         this.contentHash = contentHash;
         this.children = children;
+        this.lastModified = lastModified;
     }
 
     @Override
@@ -54,6 +66,15 @@ public HashCode getHash() {
         return contentHash;
     }
 
+    /**
+     * The modification time of the directory, read before its children have been listed.
+     *
+     * Returns {@link #UNKNOWN_LAST_MODIFIED} when the snapshot has not been taken by walking the directory.
+     */
+    public long getLastModified() {
+        return lastModified;
+    }
+
     @Override
     public FileType getType() {
         return FileType.Directory;
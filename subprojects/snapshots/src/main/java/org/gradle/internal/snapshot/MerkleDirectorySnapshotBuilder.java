@@ -53,7 +53,11 @@ public void enterDirectory(DirectorySnapshot directorySnapshot, EmptyDirectoryHa
     }
 
     public void enterDirectory(AccessType accessType, String absolutePath, String name, EmptyDirectoryHandlingStrategy emptyDirectoryHandlingStrategy) {
-        directoryStack.addLast(new Directory(accessType, absolutePath, name, emptyDirectoryHandlingStrategy));
+        enterDirectory(accessType, absolutePath, name, DirectorySnapshot.UNKNOWN_LAST_MODIFIED, emptyDirectoryHandlingStrategy);
+    }
+
+    public void enterDirectory(AccessType accessType, String absolutePath, String name, long lastModified, EmptyDirectoryHandlingStrategy emptyDirectoryHandlingStrategy) {
+        directoryStack.addLast(new Directory(accessType, absolutePath, name, lastModified, emptyDirectoryHandlingStrategy));
     }
 
     public void visitLeafElement(FileSystemLeafSnapshot snapshot) {
@@ -97,13 +101,15 @@ private class Directory {
         private final AccessType accessType;
         private final String absolutePath;
         private final String name;
+        private final long lastModified;
         private final List<FileSystemLocationSnapshot> children;
         private final EmptyDirectoryHandlingStrategy emptyDirectoryHandlingStrategy;
 
-        public Directory(AccessType accessType, String absolutePath, String name, EmptyDirectoryHandlingStrategy emptyDirectoryHandlingStrategy) {
+        public Directory(AccessType accessType, String absolutePath, String name, long lastModified, EmptyDirectoryHandlingStrategy emptyDirectoryHandlingStrategy) {
             this.accessType = accessType;
             this.absolutePath = absolutePath;
             this.name = name;
+            this.lastModified = lastModified;
             this.children = new ArrayList<>();
             this.emptyDirectoryHandlingStrategy = emptyDirectoryHandlingStrategy;
         }
@@ -126,7 +132,7 @@ public DirectorySnapshot fold() {
                 hasher.putString(child.getName());
                 hasher.putHash(child.getHash());
             }
-            return new DirectorySnapshot(absolutePath, name, accessType, hasher.hash(), children);
+            return new DirectorySnapshot(absolutePath, name, accessType, hasher.hash(), children, lastModified);
         }
     }
 }
@@ -37,6 +37,19 @@ public MissingFileSnapshot(String absolutePath, AccessType accessType) {
         this(absolutePath, PathUtil.getFileName(absolutePath), accessType);
     }
 
+    private MissingFileSnapshot(String absolutePathOrParentPath, boolean inParentDirectory, String name, AccessType accessType) {
+        super(absolutePathOrParentPath, inParentDirectory, name, accessType);
+    }
+
+    /**
+     * Creates a snapshot for the missing file with the given name in a directory, sharing the absolute path of the directory.
+     */
+    public static MissingFileSnapshot inDirectory(String parentPath, String name, AccessType accessType) {
+        return canShareParentPath(parentPath)
+            ? new MissingFileSnapshot(parentPath, true, name, accessType)
+            : new MissingFileSnapshot(parentPath + name, false, name, accessType);
+    }
+
     @Override
     public FileType getType() {
         return FileType.Missing;
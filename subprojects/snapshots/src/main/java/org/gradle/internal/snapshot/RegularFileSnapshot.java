@@ -32,11 +32,24 @@ public class RegularFileSnapshot extends AbstractFileSystemLocationSnapshot impl
     private final FileMetadata metadata;
 
     public RegularFileSnapshot(String absolutePath, String name, HashCode contentHash, FileMetadata metadata) {
-        super(absolutePath, name, metadata.getAccessType());
+        this(absolutePath, false, name, contentHash, metadata);
+    }
+
+    private RegularFileSnapshot(String absolutePathOrParentPath, boolean inParentDirectory, String name, HashCode contentHash, FileMetadata metadata) {
+        super(absolutePathOrParentPath, inParentDirectory, name, metadata.getAccessType());
         this.contentHash = contentHash;
         this.metadata = metadata;
     }
 
+    /**
+     * Creates a snapshot for the file with the given name in a directory, sharing the absolute path of the directory.
+     */
+    public static RegularFileSnapshot inDirectory(String parentPath, String name, HashCode contentHash, FileMetadata metadata) {
+        return canShareParentPath(parentPath)
+            ? new RegularFileSnapshot(parentPath, true, name, contentHash, metadata)
+            : new RegularFileSnapshot(parentPath + name, false, name, contentHash, metadata);
+    }
+
     @Override
     public FileType getType() {
         return FileType.RegularFile;
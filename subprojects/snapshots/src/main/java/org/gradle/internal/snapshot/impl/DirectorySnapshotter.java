@@ -17,6 +17,7 @@
 package org.gradle.internal.snapshot.impl;
 
 import com.google.common.annotations.VisibleForTesting;
+import com.google.common.base.Throwables;
 import com.google.common.collect.ImmutableSet;
 import com.google.common.collect.Interner;
 import com.google.common.collect.Iterables;
@@ -50,12 +51,17 @@
 import java.nio.file.Paths;
 import java.nio.file.attribute.BasicFileAttributes;
 import java.util.ArrayDeque;
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Deque;
 import java.util.EnumSet;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.function.Predicate;
+import java.util.function.Supplier;
 
 import static org.gradle.internal.snapshot.MerkleDirectorySnapshotBuilder.EmptyDirectoryHandlingStrategy.INCLUDE_EMPTY_DIRS;
 
@@ -84,18 +90,31 @@ public Iterable<String> getRemappedSegments(Iterable<String> segments) {
     private final Interner<String> stringInterner;
     private final DefaultExcludes defaultExcludes;
     private final DirectorySnapshotterStatistics.Collector collector;
+    private final Executor hashingExecutor;
 
     public DirectorySnapshotter(FileHasher hasher, Interner<String> stringInterner, Collection<String> defaultExcludes, DirectorySnapshotterStatistics.Collector collector) {
+        this(hasher, stringInterner, defaultExcludes, collector, null);
+    }
+
+    /**
+     * Creates a snapshotter that hashes regular files concurrently using the given executor.
+     * When no executor is given, files are hashed on the thread walking the directory tree.
+     */
+    public DirectorySnapshotter(FileHasher hasher, Interner<String> stringInterner, Collection<String> defaultExcludes, DirectorySnapshotterStatistics.Collector collector, @Nullable Executor hashingExecutor) {
         this.hasher = hasher;
         this.stringInterner = stringInterner;
         this.defaultExcludes = new DefaultExcludes(defaultExcludes);
         this.collector = collector;
+        this.hashingExecutor = hashingExecutor;
     }
 
     public FileSystemLocationSnapshot snapshot(String absolutePath, @Nullable SnapshottingFilter.DirectoryWalkerPredicate predicate, final AtomicBoolean hasBeenFiltered) {
         try {
             Path rootPath = Paths.get(absolutePath);
-            PathVisitor visitor = new PathVisitor(predicate, hasBeenFiltered, hasher, stringInterner, defaultExcludes, collector, EMPTY_SYMBOLIC_LINK_MAPPING);
+            SnapshotAssembler assembler = hashingExecutor == null
+                ? new SequentialSnapshotAssembler()
+                : new ConcurrentSnapshotAssembler(hashingExecutor);
+            PathVisitor visitor = new PathVisitor(predicate, hasBeenFiltered, hasher, stringInterner, defaultExcludes, collector, EMPTY_SYMBOLIC_LINK_MAPPING, assembler);
             Files.walkFileTree(rootPath, DONT_FOLLOW_SYMLINKS, Integer.MAX_VALUE, visitor);
             return visitor.getResult();
         } catch (IOException e) {
@@ -147,6 +166,189 @@ public Iterable<String> getRemappedSegments(Iterable<String> segments) {
         }
     }
 
+    /**
+     * Assembles the snapshots of the visited locations into a Merkle tree.
+     */
+    private interface SnapshotAssembler {
+        void enterDirectory(AccessType accessType, String absolutePath, String name, long lastModified);
+
+        void visitLeafElement(FileSystemLeafSnapshot snapshot);
+
+        /**
+         * Visits a regular file. The snapshot is created by the given supplier, which hashes the file's content.
+         */
+        void visitRegularFile(Supplier<FileSystemLeafSnapshot> snapshotSupplier);
+
+        /**
+         * Visits a directory reached via a symbolic link, whose contents have been visited by the given assembler.
+         */
+        void visitSymlinkedDirectory(SnapshotAssembler subtreeAssembler, String name);
+
+        void leaveDirectory();
+
+        SnapshotAssembler newSubtreeAssembler();
+
+        FileSystemLocationSnapshot getResult();
+    }
+
+    private static class SequentialSnapshotAssembler implements SnapshotAssembler {
+        private final MerkleDirectorySnapshotBuilder builder = MerkleDirectorySnapshotBuilder.sortingRequired();
+
+        @Override
+        public void enterDirectory(AccessType accessType, String absolutePath, String name, long lastModified) {
+            builder.enterDirectory(accessType, absolutePath, name, lastModified, INCLUDE_EMPTY_DIRS);
+        }
+
+        @Override
+        public void visitLeafElement(FileSystemLeafSnapshot snapshot) {
+            builder.visitLeafElement(snapshot);
+        }
+
+        @Override
+        public void visitRegularFile(Supplier<FileSystemLeafSnapshot> snapshotSupplier) {
+            builder.visitLeafElement(snapshotSupplier.get());
+        }
+
+        @Override
+        public void visitSymlinkedDirectory(SnapshotAssembler subtreeAssembler, String name) {
+            DirectorySnapshot result = (DirectorySnapshot) subtreeAssembler.getResult();
+            builder.visitDirectory(new DirectorySnapshot(
+                result.getAbsolutePath(),
+                name,
+                AccessType.VIA_SYMLINK,
+                result.getHash(),
+                result.getChildren(),
+                result.getLastModified()
+            ));
+        }
+
+        @Override
+        public void leaveDirectory() {
+            builder.leaveDirectory();
+        }
+
+        @Override
+        public SnapshotAssembler newSubtreeAssembler() {
+            return new SequentialSnapshotAssembler();
+        }
+
+        @Override
+        public FileSystemLocationSnapshot getResult() {
+            return builder.getResult();
+        }
+    }
+
+    /**
+     * Hashes regular files concurrently while the directory tree is being walked.
+     *
+     * The structure of the tree is recorded as it is walked, and the Merkle tree is only built once all files have been hashed.
+     * Since the children of each directory are sorted before its hash is calculated, the result is the same as for the sequential assembler.
+     */
+    private static class ConcurrentSnapshotAssembler implements SnapshotAssembler {
+        private final Executor executor;
+        private final Deque<PendingDirectory> directoryStack = new ArrayDeque<>();
+        private Object result;
+
+        public ConcurrentSnapshotAssembler(Executor executor) {
+            this.executor = executor;
+        }
+
+        @Override
+        public void enterDirectory(AccessType accessType, String absolutePath, String name, long lastModified) {
+            directoryStack.addLast(new PendingDirectory(accessType, absolutePath, name, lastModified, new ArrayList<>()));
+        }
+
+        @Override
+        public void visitLeafElement(FileSystemLeafSnapshot snapshot) {
+            collectEntry(snapshot);
+        }
+
+        @Override
+        public void visitRegularFile(Supplier<FileSystemLeafSnapshot> snapshotSupplier) {
+            collectEntry(CompletableFuture.supplyAsync(snapshotSupplier, executor));
+        }
+
+        @Override
+        public void visitSymlinkedDirectory(SnapshotAssembler subtreeAssembler, String name) {
+            PendingDirectory subtree = (PendingDirectory) ((ConcurrentSnapshotAssembler) subtreeAssembler).result;
+            collectEntry(new PendingDirectory(AccessType.VIA_SYMLINK, subtree.absolutePath, name, subtree.lastModified, subtree.children));
+        }
+
+        @Override
+        public void leaveDirectory() {
+            collectEntry(directoryStack.removeLast());
+        }
+
+        private void collectEntry(Object entry) {
+            PendingDirectory directory = directoryStack.peekLast();
+            if (directory != null) {
+                directory.children.add(entry);
+            } else {
+                assert result == null;
+                result = entry;
+            }
+        }
+
+        @Override
+        public SnapshotAssembler newSubtreeAssembler() {
+            return new ConcurrentSnapshotAssembler(executor);
+        }
+
+        @Override
+        public FileSystemLocationSnapshot getResult() {
+            if (result instanceof PendingDirectory) {
+                MerkleDirectorySnapshotBuilder builder = MerkleDirectorySnapshotBuilder.sortingRequired();
+                assemble((PendingDirectory) result, builder);
+                return builder.getResult();
+            }
+            return resolveLeaf(result);
+        }
+
+        private static void assemble(PendingDirectory directory, MerkleDirectorySnapshotBuilder builder) {
+            builder.enterDirectory(directory.accessType, directory.absolutePath, directory.name, directory.lastModified, INCLUDE_EMPTY_DIRS);
+            for (Object child : directory.children) {
+                if (child instanceof PendingDirectory) {
+                    assemble((PendingDirectory) child, builder);
+                } else {
+                    builder.visitLeafElement(resolveLeaf(child));
+                }
+            }
+            builder.leaveDirectory();
+        }
+
+        @SuppressWarnings("unchecked")
+        private static FileSystemLeafSnapshot resolveLeaf(Object entry) {
+            if (entry instanceof CompletableFuture) {
+                try {
+                    return ((CompletableFuture<FileSystemLeafSnapshot>) entry).join();
+                } catch (CompletionException e) {
+                    Throwables.throwIfUnchecked(e.getCause());
+                    throw e;
+                }
+            }
+            return (FileSystemLeafSnapshot) entry;
+        }
+
+        private static class PendingDirectory {
+            private final AccessType accessType;
+            private final String absolutePath;
+            private final String name;
+            private final long lastModified;
+            /**
+             * Either {@link PendingDirectory}, {@link FileSystemLeafSnapshot} or a future of a {@link FileSystemLeafSnapshot}.
+             */
+            private final List<Object> children;
+
+            public PendingDirectory(AccessType accessType, String absolutePath, String name, long lastModified, List<Object> children) {
+                this.accessType = accessType;
+                this.absolutePath = absolutePath;
+                this.name = name;
+                this.lastModified = lastModified;
+                this.children = children;
+            }
+        }
+    }
+
     @VisibleForTesting
     static class DefaultExcludes {
         private final ImmutableSet<String> excludeFileNames;
@@ -222,7 +424,7 @@ public boolean test(String element) {
 
     private static class PathVisitor extends DirectorySnapshotterStatistics.CollectingFileVisitor {
         private final RelativePathTracker pathTracker = new RelativePathTracker();
-        private final MerkleDirectorySnapshotBuilder builder;
+        private final SnapshotAssembler assembler;
         private final SnapshottingFilter.DirectoryWalkerPredicate predicate;
         private final AtomicBoolean hasBeenFiltered;
         private final FileHasher hasher;
@@ -230,6 +432,7 @@ private static class PathVisitor extends DirectorySnapshotterStatistics.Collecti
         private final DefaultExcludes defaultExcludes;
         private final SymbolicLinkMapping symbolicLinkMapping;
         private final Deque<String> parentDirectories = new ArrayDeque<>();
+        private final Deque<String> remappedParentDirectories = new ArrayDeque<>();
 
         public PathVisitor(
             @Nullable SnapshottingFilter.DirectoryWalkerPredicate predicate,
@@ -238,10 +441,11 @@ public PathVisitor(
             Interner<String> stringInterner,
             DefaultExcludes defaultExcludes,
             DirectorySnapshotterStatistics.Collector statisticsCollector,
-            SymbolicLinkMapping symbolicLinkMapping
+            SymbolicLinkMapping symbolicLinkMapping,
+            SnapshotAssembler assembler
         ) {
             super(statisticsCollector);
-            this.builder = MerkleDirectorySnapshotBuilder.sortingRequired();
+            this.assembler = assembler;
             this.predicate = predicate;
             this.hasBeenFiltered = hasBeenFiltered;
             this.hasher = hasher;
@@ -255,8 +459,10 @@ protected FileVisitResult doPreVisitDirectory(Path dir, BasicFileAttributes attr
             String fileName = getInternedFileName(dir);
             pathTracker.enter(fileName);
             if (pathTracker.isRoot() || shouldVisit(dir, fileName, true, pathTracker.getSegments())) {
-                builder.enterDirectory(AccessType.DIRECT, intern(symbolicLinkMapping.remapAbsolutePath(dir)), fileName, INCLUDE_EMPTY_DIRS);
+                String internedRemappedAbsolutePath = intern(symbolicLinkMapping.remapAbsolutePath(dir));
+                assembler.enterDirectory(AccessType.DIRECT, internedRemappedAbsolutePath, fileName, attrs.lastModifiedTime().toMillis());
                 parentDirectories.addFirst(dir.toString());
+                remappedParentDirectories.addFirst(internedRemappedAbsolutePath);
                 return FileVisitResult.CONTINUE;
             } else {
                 pathTracker.leave();
@@ -279,6 +485,7 @@ protected FileVisitResult doVisitFile(Path file, BasicFileAttributes attrs) {
                                 return FileVisitResult.CONTINUE;
                             }
                             if (pathTracker.isRoot() || shouldVisit(targetDir, internedFileName, true, pathTracker.getSegments())) {
+                                SnapshotAssembler subtreeAssembler = assembler.newSubtreeAssembler();
                                 PathVisitor subtreeVisitor = new PathVisitor(
                                     predicate,
                                     hasBeenFiltered,
@@ -286,17 +493,11 @@ protected FileVisitResult doVisitFile(Path file, BasicFileAttributes attrs) {
                                     stringInterner,
                                     defaultExcludes,
                                     collector,
-                                    symbolicLinkMapping.withNewMapping(file.toString(), targetDirString, pathTracker)
+                                    symbolicLinkMapping.withNewMapping(file.toString(), targetDirString, pathTracker),
+                                    subtreeAssembler
                                 );
                                 Files.walkFileTree(targetDir, EnumSet.noneOf(FileVisitOption.class), Integer.MAX_VALUE, subtreeVisitor);
-                                DirectorySnapshot result = (DirectorySnapshot) subtreeVisitor.getResult();
-                                builder.visitDirectory(new DirectorySnapshot(
-                                    result.getAbsolutePath(),
-                                    internedFileName,
-                                    AccessType.VIA_SYMLINK,
-                                    result.getHash(),
-                                    result.getChildren()
-                                ));
+                                assembler.visitSymlinkedDirectory(subtreeAssembler, internedFileName);
                             }
                         } catch (IOException e) {
                             throw new UncheckedIOException(String.format("Could not list contents of directory '%s'.", file), e);
@@ -320,7 +521,7 @@ private boolean introducesCycle(String targetDirString) {
         private void visitResolvedFile(Path file, BasicFileAttributes targetAttributes, AccessType accessType) {
             String internedName = intern(file.getFileName().toString());
             if (shouldVisit(file, internedName, false, pathTracker.getSegments())) {
-                builder.visitLeafElement(snapshotFile(file, internedName, targetAttributes, accessType));
+                visitLeaf(file, internedName, targetAttributes, accessType);
             }
         }
 
@@ -334,20 +535,34 @@ private BasicFileAttributes readAttributesOfSymlinkTarget(Path symlink, BasicFil
             }
         }
 
-        private FileSystemLeafSnapshot snapshotFile(Path absoluteFilePath, String internedName, BasicFileAttributes attrs, AccessType accessType) {
-            String internedRemappedAbsoluteFilePath = intern(symbolicLinkMapping.remapAbsolutePath(absoluteFilePath));
+        private void visitLeaf(Path absoluteFilePath, String internedName, BasicFileAttributes attrs, AccessType accessType) {
+            // Leaves in a visited directory share the path of the directory instead of retaining their own absolute path
+            String remappedParentPath = remappedParentDirectories.peekFirst();
             if (attrs.isRegularFile()) {
-                try {
-                    long lastModified = attrs.lastModifiedTime().toMillis();
-                    long fileLength = attrs.size();
-                    FileMetadata metadata = DefaultFileMetadata.file(lastModified, fileLength, accessType);
-                    HashCode hash = hasher.hash(absoluteFilePath.toFile(), fileLength, lastModified);
-                    return new RegularFileSnapshot(internedRemappedAbsoluteFilePath, internedName, hash, metadata);
-                } catch (UncheckedIOException e) {
-                    LOGGER.info("Could not read file path '{}'.", absoluteFilePath, e);
-                }
+                FileMetadata metadata = DefaultFileMetadata.file(attrs.lastModifiedTime().toMillis(), attrs.size(), accessType);
+                assembler.visitRegularFile(() -> snapshotRegularFile(absoluteFilePath, remappedParentPath, internedName, metadata));
+            } else {
+                assembler.visitLeafElement(missingFileSnapshot(absoluteFilePath, remappedParentPath, internedName, accessType));
             }
-            return new MissingFileSnapshot(internedRemappedAbsoluteFilePath, internedName, accessType);
+        }
+
+        private FileSystemLeafSnapshot snapshotRegularFile(Path absoluteFilePath, @Nullable String remappedParentPath, String internedName, FileMetadata metadata) {
+            collector.recordSnapshotRegularFile();
+            try {
+                HashCode hash = hasher.hash(absoluteFilePath.toFile(), metadata.getLength(), metadata.getLastModified());
+                return remappedParentPath == null
+                    ? new RegularFileSnapshot(intern(symbolicLinkMapping.remapAbsolutePath(absoluteFilePath)), internedName, hash, metadata)
+                    : RegularFileSnapshot.inDirectory(remappedParentPath, internedName, hash, metadata);
+            } catch (UncheckedIOException e) {
+                LOGGER.info("Could not read file path '{}'.", absoluteFilePath, e);
+                return missingFileSnapshot(absoluteFilePath, remappedParentPath, internedName, metadata.getAccessType());
+            }
+        }
+
+        private MissingFileSnapshot missingFileSnapshot(Path absoluteFilePath, @Nullable String remappedParentPath, String internedName, AccessType accessType) {
+            return remappedParentPath == null
+                ? new MissingFileSnapshot(intern(symbolicLinkMapping.remapAbsolutePath(absoluteFilePath)), internedName, accessType)
+                : MissingFileSnapshot.inDirectory(remappedParentPath, internedName, accessType);
         }
 
         /** unlistable directories (and maybe some locked files) will stop here */
@@ -364,7 +579,7 @@ protected FileVisitResult doVisitFileFailed(Path file, IOException exc) {
                     if (shouldVisit(file, internedFileName, isDirectory, pathTracker.getSegments())) {
                         LOGGER.info("Could not read file path '{}'.", file);
                         String internedAbsolutePath = intern(file.toString());
-                        builder.visitLeafElement(new MissingFileSnapshot(internedAbsolutePath, internedFileName, AccessType.DIRECT));
+                        assembler.visitLeafElement(new MissingFileSnapshot(internedAbsolutePath, internedFileName, AccessType.DIRECT));
                     }
                 }
                 return FileVisitResult.CONTINUE;
@@ -382,8 +597,9 @@ protected FileVisitResult doPostVisitDirectory(Path dir, IOException exc) {
             if (isNotFileSystemLoopException(exc)) {
                 throw new UncheckedIOException(String.format("Could not read directory path '%s'.", dir), exc);
             }
-            builder.leaveDirectory();
+            assembler.leaveDirectory();
             parentDirectories.removeFirst();
+            remappedParentDirectories.removeFirst();
             return FileVisitResult.CONTINUE;
         }
 
@@ -425,7 +641,7 @@ private String getInternedFileName(Path dir) {
         }
 
         public FileSystemLocationSnapshot getResult() {
-            return builder.getResult();
+            return assembler.getResult();
         }
     }
 }
@@ -16,12 +16,17 @@
 
 package org.gradle.internal.snapshot.impl;
 
+import com.google.common.collect.ImmutableSortedMap;
+
 import java.io.IOException;
 import java.nio.file.FileVisitResult;
 import java.nio.file.FileVisitor;
 import java.nio.file.Path;
 import java.nio.file.attribute.BasicFileAttributes;
 import java.text.MessageFormat;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.atomic.AtomicLong;
 
 public interface DirectorySnapshotterStatistics {
@@ -45,11 +50,17 @@ public interface DirectorySnapshotterStatistics {
      */
     long getFailedFiles();
 
+    /**
+     * The number of regular files snapshotted by each thread, keyed by thread name.
+     */
+    Map<String, Long> getRegularFileSnapshotsPerThread();
+
     class Collector {
         private final AtomicLong hierarchyCount = new AtomicLong();
         private final AtomicLong directoryCount = new AtomicLong();
         private final AtomicLong fileCount = new AtomicLong();
         private final AtomicLong failedFileCount = new AtomicLong();
+        private final ConcurrentMap<String, AtomicLong> regularFileSnapshotCountPerThread = new ConcurrentHashMap<>();
 
         public void recordVisitHierarchy() {
             hierarchyCount.incrementAndGet();
@@ -67,11 +78,23 @@ public void recordVisitFileFailed() {
             failedFileCount.incrementAndGet();
         }
 
+        public void recordSnapshotRegularFile() {
+            regularFileSnapshotCountPerThread.computeIfAbsent(Thread.currentThread().getName(), threadName -> new AtomicLong()).incrementAndGet();
+        }
+
         public DirectorySnapshotterStatistics collect() {
             long hierarchyCount = this.hierarchyCount.getAndSet(0);
             long directoryCount = this.directoryCount.getAndSet(0);
             long fileCount = this.fileCount.getAndSet(0);
             long failedFileCount = this.failedFileCount.getAndSet(0);
+            ImmutableSortedMap.Builder<String, Long> regularFileSnapshotsPerThreadBuilder = ImmutableSortedMap.naturalOrder();
+            regularFileSnapshotCountPerThread.forEach((threadName, count) -> {
+                long regularFileSnapshotCount = count.getAndSet(0);
+                if (regularFileSnapshotCount > 0) {
+                    regularFileSnapshotsPerThreadBuilder.put(threadName, regularFileSnapshotCount);
+                }
+            });
+            ImmutableSortedMap<String, Long> regularFileSnapshotsPerThread = regularFileSnapshotsPerThreadBuilder.build();
 
             return new DirectorySnapshotterStatistics() {
                 @Override
@@ -94,10 +117,15 @@ public long getFailedFiles() {
                     return failedFileCount;
                 }
 
+                @Override
+                public Map<String, Long> getRegularFileSnapshotsPerThread() {
+                    return regularFileSnapshotsPerThread;
+                }
+
                 @Override
                 public String toString() {
-                    return MessageFormat.format("Snapshot {0,number,integer} directory hierarchies (visited {1,number,integer} directories, {2,number,integer} files and {3,number,integer} failed files)",
-                        hierarchyCount, directoryCount, fileCount, failedFileCount);
+                    return MessageFormat.format("Snapshot {0,number,integer} directory hierarchies (visited {1,number,integer} directories, {2,number,integer} files and {3,number,integer} failed files), snapshotting regular files on {4,number,integer} threads",
+                        hierarchyCount, directoryCount, fileCount, failedFileCount, regularFileSnapshotsPerThread.size());
                 }
             };
         }
@@ -25,4 +25,23 @@ class RegularFileSnapshotTest extends AbstractFileSystemLeafSnapshotTest {
     protected RegularFileSnapshot createInitialRootNode(String absolutePath) {
         return new RegularFileSnapshot(absolutePath, PathUtil.getFileName(absolutePath), HashCode.fromInt(1235), DefaultFileMetadata.file(1, 2, AccessType.DIRECT))
     }
+
+    def "snapshot in directory shares the path of the directory"() {
+        def metadata = DefaultFileMetadata.file(1, 2, AccessType.DIRECT)
+        def parentPath = "${File.separator}some${File.separator}dir".toString()
+
+        when:
+        def snapshot = RegularFileSnapshot.inDirectory(parentPath, "file.txt", HashCode.fromInt(1235), metadata)
+        def snapshotWithAbsolutePath = new RegularFileSnapshot("${parentPath}${File.separator}file.txt".toString(), "file.txt", HashCode.fromInt(1235), metadata)
+        then:
+        snapshot.absolutePath == snapshotWithAbsolutePath.absolutePath
+        snapshot.name == "file.txt"
+        snapshot == snapshotWithAbsolutePath
+        snapshot.hashCode() == snapshotWithAbsolutePath.hashCode()
+    }
+
+    def "snapshot in file system root has correct absolute path"() {
+        expect:
+        RegularFileSnapshot.inDirectory(File.separator, "file.txt", HashCode.fromInt(1235), DefaultFileMetadata.file(1, 2, AccessType.DIRECT)).absolutePath == "${File.separator}file.txt"
+    }
 }
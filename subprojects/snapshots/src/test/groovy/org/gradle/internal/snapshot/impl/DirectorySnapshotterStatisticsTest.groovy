@@ -59,6 +59,7 @@ class DirectorySnapshotterStatisticsTest extends Specification {
 
         then:
         1 * statisticsCollector.recordVisitFile()
+        1 * statisticsCollector.recordSnapshotRegularFile()
         0 * _
     }
 
@@ -91,6 +92,7 @@ class DirectorySnapshotterStatisticsTest extends Specification {
         then:
         3 * statisticsCollector.recordVisitDirectory()
         2 * statisticsCollector.recordVisitFile()
+        2 * statisticsCollector.recordSnapshotRegularFile()
         0 * _
     }
 
@@ -131,6 +133,7 @@ class DirectorySnapshotterStatisticsTest extends Specification {
         1 * statisticsCollector.recordVisitHierarchy()
         3 * statisticsCollector.recordVisitDirectory()
         3 * statisticsCollector.recordVisitFile()
+        2 * statisticsCollector.recordSnapshotRegularFile()
         0 * _
     }
 
@@ -150,6 +153,7 @@ class DirectorySnapshotterStatisticsTest extends Specification {
         1 * statisticsCollector.recordVisitHierarchy()
         2 * statisticsCollector.recordVisitDirectory()
         2 * statisticsCollector.recordVisitFile()
+        2 * statisticsCollector.recordSnapshotRegularFile()
         1 * statisticsCollector.recordVisitFileFailed()
         0 * _
 
@@ -38,6 +38,7 @@ import spock.lang.Issue
 import spock.lang.Specification
 
 import java.nio.file.Paths
+import java.util.concurrent.Executors
 import java.util.concurrent.atomic.AtomicBoolean
 
 @UsesNativeServices
@@ -382,6 +383,35 @@ class DirectorySnapshotterTest extends Specification {
         pipe.delete()
     }
 
+    @Requires(TestPrecondition.SYMLINKS)
+    def "hashing files concurrently produces the same snapshot"() {
+        def rootDir = tmpDir.createDir("root")
+        (1..20).each { dirIndex ->
+            (1..10).each { fileIndex ->
+                rootDir.file("dir-${dirIndex}/sub/file-${fileIndex}.txt").text = "content ${dirIndex}/${fileIndex}"
+            }
+        }
+        rootDir.file("empty").createDir()
+        def linkTarget = tmpDir.createDir("linkTarget")
+        linkTarget.file("other/text.txt").text = "text"
+        rootDir.file("dir-1/link").createLink(linkTarget)
+        def executor = Executors.newFixedThreadPool(4)
+        def concurrentSnapshotter = new DirectorySnapshotter(fileHasher, new StringInterner(), [], statisticsCollector, executor)
+
+        when:
+        def expected = directorySnapshotter.snapshot(rootDir.absolutePath, null, actuallyFiltered) as DirectorySnapshot
+        def snapshot = concurrentSnapshotter.snapshot(rootDir.absolutePath, null, actuallyFiltered) as DirectorySnapshot
+
+        then:
+        snapshot.hash == expected.hash
+        SnapshotVisitorUtil.getAbsolutePaths(snapshot, true) == SnapshotVisitorUtil.getAbsolutePaths(expected, true)
+        def symlinkedDir = snapshot.children.find { it.name == "dir-1" }.children.find { it.name == "link" } as DirectorySnapshot
+        symlinkedDir.accessType == AccessType.VIA_SYMLINK
+
+        cleanup:
+        executor.shutdown()
+    }
+
     def "default excludes are correctly parsed"() {
         def defaultExcludes = new DirectorySnapshotter.DefaultExcludes(DirectoryScanner.getDefaultExcludes() as List)
 
@@ -53,7 +53,8 @@ abstract class AbstractFileSystemAccessTest extends Specification {
         stat,
         TestFiles.virtualFileSystem(),
         updateListener,
-        statisticsCollector
+        statisticsCollector,
+        null
     )
 
     void allowFileSystemAccess(boolean allow) {